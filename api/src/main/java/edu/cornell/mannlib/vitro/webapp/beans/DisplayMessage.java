@@ -38,6 +38,14 @@ public class DisplayMessage {
 		log.debug("Set message: '" + message + "'");
 	}
 
+	/**
+	 * Is there a message waiting on the session? Don't remove it.
+	 */
+	public static boolean hasMessage(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		return session != null && session.getAttribute(ATTRIBUTE_NAME) != null;
+	}
+
 	/**
 	 * Get the current message from the session, and remove it from the session
 	 * so it won't be displayed again.
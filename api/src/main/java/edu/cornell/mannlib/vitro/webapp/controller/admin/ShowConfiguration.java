@@ -3,6 +3,7 @@
 package edu.cornell.mannlib.vitro.webapp.controller.admin;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.SortedMap;
@@ -15,11 +16,14 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.FreemarkerHttpServlet;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ParsedQueryCache;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 
 import javax.servlet.annotation.WebServlet;
 
 /**
- * Show the current ConfigurationProperties and the Java system properties.
+ * Show the current ConfigurationProperties and the Java system properties,
+ * along with the statistics of the parsed query cache.
  */
 @WebServlet(name = "ShowConfiguration", urlPatterns = {"/admin/showConfiguration"} )
 public class ShowConfiguration extends FreemarkerHttpServlet {
@@ -33,6 +37,7 @@ public class ShowConfiguration extends FreemarkerHttpServlet {
 		Map<String, Object> body = new HashMap<String, Object>();
 		body.put("configurationProperties", getConfigurationProperties(vreq));
 		body.put("javaSystemProperties", getSystemProperties());
+		body.put("parsedQueryCache", getParsedQueryCacheStatistics());
 		return new TemplateResponseValues("admin-showConfiguration.ftl", body);
 	}
 
@@ -48,6 +53,18 @@ public class ShowConfiguration extends FreemarkerHttpServlet {
 		return map;
 	}
 
+	private Map<String, String> getParsedQueryCacheStatistics() {
+		ParsedQueryCache.Statistics stats = RDFServiceImpl
+				.getQueryCacheStatistics();
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("entries", stats.getSize() + " of " + stats.getMaxEntries());
+		map.put("hits", String.valueOf(stats.getHits()));
+		map.put("misses", String.valueOf(stats.getMisses()));
+		map.put("evictions", String.valueOf(stats.getEvictions()));
+		map.put("hit rate", stats.getHitRate() + "%");
+		return map;
+	}
+
 	private SortedMap<String, String> getSystemProperties() {
 		Properties props = System.getProperties();
 		SortedMap<String, String> map = new TreeMap<>();
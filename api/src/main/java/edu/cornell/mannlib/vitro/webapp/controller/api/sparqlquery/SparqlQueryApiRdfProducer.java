@@ -47,14 +47,18 @@ abstract class SparqlQueryApiRdfProducer extends SparqlQueryApiExecutor {
 			IOException {
 
 		InputStream rawResult = getRawResultStream();
-
-		if (mediaType.isNativeFormat()) {
-			IOUtils.copy(rawResult, out);
-		} else if (mediaType.getJenaResponseFormat().equals("JSON")) {
-			parseToModel(rawResult).write(out, "JSON-LD");
-		} else {
-			parseToModel(rawResult).write(out,
-					mediaType.getJenaResponseFormat());
+		try {
+			if (mediaType.isNativeFormat()) {
+				IOUtils.copy(rawResult, out);
+			} else if (mediaType.getJenaResponseFormat().equals("JSON")) {
+				parseToModel(rawResult).write(out, "JSON-LD");
+			} else {
+				parseToModel(rawResult).write(out,
+						mediaType.getJenaResponseFormat());
+			}
+		} finally {
+			// If the client went away, this stops the query.
+			rawResult.close();
 		}
 	}
 
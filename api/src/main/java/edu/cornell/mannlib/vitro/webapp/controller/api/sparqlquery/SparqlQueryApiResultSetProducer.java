@@ -49,16 +49,21 @@ abstract class SparqlQueryApiResultSetProducer extends SparqlQueryApiExecutor {
 	public void executeAndFormat(OutputStream out) throws RDFServiceException,
 			IOException {
 		InputStream rawResult = getRawResultStream();
-		if (mediaType.isNativeFormat()) {
-			IOUtils.copy(rawResult, out);
-		} else if (mediaType == TSV) {
-			// ARQ doesn't support TSV, so we will do the translation.
-			pipeWithReplacement(rawResult, out);
-		} else {
-			ResultSet rs = ResultSetFactory.fromJSON(rawResult);
-			ResultsFormat format = ResultsFormat.lookup(mediaType
-					.getJenaResponseFormat());
-			ResultSetFormatter.output(out, rs, format);
+		try {
+			if (mediaType.isNativeFormat()) {
+				IOUtils.copy(rawResult, out);
+			} else if (mediaType == TSV) {
+				// ARQ doesn't support TSV, so we will do the translation.
+				pipeWithReplacement(rawResult, out);
+			} else {
+				ResultSet rs = ResultSetFactory.fromJSON(rawResult);
+				ResultsFormat format = ResultsFormat.lookup(mediaType
+						.getJenaResponseFormat());
+				ResultSetFormatter.output(out, rs, format);
+			}
+		} finally {
+			// If the client went away, this stops the query.
+			rawResult.close();
 		}
 	}
 
@@ -3,18 +3,27 @@
 package edu.cornell.mannlib.vitro.webapp.controller.individual;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.cornell.mannlib.vedit.beans.LoginStatusBean;
+import edu.cornell.mannlib.vitro.webapp.beans.DisplayMessage;
 import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.FreemarkerHttpServlet;
@@ -22,7 +31,10 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Exc
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.RedirectResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
+import edu.cornell.mannlib.vitro.webapp.controller.individual.RenderedPageCache.Page;
+import edu.cornell.mannlib.vitro.webapp.filters.IndividualEtagCache;
 import edu.cornell.mannlib.vitro.webapp.i18n.I18n;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 
 /**
  * Handles requests for entity information.
@@ -37,6 +49,8 @@ public class IndividualController extends FreemarkerHttpServlet {
 	@Deprecated
 	private static final String PROPERTY_EXTENDED_LOD = "serveExtendedLinkedData";
 
+	private static final String PROPERTY_DEFAULT_NAMESPACE = "Vitro.defaultNamespace";
+
 	/**
 	 * Use this map to decide which MIME type is suited for the "accept" header.
 	 */
@@ -139,4 +153,177 @@ public class IndividualController extends FreemarkerHttpServlet {
 		doGet(request, response);
 	}
 
+	/**
+	 * If the RenderedPageCache is enabled, an anonymous request for a profile
+	 * page may be answered from the cache. If not, the page is built as usual,
+	 * and stored in the cache if it is suitable.
+	 */
+	@Override
+	public void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws IOException, ServletException {
+		RenderedPageCache pageCache = RenderedPageCache
+				.getInstance(getServletContext());
+		String individualUri = pageCache.isEnabled() ? figureCacheableUri(request)
+				: null;
+		String etag = (individualUri == null) ? null
+				: findEtagForIndividual(individualUri);
+		if (etag == null) {
+			super.doGet(request, response);
+			return;
+		}
+
+		String key = figurePageKey(request);
+		Page page = pageCache.get(key, etag);
+		if (page != null) {
+			log.debug("Rendered page cache hit: '" + key + "'");
+			response.setContentType(page.getContentType());
+			response.getWriter().print(page.getHtml());
+			return;
+		}
+
+		long renderedAt = System.currentTimeMillis();
+		CapturingResponse capture = new CapturingResponse(response);
+		super.doGet(request, capture);
+		String html = capture.getCapturedText();
+		if (!html.isEmpty()) {
+			response.getWriter().print(html);
+		}
+
+		if (capture.isCacheable()) {
+			log.debug("Store rendered page: '" + key + "'");
+			pageCache.put(key, new Page(individualUri, etag, renderedAt,
+					capture.getContentType(), html));
+		}
+	}
+
+	/**
+	 * A page may be cached only if it is a simple GET from a user who is not
+	 * logged in, and if there is no message waiting to be displayed. The
+	 * individual must be named by the "uri" parameter, or by a single
+	 * localname in the path.
+	 *
+	 * Returns null if the page should not be cached.
+	 */
+	private String figureCacheableUri(HttpServletRequest req) {
+		if (!"GET".equals(req.getMethod())
+				|| LoginStatusBean.getCurrentUser(req) != null
+				|| DisplayMessage.hasMessage(req)) {
+			return null;
+		}
+
+		Map<String, String[]> params = req.getParameterMap();
+		String pathInfo = StringUtils.strip(req.getPathInfo(), "/");
+		if (params.isEmpty()) {
+			if (StringUtils.isEmpty(pathInfo) || pathInfo.contains("/")) {
+				return null;
+			}
+			String namespace = ConfigurationProperties.getBean(req)
+					.getProperty(PROPERTY_DEFAULT_NAMESPACE);
+			return (namespace == null) ? null : namespace + pathInfo;
+		} else if (params.size() == 1 && params.containsKey("uri")
+				&& StringUtils.isEmpty(pathInfo)) {
+			return req.getParameter("uri");
+		} else {
+			return null;
+		}
+	}
+
+	private String findEtagForIndividual(String individualUri) {
+		try {
+			return IndividualEtagCache.getInstance(getServletContext())
+					.getEtag(individualUri);
+		} catch (SearchEngineException e) {
+			log.warn("Search query for the ETAG of '" + individualUri
+					+ "' threw an exception", e);
+			return null;
+		}
+	}
+
+	/**
+	 * The same request may produce a different page in a different language,
+	 * a different theme, or for a client that accepts different content
+	 * types.
+	 */
+	private String figurePageKey(HttpServletRequest req) {
+		StringBuilder key = new StringBuilder(req.getRequestURI());
+		if (req.getQueryString() != null) {
+			key.append('?').append(req.getQueryString());
+		}
+		key.append('|').append(new VitroRequest(req).getAppBean().getThemeDir());
+		key.append('|');
+		for (Enumeration<Locale> locales = req.getLocales(); locales
+				.hasMoreElements();) {
+			key.append(locales.nextElement()).append(',');
+		}
+		key.append('|').append(req.getHeader("Accept"));
+		return key.toString();
+	}
+
+	/**
+	 * Hold the text of the page, so it can be stored before it is sent.
+	 *
+	 * A response that is written as bytes, or that is a redirect or an error,
+	 * goes straight to the client and is not cacheable.
+	 */
+	private static class CapturingResponse extends HttpServletResponseWrapper {
+		private final StringWriter buffer = new StringWriter();
+		private final PrintWriter writer = new PrintWriter(buffer);
+		private int status = SC_OK;
+		private boolean bypassed;
+
+		CapturingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public PrintWriter getWriter() {
+			return writer;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			bypassed = true;
+			return super.getOutputStream();
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			bypassed = true;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			bypassed = true;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			bypassed = true;
+			super.sendRedirect(location);
+		}
+
+		@Override
+		public void flushBuffer() {
+			writer.flush();
+		}
+
+		String getCapturedText() {
+			writer.flush();
+			return buffer.toString();
+		}
+
+		boolean isCacheable() {
+			String contentType = getContentType();
+			return !bypassed && status == SC_OK && contentType != null
+					&& contentType.startsWith(HTML_MIMETYPE);
+		}
+	}
 }
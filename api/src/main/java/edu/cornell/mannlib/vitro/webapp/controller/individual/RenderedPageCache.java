@@ -0,0 +1,513 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.controller.individual;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.config.RevisionInfoBean;
+
+/**
+ * Remember the rendered HTML of individual profile pages, so an anonymous
+ * request for a page that has not changed doesn't need to be built again.
+ *
+ * Must be enabled in runtime.properties, by giving the cache a size in
+ * megabytes. If a directory is also given, pages are written there as well, and
+ * survive a restart.
+ *
+ * Each page is stored with the ETAG that the search index held for the
+ * individual when the page was rendered. The ETAG changes when the individual
+ * is re-indexed, so a page is only served while the ETAG still matches. A page
+ * with a stale ETAG is discarded when it is next requested.
+ *
+ * Re-indexing comes some time after an edit, so the IndexingChangeListener
+ * also tells the cache which individuals have changed. A page that was rendered
+ * before its individual changed is not served, whatever its ETAG. Only so
+ * many changes are remembered. When one must be forgotten, every page that was
+ * rendered before that change is treated as stale.
+ *
+ * The pages are stored under the build of the application that rendered them,
+ * so a page written to disk by a previous build is not served after an
+ * upgrade.
+ *
+ * The memory holds the most recently used pages, up to the limit. The
+ * directory has a limit of its own. When it is passed, the pages that were
+ * least recently used are deleted.
+ */
+public class RenderedPageCache {
+	private static final Log log = LogFactory.getLog(RenderedPageCache.class);
+
+	private static final String PROPERTY_MAX_MEGABYTES = "http.pageCache.maxMegabytes";
+	private static final String PROPERTY_DIRECTORY = "http.pageCache.directory";
+	private static final String PROPERTY_MAX_DISK_MEGABYTES = "http.pageCache.maxDiskMegabytes";
+
+	/** If the disk limit is not given, allow this many times the memory. */
+	private static final int DEFAULT_DISK_MULTIPLIER = 10;
+
+	/** Remember this many changed individuals. */
+	static final int MAX_CHANGED_INDIVIDUALS = 10000;
+
+	private static final String ATTRIBUTE_NAME = RenderedPageCache.class
+			.getName();
+
+	/**
+	 * Get the instance for this application. Create it if necessary.
+	 */
+	public static RenderedPageCache getInstance(ServletContext ctx) {
+		synchronized (RenderedPageCache.class) {
+			Object o = ctx.getAttribute(ATTRIBUTE_NAME);
+			if (o instanceof RenderedPageCache) {
+				return (RenderedPageCache) o;
+			}
+			RenderedPageCache cache = createFromProperties(ctx);
+			ctx.setAttribute(ATTRIBUTE_NAME, cache);
+			return cache;
+		}
+	}
+
+	private static RenderedPageCache createFromProperties(ServletContext ctx) {
+		ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
+
+		long maxMegabytes = parseMegabytes(props, PROPERTY_MAX_MEGABYTES, 0);
+		long maxDiskMegabytes = parseMegabytes(props,
+				PROPERTY_MAX_DISK_MEGABYTES, maxMegabytes
+						* DEFAULT_DISK_MULTIPLIER);
+
+		File directory = null;
+		String dirString = props.getProperty(PROPERTY_DIRECTORY);
+		if (maxMegabytes > 0 && StringUtils.isNotBlank(dirString)) {
+			directory = new File(dirString.trim());
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				log.warn("Can't create the directory for " + PROPERTY_DIRECTORY
+						+ ": '" + directory + "'. Pages are kept in memory only.");
+				directory = null;
+			}
+		}
+
+		RevisionInfoBean revision = RevisionInfoBean.getBean(ctx);
+		String version = revision.getReleaseLabel() + "@"
+				+ revision.getBuildDate().getTime();
+
+		RenderedPageCache cache = new RenderedPageCache(
+				maxMegabytes * 1024 * 1024, directory,
+				maxDiskMegabytes * 1024 * 1024, version);
+		log.info("Created " + cache);
+		return cache;
+	}
+
+	private static long parseMegabytes(ConfigurationProperties props,
+			String name, long defaultValue) {
+		String value = props.getProperty(name);
+		if (StringUtils.isBlank(value)) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			log.warn("Invalid value for " + name + ": '" + value
+					+ "'. Using " + defaultValue + ".");
+			return defaultValue;
+		}
+	}
+
+	private final long maxBytes;
+	private final File directory;
+	private final long maxDiskBytes;
+	private final String version;
+
+	/** Guarded by itself. In access order, so the eldest is least used. */
+	private final LinkedHashMap<String, Page> memory = new LinkedHashMap<>(
+			16, 0.75f, true);
+	private long bytesInMemory;
+
+	/** Guarded by the directory. */
+	private long bytesOnDisk;
+
+	/**
+	 * When did each individual last change? Guarded by itself. In access
+	 * order, and limited in size. When an individual is dropped, we can no
+	 * longer tell whether its pages are current, so no page rendered before
+	 * its change is served.
+	 */
+	private final LinkedHashMap<String, Long> changedIndividuals = new LinkedHashMap<String, Long>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			if (size() > MAX_CHANGED_INDIVIDUALS) {
+				staleBefore = Math.max(staleBefore, eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Guarded by the changed individuals. Pages rendered at or before this
+	 * time are not served.
+	 */
+	private long staleBefore = Long.MIN_VALUE;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxBytes
+	 *            If zero or negative, the cache is disabled.
+	 * @param directory
+	 *            If null, pages are kept in memory only.
+	 * @param maxDiskBytes
+	 *            The limit on the pages in the directory.
+	 * @param version
+	 *            Identifies the build of the application. Pages stored by a
+	 *            different version are not served.
+	 */
+	public RenderedPageCache(long maxBytes, File directory, long maxDiskBytes,
+			String version) {
+		this.maxBytes = maxBytes;
+		this.directory = directory;
+		this.maxDiskBytes = maxDiskBytes;
+		this.version = version;
+		if (isEnabled() && directory != null) {
+			this.bytesOnDisk = measureDirectory();
+		}
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	/**
+	 * Get the page stored under this key, if it was rendered when the
+	 * individual had this ETAG, and the individual has not changed since.
+	 * Otherwise, return null.
+	 */
+	public Page get(String key, String etag) {
+		if (!isEnabled() || etag == null) {
+			return null;
+		}
+		key = versioned(key);
+
+		Page page;
+		synchronized (memory) {
+			page = memory.get(key);
+			if (page != null && !isCurrent(page, etag)) {
+				removeFromMemory(key);
+				page = null;
+			}
+		}
+
+		if (page == null && directory != null) {
+			page = readFromDisk(key, etag);
+			if (page != null) {
+				putInMemory(key, page);
+			}
+		}
+
+		if (page == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return page;
+	}
+
+	/**
+	 * Store this page under this key, replacing any page that was there.
+	 */
+	public void put(String key, Page page) {
+		if (!isEnabled() || page.getEtag() == null) {
+			return;
+		}
+		key = versioned(key);
+		putInMemory(key, page);
+		if (directory != null) {
+			writeToDisk(key, page);
+		}
+	}
+
+	/**
+	 * This individual has changed. Don't serve any page that was rendered
+	 * before now.
+	 */
+	public void individualChanged(String uri) {
+		if (!isEnabled() || uri == null) {
+			return;
+		}
+		synchronized (changedIndividuals) {
+			changedIndividuals.put(uri, System.currentTimeMillis());
+		}
+	}
+
+	private String versioned(String key) {
+		return version + "|" + key;
+	}
+
+	private boolean isCurrent(Page page, String etag) {
+		if (!etag.equals(page.getEtag())) {
+			return false;
+		}
+		synchronized (changedIndividuals) {
+			if (page.getRenderedAt() <= staleBefore) {
+				return false;
+			}
+			Long changed = changedIndividuals.get(page.getIndividualUri());
+			return changed == null || page.getRenderedAt() > changed;
+		}
+	}
+
+	private void putInMemory(String key, Page page) {
+		if (page.size() > maxBytes) {
+			return;
+		}
+		synchronized (memory) {
+			removeFromMemory(key);
+			memory.put(key, page);
+			bytesInMemory += page.size();
+
+			Iterator<Page> eldest = memory.values().iterator();
+			while (bytesInMemory > maxBytes && eldest.hasNext()) {
+				bytesInMemory -= eldest.next().size();
+				eldest.remove();
+			}
+		}
+	}
+
+	/** Must be called while synchronized on the memory. */
+	private void removeFromMemory(String key) {
+		Page removed = memory.remove(key);
+		if (removed != null) {
+			bytesInMemory -= removed.size();
+		}
+	}
+
+	private File fileFor(String key) {
+		return new File(directory, DigestUtils.sha1Hex(key));
+	}
+
+	/**
+	 * Read the page from its file. If the file holds a page with a different
+	 * ETAG, or can't be read, delete it.
+	 */
+	private Page readFromDisk(String key, String etag) {
+		File file = fileFor(key);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		Page page = null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			String storedKey = in.readUTF();
+			String individualUri = in.readUTF();
+			String storedEtag = in.readUTF();
+			long renderedAt = in.readLong();
+			String contentType = in.readUTF();
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			page = new Page(individualUri, storedEtag, renderedAt,
+					contentType, new String(bytes, StandardCharsets.UTF_8));
+			if (!key.equals(storedKey) || !isCurrent(page, etag)) {
+				page = null;
+			}
+		} catch (IOException e) {
+			log.warn("Failed to read the cached page from '" + file + "'", e);
+		}
+
+		if (page == null) {
+			deleteFromDisk(file);
+		} else {
+			// The least recently used pages are the first to go.
+			file.setLastModified(System.currentTimeMillis());
+		}
+		return page;
+	}
+
+	/**
+	 * Write to a temporary file and rename it, so a concurrent reader never
+	 * sees a partial page.
+	 */
+	private void writeToDisk(String key, Page page) {
+		File file = fileFor(key);
+		File temp = new File(directory, file.getName() + "."
+				+ Thread.currentThread().getId() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temp)))) {
+			byte[] bytes = page.getHtml().getBytes(StandardCharsets.UTF_8);
+			out.writeUTF(key);
+			out.writeUTF(page.getIndividualUri());
+			out.writeUTF(page.getEtag());
+			out.writeLong(page.getRenderedAt());
+			out.writeUTF(page.getContentType());
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} catch (IOException e) {
+			log.warn("Failed to write the cached page to '" + temp + "'", e);
+			temp.delete();
+			return;
+		}
+
+		synchronized (directory) {
+			bytesOnDisk -= file.length();
+			file.delete();
+			if (temp.renameTo(file)) {
+				bytesOnDisk += file.length();
+			} else {
+				log.warn("Failed to rename '" + temp + "' to '" + file + "'");
+				temp.delete();
+			}
+			if (bytesOnDisk > maxDiskBytes) {
+				pruneDirectory();
+			}
+		}
+	}
+
+	private void deleteFromDisk(File file) {
+		synchronized (directory) {
+			long length = file.length();
+			if (file.delete()) {
+				bytesOnDisk -= length;
+			} else {
+				log.warn("Failed to delete the stale page at '" + file + "'");
+			}
+		}
+	}
+
+	/**
+	 * How much is in the directory already? Remove any temporary files that
+	 * were left behind.
+	 */
+	private long measureDirectory() {
+		long total = 0;
+		for (File file : listFiles()) {
+			if (file.getName().endsWith(".tmp")) {
+				file.delete();
+			} else {
+				total += file.length();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Delete the least recently used pages, until the directory is well under
+	 * its limit. Must be called while synchronized on the directory.
+	 */
+	private void pruneDirectory() {
+		File[] files = listFiles();
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+
+		long target = maxDiskBytes * 9 / 10;
+		int deleted = 0;
+		for (File file : files) {
+			if (bytesOnDisk <= target) {
+				break;
+			}
+			if (file.getName().endsWith(".tmp")) {
+				continue;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				bytesOnDisk -= length;
+				deleted++;
+			}
+		}
+		log.debug("Deleted " + deleted + " pages from '" + directory + "'");
+	}
+
+	private File[] listFiles() {
+		File[] files = directory.listFiles();
+		return (files == null) ? new File[0] : files;
+	}
+
+	@Override
+	public String toString() {
+		synchronized (memory) {
+			return "RenderedPageCache[maxBytes=" + maxBytes + ", directory="
+					+ directory + ", maxDiskBytes=" + maxDiskBytes
+					+ ", version=" + version + ", pages=" + memory.size()
+					+ ", bytes=" + bytesInMemory + ", hits=" + hits.get()
+					+ ", misses=" + misses.get() + "]";
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * A rendered page, the individual it shows, and the ETAG of the individual
+	 * when it was rendered.
+	 */
+	public static class Page {
+		private final String individualUri;
+		private final String etag;
+		private final long renderedAt;
+		private final String contentType;
+		private final String html;
+
+		/**
+		 * @param renderedAt
+		 *            When the rendering began. A change to the individual after
+		 *            this time may not be shown on the page.
+		 */
+		public Page(String individualUri, String etag, long renderedAt,
+				String contentType, String html) {
+			this.individualUri = individualUri;
+			this.etag = etag;
+			this.renderedAt = renderedAt;
+			this.contentType = (contentType == null) ? "" : contentType;
+			this.html = html;
+		}
+
+		public String getIndividualUri() {
+			return individualUri;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public long getRenderedAt() {
+			return renderedAt;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public String getHtml() {
+			return html;
+		}
+
+		/** Approximate, since a Java String holds two bytes per character. */
+		long size() {
+			return 2L * html.length();
+		}
+	}
+}
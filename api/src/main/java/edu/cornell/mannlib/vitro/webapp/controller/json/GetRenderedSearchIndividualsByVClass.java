@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.controller.json;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,28 +63,50 @@ public class GetRenderedSearchIndividualsByVClass extends GetSearchIndividualsBy
 	/**
 	 * Look through the return object. For each individual, render the short
 	 * view and insert the resulting HTML into the object.
+	 *
+	 * The individuals are loaded together, and the short views are rendered
+	 * together, so the service can render them in parallel if it chooses.
 	 */
 	private void addShortViewRenderings(ObjectNode rObj) {
 		ArrayNode individuals = (ArrayNode) rObj.get("individuals");
 		String vclassName = rObj.get("vclass").get("name").asText();
+
+		List<String> uris = new ArrayList<String>();
 		for (int i = 0; i < individuals.size(); i++) {
-			ObjectNode individual = (ObjectNode) individuals.get(i);
-			individual.put("shortViewHtml",
-					renderShortView(individual.get("URI").asText(), vclassName));
+			uris.add(individuals.get(i).get("URI").asText());
 		}
-	}
-
-	private String renderShortView(String individualUri, String vclassName) {
 		IndividualDao iDao = vreq.getWebappDaoFactory().getIndividualDao();
-		Individual individual = iDao.getIndividualByURI(individualUri);
+		Map<String, Individual> loaded = iDao.getIndividualsByURIs(uris);
+
+		List<ObjectNode> nodes = new ArrayList<ObjectNode>();
+		List<Individual> toRender = new ArrayList<Individual>();
+		List<Map<String, Object>> modelMaps = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < individuals.size(); i++) {
+			Individual individual = loaded.get(uris.get(i));
+			if (individual == null) {
+				log.warn("Can't render a short view for '" + uris.get(i)
+						+ "': no such individual.");
+				continue;
+			}
+			nodes.add((ObjectNode) individuals.get(i));
+			toRender.add(individual);
+			modelMaps.add(buildModelMap(individual, vclassName));
+		}
 
+		ShortViewService svs = ShortViewServiceSetup.getService(ctx);
+		List<String> htmls = svs.renderShortViews(toRender,
+				ShortViewContext.BROWSE, modelMaps, vreq);
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).put("shortViewHtml", htmls.get(i));
+		}
+	}
+
+	private Map<String, Object> buildModelMap(Individual individual,
+			String vclassName) {
 		Map<String, Object> modelMap = new HashMap<String, Object>();
 		modelMap.put("individual",
 				IndividualTemplateModelBuilder.build(individual, vreq));
 		modelMap.put("vclass", vclassName);
-
-		ShortViewService svs = ShortViewServiceSetup.getService(ctx);
-		return svs.renderShortView(individual, ShortViewContext.BROWSE,
-				modelMap, vreq);
+		return modelMap;
 	}
 }
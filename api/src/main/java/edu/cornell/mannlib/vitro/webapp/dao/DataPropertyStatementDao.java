@@ -4,6 +4,7 @@ package edu.cornell.mannlib.vitro.webapp.dao;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.jena.rdf.model.Literal;
@@ -49,5 +50,15 @@ public interface DataPropertyStatementDao {
 
     List<Literal> getDataPropertyValuesForIndividualByProperty(String subjectUri, String propertyUri, String queryString, Set<String> constructQueryStrings);
 
+    /**
+     * Get the literal values of several properties of an individual with a 
+     * single query. The values of each property are the same, and in the same
+     * order, as getDataPropertyValuesForIndividualByProperty(subjectUri, propertyUri).
+     * 
+     * The map has an entry for each property, even if it has no values. If 
+     * the query fails, the map is empty.
+     */
+    Map<String, List<Literal>> getDataPropertyValuesForIndividualByProperties(String subjectUri, Collection<String> propertyUris);
+
 }
 
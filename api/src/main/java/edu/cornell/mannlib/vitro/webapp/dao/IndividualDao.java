@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.dao;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import edu.cornell.mannlib.vitro.webapp.beans.DataPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
@@ -82,11 +83,35 @@ public interface IndividualDao {
      */
     public abstract Individual getIndividualByURI(String individualURI);
 
+    /**
+     * Get the Individuals for several URIs, as getIndividualByURI() would. 
+     * An implementation may fetch what short views and search results will 
+     * need (labels, types, most specific types, main image) for all of the
+     * Individuals at once.
+     * @param individualURIs URIs of the Individuals
+     * @return a map keyed by URI, in the order the URIs were given. A URI that
+     *         is not found is not in the map.
+     */
+    public abstract Map<String, Individual> getIndividualsByURIs(Collection<String> individualURIs);
+
     /**
      * Returns a collection of all Individuals in the model that are user-viewable.
      */
     public abstract Collection<String> getAllIndividualUris();
 
+    /**
+     * Returns an Iterator over the URIs of all Individuals in the model that are user-viewable.
+     * The URIs are fetched a page at a time, so the whole collection is never held in memory.
+     */
+    public abstract Iterator<String> getAllIndividualUrisIterator();
+
+    /**
+     * Like getAllIndividualUrisIterator(), but starts with the first URI that follows this one.
+     * The URIs are returned in order of their string values.
+     * @param afterUri if null, start at the beginning.
+     */
+    public abstract Iterator<String> getAllIndividualUrisIterator(String afterUri);
+
     /**
      * Returns an Iterator over all Individuals in the model that are user-viewable and have been updated since the specified time.
      */
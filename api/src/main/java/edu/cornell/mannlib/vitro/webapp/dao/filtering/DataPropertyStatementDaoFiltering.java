@@ -107,39 +107,7 @@ class DataPropertyStatementDaoFiltering extends BaseFiltering implements DataPro
     @Override
     public List<Literal> getDataPropertyValuesForIndividualByProperty(String subjectUri, String propertyUri) {
         List<Literal> literals = innerDataPropertyStatementDao.getDataPropertyValuesForIndividualByProperty(subjectUri, propertyUri);        
-        /* Filter the data
-         * 
-         * Filtering is applied to a list of DataPropertyStatement. Create these statements, mapped
-         * to the literal that they are built from, apply filtering to the statements, then get
-         * the associated literals out of the original list. Use a LinkedHashMap to preserve the ordering.
-         */
-        Map<DataPropertyStatement, Literal> stmtsToLiterals = 
-            new LinkedHashMap<DataPropertyStatement, Literal>(literals.size());
-
-        for (Literal literal : literals) {
-            String value = literal.getLexicalForm();
-            DataPropertyStatement statement = new DataPropertyStatementImpl(subjectUri, propertyUri, value);
-            statement.setDatatypeURI(literal.getDatatypeURI());
-            statement.setLanguage(literal.getLanguage());
-            stmtsToLiterals.put(statement, literal);
-        }
-        
-        List<DataPropertyStatement> stmtList = new ArrayList<DataPropertyStatement>(stmtsToLiterals.keySet());
-        
-        // Apply the filters to the list of statements
-        List<DataPropertyStatement> filteredStatements = filter(stmtList, filters.getDataPropertyStatementFilter());
-        
-        // Get the literals associated with the filtered statements out of the original list
-        List<Literal> filteredLiterals = new ArrayList<Literal>(filteredStatements.size());
-        for (DataPropertyStatement dps : filteredStatements) {
-            if (dps instanceof DataPropertyStatementFiltering) {
-                dps = ((DataPropertyStatementFiltering)dps).innerStmt;
-            }
-            filteredLiterals.add(stmtsToLiterals.get(dps));
-        }       
-        
-        // Return the filtered list of literals
-        return filteredLiterals;
+        return filterLiterals(subjectUri, propertyUri, literals);
         
     }
     
@@ -151,6 +119,21 @@ class DataPropertyStatementDaoFiltering extends BaseFiltering implements DataPro
     @Override
     public List<Literal> getDataPropertyValuesForIndividualByProperty(String subjectUri, String propertyUri, String queryString, Set<String> constructQueryStrings) {        
         List<Literal> literals = innerDataPropertyStatementDao.getDataPropertyValuesForIndividualByProperty(subjectUri, propertyUri,   queryString, constructQueryStrings);
+        return filterLiterals(subjectUri, propertyUri, literals);
+        
+    }
+
+    @Override
+    public Map<String, List<Literal>> getDataPropertyValuesForIndividualByProperties(String subjectUri, Collection<String> propertyUris) {
+        Map<String, List<Literal>> valuesMap = innerDataPropertyStatementDao.getDataPropertyValuesForIndividualByProperties(subjectUri, propertyUris);
+        Map<String, List<Literal>> filteredMap = new LinkedHashMap<String, List<Literal>>(valuesMap.size());
+        for (Map.Entry<String, List<Literal>> entry : valuesMap.entrySet()) {
+            filteredMap.put(entry.getKey(), filterLiterals(subjectUri, entry.getKey(), entry.getValue()));
+        }
+        return filteredMap;
+    }
+
+    private List<Literal> filterLiterals(String subjectUri, String propertyUri, List<Literal> literals) {
         /* Filter the data
          * 
          * Filtering is applied to a list of DataPropertyStatement. Create these statements, mapped
@@ -184,7 +167,6 @@ class DataPropertyStatementDaoFiltering extends BaseFiltering implements DataPro
         
         // Return the filtered list of literals
         return filteredLiterals;
-        
     }
 
 }
\ No newline at end of file
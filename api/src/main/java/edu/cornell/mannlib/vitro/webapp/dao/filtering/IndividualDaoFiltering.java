@@ -6,7 +6,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sf.jga.algorithms.Filter;
 import net.sf.jga.algorithms.Transform;
@@ -61,6 +63,17 @@ class IndividualDaoFiltering extends BaseFiltering implements IndividualDao{
             return null;        
     }
     
+    public Map<String, Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        Map<String, Individual> filtered = new LinkedHashMap<String, Individual>();
+        Map<String, Individual> inds = innerIndividualDao.getIndividualsByURIs(individualURIs);
+        for (Map.Entry<String, Individual> entry : inds.entrySet()) {
+            Individual ind = entry.getValue();
+            if( ind != null && filters.getIndividualFilter().fn(ind))
+                filtered.put(entry.getKey(), new IndividualFiltering(ind, filters));
+        }
+        return filtered;
+    }
+    
     public void fillVClassForIndividual(Individual individual) {
         innerIndividualDao.fillVClassForIndividual(individual);
     }
@@ -125,6 +138,14 @@ class IndividualDaoFiltering extends BaseFiltering implements IndividualDao{
                        
     }
     
+    public Iterator<String> getAllIndividualUrisIterator() {
+        return innerIndividualDao.getAllIndividualUrisIterator();
+    }
+
+    public Iterator<String> getAllIndividualUrisIterator(String afterUri) {
+        return innerIndividualDao.getAllIndividualUrisIterator(afterUri);
+    }
+
     public Iterator<String> getUpdatedSinceIterator(long updatedSince) {
         return  innerIndividualDao.getUpdatedSinceIterator(updatedSince);
                        
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -396,6 +397,60 @@ public class DataPropertyStatementDaoJena extends JenaBaseDao implements DataPro
                
     }
 
+    @Override
+    public Map<String, List<Literal>> getDataPropertyValuesForIndividualByProperties(
+            String subjectUri, Collection<String> propertyUris) {
+        Map<String, List<Literal>> valuesMap = new LinkedHashMap<String, List<Literal>>();
+        if (propertyUris.isEmpty()) {
+            return valuesMap;
+        }
+        for (String propertyUri : propertyUris) {
+            valuesMap.put(propertyUri, new ArrayList<Literal>());
+        }
+
+        // As above, insert the subjectUri manually instead of prebinding it.
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("SELECT ?property ?value WHERE { \n")
+                .append("    VALUES ?property {");
+        for (String propertyUri : propertyUris) {
+            queryString.append(" <").append(propertyUri).append(">");
+        }
+        queryString.append(" } \n")
+                .append("    <").append(subjectUri).append("> ?property ?value . \n")
+                .append(" FILTER ( isLiteral(?value) ) ")
+                .append("} ORDER BY ?value");
+        log.debug("Data property values query string:\n" + queryString);
+
+        DatasetWrapper w = dwf.getDatasetWrapper();
+        Dataset dataset = w.getDataset();
+        dataset.getLock().enterCriticalSection(Lock.READ);
+        QueryExecution qexec = null;
+        try {
+            qexec = QueryExecutionFactory.create(
+                    QueryFactory.create(queryString.toString(), Syntax.syntaxARQ), dataset);
+            ResultSet results = qexec.execSelect(); 
+            while (results.hasNext()) {
+                QuerySolution sol = results.next();
+                Resource property = sol.getResource("property");
+                Literal value = sol.getLiteral("value");
+                List<Literal> values = (property == null) ? null : valuesMap.get(property.getURI());
+                if (values != null && value != null) {
+                    values.add(value);
+                }
+            }
+            return valuesMap;
+        } catch (Exception e) {
+            log.error("Error getting data property values for individual " + subjectUri, e);
+            return Collections.emptyMap();
+        } finally {
+            dataset.getLock().leaveCriticalSection();
+            w.close();
+            if (qexec != null) {
+                qexec.close();
+            }
+        }
+    }
+
     @Override
     public List<Literal> getDataPropertyValuesForIndividualByProperty(
             Individual subject, 
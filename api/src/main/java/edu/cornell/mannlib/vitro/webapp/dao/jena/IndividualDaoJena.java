@@ -9,7 +9,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -423,6 +425,23 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
         }
     }
 
+    /**
+     * An IndividualJena reads from the OntModel as it is needed, so there is
+     * nothing to fetch in advance.
+     */
+    public Map<String, Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        Map<String, Individual> map = new LinkedHashMap<String, Individual>();
+        for (String uri : individualURIs) {
+            if (!map.containsKey(uri)) {
+                Individual ind = getIndividualByURI(uri);
+                if (ind != null) {
+                    map.put(uri, ind);
+                }
+            }
+        }
+        return map;
+    }
+
     public void fillVClassForIndividual(Individual entity) {
         entity.setVClass(getWebappDaoFactory().getVClassDao().getVClassByURI(entity.getVClassURI()));
     }
@@ -602,6 +621,16 @@ public class IndividualDaoJena extends JenaBaseDao implements IndividualDao {
         throw new NotImplementedException("");
     }  
 
+    public Iterator<String> getAllIndividualUrisIterator() {
+        //this is implemented in IndivdiualSDB
+        throw new NotImplementedException("");
+    }
+
+    public Iterator<String> getAllIndividualUrisIterator(String afterUri) {
+        //this is implemented in IndivdiualSDB
+        throw new NotImplementedException("");
+    }
+
     public Iterator<String> getUpdatedSinceIterator(long updatedSince){
         //this is implemented in IndivdiualSDB
         throw new NotImplementedException("");
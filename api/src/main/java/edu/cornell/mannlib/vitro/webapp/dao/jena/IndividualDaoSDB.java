@@ -8,8 +8,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import org.apache.commons.lang3.StringUtils;
@@ -302,6 +304,40 @@ public class IndividualDaoSDB extends IndividualDaoJena {
         	return makeIndividual(entityURI);
         }
     }  
+
+    /**
+     * Fetch the labels, types, most specific types and main images of the
+     * individuals in a few queries, rather than a few queries for each one.
+     * An individual that can't be fetched that way is made as usual.
+     */
+    @Override
+    public Map<String, Individual> getIndividualsByURIs(Collection<String> individualURIs) {
+        IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+                wadf.getRDFService(), datasetMode);
+        prefetcher.fetch(individualURIs);
+
+        Map<String, Individual> map = new LinkedHashMap<String, Individual>();
+        for (String uri : individualURIs) {
+            if (uri == null || uri.isEmpty() || map.containsKey(uri)) {
+                continue;
+            }
+            Individual ind = null;
+            if (prefetcher.wasFetched(uri)) {
+                try {
+                    ind = new IndividualSDB(uri, this.dwf, datasetMode, wadf,
+                            prefetcher);
+                } catch (IndividualNotFoundException e) {
+                    // If the individual does not exist, leave it out.
+                }
+            } else {
+                ind = makeIndividual(uri);
+            }
+            if (ind != null) {
+                map.put(uri, ind);
+            }
+        }
+        return map;
+    }
     
     /**
      * fills in the Individual objects needed for any ObjectPropertyStatements 
@@ -483,6 +519,17 @@ public class IndividualDaoSDB extends IndividualDaoJena {
         return list;
     }  
 
+    @Override
+    public Iterator<String> getAllIndividualUrisIterator() {
+        return getAllIndividualUrisIterator(null);
+    }
+
+    @Override
+    public Iterator<String> getAllIndividualUrisIterator(String afterUri) {
+        return new PagedIndividualUriIterator(wadf.getRDFService(),
+                PagedIndividualUriIterator.DEFAULT_PAGE_SIZE, afterUri);
+    }
+
     private Iterator<Individual> getIndividualIterator(
     									final List<String> individualURIs) {
         if (individualURIs.size() >0){
@@ -72,6 +72,8 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     private String individualURI = null; 
     private Model model = null;
     private Boolean _hasThumb = null; 
+    private Model prefetchedTypes = null;
+    private List<String> prefetchedMostSpecificTypeURIs = null;
     
     public IndividualSDB(String individualURI, 
                          DatasetWrapperFactory datasetWrapperFactory,
@@ -150,6 +152,37 @@ public class IndividualSDB extends IndividualImpl implements Individual {
     	setUpURIParts(ind);
     }
     
+    /**
+     * Create the individual from data that was fetched for a group of
+     * individuals, so it need not be fetched one query at a time.
+     */
+    IndividualSDB(String individualURI, 
+            DatasetWrapperFactory datasetWrapperFactory, 
+            SDBDatasetMode datasetMode,
+            WebappDaoFactorySDB wadf, 
+            IndividualSDBPrefetcher prefetcher) throws IndividualNotFoundException {
+    	this.individualURI = individualURI;
+    	this.datasetMode = datasetMode;
+    	this.dwf = datasetWrapperFactory;
+		this.webappDaoFactory = wadf;
+
+    	if (!prefetcher.wasFound(individualURI)) {
+    	    throw new IndividualNotFoundException();
+    	}
+
+    	this.model = prefetcher.getLabelModel(individualURI);
+    	OntModel ontModel = ModelFactory.createOntologyModel(
+    	        OntModelSpec.OWL_MEM, model);
+    	this.ind = ontModel.createOntResource(individualURI);  
+    	setUpURIParts(ind);
+
+    	this.prefetchedTypes = prefetcher.getTypeModel(individualURI);
+    	this.prefetchedMostSpecificTypeURIs = prefetcher
+    	        .getMostSpecificTypeURIs(individualURI);
+    	this.mainImageUri = prefetcher.getMainImageUri(individualURI);
+    	this._hasThumb = prefetcher.hasThumb(individualURI);
+    }
+
     private boolean noTriplesFor(String individualURI) {
 		try {
 			return !webappDaoFactory.getRDFService().sparqlAskQuery("ASK { <" + individualURI + "> ?p ?o }");
@@ -255,6 +288,9 @@ public class IndividualSDB extends IndividualImpl implements Individual {
         final List<String> typeURIs = new ArrayList<String>();
         if (this.getURI() == null) {
             return typeURIs;
+        } else if (prefetchedMostSpecificTypeURIs != null) {
+            typeURIs.addAll(prefetchedMostSpecificTypeURIs);
+            return typeURIs;
         } else {
             String queryStr = "SELECT ?type WHERE { <" + this.getURI() + "> <" + 
                     VitroVocabulary.MOST_SPECIFIC_TYPE + "> ?type }";
@@ -808,6 +844,8 @@ public class IndividualSDB extends IndividualImpl implements Individual {
 		Model tempModel = null;
 		if (ind.getModel().contains((Resource) null, RDF.type, (RDFNode) null)){
 		    tempModel = ind.getModel();
+		} else if (!assertedOnly && prefetchedTypes != null) {
+		    tempModel = prefetchedTypes;
 		} else {
 			tempModel = ModelFactory.createDefaultModel();
 			String getTypesQuery = buildMyVClassesQuery(assertedOnly);
@@ -0,0 +1,286 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB.SDBDatasetMode;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+
+/**
+ * Fetches what an IndividualSDB would otherwise fetch for itself, one query at
+ * a time, when it is shown in a search result or a short view: its labels,
+ * its types, its most specific types, and its main image.
+ *
+ * The URIs are fetched in groups, with a VALUES clause, so a page of
+ * individuals costs a few queries instead of a few queries per individual.
+ *
+ * The types are only fetched if the dataset mode doesn't restrict them to
+ * particular graphs. Otherwise, the IndividualSDB will fetch them itself, as
+ * usual.
+ */
+class IndividualSDBPrefetcher {
+	private static final Log log = LogFactory
+			.getLog(IndividualSDBPrefetcher.class);
+
+	static final int FETCH_SIZE = 100;
+
+	/** Characters that can't appear in a URI in a query. */
+	private static final Pattern UNSAFE_URI = Pattern
+			.compile("[\\s<>\"{}|\\\\^`]");
+
+	private final RDFService rdfService;
+	private final boolean fetchTypes;
+
+	/** The labels of all of the individuals that were fetched. */
+	private final Model labelModel = ModelFactory.createDefaultModel();
+
+	private final Set<String> fetched = new HashSet<>();
+	private final Set<String> found = new HashSet<>();
+	private final Map<String, List<String>> types = new HashMap<>();
+	private final Map<String, List<String>> mostSpecificTypes = new HashMap<>();
+	private final Map<String, String> mainImages = new HashMap<>();
+	private final Set<String> withThumbnails = new HashSet<>();
+
+	IndividualSDBPrefetcher(RDFService rdfService, SDBDatasetMode datasetMode) {
+		this.rdfService = rdfService;
+		this.fetchTypes = WebappDaoFactorySDB.getFilterBlock(
+				new String[] { "?g" }, datasetMode).isEmpty();
+	}
+
+	/**
+	 * Fetch the data for these URIs, in groups. If a group can't be fetched,
+	 * its URIs are left for the IndividualSDB to fetch for itself.
+	 */
+	void fetch(Collection<String> uris) {
+		List<String> group = new ArrayList<>();
+		for (String uri : uris) {
+			if (isSafe(uri) && !fetched.contains(uri) && !group.contains(uri)) {
+				group.add(uri);
+			}
+			if (group.size() >= FETCH_SIZE) {
+				fetchGroup(group);
+				group.clear();
+			}
+		}
+		if (!group.isEmpty()) {
+			fetchGroup(group);
+		}
+	}
+
+	/**
+	 * Was the data for this URI fetched? If not, the IndividualSDB must fetch
+	 * it for itself.
+	 */
+	boolean wasFetched(String uri) {
+		return fetched.contains(uri);
+	}
+
+	/**
+	 * Is there any triple with this URI as its subject? Only meaningful if
+	 * the data was fetched.
+	 */
+	boolean wasFound(String uri) {
+		return found.contains(uri);
+	}
+
+	/** The labels for this individual. */
+	Model getLabelModel(String uri) {
+		Model m = ModelFactory.createDefaultModel();
+		Resource subject = labelModel.getResource(uri);
+		m.add(labelModel.listStatements(subject, RDFS.label, (RDFNode) null));
+		return m;
+	}
+
+	/**
+	 * The types of this individual, as IndividualSDB would find them when not
+	 * restricted to asserted types. Null if the types were not fetched.
+	 */
+	Model getTypeModel(String uri) {
+		if (!fetchTypes) {
+			return null;
+		}
+		Model m = ModelFactory.createDefaultModel();
+		List<String> list = types.get(uri);
+		if (list != null) {
+			Resource subject = m.createResource(uri);
+			for (String type : list) {
+				m.add(subject, RDF.type, m.createResource(type));
+			}
+		}
+		return m;
+	}
+
+	List<String> getMostSpecificTypeURIs(String uri) {
+		List<String> list = mostSpecificTypes.get(uri);
+		return (list == null) ? new ArrayList<String>() : list;
+	}
+
+	/** The URI of the main image, or null if it has none. */
+	String getMainImageUri(String uri) {
+		return mainImages.get(uri);
+	}
+
+	boolean hasThumb(String uri) {
+		return withThumbnails.contains(uri);
+	}
+
+	// ----------------------------------------------------------------------
+	// The queries
+	// ----------------------------------------------------------------------
+
+	private void fetchGroup(List<String> uris) {
+		String values = valuesClause(uris);
+		try {
+			fetchLabels(values);
+			fetchTypesAndImages(values);
+			fetchExistence(uris);
+			fetched.addAll(uris);
+		} catch (RDFServiceException e) {
+			log.warn("Failed to fetch data for " + uris.size()
+					+ " individuals; they will fetch it for themselves.", e);
+		}
+	}
+
+	private void fetchLabels(String values) throws RDFServiceException {
+		String query = "CONSTRUCT { ?s <" + RDFS.label.getURI() + "> ?label } \n"
+				+ "WHERE { \n" //
+				+ values //
+				+ "  ?s <" + RDFS.label.getURI() + "> ?label \n" //
+				+ "}";
+		rdfService.sparqlConstructQuery(query, labelModel);
+		for (Resource s : labelModel.listSubjects().toList()) {
+			if (s.isURIResource()) {
+				found.add(s.getURI());
+			}
+		}
+	}
+
+	private void fetchTypesAndImages(String values) throws RDFServiceException {
+		StringBuilder query = new StringBuilder();
+		query.append("SELECT ?s ?type ?mostSpecificType ?mainImage ?thumbnail \n");
+		query.append("WHERE { \n");
+		query.append(values);
+		if (fetchTypes) {
+			query.append("  { ?s <").append(RDF.type.getURI())
+					.append("> ?type } \n");
+			query.append("  UNION \n");
+		}
+		query.append("  { ?s <").append(VitroVocabulary.MOST_SPECIFIC_TYPE)
+				.append("> ?mostSpecificType } \n");
+		query.append("  UNION \n");
+		query.append("  { ?s <").append(VitroVocabulary.IND_MAIN_IMAGE)
+				.append("> ?mainImage \n");
+		query.append("    OPTIONAL { ?mainImage <")
+				.append(VitroVocabulary.FS_THUMBNAIL_IMAGE)
+				.append("> ?thumbnail } \n");
+		query.append("  } \n");
+		query.append("}");
+
+		rdfService.sparqlSelectQuery(query.toString(), new ResultSetConsumer() {
+			@Override
+			protected void processQuerySolution(QuerySolution qs) {
+				String s = uriOf(qs.get("s"));
+				if (s == null) {
+					return;
+				}
+				found.add(s);
+				addTo(types, s, uriOf(qs.get("type")));
+				addTo(mostSpecificTypes, s, uriOf(qs.get("mostSpecificType")));
+
+				String mainImage = uriOf(qs.get("mainImage"));
+				if (mainImage != null && !mainImages.containsKey(s)) {
+					mainImages.put(s, mainImage);
+				}
+				if (qs.get("thumbnail") != null) {
+					withThumbnails.add(s);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Of the URIs we found no labels or types for, do any appear as a
+	 * subject?
+	 */
+	private void fetchExistence(List<String> uris) throws RDFServiceException {
+		List<String> unknown = new ArrayList<>();
+		for (String uri : uris) {
+			if (!found.contains(uri)) {
+				unknown.add(uri);
+			}
+		}
+		if (unknown.isEmpty()) {
+			return;
+		}
+
+		String query = "SELECT ?s WHERE { \n" //
+				+ valuesClause(unknown) //
+				+ "  FILTER EXISTS { ?s ?p ?o } \n" //
+				+ "}";
+		rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+			@Override
+			protected void processQuerySolution(QuerySolution qs) {
+				String s = uriOf(qs.get("s"));
+				if (s != null) {
+					found.add(s);
+				}
+			}
+		});
+	}
+
+	private static String valuesClause(List<String> uris) {
+		StringBuilder buffer = new StringBuilder("  VALUES ?s {");
+		for (String uri : uris) {
+			buffer.append(" <").append(uri).append(">");
+		}
+		return buffer.append(" } \n").toString();
+	}
+
+	private static boolean isSafe(String uri) {
+		return uri != null && !uri.isEmpty()
+				&& !uri.startsWith(VitroVocabulary.PSEUDO_BNODE_NS)
+				&& !UNSAFE_URI.matcher(uri).find();
+	}
+
+	private static String uriOf(RDFNode node) {
+		return (node != null && node.isURIResource()) ? node.asResource()
+				.getURI() : null;
+	}
+
+	private static void addTo(Map<String, List<String>> map, String key,
+			String value) {
+		if (value == null) {
+			return;
+		}
+		List<String> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<>();
+			map.put(key, list);
+		}
+		if (!list.contains(value)) {
+			list.add(value);
+		}
+	}
+}
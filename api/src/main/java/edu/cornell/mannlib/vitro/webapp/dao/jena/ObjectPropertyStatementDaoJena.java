@@ -2,6 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.dao.jena;
 
+import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.prepareQuery;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -50,6 +52,8 @@ import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.event.IndividualUpdateEvent;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.PreparedQuery;
 
 public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements ObjectPropertyStatementDao {
 
@@ -336,8 +340,45 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
         return list;
     }
 
+    /**
+     * The values are bound to the parsed query rather than by replacing text,
+     * and the parsed query goes to the RDFService if it will accept it. If the
+     * binding fails, say so, and fall back to replacing text.
+     */
     private void selectFromRDFService(String queryString, String subjectUri,
                                       String propertyUri, String domainUri, String rangeUri, ResultSetConsumer consumer) {
+        try {
+            Query query;
+            try {
+                query = bindToPreparedQuery(queryString, subjectUri, propertyUri, domainUri, rangeUri);
+            } catch (RuntimeException e) {
+                log.warn("Could not bind values to the prepared query; binding them to the text: " + queryString, e);
+                rdfService.sparqlSelectQuery(
+                        bindToQueryText(queryString, subjectUri, propertyUri, domainUri, rangeUri), consumer);
+                return;
+            }
+            RDFServiceUtils.sparqlSelectQuery(query, rdfService, consumer);
+        } catch (RDFServiceException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Query bindToPreparedQuery(String queryString, String subjectUri,
+                                      String propertyUri, String domainUri, String rangeUri) {
+        PreparedQuery query = prepareQuery(queryString)
+                .bindToUri("subject", subjectUri)
+                .bindToUri("property", propertyUri);
+        if (domainUri != null && !domainUri.startsWith(VitroVocabulary.PSEUDO_BNODE_NS)) {
+            query = query.bindToUri("subjectType", domainUri);
+        }
+        if (rangeUri != null && !rangeUri.startsWith(VitroVocabulary.PSEUDO_BNODE_NS)) {
+            query = query.bindToUri("objectType", rangeUri);
+        }
+        return query.getQuery();
+    }
+
+    private String bindToQueryText(String queryString, String subjectUri,
+                                   String propertyUri, String domainUri, String rangeUri) {
         String[] part = queryString.split("[Ww][Hh][Ee][Rr][Ee]");
         part[1] = part[1].replace("?subject", "<" + subjectUri + ">");
         part[1] = part[1].replace("?property", "<" + propertyUri + ">");
@@ -347,12 +388,7 @@ public class ObjectPropertyStatementDaoJena extends JenaBaseDao implements Objec
         if (rangeUri != null && !rangeUri.startsWith(VitroVocabulary.PSEUDO_BNODE_NS)) {
             part[1] = part[1].replace("?objectType", "<" + rangeUri + ">");
         }
-        queryString = part[0] + "WHERE" + part[1];
-        try {
-            rdfService.sparqlSelectQuery(queryString, consumer);
-        } catch (RDFServiceException e) {
-            throw new RuntimeException(e);
-        }
+        return part[0] + "WHERE" + part[1];
     }
 
     private void selectFromConstructedModel(String queryString,
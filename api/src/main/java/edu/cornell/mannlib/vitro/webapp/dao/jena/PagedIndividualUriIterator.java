@@ -0,0 +1,149 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+
+/**
+ * Iterate over the URIs of all labeled individuals, fetching them from the
+ * RDFService one page at a time. Only the current page is held in memory.
+ *
+ * The URIs are returned in order of their string values. Each page starts
+ * after the last URI of the previous page, rather than at an OFFSET, so a page
+ * does not shift if individuals are added or removed while the iteration is
+ * in progress. This is not cheaper for the store: each page still sorts all
+ * of the URIs that remain, before taking the first of them. The saving is in
+ * memory, since only one page is held at a time.
+ *
+ * The queries go to the RDFService, as the other queries in IndividualDaoSDB
+ * do, rather than to a DatasetWrapper. The iterator lives for the length of a
+ * rebuild, and a DatasetWrapper would hold its connection and its lock for all
+ * of that time; each RDFService query holds them only while it runs.
+ *
+ * The iterator may be told to start after a particular URI, so an interrupted
+ * process can pick up where it left off.
+ *
+ * This is the same set of individuals as IndividualDaoSDB.getAllIndividualUris:
+ * labeled resources in the default graph, or in any graph that is not a TBox
+ * graph or the application metadata graph.
+ */
+public class PagedIndividualUriIterator implements Iterator<String> {
+	private static final Log log = LogFactory
+			.getLog(PagedIndividualUriIterator.class);
+
+	public static final int DEFAULT_PAGE_SIZE = 10000;
+
+	private static final String QUERY_TEMPLATE = "" //
+			+ "SELECT DISTINCT ?ind WHERE { \n" //
+			+ "  { ?ind <" + RDFS.label.getURI() + "> ?label } \n" //
+			+ "  UNION { \n" //
+			+ "    GRAPH ?g { ?ind <" + RDFS.label.getURI() + "> ?label } \n" //
+			+ "    FILTER (?g != <" + ModelNames.APPLICATION_METADATA + "> \n" //
+			+ "            && !regex(str(?g),\"tbox\")) \n" //
+			+ "  } \n" //
+			+ "  FILTER (isURI(?ind)) \n" //
+			+ "  %s \n" //
+			+ "} \n" //
+			+ "ORDER BY str(?ind) \n" //
+			+ "LIMIT %d";
+
+	private final RDFService rdfService;
+	private final int pageSize;
+
+	private List<String> page = new ArrayList<>();
+	private int pageIndex = 0;
+	private String lastUri;
+	private boolean exhausted = false;
+
+	public PagedIndividualUriIterator(RDFService rdfService) {
+		this(rdfService, DEFAULT_PAGE_SIZE, null);
+	}
+
+	/**
+	 * @param afterUri
+	 *            if not null, the iterator begins with the first URI that
+	 *            follows this one.
+	 */
+	public PagedIndividualUriIterator(RDFService rdfService, int pageSize,
+			String afterUri) {
+		this.rdfService = rdfService;
+		this.pageSize = pageSize;
+		this.lastUri = afterUri;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (pageIndex < page.size()) {
+			return true;
+		}
+		if (exhausted) {
+			return false;
+		}
+		fetchNextPage();
+		return pageIndex < page.size();
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		lastUri = page.get(pageIndex++);
+		return lastUri;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void fetchNextPage() {
+		final List<String> uris = new ArrayList<>(pageSize);
+		try {
+			rdfService.sparqlSelectQuery(buildQuery(),
+					new ResultSetConsumer() {
+						@Override
+						protected void processQuerySolution(QuerySolution qs) {
+							RDFNode ind = qs.get("ind");
+							if (ind != null && ind.isURIResource()) {
+								uris.add(ind.asResource().getURI());
+							}
+						}
+					});
+		} catch (RDFServiceException e) {
+			log.debug(e, e);
+			throw new RuntimeException(e);
+		}
+
+		log.debug("Fetched a page of " + uris.size() + " URIs after '"
+				+ lastUri + "'");
+		page = uris;
+		pageIndex = 0;
+		exhausted = uris.size() < pageSize;
+	}
+
+	private String buildQuery() {
+		String filter = (lastUri == null) ? "" : "FILTER (str(?ind) > \""
+				+ escape(lastUri) + "\")";
+		return String.format(QUERY_TEMPLATE, filter, pageSize);
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
@@ -419,4 +419,21 @@ public class FileStorageImpl {
 
 		return new FileInputStream(file);
 	}
+
+	/**
+	 * The file system keeps the modification time to the nearest second, or
+	 * better.
+	 */
+	public long getLastModified(String id, String filename)
+			throws IOException {
+		File file = FileStorageHelper.getFullPath(this.rootDir, id, filename,
+				this.namespacesMap);
+
+		long lastModified = file.lastModified();
+		if (lastModified == 0L) {
+			throw new FileNotFoundException("No file exists with ID '" + id
+					+ "', file location '" + file + "'");
+		}
+		return lastModified;
+	}
 }
@@ -101,6 +101,12 @@ public class FileStorageImplWrapper implements FileStorage {
 		return fs.getInputStream(id, filename);
 	}
 
+	@Override
+	public long getLastModified(String id, String filename)
+			throws FileNotFoundException, IOException {
+		return fs.getLastModified(id, filename);
+	}
+
 	@Override
 	public boolean deleteFile(String id) throws IOException {
 		return fs.deleteFile(id);
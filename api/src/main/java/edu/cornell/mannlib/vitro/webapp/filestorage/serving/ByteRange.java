@@ -0,0 +1,93 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+/**
+ * A single range of bytes, as requested in an HTTP "Range" header.
+ *
+ * Only a single range is supported. A request for several ranges is answered
+ * with the whole file, as the specification permits.
+ */
+class ByteRange {
+	/**
+	 * The header was present, but can't be satisfied for a file of this
+	 * length.
+	 */
+	static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	/**
+	 * Parse the "Range" header for a file of this length.
+	 *
+	 * @return null if there is no header, if it is malformed, or if it asks for
+	 *         more than one range. UNSATISFIABLE if the range lies outside the
+	 *         file.
+	 */
+	static ByteRange parse(String header, long length) {
+		if (header == null || !header.startsWith("bytes=")) {
+			return null;
+		}
+		String spec = header.substring("bytes=".length()).trim();
+		if (spec.contains(",")) {
+			return null;
+		}
+
+		int dashHere = spec.indexOf('-');
+		if (dashHere == -1) {
+			return null;
+		}
+		String firstString = spec.substring(0, dashHere).trim();
+		String lastString = spec.substring(dashHere + 1).trim();
+
+		try {
+			if (firstString.isEmpty()) {
+				// A suffix: the last N bytes of the file.
+				long suffixLength = Long.parseLong(lastString);
+				if (suffixLength <= 0 || length == 0) {
+					return UNSATISFIABLE;
+				}
+				return new ByteRange(Math.max(0, length - suffixLength),
+						length - 1);
+			}
+
+			long first = Long.parseLong(firstString);
+			long last = lastString.isEmpty() ? length - 1 : Math.min(
+					Long.parseLong(lastString), length - 1);
+			if (first < 0 || last < first) {
+				return (first >= length) ? UNSATISFIABLE : null;
+			}
+			return new ByteRange(first, last);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private final long first;
+	private final long last;
+
+	ByteRange(long first, long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	long getFirst() {
+		return first;
+	}
+
+	long getLast() {
+		return last;
+	}
+
+	long getLength() {
+		return last - first + 1;
+	}
+
+	/** The value for the "Content-Range" header. */
+	String toContentRange(long fileLength) {
+		return "bytes " + first + "-" + last + "/" + fileLength;
+	}
+
+	@Override
+	public String toString() {
+		return "ByteRange[" + first + "-" + last + "]";
+	}
+}
@@ -0,0 +1,83 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.cornell.mannlib.vitro.webapp.filestorage.model.FileInfo;
+
+/**
+ * Remember the FileInfo for recently requested alias URLs, so a popular file
+ * (a thumbnail, perhaps) doesn't require several DAO lookups each time it is
+ * served.
+ *
+ * An uploaded file is given a new bytestream and a new alias URL, so an alias
+ * URL rarely changes its meaning. If the file is removed, the stale entry is
+ * harmless: the file can no longer be opened, so it is not served. Even so,
+ * entries expire after a while, in case the model is edited directly.
+ *
+ * The least recently used entries are dropped when the cache is full.
+ */
+class FileInfoCache {
+	private final int maxEntries;
+	private final long expirationMillis;
+
+	/** Guarded by itself. In access order, so the eldest is least used. */
+	private final LinkedHashMap<String, Entry> map;
+
+	FileInfoCache(final int maxEntries, long expirationMillis) {
+		this.maxEntries = maxEntries;
+		this.expirationMillis = expirationMillis;
+		this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Get the FileInfo for this alias URL, or null if it is not cached or has
+	 * expired.
+	 */
+	FileInfo get(String path) {
+		synchronized (map) {
+			Entry entry = map.get(path);
+			if (entry == null) {
+				return null;
+			}
+			if (System.currentTimeMillis() >= entry.expiresAt) {
+				map.remove(path);
+				return null;
+			}
+			return entry.fileInfo;
+		}
+	}
+
+	void put(String path, FileInfo fileInfo) {
+		if (maxEntries <= 0) {
+			return;
+		}
+		synchronized (map) {
+			map.put(path, new Entry(fileInfo, System.currentTimeMillis()
+					+ expirationMillis));
+		}
+	}
+
+	void remove(String path) {
+		synchronized (map) {
+			map.remove(path);
+		}
+	}
+
+	private static class Entry {
+		final FileInfo fileInfo;
+		final long expiresAt;
+
+		Entry(FileInfo fileInfo, long expiresAt) {
+			this.fileInfo = fileInfo;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -2,13 +2,21 @@
 
 package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
 
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Enumeration;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -45,15 +53,25 @@ import edu.cornell.mannlib.vitro.webapp.modules.fileStorage.FileStorage;
  * return a 404. If there is a break in the data structures within the model or
  * the file system, return a 500.
  * </p>
+ * <p>
+ * The file information for recent alias URLs is cached. Each response carries
+ * an ETag and a Last-Modified date, so a conditional request for a file that
+ * has not changed is answered with 304 Not Modified. A request for a single
+ * range of bytes is answered with that range.
+ * </p>
  */
 @WebServlet(name = "serveFiles", urlPatterns = {"/file/*"})
 public class FileServingServlet extends VitroHttpServlet {
 	/** If we can't locate the requested image, use this one instead. */
 	private static final String PATH_MISSING_LINK_IMAGE = "/images/missingLink.png";
 
+	private static final int FILE_INFO_CACHE_SIZE = 5000;
+	private static final long FILE_INFO_EXPIRATION_MILLIS = 10L * 60L * 1000L;
+
 	private static final Log log = LogFactory.getLog(FileServingServlet.class);
 
 	private FileStorage fileStorage;
+	private FileInfoCache fileInfoCache;
 
 	/**
 	 * Get a reference to the File Storage system.
@@ -62,6 +80,8 @@ public class FileServingServlet extends VitroHttpServlet {
 	public void init() throws ServletException {
 		super.init();
 		fileStorage = ApplicationUtils.instance().getFileStorage();
+		fileInfoCache = new FileInfoCache(FILE_INFO_CACHE_SIZE,
+				FILE_INFO_EXPIRATION_MILLIS);
 	}
 
 	@Override
@@ -74,46 +94,49 @@ public class FileServingServlet extends VitroHttpServlet {
 		log.debug("Path is '" + path + "'");
 
 		/*
-		 * Get the mime type and an InputStream from the file. If we can't, use
-		 * the dummy image file instead.
+		 * Get the file info, the modification date and an InputStream from the
+		 * file. If we can't, use the dummy image file instead.
 		 */
+		FileInfo fileInfo;
+		long lastModified;
 		InputStream in;
-		String mimeType = null;
 		try {
-			FileInfo fileInfo = figureFileInfo(request.getWebappDaoFactory(),
-					path);
-			mimeType = fileInfo.getMimeType();
-
+			fileInfo = figureFileInfo(request.getWebappDaoFactory(), path);
 			String actualFilename = findAndValidateFilename(fileInfo, path);
 
+			lastModified = fileStorage.getLastModified(
+					fileInfo.getBytestreamUri(), actualFilename);
 			in = openImageInputStream(fileInfo, actualFilename);
 		} catch (FileServingException e) {
 			log.info("Failed to serve the file at '" + path + "' -- " + e);
-			in = openMissingLinkImage(request);
-			mimeType = "image/png";
+			serveMissingLinkImage(request, response);
+			return;
 		} catch (Exception e) {
 			log.warn("Failed to serve the file at '" + path + "' -- " + e);
-			in = openMissingLinkImage(request);
-			mimeType = "image/png";
+			fileInfoCache.remove(path);
+			serveMissingLinkImage(request, response);
+			return;
 		}
 
-		/*
-		 * Everything is ready. Set the status and the content type, and send
-		 * the image bytes.
-		 */
-		response.setStatus(SC_OK);
+		try {
+			String etag = figureEtag(fileInfo, lastModified);
+			response.setHeader("ETag", etag);
+			response.setDateHeader("Last-Modified", lastModified);
 
-		if (mimeType != null) {
-			response.setContentType(mimeType);
-		}
+			if (isNotModified(request, etag, lastModified)) {
+				log.debug("Not modified: '" + path + "'");
+				response.setStatus(SC_NOT_MODIFIED);
+				return;
+			}
 
-		ServletOutputStream out = null;
-		try {
-			out = response.getOutputStream();
-			byte[] buffer = new byte[8192];
-			int howMany;
-			while (-1 != (howMany = in.read(buffer))) {
-				out.write(buffer, 0, howMany);
+			response.setContentType(fileInfo.getMimeType());
+			if (in instanceof FileInputStream) {
+				serveFromChannel(request, response,
+						((FileInputStream) in).getChannel(), etag,
+						lastModified);
+			} else {
+				response.setStatus(SC_OK);
+				copy(in, response.getOutputStream());
 			}
 		} catch (IOException e) {
 			log.warn("Failed to serve the file", e);
@@ -124,26 +147,129 @@ public class FileServingServlet extends VitroHttpServlet {
 				log.warn("Serving " + request.getRequestURI()
 						+ ". Failed to close input stream.", e);
 			}
-			if (out != null) {
-				try {
-					out.close();
-				} catch (Exception e) {
-					log.warn("Serving " + request.getRequestURI()
-							+ ". Failed to close output stream.", e);
+		}
+	}
+
+	/**
+	 * Send the whole file, or the requested range, with the length. The file
+	 * channel moves the bytes with transferTo(), without a buffer of our own.
+	 */
+	private void serveFromChannel(HttpServletRequest request,
+			HttpServletResponse response, FileChannel channel, String etag,
+			long lastModified) throws IOException {
+		long length = channel.size();
+		response.setHeader("Accept-Ranges", "bytes");
+
+		ByteRange range = null;
+		if (isRangeApplicable(request, etag, lastModified)) {
+			range = ByteRange.parse(request.getHeader("Range"), length);
+		}
+
+		if (range == ByteRange.UNSATISFIABLE) {
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.sendError(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return;
+		} else if (range == null) {
+			range = new ByteRange(0, length - 1);
+			response.setStatus(SC_OK);
+		} else {
+			log.debug("Serving " + range + " of " + length + " bytes");
+			response.setStatus(SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", range.toContentRange(length));
+		}
+		response.setContentLengthLong(range.getLength());
+
+		ServletOutputStream out = response.getOutputStream();
+		WritableByteChannel target = Channels.newChannel(out);
+		long position = range.getFirst();
+		long remaining = range.getLength();
+		while (remaining > 0) {
+			long howMany = channel.transferTo(position, remaining, target);
+			if (howMany <= 0) {
+				break;
+			}
+			position += howMany;
+			remaining -= howMany;
+		}
+		out.flush();
+	}
+
+	/**
+	 * The bytestream URI identifies the file, and the modification date
+	 * identifies the version of it.
+	 */
+	private String figureEtag(FileInfo fileInfo, long lastModified) {
+		int uriHash = fileInfo.getBytestreamUri().hashCode();
+		return "\"" + Integer.toHexString(uriHash) + "-"
+				+ Long.toHexString(lastModified) + "\"";
+	}
+
+	/**
+	 * If the request has "If-None-Match" headers, they decide. Otherwise, an
+	 * "If-Modified-Since" header may. HTTP dates are to the nearest second.
+	 */
+	private boolean isNotModified(HttpServletRequest request, String etag,
+			long lastModified) {
+		Enumeration<String> noneMatch = request.getHeaders("If-None-Match");
+		if (noneMatch != null && noneMatch.hasMoreElements()) {
+			while (noneMatch.hasMoreElements()) {
+				String value = noneMatch.nextElement().trim();
+				for (String match : value.split("\\s*,\\s*")) {
+					if (etag.equals(match) || "*".equals(match)) {
+						return true;
+					}
 				}
 			}
+			return false;
+		}
+
+		try {
+			long since = request.getDateHeader("If-Modified-Since");
+			return since != -1 && since >= (lastModified / 1000L) * 1000L;
+		} catch (IllegalArgumentException e) {
+			log.debug("Ignoring a malformed If-Modified-Since header: "
+					+ request.getHeader("If-Modified-Since"));
+			return false;
+		}
+	}
+
+	/**
+	 * If there is an "If-Range" header, the range applies only if the file
+	 * still matches it. Otherwise, the whole file is sent.
+	 */
+	private boolean isRangeApplicable(HttpServletRequest request, String etag,
+			long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"")) {
+			return etag.equals(ifRange.trim());
+		}
+		try {
+			long date = request.getDateHeader("If-Range");
+			return date == (lastModified / 1000L) * 1000L;
+		} catch (IllegalArgumentException e) {
+			return false;
 		}
 	}
 
 	private FileInfo figureFileInfo(WebappDaoFactory fullWadf, String path)
 			throws FileServingException {
-		FileInfo fileInfo = FileInfo.instanceFromAliasUrl(fullWadf, path,
+		FileInfo fileInfo = fileInfoCache.get(path);
+		if (fileInfo != null) {
+			log.debug("Cached file info is '" + fileInfo + "'");
+			return fileInfo;
+		}
+
+		fileInfo = FileInfo.instanceFromAliasUrl(fullWadf, path,
 				getServletContext());
 		if (fileInfo == null) {
 			throw new FileServingException("The request path is not valid "
 					+ "for the File servlet: '" + path + "'");
 		}
 		log.debug("File info is '" + fileInfo + "'");
+		fileInfoCache.put(path, fileInfo);
 		return fileInfo;
 	}
 
@@ -189,16 +315,43 @@ public class FileServingServlet extends VitroHttpServlet {
 				actualFilename);
 	}
 
-	/** Any suprises when opening the image? Use this one instead. */
-	private InputStream openMissingLinkImage(VitroRequest vreq)
-			throws FileNotFoundException {
+	/**
+	 * Any suprises when opening the image? Use this one instead. It has no
+	 * validators, so the browser will ask for the real file next time.
+	 */
+	private void serveMissingLinkImage(VitroRequest vreq,
+			HttpServletResponse response) throws IOException {
 		InputStream stream = vreq.getSession().getServletContext()
 				.getResourceAsStream(PATH_MISSING_LINK_IMAGE);
 		if (stream == null) {
 			throw new FileNotFoundException("No image file at '"
 					+ PATH_MISSING_LINK_IMAGE + "'");
 		}
-		return stream;
+
+		response.setStatus(SC_OK);
+		response.setContentType("image/png");
+		try {
+			copy(stream, response.getOutputStream());
+		} catch (IOException e) {
+			log.warn("Failed to serve the file", e);
+		} finally {
+			try {
+				stream.close();
+			} catch (Exception e) {
+				log.warn("Serving " + vreq.getRequestURI()
+						+ ". Failed to close input stream.", e);
+			}
+		}
+	}
+
+	private void copy(InputStream in, ServletOutputStream out)
+			throws IOException {
+		byte[] buffer = new byte[8192];
+		int howMany;
+		while (-1 != (howMany = in.read(buffer))) {
+			out.write(buffer, 0, howMany);
+		}
+		out.flush();
 	}
 
 	/**
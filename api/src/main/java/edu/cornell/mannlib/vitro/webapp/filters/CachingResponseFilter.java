@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -24,16 +23,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vedit.beans.LoginStatusBean;
-import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.beans.UserAccount;
 import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
-import edu.cornell.mannlib.vitro.webapp.utils.searchengine.FieldMap;
-import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchQueryUtils;
-import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchResultsParser;
 
 /**
  * Assist in cache management for individual profile pages.
@@ -65,6 +57,10 @@ import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchResultsParser;
  * ETAG supplied by the cache in the request, then the response is 304 Not
  * Modified. Otherwise, a fresh response is generated.
  * 
+ * The ETAGs are remembered in an IndividualEtagCache, which is cleared when
+ * the search indexer updates the index. So most conditional requests are
+ * answered without a search.
+ * 
  * An unconditional request may mean that there is no external cache, or that
  * the cache doesn't have a copy of this particular page.
  */
@@ -75,14 +71,10 @@ public class CachingResponseFilter implements Filter {
 
 	private static final String PROPERTY_DEFAULT_NAMESPACE = "Vitro.defaultNamespace";
 	private static final String PROPERTY_ENABLE_CACHING = "http.createCacheHeaders";
-	private static final String ETAG_FIELD = "etag";
-
-	private static final FieldMap parserFieldMap = SearchQueryUtils.fieldMap()
-			.put(ETAG_FIELD, ETAG_FIELD);
-
 	private ServletContext ctx;
 	private String defaultNamespace;
 	private boolean enabled;
+	private IndividualEtagCache etagCache;
 
 	@Override
 	public void init(FilterConfig fc) throws ServletException {
@@ -90,11 +82,17 @@ public class CachingResponseFilter implements Filter {
 		ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
 		defaultNamespace = props.getProperty(PROPERTY_DEFAULT_NAMESPACE);
 		enabled = Boolean.valueOf(props.getProperty(PROPERTY_ENABLE_CACHING));
+
+		if (enabled) {
+			etagCache = IndividualEtagCache.getInstance(ctx);
+		}
 	}
 
 	@Override
 	public void destroy() {
-		// Nothing to tear down.
+		if (etagCache != null) {
+			log.debug("Final state: " + etagCache);
+		}
 	}
 
 	/**
@@ -241,29 +239,15 @@ public class CachingResponseFilter implements Filter {
 	}
 
 	/**
-	 * Ask the search engine whether it has an ETAG for this URI.
+	 * Ask the cache whether it has an ETAG for this URI. If it doesn't know,
+	 * it will ask the search engine.
 	 */
 	private String findEtagForIndividual(String individualUri) {
-		SearchEngine search = ApplicationUtils.instance().getSearchEngine();
-		SearchQuery query = search.createQuery("URI:" + individualUri).addFields(
-				ETAG_FIELD);
-
 		try {
-			SearchResponse response = search.query(query);
-			List<Map<String, String>> maps = new SearchResultsParser(response,
-					parserFieldMap).parse();
-			log.debug("Search response for '" + query.getQuery() + "' was "
-					+ maps);
-
-			if (maps.isEmpty()) {
-				return null;
-			} else {
-				return maps.get(0).get(ETAG_FIELD);
-			}
+			return etagCache.getEtag(individualUri);
 		} catch (SearchEngineException e) {
-			log.warn(
-					"Search query '" + query.getQuery() + "' threw an exception",
-					e);
+			log.warn("Search query for the ETAG of '" + individualUri
+					+ "' threw an exception", e);
 			return null;
 		}
 	}
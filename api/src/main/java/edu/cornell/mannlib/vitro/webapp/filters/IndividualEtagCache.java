@@ -0,0 +1,225 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.filters;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.FieldMap;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchQueryUtils;
+import edu.cornell.mannlib.vitro.webapp.utils.searchengine.SearchResultsParser;
+
+/**
+ * Remember the ETAG that the search index holds for each individual, so a
+ * conditional request can be answered without asking the search engine.
+ *
+ * If the search index has no record for the individual, that is remembered
+ * also.
+ *
+ * The cache listens to the SearchIndexer. Whenever the indexer begins or ends
+ * an update, or reports progress, the cache is cleared, since any of the
+ * documents may have changed.
+ *
+ * The search engine may not make a changed document visible until some time
+ * after it is sent. So while the indexer is updating documents, and for a
+ * settling time after it stops, the ETAGs are looked up but not remembered. An
+ * ETAG that was being looked up when the cache was cleared is not remembered
+ * either.
+ *
+ * The cache holds a limited number of entries. When it is full, an arbitrary
+ * entry is dropped to make room.
+ *
+ * The application has a single instance, which is created on first use. It is
+ * shared by the CachingResponseFilter and the cache of rendered pages.
+ */
+public class IndividualEtagCache implements SearchIndexer.Listener {
+	private static final Log log = LogFactory.getLog(IndividualEtagCache.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 20000;
+	public static final long DEFAULT_SETTLING_MILLIS = 10000L;
+
+	public static final String ETAG_FIELD = "etag";
+
+	/** Marks an individual that has no record in the search index. */
+	private static final String NO_ETAG = new String("NO_ETAG");
+
+	private static final String ATTRIBUTE_NAME = IndividualEtagCache.class
+			.getName();
+
+	/**
+	 * Get the instance for this application. Create it if necessary, and
+	 * register it with the SearchIndexer.
+	 */
+	public static IndividualEtagCache getInstance(ServletContext ctx) {
+		synchronized (IndividualEtagCache.class) {
+			Object o = ctx.getAttribute(ATTRIBUTE_NAME);
+			if (o instanceof IndividualEtagCache) {
+				return (IndividualEtagCache) o;
+			}
+			IndividualEtagCache cache = new IndividualEtagCache(
+					new SearchEngineEtagLoader(), DEFAULT_MAX_ENTRIES,
+					DEFAULT_SETTLING_MILLIS);
+			ApplicationUtils.instance().getSearchIndexer().addListener(cache);
+			ctx.setAttribute(ATTRIBUTE_NAME, cache);
+			return cache;
+		}
+	}
+
+	/**
+	 * Finds the ETAG for an individual, or null if the individual is not in
+	 * the search index.
+	 */
+	public interface EtagLoader {
+		String loadEtag(String uri) throws SearchEngineException;
+	}
+
+	private final EtagLoader loader;
+	private final int maxEntries;
+	private final long settlingMillis;
+	private final ConcurrentMap<String, String> map = new ConcurrentHashMap<>();
+
+	private final AtomicLong generation = new AtomicLong();
+	private volatile int activeUpdates;
+	private volatile long settledAt;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public IndividualEtagCache(EtagLoader loader, int maxEntries,
+			long settlingMillis) {
+		this.loader = loader;
+		this.maxEntries = maxEntries;
+		this.settlingMillis = settlingMillis;
+	}
+
+	/**
+	 * Get the ETAG for this individual, from the cache if possible, otherwise
+	 * from the loader.
+	 *
+	 * @return the ETAG, or null if the individual is not in the search index.
+	 * @throws SearchEngineException
+	 *             if the loader fails. Nothing is remembered.
+	 */
+	public String getEtag(String uri) throws SearchEngineException {
+		String cached = map.get(uri);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return (cached == NO_ETAG) ? null : cached;
+		}
+
+		misses.incrementAndGet();
+		long generationBefore = generation.get();
+		String etag = loader.loadEtag(uri);
+		if (mayRemember(generationBefore)) {
+			map.put(uri, (etag == null) ? NO_ETAG : etag);
+			trimToSize();
+		}
+		return etag;
+	}
+
+	private boolean mayRemember(long generationBefore) {
+		return activeUpdates == 0
+				&& generation.get() == generationBefore
+				&& System.currentTimeMillis() >= settledAt;
+	}
+
+	/**
+	 * Drop arbitrary entries until we are within the limit. Other threads may
+	 * be adding at the same time, so the limit is approximate.
+	 */
+	private void trimToSize() {
+		Iterator<String> keys = map.keySet().iterator();
+		while (map.size() > maxEntries && keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	@Override
+	public void receiveSearchIndexerEvent(Event event) {
+		switch (event.getType()) {
+		case START_URIS:
+			synchronized (this) {
+				activeUpdates++;
+			}
+			invalidate(event);
+			break;
+		case STOP_URIS:
+			synchronized (this) {
+				activeUpdates = Math.max(0, activeUpdates - 1);
+			}
+			invalidate(event);
+			break;
+		case PROGRESS:
+		case START_REBUILD:
+		case STOP_REBUILD:
+		case SHUTDOWN_REQUESTED:
+			invalidate(event);
+			break;
+		default:
+			// Nothing in the index has changed.
+			break;
+		}
+	}
+
+	private void invalidate(Event event) {
+		generation.incrementAndGet();
+		settledAt = System.currentTimeMillis() + settlingMillis;
+		map.clear();
+		log.debug("Cleared on " + event.getType() + ": " + this);
+	}
+
+	@Override
+	public String toString() {
+		return "IndividualEtagCache[size=" + map.size() + ", hits="
+				+ hits.get() + ", misses=" + misses.get() + "]";
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Ask the search engine for the ETAG on the individual's record.
+	 */
+	private static class SearchEngineEtagLoader implements EtagLoader {
+		private static final FieldMap parserFieldMap = SearchQueryUtils
+				.fieldMap().put(ETAG_FIELD, ETAG_FIELD);
+
+		@Override
+		public String loadEtag(String uri) throws SearchEngineException {
+			SearchEngine search = ApplicationUtils.instance()
+					.getSearchEngine();
+			SearchQuery query = search.createQuery("URI:" + uri).addFields(
+					ETAG_FIELD);
+
+			SearchResponse response = search.query(query);
+			List<Map<String, String>> maps = new SearchResultsParser(
+					response, parserFieldMap).parse();
+			log.debug("Search response for '" + query.getQuery() + "' was "
+					+ maps);
+
+			if (maps.isEmpty()) {
+				return null;
+			} else {
+				return maps.get(0).get(ETAG_FIELD);
+			}
+		}
+	}
+}
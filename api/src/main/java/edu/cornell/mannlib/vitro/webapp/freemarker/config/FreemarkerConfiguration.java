@@ -282,6 +282,7 @@ public abstract class FreemarkerConfiguration {
 		@Override
 		public void contextDestroyed(ServletContextEvent sce) {
 			instance = null;
+			FreemarkerTemplateLoader.shutdown();
 		}
 	}
 }
@@ -170,6 +170,10 @@ public class FreemarkerConfigurationImpl extends Configuration {
 	/**
 	 * Find the DataGetters for this template, and apply them to the Freemarker
 	 * environment.
+	 * 
+	 * This happens for every included template, but most have no DataGetters.
+	 * Finding that out doesn't require a query, since DataGetterUtils caches
+	 * the DataGetter configuration from the display model.
 	 */
 	public static void retrieveAndRunDataGetters(Environment env,
 			String templateName) {
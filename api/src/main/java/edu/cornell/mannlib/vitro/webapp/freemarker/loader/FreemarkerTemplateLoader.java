@@ -6,15 +6,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Comparator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,6 +16,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import edu.cornell.mannlib.vitro.webapp.utils.developer.DeveloperSettings;
+import edu.cornell.mannlib.vitro.webapp.utils.developer.Key;
 import freemarker.cache.TemplateLoader;
 
 /**
@@ -65,12 +61,16 @@ import freemarker.cache.TemplateLoader;
  * If more than one template file qualifies, we choose by best fit, shortest
  * path, and alphabetical order, to insure that identical requests produce
  * identical results.
+ * 
+ * The directory is not searched for each request. The templates are found in
+ * an index, which is kept current by watching the directory for changes. See
+ * TemplateIndex.
  */
 public class FreemarkerTemplateLoader implements TemplateLoader {
 	private static final Log log = LogFactory
 			.getLog(FreemarkerTemplateLoader.class);
 
-	private final File baseDir;
+	private final TemplateIndex index;
 
 	public FreemarkerTemplateLoader(File baseDir) {
 		if (baseDir == null) {
@@ -92,12 +92,23 @@ public class FreemarkerTemplateLoader implements TemplateLoader {
 		}
 
 		log.debug("Created template loader - baseDir is '" + path + "'");
-		this.baseDir = baseDir;
+		this.index = TemplateIndex.forDirectory(baseDir);
+	}
+
+	/**
+	 * Stop watching the template directories for changes. Call this when the
+	 * application stops.
+	 */
+	public static void shutdown() {
+		TemplateIndex.shutdownAll();
 	}
 
 	/**
-	 * Get the best template for this name. Walk the tree finding all possible
-	 * matches, then choose our favorite.
+	 * Get the best template for this name. Look in the index for all possible
+	 * matches, and choose our favorite.
+	 * 
+	 * If the index is not being kept current, and the developer has disabled
+	 * the Freemarker cache, build the index again first.
 	 */
 	@Override
 	public Object findTemplateSource(String name) throws IOException {
@@ -105,23 +116,21 @@ public class FreemarkerTemplateLoader implements TemplateLoader {
 			return null;
 		}
 
-		SortedSet<PathPieces> matches = findAllMatches(new PathPieces(name));
+		if (!index.isWatching() && isFreemarkerCacheDefeated()) {
+			index.rebuild();
+		}
 
-		if (matches.isEmpty()) {
+		PathPieces match = index.find(new PathPieces(name));
+		if (match == null) {
 			return null;
 		} else {
-			return matches.last().path.toFile();
+			return match.path.toFile();
 		}
 	}
 
-	private SortedSet<PathPieces> findAllMatches(PathPieces searchTerm) {
-		PathPiecesFileVisitor visitor = new PathPiecesFileVisitor(searchTerm);
-		try {
-			Files.walkFileTree(baseDir.toPath(), visitor);
-		} catch (IOException e) {
-			log.error(e);
-		}
-		return visitor.getMatches();
+	private boolean isFreemarkerCacheDefeated() {
+		return DeveloperSettings.getInstance().getBoolean(
+				Key.DEFEAT_FREEMARKER_CACHE);
 	}
 
 	/**
@@ -259,40 +268,6 @@ public class FreemarkerTemplateLoader implements TemplateLoader {
 
 	}
 
-	/**
-	 * While walking the file tree, collect all files that match the search
-	 * term, as a sorted set of PathPieces.
-	 */
-	static class PathPiecesFileVisitor extends SimpleFileVisitor<Path> {
-		private final PathPieces searchTerm;
-		private final SortedSet<PathPieces> matches;
-
-		public PathPiecesFileVisitor(PathPieces searchTerm) {
-			this.searchTerm = searchTerm;
-			this.matches = new TreeSet<>(new PathPiecesComparator(searchTerm));
-		}
-
-		@Override
-		public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
-				throws IOException {
-			if (fileQualifies(path)) {
-				PathPieces found = new PathPieces(path);
-				if (searchTerm.matches(found)) {
-					matches.add(found);
-				}
-			}
-			return FileVisitResult.CONTINUE;
-		}
-
-		public boolean fileQualifies(Path path) {
-			return !Files.isDirectory(path);
-		}
-
-		public SortedSet<PathPieces> getMatches() {
-			return matches;
-		}
-	}
-
 	/**
 	 * Produce an ordering of paths by desirability. Best match, then shortest
 	 * directory path, and finally alphabetical order.
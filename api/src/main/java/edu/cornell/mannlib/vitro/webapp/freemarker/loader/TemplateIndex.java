@@ -0,0 +1,285 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.freemarker.loader;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPieces;
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPiecesComparator;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * The template files in a directory and its sub-directories, grouped by base
+ * name and extension, so a template can be found without walking the tree.
+ *
+ * The index is built when it is first requested. If possible, a background
+ * thread watches the directories and builds the index again when a file or
+ * directory is created or deleted. If the directories can't be watched, the
+ * index is only built again when asked.
+ *
+ * There is one index for each directory, no matter how many template loaders
+ * are created for it. When the application stops, shutdownAll() stops the
+ * watching threads and forgets the indexes.
+ */
+class TemplateIndex {
+	private static final Log log = LogFactory.getLog(TemplateIndex.class);
+
+	private static final Map<Path, TemplateIndex> indexes = new HashMap<>();
+
+	/**
+	 * Get the index for this directory, creating it if necessary.
+	 */
+	static synchronized TemplateIndex forDirectory(File baseDir) {
+		Path path = baseDir.toPath().toAbsolutePath().normalize();
+		TemplateIndex index = indexes.get(path);
+		if (index == null) {
+			index = new TemplateIndex(path);
+			index.startWatching();
+			index.rebuild();
+			indexes.put(path, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Stop watching all of the directories, and forget the indexes.
+	 */
+	static synchronized void shutdownAll() {
+		for (TemplateIndex index : indexes.values()) {
+			index.shutdown();
+		}
+		indexes.clear();
+	}
+
+	private final Path baseDir;
+
+	/**
+	 * Replaced, never modified. Keyed by base name and extension, so all of
+	 * the locale variants of a template are found together.
+	 */
+	private volatile Map<String, List<PathPieces>> templates;
+
+	/** Null if the directories are not being watched. */
+	private volatile WatchService watcher;
+
+	/** Null if the directories are not being watched. */
+	private volatile Thread watchThread;
+
+	/** The index is empty until it is built. */
+	TemplateIndex(Path baseDir) {
+		this.baseDir = baseDir;
+		this.templates = Collections.emptyMap();
+	}
+
+	/**
+	 * An index of these paths, which need not exist. It is not watched, and
+	 * building it again would replace the paths with the files in the base
+	 * directory. For testing.
+	 */
+	TemplateIndex(Path baseDir, List<Path> paths) {
+		this.baseDir = baseDir;
+		Map<String, List<PathPieces>> map = new HashMap<>();
+		for (Path path : paths) {
+			addToMap(map, new PathPieces(path));
+		}
+		this.templates = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Find all of the templates that match this search term, from worst to
+	 * best.
+	 */
+	List<PathPieces> findAll(PathPieces searchTerm) {
+		List<PathPieces> matches = new ArrayList<>();
+		List<PathPieces> candidates = templates.get(key(searchTerm));
+		if (candidates != null) {
+			for (PathPieces candidate : candidates) {
+				if (searchTerm.matches(candidate)) {
+					matches.add(candidate);
+				}
+			}
+		}
+		Collections.sort(matches, new PathPiecesComparator(searchTerm));
+		return matches;
+	}
+
+	/**
+	 * Find the best template for this search term, or null if none matches.
+	 */
+	PathPieces find(PathPieces searchTerm) {
+		List<PathPieces> candidates = templates.get(key(searchTerm));
+		if (candidates == null) {
+			return null;
+		}
+
+		PathPiecesComparator comparator = new PathPiecesComparator(searchTerm);
+		PathPieces best = null;
+		for (PathPieces candidate : candidates) {
+			if (searchTerm.matches(candidate)
+					&& (best == null || comparator.compare(candidate, best) > 0)) {
+				best = candidate;
+			}
+		}
+		return best;
+	}
+
+	boolean isWatching() {
+		return watcher != null;
+	}
+
+	/**
+	 * Walk the tree and replace the index. If the directories are being
+	 * watched, make sure that any new ones are watched also.
+	 */
+	synchronized void rebuild() {
+		final Map<String, List<PathPieces>> map = new HashMap<>();
+		final WatchService ws = watcher;
+		try {
+			Files.walkFileTree(baseDir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir,
+						BasicFileAttributes attrs) throws IOException {
+					if (ws != null) {
+						dir.register(ws, ENTRY_CREATE, ENTRY_DELETE);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path path,
+						BasicFileAttributes attrs) throws IOException {
+					if (!attrs.isDirectory()) {
+						addToMap(map, new PathPieces(path));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (ClosedWatchServiceException e) {
+			log.debug("Watch service closed while indexing '" + baseDir + "'");
+		} catch (IOException e) {
+			log.error("Failed to index the templates in '" + baseDir + "'", e);
+		}
+		templates = Collections.unmodifiableMap(map);
+		log.debug("Indexed " + map.size() + " template names in '" + baseDir
+				+ "'");
+	}
+
+	private static void addToMap(Map<String, List<PathPieces>> map,
+			PathPieces pieces) {
+		String key = key(pieces);
+		List<PathPieces> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<>();
+			map.put(key, list);
+		}
+		list.add(pieces);
+	}
+
+	private static String key(PathPieces pieces) {
+		return pieces.base + pieces.extension;
+	}
+
+	// ----------------------------------------------------------------------
+	// Watching for changes
+	// ----------------------------------------------------------------------
+
+	private void startWatching() {
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+		} catch (IOException | UnsupportedOperationException e) {
+			log.warn("Can't watch the templates in '" + baseDir
+					+ "' for changes. New templates will not be found "
+					+ "until the application is restarted, unless "
+					+ "Freemarker caching is disabled in the developer "
+					+ "settings.", e);
+			return;
+		}
+
+		Thread t = new VitroBackgroundThread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "TemplateIndex");
+		t.setDaemon(true);
+		watchThread = t;
+		t.start();
+	}
+
+	/**
+	 * Stop watching the directories: close the watch service, and wait a
+	 * moment for the thread to notice. The index is kept, but it will only be
+	 * built again when asked.
+	 */
+	void shutdown() {
+		WatchService ws = watcher;
+		Thread t = watchThread;
+		watcher = null;
+		watchThread = null;
+
+		if (ws != null) {
+			try {
+				ws.close();
+			} catch (IOException e) {
+				log.warn("Failed to close the watch service for '" + baseDir
+						+ "'", e);
+			}
+		}
+		if (t != null) {
+			t.interrupt();
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Wait for changes. Collect all of the changes that are waiting, and then
+	 * build the index again. A change that occurs while building will cause
+	 * it to be built again.
+	 */
+	private void watch() {
+		WatchService ws = watcher;
+		try {
+			while (true) {
+				WatchKey key = ws.take();
+				do {
+					key.pollEvents();
+					key.reset();
+					key = ws.poll();
+				} while (key != null);
+
+				log.debug("Templates changed in '" + baseDir + "'");
+				rebuild();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			log.debug("Stopped watching '" + baseDir + "'");
+		} finally {
+			watcher = null;
+			watchThread = null;
+		}
+	}
+}
@@ -81,6 +81,12 @@ import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
  * least of which is that the model switching will not be available on
  * WebappDaoFactories based on ASSERTIONS_ONLY or INFERENCES_ONLY, and similarly
  * for the OntModel.
+ * 
+ * ----------------------------------------
+ * 
+ * The structures may be requested from more than one thread, when parts of a
+ * page are built in parallel (see PropertyListFetcher), so access to the
+ * caches is synchronized.
  */
 public class RequestModelAccessImpl implements RequestModelAccess {
 	private static final Log log = LogFactory
@@ -133,7 +139,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getRDFService(new RDFServiceKey(options));
 	}
 
-	private RDFService getRDFService(RDFServiceKey key) {
+	private synchronized RDFService getRDFService(RDFServiceKey key) {
 		if (!rdfServiceMap.containsKey(key)) {
 			RDFService rdfService = createRDFService(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -173,7 +179,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getDataset(new DatasetKey(options));
 	}
 
-	private Dataset getDataset(DatasetKey key) {
+	private synchronized Dataset getDataset(DatasetKey key) {
 		if (!datasetMap.containsKey(key)) {
 			Dataset dataset = createDataset(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -205,7 +211,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getOntModel(new OntModelKey(name, options));
 	}
 
-	private OntModel getOntModel(OntModelKey key) {
+	private synchronized OntModel getOntModel(OntModelKey key) {
 		if (!ontModelMap.containsKey(key)) {
 			OntModel ontModel = createOntModel(key);
 			if ( log.isDebugEnabled() ) {
@@ -244,7 +250,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 	/**
 	 * TODO Hack for model switching.
 	 */
-	public void setSpecialWriteModel(OntModel mainOntModel) {
+	public synchronized void setSpecialWriteModel(OntModel mainOntModel) {
 		ontModelMap.put(new OntModelKey(ModelNames.FULL_UNION), mainOntModel);
 	}
 
@@ -260,7 +266,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getOntModelSelector(new OntModelSelectorKey(options));
 	}
 
-	private OntModelSelector getOntModelSelector(OntModelSelectorKey key) {
+	private synchronized OntModelSelector getOntModelSelector(OntModelSelectorKey key) {
 		if (!ontModelSelectorMap.containsKey(key)) {
 			OntModelSelector oms = createOntModelSelector(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
@@ -299,7 +305,7 @@ public class RequestModelAccessImpl implements RequestModelAccess {
 		return getWebappDaoFactory(new WebappDaoFactoryKey(options));
 	}
 
-	private WebappDaoFactory getWebappDaoFactory(WebappDaoFactoryKey key) {
+	private synchronized WebappDaoFactory getWebappDaoFactory(WebappDaoFactoryKey key) {
 		if (!wadfMap.containsKey(key)) {
 			WebappDaoFactory wadf = createWebappDaoFactory(key);
 			log.debug("Creating:   " + key + ", request=" + req.hashCode()
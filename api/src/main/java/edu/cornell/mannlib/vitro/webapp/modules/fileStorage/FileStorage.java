@@ -43,6 +43,16 @@ public interface FileStorage extends Application.Module {
 	InputStream getInputStream(String id, String filename)
 			throws FileNotFoundException, IOException;
 
+	/**
+	 * Get the time that the file with this ID and this filename was last
+	 * modified, in milliseconds since the epoch.
+	 * 
+	 * @throws FileNotFoundException
+	 *             if there is no file that matches this ID and filename.
+	 */
+	long getLastModified(String id, String filename)
+			throws FileNotFoundException, IOException;
+
 	/**
 	 * If a file exists with this ID, it will be deleted, regardless of the file
 	 * name. If no such file exists, no action is taken, no exception is thrown.
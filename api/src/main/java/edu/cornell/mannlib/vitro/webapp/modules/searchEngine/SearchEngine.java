@@ -72,6 +72,13 @@ public interface SearchEngine extends Application.Module {
 	 */
 	void deleteByQuery(String query) throws SearchEngineException;
 
+	/**
+	 * After a document is added or deleted, how long may it take before the
+	 * change is visible to the search? Zero if the change is visible at once,
+	 * or if the time can't be known.
+	 */
+	int getVisibilityDelayMillis();
+
 	// ----------------------------------------------------------------------
 	// Searching operations
 	// ----------------------------------------------------------------------
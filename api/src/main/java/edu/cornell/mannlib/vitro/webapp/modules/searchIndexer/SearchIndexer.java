@@ -82,6 +82,13 @@ public interface SearchIndexer extends Application.Module {
 	 */
 	void scheduleUpdatesForStatements(List<Statement> changes);
 
+	/**
+	 * As scheduleUpdatesForStatements(changes), for changes that were first
+	 * heard at this time. The latency of the changes is counted from then.
+	 */
+	void scheduleUpdatesForStatements(List<Statement> changes,
+			long heardAtMillis);
+
 	/**
 	 * Update the search documents for these URIs.
 	 * 
@@ -112,6 +119,19 @@ public interface SearchIndexer extends Application.Module {
 	 */
 	void rebuildIndex();
 
+	/**
+	 * If a rebuild was interrupted, perhaps by a shutdown, resume it from the
+	 * last checkpoint. URIs that were processed before the checkpoint are not
+	 * processed again.
+	 * 
+	 * If there is no checkpoint, this method has no effect.
+	 * 
+	 * If called while paused, a full rebuild will be scheduled for when the
+	 * indexer is unpaused. If called before startup or after shutdown, this has
+	 * no effect.
+	 */
+	void resumeInterruptedRebuild();
+
 	/**
 	 * What is the current status of the indexer?
 	 * 
@@ -156,6 +176,10 @@ public interface SearchIndexer extends Application.Module {
 	/**
 	 * An immutable event object. The event type describes just what happened.
 	 * The status object describes what the indexer is doing now.
+	 *
+	 * A rebuild that resumes an interrupted rebuild is flagged as such. It
+	 * only covers the URIs after its checkpoint, so it does not replace
+	 * changes that are waiting to be indexed.
 	 */
 	public static class Event {
 		public enum Type {
@@ -174,10 +198,17 @@ public interface SearchIndexer extends Application.Module {
 
 		private final Type type;
 		private final SearchIndexerStatus status;
+		private final boolean resumedRebuild;
 
 		public Event(Type type, SearchIndexerStatus status) {
+			this(type, status, false);
+		}
+
+		public Event(Type type, SearchIndexerStatus status,
+				boolean resumedRebuild) {
 			this.type = type;
 			this.status = status;
+			this.resumedRebuild = resumedRebuild;
 		}
 
 		public Type getType() {
@@ -188,9 +219,13 @@ public interface SearchIndexer extends Application.Module {
 			return status;
 		}
 
+		public boolean isResumedRebuild() {
+			return resumedRebuild;
+		}
+
 		@Override
 		public String toString() {
-			return type + ", " + status;
+			return type + (resumedRebuild ? " (resumed)" : "") + ", " + status;
 		}
 	}
 
@@ -3,7 +3,10 @@
 package edu.cornell.mannlib.vitro.webapp.modules.searchIndexer;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * An immutable summary of the status of the SearchIndexer, at a fixed point in
@@ -15,6 +18,12 @@ import java.util.Date;
  * 
  * When the indexer starts up, becomes idle, or shuts down, the counts are
  * NO_COUNTS.
+ * 
+ * The indexer may also describe the backlog of each of its task lanes. If it
+ * does not, the backlog is an empty list.
+ * 
+ * The indexer may also describe how long it has taken for changes to reach the
+ * search index. If it does not, the latency is empty.
  */
 public class SearchIndexerStatus {
 	// ----------------------------------------------------------------------
@@ -37,11 +46,41 @@ public class SearchIndexerStatus {
 	private final State state;
 	private final Date since;
 	private final Counts counts;
+	private final List<LaneBacklog> backlog;
+	private final Latency latency;
 
 	public SearchIndexerStatus(State state, Date since, Counts counts) {
+		this(state, since, counts, Collections.<LaneBacklog> emptyList());
+	}
+
+	public SearchIndexerStatus(State state, Date since, Counts counts,
+			List<LaneBacklog> backlog) {
+		this(state, since, counts, backlog, Latency.EMPTY);
+	}
+
+	public SearchIndexerStatus(State state, Date since, Counts counts,
+			List<LaneBacklog> backlog, Latency latency) {
 		this.state = state;
 		this.since = since;
 		this.counts = counts;
+		this.backlog = Collections.unmodifiableList(new ArrayList<>(backlog));
+		this.latency = latency;
+	}
+
+	/**
+	 * Create a copy of this status, with the backlog of each lane.
+	 */
+	public SearchIndexerStatus withBacklog(List<LaneBacklog> laneBacklog) {
+		return new SearchIndexerStatus(state, since, counts, laneBacklog,
+				latency);
+	}
+
+	/**
+	 * Create a copy of this status, with the latency of changes.
+	 */
+	public SearchIndexerStatus withLatency(Latency newLatency) {
+		return new SearchIndexerStatus(state, since, counts, backlog,
+				newLatency);
 	}
 
 	public State getState() {
@@ -56,9 +95,22 @@ public class SearchIndexerStatus {
 		return counts;
 	}
 
+	public List<LaneBacklog> getBacklog() {
+		return backlog;
+	}
+
+	public Latency getLatency() {
+		return latency;
+	}
+
 	@Override
 	public String toString() {
-		return new SimpleDateFormat().format(since) + ", " + counts;
+		if (backlog.isEmpty()) {
+			return new SimpleDateFormat().format(since) + ", " + counts;
+		} else {
+			return new SimpleDateFormat().format(since) + ", " + counts + ", "
+					+ backlog;
+		}
 	}
 
 	// ----------------------------------------------------------------------
@@ -210,4 +262,128 @@ public class SearchIndexerStatus {
 			return "[]";
 		}
 	}
+
+	/**
+	 * How busy is one of the indexer's task lanes? Is a task running, how many
+	 * are waiting, and how many URIs or statements do the waiting tasks hold?
+	 */
+	public static class LaneBacklog {
+		private final String lane;
+		private final boolean busy;
+		private final int waitingTasks;
+		private final int waitingItems;
+
+		public LaneBacklog(String lane, boolean busy, int waitingTasks,
+				int waitingItems) {
+			this.lane = lane;
+			this.busy = busy;
+			this.waitingTasks = waitingTasks;
+			this.waitingItems = waitingItems;
+		}
+
+		public String getLane() {
+			return lane;
+		}
+
+		public boolean isBusy() {
+			return busy;
+		}
+
+		public int getWaitingTasks() {
+			return waitingTasks;
+		}
+
+		public int getWaitingItems() {
+			return waitingItems;
+		}
+
+		@Override
+		public String toString() {
+			return lane + "[busy=" + busy + ", waitingTasks=" + waitingTasks
+					+ ", waitingItems=" + waitingItems + "]";
+		}
+	}
+
+	/**
+	 * How long did it take for changes to reach the search index? The
+	 * latencies are counted in buckets: the count for each limit includes the
+	 * changes that took longer than the previous limit, up to and including
+	 * this one. The final count, with no limit, includes everything longer
+	 * than the last limit.
+	 */
+	public static class Latency {
+		public static final Latency EMPTY = new Latency(new long[0],
+				new long[1], 0, 0);
+
+		private final long[] limits;
+		private final long[] counts;
+		private final long count;
+		private final long totalMillis;
+		private final long maxMillis;
+
+		public Latency(long[] limits, long[] counts, long totalMillis,
+				long maxMillis) {
+			if (counts.length != limits.length + 1) {
+				throw new IllegalArgumentException("Expecting "
+						+ (limits.length + 1) + " counts for "
+						+ limits.length + " limits, but there are "
+						+ counts.length);
+			}
+			this.limits = limits.clone();
+			this.counts = counts.clone();
+			this.totalMillis = totalMillis;
+			this.maxMillis = maxMillis;
+
+			long sum = 0;
+			for (long c : counts) {
+				sum += c;
+			}
+			this.count = sum;
+		}
+
+		/** The number of buckets, including the one with no limit. */
+		public int getBucketCount() {
+			return counts.length;
+		}
+
+		/** The upper limit of the bucket in milliseconds, or -1 if none. */
+		public long getLimit(int bucket) {
+			return (bucket < limits.length) ? limits[bucket] : -1;
+		}
+
+		public long getCount(int bucket) {
+			return counts[bucket];
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMeanMillis() {
+			return (count == 0) ? 0 : totalMillis / count;
+		}
+
+		public long getMaxMillis() {
+			return maxMillis;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("Latency[count=" + count
+					+ ", mean=" + getMeanMillis() + ", max=" + maxMillis);
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					if (i < limits.length) {
+						sb.append(", <=").append(limits[i]).append("ms");
+					} else if (i > 0) {
+						sb.append(", >").append(limits[i - 1]).append("ms");
+					} else {
+						sb.append(", all");
+					}
+					sb.append("=").append(counts[i]);
+				}
+			}
+			return sb.append("]").toString();
+		}
+	}
 }
@@ -0,0 +1,21 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice;
+
+import org.apache.jena.query.Query;
+
+/**
+ * An RDFService that can run a SELECT query that is already parsed, so the
+ * query need not be written out as text, only to be parsed again.
+ *
+ * This is optional. Use RDFServiceUtils.sparqlSelectQuery(Query, RDFService,
+ * ResultSetConsumer), which falls back to the text of the query if the service
+ * does not implement it.
+ *
+ * The service may modify the query, so pass it a copy that nobody else will
+ * use.
+ */
+public interface ParsedQueryRDFService {
+	void sparqlSelectQuery(Query query, ResultSetConsumer consumer)
+			throws RDFServiceException;
+}
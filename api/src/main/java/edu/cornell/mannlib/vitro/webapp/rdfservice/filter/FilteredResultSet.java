@@ -20,6 +20,11 @@ public class FilteredResultSet implements ResultSet {
         this.solutIt = solutions.iterator();
         this.originalResultSet = originalResultSet;
     }
+
+    public FilteredResultSet (Iterator<QuerySolution> solutions, ResultSet originalResultSet) {
+        this.solutIt = solutions;
+        this.originalResultSet = originalResultSet;
+    }
     
     @Override
     public void remove() {
@@ -7,14 +7,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.jena.query.Query;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFactory;
@@ -28,12 +35,13 @@ import org.apache.jena.rdf.model.StmtIterator;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ParsedQueryRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 
-public class LanguageFilteringRDFService implements RDFService {
+public class LanguageFilteringRDFService implements RDFService, ParsedQueryRDFService {
         
     private static final Log log = LogFactory.getLog(LanguageFilteringRDFService.class);
     private RDFService s;
@@ -107,40 +115,54 @@ public class LanguageFilteringRDFService implements RDFService {
         return new ByteArrayInputStream(out.toByteArray());
     }
     
+    /**
+     * Group the literal statements by subject and predicate. In each group,
+     * keep only the statements in the most preferred language.
+     */
     private Model filterModel(Model m) {
     	log.debug("filterModel");
-        List<Statement> retractions = new ArrayList<Statement>();
+        Map<List<RDFNode>, List<Statement>> groups = new HashMap<>();
         StmtIterator stmtIt = m.listStatements();
-        while (stmtIt.hasNext()) {
-            Statement stmt = stmtIt.nextStatement();
-            if (stmt.getObject().isLiteral()) {
-                List<Statement> candidatesForRemoval = m.listStatements(
-                        stmt.getSubject(), stmt.getPredicate(), (RDFNode) null).toList();
-                if (candidatesForRemoval.size() == 1) {
-                    continue;
-                }
-                candidatesForRemoval.sort(new StatementSortByLang());
-                log.debug("sorted statements: " + showSortedStatements(candidatesForRemoval));
-                Iterator<Statement> candIt = candidatesForRemoval.iterator();
-                String langRegister = null;
-                boolean chuckRemaining = false;
-                while(candIt.hasNext()) {
-                    Statement s = candIt.next();
-                    if (!s.getObject().isLiteral()) {
-                        continue;
-                    } else if (chuckRemaining) {
-                        retractions.add(s);
-                    } 
-                    String lang = s.getObject().asLiteral().getLanguage();
-                    if (langRegister == null) {
-                        langRegister = lang;
-                    } else if (!langRegister.equals(lang)) {
-                        chuckRemaining = true;
-                        retractions.add(s);
+        try {
+            while (stmtIt.hasNext()) {
+                Statement stmt = stmtIt.nextStatement();
+                if (stmt.getObject().isLiteral()) {
+                    List<RDFNode> key = Arrays.<RDFNode> asList(
+                            stmt.getSubject(), stmt.getPredicate());
+                    List<Statement> group = groups.get(key);
+                    if (group == null) {
+                        group = new ArrayList<Statement>();
+                        groups.put(key, group);
                     }
+                    group.add(stmt);
+                }
+            }
+        } finally {
+            stmtIt.close();
+        }
+
+        List<Statement> retractions = new ArrayList<Statement>();
+        for (List<Statement> candidatesForRemoval : groups.values()) {
+            if (candidatesForRemoval.size() == 1) {
+                continue;
+            }
+            candidatesForRemoval.sort(new StatementSortByLang());
+            log.debug("sorted statements: " + showSortedStatements(candidatesForRemoval));
+            Iterator<Statement> candIt = candidatesForRemoval.iterator();
+            String langRegister = null;
+            boolean chuckRemaining = false;
+            while (candIt.hasNext()) {
+                Statement s = candIt.next();
+                String lang = s.getObject().asLiteral().getLanguage();
+                if (chuckRemaining) {
+                    retractions.add(s);
+                } else if (langRegister == null) {
+                    langRegister = lang;
+                } else if (!langRegister.equals(lang)) {
+                    chuckRemaining = true;
+                    retractions.add(s);
                 }
             }
-            
         }
         m.remove(retractions);
         return m;
@@ -170,57 +192,8 @@ public class LanguageFilteringRDFService implements RDFService {
         ResultSet resultSet = ResultSetFactory.fromJSON(
                 s.sparqlSelectQuery(query, RDFService.ResultFormat.JSON));
         List<QuerySolution> solnList = getSolutionList(resultSet);
-        List<String> vars = resultSet.getResultVars();
-        for (String var : vars) {
-            for (int i = 0; i < solnList.size(); i++) {
-                QuerySolution s = solnList.get(i);
-                if (s == null) {
-                    continue;
-                }
-                RDFNode node = s.get(var);
-                if (node == null || !node.isLiteral()) {
-                    continue;
-                }
-                List<RowIndexedLiteral> candidatesForRemoval =
-                        new ArrayList<RowIndexedLiteral>();
-                candidatesForRemoval.add(new RowIndexedLiteral(node.asLiteral(), i));
-                for (int j = i + 1; j < solnList.size(); j++) {
-                    QuerySolution t = solnList.get(j);
-                    if (t == null) {
-                        continue;
-                    }
-                    if (matchesExceptForVar(s, t, var, vars)) {
-                        candidatesForRemoval.add(
-                                new RowIndexedLiteral(t.getLiteral(var), j));
-                    }
-                }
-                if (candidatesForRemoval.size() == 1) {
-                    continue;
-                }
-                candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
-                log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
-                Iterator<RowIndexedLiteral> candIt = candidatesForRemoval.iterator();
-                String langRegister = null;
-                boolean chuckRemaining = false;
-                while (candIt.hasNext()) {
-                    RowIndexedLiteral rlit = candIt.next();
-                    if (chuckRemaining) {
-                        solnList.set(rlit.getIndex(), null);
-                    } else if (langRegister == null) {
-                        langRegister = rlit.getLiteral().getLanguage();
-                    } else if (!langRegister.equals(rlit.getLiteral().getLanguage())) {
-                        chuckRemaining = true;
-                        solnList.set(rlit.getIndex(), null);
-                    }
-                }
-            }
-        }
-        List<QuerySolution> compactedList = new ArrayList<QuerySolution>();
-        for (QuerySolution soln : solnList) {
-            if (soln != null) {
-                compactedList.add(soln);
-            }
-        }
+        List<QuerySolution> compactedList = filterSolutions(solnList,
+                resultSet.getResultVars(), new PassedGroups());
         ResultSet filtered = new FilteredResultSet(compactedList, resultSet);
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
         switch (resultFormat) {
@@ -245,79 +218,181 @@ public class LanguageFilteringRDFService implements RDFService {
     @Override
     public void sparqlSelectQuery(String query, ResultSetConsumer consumer) throws RDFServiceException {
         log.debug("sparqlSelectQuery: " + query.replaceAll("\\s+", " "));
+        s.sparqlSelectQuery(query, filteringConsumer(consumer));
+    }
 
-        s.sparqlSelectQuery(query, new ResultSetConsumer.Chaining(consumer) {
+    /**
+     * Filter the results in the same way, but let the inner service accept the
+     * parsed query if it can.
+     */
+    @Override
+    public void sparqlSelectQuery(Query query, ResultSetConsumer consumer) throws RDFServiceException {
+        RDFServiceUtils.sparqlSelectQuery(query, s, filteringConsumer(consumer));
+    }
+
+    private ResultSetConsumer filteringConsumer(ResultSetConsumer consumer) {
+        return new ResultSetConsumer.Chaining(consumer) {
             List<String> vars;
             List<QuerySolution> solnList = new ArrayList<QuerySolution>();
+            PassedGroups passed = new PassedGroups();
 
+            /**
+             * Pass each solution along as soon as we know that it will
+             * survive the filter, unless an earlier solution is waiting: the
+             * order must be preserved.
+             */
             @Override
             protected void processQuerySolution(QuerySolution qs) {
-                solnList.add(qs);
+                if (solnList.isEmpty() && isInPreferredLanguage(qs, vars)) {
+                    passed.record(qs, vars);
+                    chainProcessQuerySolution(qs);
+                } else {
+                    solnList.add(qs);
+                }
             }
 
             @Override
             protected void startProcessing() {
                 vars = getResultVars();
+                chainStartProcessing();
             }
 
             @Override
             protected void endProcessing() {
-                chainStartProcessing();
+                for (QuerySolution soln : filterSolutions(solnList, vars, passed)) {
+                    chainProcessQuerySolution(soln);
+                }
+                chainEndProcessing();
+            }
+        };
+    }
 
-                for (String var : vars) {
-                    for (int i = 0; i < solnList.size(); i++) {
-                        QuerySolution s = solnList.get(i);
-                        if (s == null) {
-                            continue;
-                        }
-                        RDFNode node = s.get(var);
-                        if (node == null || !node.isLiteral()) {
-                            continue;
-                        }
-                        List<RowIndexedLiteral> candidatesForRemoval =
-                                new ArrayList<RowIndexedLiteral>();
-                        candidatesForRemoval.add(new RowIndexedLiteral(node.asLiteral(), i));
-                        for (int j = i + 1; j < solnList.size(); j++) {
-                            QuerySolution t = solnList.get(j);
-                            if (t == null) {
-                                continue;
-                            }
-                            if (matchesExceptForVar(s, t, var, vars)) {
-                                candidatesForRemoval.add(
-                                        new RowIndexedLiteral(t.getLiteral(var), j));
-                            }
-                        }
-                        if (candidatesForRemoval.size() == 1) {
-                            continue;
-                        }
-                        candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
-                        log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
-                        Iterator<RowIndexedLiteral> candIt = candidatesForRemoval.iterator();
-                        String langRegister = null;
-                        boolean chuckRemaining = false;
-                        while (candIt.hasNext()) {
-                            RowIndexedLiteral rlit = candIt.next();
-                            if (chuckRemaining) {
-                                solnList.set(rlit.getIndex(), null);
-                            } else if (langRegister == null) {
-                                langRegister = rlit.getLiteral().getLanguage();
-                            } else if (!langRegister.equals(rlit.getLiteral().getLanguage())) {
-                                chuckRemaining = true;
-                                solnList.set(rlit.getIndex(), null);
-                            }
-                        }
-                    }
+    /**
+     * Remove the solutions whose literals are not in the preferred language.
+     * 
+     * For each variable in turn, the solutions with a literal value for that
+     * variable are grouped by their values for the other variables. In each
+     * group, keep only the solutions with the most preferred language.
+     * Grouping is by hash, so the time is linear in the number of solutions.
+     * 
+     * Solutions that have already been passed along are not in the list, but
+     * they still count as members of their groups.
+     */
+    private List<QuerySolution> filterSolutions(List<QuerySolution> solnList,
+            List<String> vars, PassedGroups passed) {
+        QuerySolution[] solns = solnList.toArray(new QuerySolution[solnList.size()]);
+        for (String var : vars) {
+            Map<List<RDFNode>, List<RowIndexedLiteral>> groups = new LinkedHashMap<>();
+            for (int i = 0; i < solns.length; i++) {
+                QuerySolution s = solns[i];
+                if (s == null) {
+                    continue;
                 }
+                RDFNode node = s.get(var);
+                if (node == null || !node.isLiteral()) {
+                    continue;
+                }
+                List<RDFNode> key = otherValues(s, var, vars);
+                List<RowIndexedLiteral> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<RowIndexedLiteral>();
+                    groups.put(key, group);
+                }
+                group.add(new RowIndexedLiteral(node.asLiteral(), i));
+            }
 
-                for (QuerySolution soln : solnList) {
-                    if (soln != null) {
-                        chainProcessQuerySolution(soln);
+            for (Map.Entry<List<RDFNode>, List<RowIndexedLiteral>> entry : groups.entrySet()) {
+                List<RowIndexedLiteral> candidatesForRemoval = entry.getValue();
+                boolean groupWasPassed = passed.contains(var, entry.getKey());
+                if (candidatesForRemoval.size() == 1 && !groupWasPassed) {
+                    continue;
+                }
+                candidatesForRemoval.sort(new RowIndexedLiteralSortByLang());
+                log.debug("sorted RowIndexedLiterals: " + showSortedRILs(candidatesForRemoval));
+                Iterator<RowIndexedLiteral> candIt = candidatesForRemoval.iterator();
+                String langRegister = groupWasPassed ? langs.get(0) : null;
+                boolean chuckRemaining = false;
+                while (candIt.hasNext()) {
+                    RowIndexedLiteral rlit = candIt.next();
+                    if (chuckRemaining) {
+                        solns[rlit.getIndex()] = null;
+                    } else if (langRegister == null) {
+                        langRegister = rlit.getLiteral().getLanguage();
+                    } else if (!langRegister.equals(rlit.getLiteral().getLanguage())) {
+                        chuckRemaining = true;
+                        solns[rlit.getIndex()] = null;
                     }
                 }
+            }
+        }
 
-                chainEndProcessing();
+        List<QuerySolution> compactedList = new ArrayList<QuerySolution>();
+        for (QuerySolution soln : solns) {
+            if (soln != null) {
+                compactedList.add(soln);
+            }
+        }
+        return compactedList;
+    }
+
+    /**
+     * The values of all variables except this one. Unbound variables are
+     * represented by nulls.
+     */
+    private List<RDFNode> otherValues(QuerySolution soln, String varName,
+            List<String> vars) {
+        List<RDFNode> values = new ArrayList<RDFNode>(vars.size() - 1);
+        for (String var : vars) {
+            if (!var.equals(varName)) {
+                values.add(soln.get(var));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * A solution whose literals are all in the most preferred language will
+     * survive the filter, whatever else is in its groups.
+     */
+    private boolean isInPreferredLanguage(QuerySolution soln, List<String> vars) {
+        for (String var : vars) {
+            RDFNode node = soln.get(var);
+            if (node != null && node.isLiteral()) {
+                if (langs.isEmpty()
+                        || !langs.get(0).equals(node.asLiteral().getLanguage())) {
+                    return false;
+                }
             }
-        });
+        }
+        return true;
+    }
+
+    /**
+     * The groups that contain a solution which was passed along before the
+     * filter ran. Since that solution was in the most preferred language, the
+     * rest of the group must match it.
+     */
+    private class PassedGroups {
+        private final Map<String, Set<List<RDFNode>>> map = new HashMap<>();
+
+        void record(QuerySolution soln, List<String> vars) {
+            for (String var : vars) {
+                RDFNode node = soln.get(var);
+                if (node != null && node.isLiteral()) {
+                    Set<List<RDFNode>> keys = map.get(var);
+                    if (keys == null) {
+                        keys = new HashSet<List<RDFNode>>();
+                        map.put(var, keys);
+                    }
+                    keys.add(otherValues(soln, var, vars));
+                }
+            }
+        }
+
+        boolean contains(String var, List<RDFNode> key) {
+            Set<List<RDFNode>> keys = map.get(var);
+            return keys != null && keys.contains(key);
+        }
     }
 
 	private String showSortedRILs(List<RowIndexedLiteral> candidatesForRemoval) {
@@ -348,34 +423,6 @@ public class LanguageFilteringRDFService implements RDFService {
         
     }
     
-    private boolean matchesExceptForVar(QuerySolution a, QuerySolution b, 
-            String varName, List<String> varList) {
-        if (varName == null) {
-            throw new RuntimeException("expected non-null variable nane");
-        }
-        for (String var : varList) {
-            RDFNode nodea = a.get(var);
-            RDFNode nodeb = b.get(var);
-            if (var.equals(varName)) {
-                if (nodea == null || !nodea.isLiteral() || nodeb == null || !nodeb.isLiteral()) {
-                    return false;
-                }
-            } else {
-                if (nodea == null && nodeb == null) {
-                    continue;
-                } else if (nodea == null && nodeb != null) {
-                    return false;
-                } else if (nodeb == null && nodea != null) {
-                    return false;
-                }
-                if (!a.get(var).equals(b.get(var))) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-    
     private List<QuerySolution> getSolutionList(ResultSet resultSet) {
         List<QuerySolution> solnList = new ArrayList<QuerySolution>();
         while (resultSet.hasNext()) {
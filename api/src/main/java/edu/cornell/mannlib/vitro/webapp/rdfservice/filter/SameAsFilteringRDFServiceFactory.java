@@ -4,19 +4,17 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFactory;
@@ -25,10 +23,12 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelChangedListener;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
@@ -37,23 +37,37 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerialization
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceFactory;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.PipedResultStream;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 
+/**
+ * Provides RDFServices that show only one resource from each group of
+ * resources that are linked by owl:sameAs. A statement or a result row that
+ * mentions any other member of the group is left out.
+ *
+ * The groups are held in a SameAsIndex, which listens for changes, so a new
+ * sameAs statement is honored as soon as it is written.
+ */
 public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
 
     private final static Log log = LogFactory.getLog(
             SameAsFilteringRDFServiceFactory.class);
     private RDFServiceFactory f;
-    private Model sameAsModel;
+    private SameAsIndex sameAsIndex;
     
     public SameAsFilteringRDFServiceFactory(RDFServiceFactory rdfServiceFactory) {
         this.f = rdfServiceFactory;
+        this.sameAsIndex = new SameAsIndex();
+        RDFService rdfService = f.getRDFService();
         try {
-            InputStream in = f.getRDFService().sparqlConstructQuery("CONSTRUCT { ?s <" + OWL.sameAs.getURI() + "> ?o } WHERE { ?s <" + OWL.sameAs.getURI() + "> ?o } ", ModelSerializationFormat.N3);
-            sameAsModel = RDFServiceUtils.parseModel(in, ModelSerializationFormat.N3);
+            // Listen first, so no change is missed while loading.
+            f.registerListener(sameAsIndex);
+            sameAsIndex.load(rdfService);
         } catch (RDFServiceException e) {
             throw new RuntimeException(e);
+        } finally {
+            rdfService.close();
         }
     }
     
@@ -74,7 +88,7 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
     
     @Override
     public void unregisterListener(ChangeListener changeListener) throws RDFServiceException {
-        f.registerListener(changeListener);
+        f.unregisterListener(changeListener);
     }
     
     @Override
@@ -84,7 +98,7 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
     
     @Override
     public void unregisterJenaModelChangedListener(ModelChangedListener changeListener) throws RDFServiceException {
-        f.registerJenaModelChangedListener(changeListener);
+        f.unregisterJenaModelChangedListener(changeListener);
     }
     
     public class SameAsFilteringRDFService extends RDFServiceImpl implements RDFService {
@@ -101,69 +115,51 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
         public InputStream sparqlConstructQuery(String query, 
                 RDFService.ModelSerializationFormat resultFormat) 
                         throws RDFServiceException {
-            Model m = RDFServiceUtils.parseModel(
-                    s.sparqlConstructQuery(query, resultFormat), resultFormat);
-            Model filtered = ModelFactory.createDefaultModel();
-            StmtIterator stmtIt = m.listStatements();
-            while (stmtIt.hasNext()) {
-                Statement stmt = stmtIt.nextStatement();
-                if (!isRedundant(stmt)) {
-                    filtered.add(stmt);
-                }
-            }
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            filtered.write(out, RDFServiceUtils.getSerializationFormatString(
-                    resultFormat));
-            return new ByteArrayInputStream(out.toByteArray());
+            return filterModel(query, 
+                    s.sparqlConstructQuery(query, ModelSerializationFormat.NTRIPLE), 
+                    resultFormat);
         }
 
         @Override
         public void sparqlConstructQuery(String query, Model model)
                 throws RDFServiceException {
-            Model m = ModelFactory.createDefaultModel();
-            s.sparqlConstructQuery(query, m);
-
-            StmtIterator stmtIt = m.listStatements();
-            while (stmtIt.hasNext()) {
-                Statement stmt = stmtIt.nextStatement();
-                if (!isRedundant(stmt)) {
-                    model.add(stmt);
-                }
-            }
+            parseNonRedundant(s.sparqlConstructQuery(query, 
+                    ModelSerializationFormat.NTRIPLE), model);
         }
 
         @Override
-        public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat) 
+        public InputStream sparqlSelectQuery(String query, final ResultFormat resultFormat) 
                 throws RDFServiceException {
-            ResultSet rs = ResultSetFactory.load(
-                    s.sparqlSelectQuery(query, resultFormat), 
-                            RDFServiceUtils.getJenaResultSetFormat(resultFormat));            
-            List<QuerySolution> solutions = new ArrayList<QuerySolution>();
-            while (rs.hasNext()) {
-                QuerySolution solution = rs.nextSolution();
-                if (!isRedundant(solution)) {
-                    solutions.add(solution);
+            final InputStream in = s.sparqlSelectQuery(query, resultFormat);
+            return PipedResultStream.start(query, new PipedResultStream.Producer() {
+                @Override
+                public void writeTo(OutputStream out) throws Exception {
+                    try {
+                        ResultSet rs = ResultSetFactory.load(in, 
+                                RDFServiceUtils.getJenaResultSetFormat(resultFormat));
+                        ResultSet resultSet = new FilteredResultSet(
+                                new NonRedundantSolutions(rs), rs);
+                        switch (resultFormat) {
+                           case CSV:
+                              ResultSetFormatter.outputAsCSV(out, resultSet);
+                              break;
+                           case TEXT:
+                              ResultSetFormatter.out(out, resultSet);
+                              break;
+                           case JSON:
+                              ResultSetFormatter.outputAsJSON(out, resultSet);
+                              break;
+                           case XML:
+                              ResultSetFormatter.outputAsXML(out, resultSet);
+                              break;
+                           default: 
+                              throw new RDFServiceException("unrecognized result format");
+                        }
+                    } finally {
+                        in.close();
+                    }
                 }
-            }
-            ResultSet resultSet = new FilteredResultSet(solutions, rs);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
-            switch (resultFormat) {
-               case CSV:
-                  ResultSetFormatter.outputAsCSV(outputStream,resultSet);
-                  break;
-               case TEXT:
-                  ResultSetFormatter.out(outputStream,resultSet);
-                  break;
-               case JSON:
-                  ResultSetFormatter.outputAsJSON(outputStream, resultSet);
-                  break;
-               case XML:
-                  ResultSetFormatter.outputAsXML(outputStream, resultSet);
-                  break;
-               default: 
-                  throw new RDFServiceException("unrecognized result format");
-            }              
-            return new ByteArrayInputStream(outputStream.toByteArray());        
+            });
         }
 
         @Override
@@ -180,64 +176,125 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
             });
         }
 
-        private boolean isRedundant(Statement s) {
-            List<Resource> sameAsResources = getSameAsResources(s.getSubject());
-            if (sameAsResources.size() > 0 && !sameAsResources.get(0).equals(s.getSubject())) {
-                return true;
-            } 
-            if (s.getObject().isLiteral() || s.getObject().isAnon()) {
-                return false;
-            }
-            sameAsResources = getSameAsResources(s.getObject().asResource());
-            if (sameAsResources.size() > 0 && !sameAsResources.get(0).equals(s.getObject().asResource())) {
-                return true;
+        private boolean isRedundant(QuerySolution q) {
+            Iterator<String> varIt = q.varNames();
+            while(varIt.hasNext()) {
+                String varName = varIt.next();
+                RDFNode n = q.get(varName);
+                if (sameAsIndex.isRedundant(n)) {
+                    return true;
+                }
             }
             return false;
         }
-        
-        private List<Resource> getSameAsResources(Resource resource) {
-            List<Resource> sameAsResources = new ArrayList<Resource>();
-            if (resource.isAnon()) {
-                return sameAsResources;
-            }
-            String queryStr = "SELECT DISTINCT ?s WHERE { <" + resource.getURI() + "> <" + OWL.sameAs.getURI() + "> ?s } ORDER BY ?s";
-            try  {
-                Query query = QueryFactory.create(queryStr);
-                QueryExecution qe = QueryExecutionFactory.create(query, sameAsModel);
-                try {
-                    ResultSet rs = qe.execSelect();
-                    //ResultSet rs = JSONInput.fromJSON(s.sparqlSelectQuery(queryStr, ResultFormat.JSON));
-                    while (rs.hasNext()) {
-                        QuerySolution q = rs.next();
-                        Resource res = q.getResource("s");
-                        if (s != null) {
-                            log.info("adding same as " + res.getURI());
-                            sameAsResources.add(res);
+
+        /*
+         * N-Triples can be filtered and written a triple at a time. The other 
+         * formats are written from a model, which holds only the triples that 
+         * pass the filter.
+         */
+        private InputStream filterModel(String query, final InputStream in, 
+                final ModelSerializationFormat resultFormat) throws RDFServiceException {
+            if (resultFormat == ModelSerializationFormat.NTRIPLE) {
+                return PipedResultStream.start(query, new PipedResultStream.Producer() {
+                    @Override
+                    public void writeTo(OutputStream out) throws Exception {
+                        try {
+                            StreamRDF writer = StreamRDFLib.writer(out);
+                            writer.start();
+                            RDFDataMgr.parse(new NonRedundantTriples(writer), 
+                                    in, Lang.NTRIPLES);
+                            writer.finish();
+                        } finally {
+                            in.close();
                         }
                     }
-                } finally {
-                    qe.close();
+                });
+            }
+
+            Model filtered = ModelFactory.createDefaultModel();
+            parseNonRedundant(in, filtered);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            filtered.write(out, RDFServiceUtils.getSerializationFormatString(
+                    resultFormat));
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+
+        private void parseNonRedundant(InputStream in, Model model) 
+                throws RDFServiceException {
+            try {
+                RDFDataMgr.parse(new NonRedundantTriples(
+                        StreamRDFLib.graph(model.getGraph())), in, Lang.NTRIPLES);
+            } catch (RiotException e) {
+                throw new RDFServiceException(e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close the results", e);
                 }
-                return sameAsResources;
-            } catch (/*RDFService*/Exception e) {
-                throw new RuntimeException(e);
             }
         }
 
-        private boolean isRedundant(QuerySolution q) {
-            Iterator<String> varIt = q.varNames();
-            while(varIt.hasNext()) {
-                String varName = varIt.next();
-                RDFNode n = q.get(varName);
-                if (n.isResource()) {
-                    Resource r = n.asResource();
-                    List<Resource> sames = getSameAsResources(r);
-                    if (sames.size() > 0 && !sames.get(0).equals(r)) {
-                        return true;
+        /**
+         * Passes along the triples that don't mention a redundant resource.
+         */
+        private class NonRedundantTriples extends StreamRDFWrapper {
+            NonRedundantTriples(StreamRDF inner) {
+                super(inner);
+            }
+
+            @Override
+            public void start() {
+                // The inner stream is started and finished by its owner.
+            }
+
+            @Override
+            public void finish() {
+                // The inner stream is started and finished by its owner.
+            }
+
+            @Override
+            public void triple(Triple triple) {
+                if (!sameAsIndex.isRedundant(triple.getSubject()) 
+                        && !sameAsIndex.isRedundant(triple.getObject())) {
+                    super.triple(triple);
+                }
+            }
+        }
+
+        /**
+         * Reads the solutions from the inner ResultSet as they are needed, 
+         * skipping those that mention a redundant resource.
+         */
+        private class NonRedundantSolutions implements Iterator<QuerySolution> {
+            private final ResultSet rs;
+            private QuerySolution next;
+
+            NonRedundantSolutions(ResultSet rs) {
+                this.rs = rs;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && rs.hasNext()) {
+                    QuerySolution solution = rs.nextSolution();
+                    if (!isRedundant(solution)) {
+                        next = solution;
                     }
                 }
+                return next != null;
+            }
+
+            @Override
+            public QuerySolution next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                QuerySolution solution = next;
+                next = null;
+                return solution;
             }
-            return false;
         }
 
         @Override
@@ -250,20 +307,9 @@ public class SameAsFilteringRDFServiceFactory implements RDFServiceFactory {
         public InputStream sparqlDescribeQuery(String query,
                 ModelSerializationFormat resultFormat)
                 throws RDFServiceException {
-            Model m = RDFServiceUtils.parseModel(
-                    s.sparqlConstructQuery(query, resultFormat), resultFormat);
-            Model filtered = ModelFactory.createDefaultModel();
-            StmtIterator stmtIt = m.listStatements();
-            while (stmtIt.hasNext()) {
-                Statement stmt = stmtIt.nextStatement();
-                if (!isRedundant(stmt)) {
-                    filtered.add(stmt);
-                }
-            }
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            filtered.write(out, RDFServiceUtils.getSerializationFormatString(
-                    resultFormat));
-            return new ByteArrayInputStream(out.toByteArray()); 
+            return filterModel(query, 
+                    s.sparqlDescribeQuery(query, ModelSerializationFormat.NTRIPLE), 
+                    resultFormat);
         }
 
         @Override
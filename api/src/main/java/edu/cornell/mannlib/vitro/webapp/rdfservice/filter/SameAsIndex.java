@@ -0,0 +1,339 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.OWL;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+
+/**
+ * Groups the resources that are linked by owl:sameAs statements, and chooses
+ * one resource from each group to stand for the group: the one whose URI
+ * comes first.
+ *
+ * The links are treated as symmetric and transitive, whichever direction they
+ * are asserted in. A resource with no links stands for itself.
+ *
+ * The index is loaded from the triple store, and kept current by listening
+ * for changes. A statement may appear in several graphs; the link is kept
+ * until it has been removed from all of them.
+ *
+ * Finding the representative of a resource is a single lookup. Adding a link
+ * merges two groups; removing a link finds the groups again by following the
+ * remaining links, but only among the members of the group it belonged to.
+ */
+public class SameAsIndex implements ChangeListener {
+	private static final Log log = LogFactory.getLog(SameAsIndex.class);
+
+	private static final String DEFAULT_GRAPH = "";
+
+	/**
+	 * The representative of each resource that belongs to a group of two or
+	 * more. Read without locking.
+	 */
+	private final Map<String, String> representatives = new ConcurrentHashMap<>();
+
+	/** Guarded by this. The members of each group, keyed by representative. */
+	private final Map<String, Set<String>> groups = new HashMap<>();
+
+	/**
+	 * Guarded by this. For each subject and object of a sameAs statement, the
+	 * graphs in which the statement appears.
+	 */
+	private final Map<String, Map<String, Set<String>>> statements = new HashMap<>();
+
+	/** Guarded by this. Which resources are linked, in either direction. */
+	private final Map<String, Set<String>> neighbors = new HashMap<>();
+
+	/**
+	 * Load all of the sameAs statements from the store.
+	 */
+	public void load(RDFService rdfService) throws RDFServiceException {
+		String query = "SELECT ?s ?o ?g WHERE { GRAPH ?g { ?s <"
+				+ OWL.sameAs.getURI() + "> ?o } }";
+		rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+			@Override
+			protected void processQuerySolution(QuerySolution qs) {
+				RDFNode s = qs.get("s");
+				RDFNode o = qs.get("o");
+				RDFNode g = qs.get("g");
+				if (s != null && s.isURIResource() && o != null
+						&& o.isURIResource()) {
+					add(s.asResource().getURI(), o.asResource().getURI(),
+							(g == null) ? null : g.asResource().getURI());
+				}
+			}
+		});
+		log.debug("Loaded " + representatives.size()
+				+ " resources with sameAs links, in " + groups.size()
+				+ " groups.");
+	}
+
+	/**
+	 * The resource that stands for this one: either itself, or the member of
+	 * its group whose URI comes first.
+	 */
+	public String getRepresentative(String uri) {
+		String rep = representatives.get(uri);
+		return (rep == null) ? uri : rep;
+	}
+
+	/**
+	 * Is this a URI resource that is represented by some other resource?
+	 */
+	public boolean isRedundant(RDFNode node) {
+		if (node == null || !node.isURIResource()) {
+			return false;
+		}
+		String uri = node.asResource().getURI();
+		return !uri.equals(getRepresentative(uri));
+	}
+
+	/**
+	 * Is this a URI node that is represented by some other resource?
+	 */
+	public boolean isRedundant(Node node) {
+		if (node == null || !node.isURI()) {
+			return false;
+		}
+		String uri = node.getURI();
+		return !uri.equals(getRepresentative(uri));
+	}
+
+	/**
+	 * Is either the subject or the object represented by some other resource?
+	 */
+	public boolean isRedundant(Statement stmt) {
+		return isRedundant(stmt.getSubject()) || isRedundant(stmt.getObject());
+	}
+
+	// ----------------------------------------------------------------------
+	// Listening for changes
+	// ----------------------------------------------------------------------
+
+	@Override
+	public void notifyModelChange(ModelChange modelChange) {
+		try {
+			Model m = RDFServiceUtils.parseModel(
+					modelChange.getSerializedModel(),
+					modelChange.getSerializationFormat());
+			boolean adding = ModelChange.Operation.ADD.equals(modelChange
+					.getOperation());
+			StmtIterator stmts = m.listStatements(null, OWL.sameAs,
+					(RDFNode) null);
+			try {
+				while (stmts.hasNext()) {
+					Statement stmt = stmts.next();
+					if (!stmt.getObject().isURIResource()
+							|| !stmt.getSubject().isURIResource()) {
+						continue;
+					}
+					String s = stmt.getSubject().getURI();
+					String o = ((Resource) stmt.getObject()).getURI();
+					if (adding) {
+						add(s, o, modelChange.getGraphURI());
+					} else {
+						remove(s, o, modelChange.getGraphURI());
+					}
+				}
+			} finally {
+				stmts.close();
+			}
+		} catch (Exception e) {
+			log.error("Failed to update the sameAs index", e);
+		}
+	}
+
+	@Override
+	public void notifyEvent(String graphURI, Object event) {
+		// Nothing to do.
+	}
+
+	// ----------------------------------------------------------------------
+	// Maintaining the index
+	// ----------------------------------------------------------------------
+
+	synchronized void add(String s, String o, String graphUri) {
+		if (s.equals(o)) {
+			return;
+		}
+		Map<String, Set<String>> objects = statements.get(s);
+		if (objects == null) {
+			objects = new HashMap<>();
+			statements.put(s, objects);
+		}
+		Set<String> graphs = objects.get(o);
+		if (graphs == null) {
+			graphs = new HashSet<>();
+			objects.put(o, graphs);
+		}
+		graphs.add(graphKey(graphUri));
+
+		link(s, o);
+		link(o, s);
+		merge(s, o);
+	}
+
+	synchronized void remove(String s, String o, String graphUri) {
+		Map<String, Set<String>> objects = statements.get(s);
+		if (objects == null) {
+			return;
+		}
+		Set<String> graphs = objects.get(o);
+		if (graphs == null || !graphs.remove(graphKey(graphUri))
+				|| !graphs.isEmpty()) {
+			return;
+		}
+		objects.remove(o);
+		if (objects.isEmpty()) {
+			statements.remove(s);
+		}
+
+		if (!hasStatement(o, s)) {
+			unlink(s, o);
+			unlink(o, s);
+			split(getRepresentative(s));
+		}
+	}
+
+	private boolean hasStatement(String s, String o) {
+		Map<String, Set<String>> objects = statements.get(s);
+		return objects != null && objects.containsKey(o);
+	}
+
+	private void link(String from, String to) {
+		Set<String> set = neighbors.get(from);
+		if (set == null) {
+			set = new HashSet<>();
+			neighbors.put(from, set);
+		}
+		set.add(to);
+	}
+
+	private void unlink(String from, String to) {
+		Set<String> set = neighbors.get(from);
+		if (set != null) {
+			set.remove(to);
+			if (set.isEmpty()) {
+				neighbors.remove(from);
+			}
+		}
+	}
+
+	/**
+	 * Join the groups of these resources. The members of the smaller group
+	 * are moved to the larger.
+	 */
+	private void merge(String a, String b) {
+		String repA = getRepresentative(a);
+		String repB = getRepresentative(b);
+		if (repA.equals(repB)) {
+			return;
+		}
+		Set<String> groupA = groupOf(repA);
+		Set<String> groupB = groupOf(repB);
+		Set<String> larger = (groupA.size() >= groupB.size()) ? groupA : groupB;
+		Set<String> smaller = (larger == groupA) ? groupB : groupA;
+		String newRep = (repA.compareTo(repB) < 0) ? repA : repB;
+
+		groups.remove(repA);
+		groups.remove(repB);
+		larger.addAll(smaller);
+		groups.put(newRep, larger);
+		if (smaller.contains(newRep)) {
+			assign(larger, newRep);
+		} else {
+			assign(smaller, newRep);
+		}
+	}
+
+	/**
+	 * A link in this group was removed. Find the groups that remain by
+	 * following the links that remain.
+	 */
+	private void split(String rep) {
+		Set<String> members = groups.remove(rep);
+		if (members == null) {
+			return;
+		}
+
+		Set<String> unvisited = new HashSet<>(members);
+		while (!unvisited.isEmpty()) {
+			String start = unvisited.iterator().next();
+			Set<String> group = new HashSet<>();
+			Deque<String> toVisit = new ArrayDeque<>();
+			toVisit.add(start);
+			unvisited.remove(start);
+			while (!toVisit.isEmpty()) {
+				String uri = toVisit.poll();
+				group.add(uri);
+				Set<String> next = neighbors.get(uri);
+				if (next != null) {
+					for (String n : next) {
+						if (unvisited.remove(n)) {
+							toVisit.add(n);
+						}
+					}
+				}
+			}
+			if (group.size() > 1) {
+				String newRep = first(group);
+				groups.put(newRep, group);
+				assign(group, newRep);
+			} else {
+				representatives.remove(start);
+			}
+		}
+	}
+
+	/** The group of this resource, or a group of its own. */
+	private Set<String> groupOf(String uri) {
+		Set<String> group = groups.get(getRepresentative(uri));
+		return (group == null) ? new HashSet<>(Collections.singleton(uri))
+				: group;
+	}
+
+	private void assign(Set<String> members, String rep) {
+		for (String member : members) {
+			representatives.put(member, rep);
+		}
+	}
+
+	private String first(Set<String> uris) {
+		String first = null;
+		for (String uri : uris) {
+			if (first == null || uri.compareTo(first) < 0) {
+				first = uri;
+			}
+		}
+		return first;
+	}
+
+	private String graphKey(String graphUri) {
+		return (graphUri == null) ? DEFAULT_GRAPH : graphUri;
+	}
+}
@@ -0,0 +1,285 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+
+/**
+ * Remember the result of parsing a query string, so the same query need not be
+ * parsed again.
+ *
+ * The cache is meant to be keyed by a query template, with the values bound
+ * after the parse. A caller that binds values into the text before parsing
+ * will get a different key for each set of values, and few hits. PreparedQuery
+ * in the sparqlrunner package is the way to get it right.
+ *
+ * The cache holds a limited number of entries. When it is full, the entry that
+ * was least recently used is dropped. Very long query strings are not cached,
+ * since they are unlikely to be repeated.
+ *
+ * A query may be parsed with a list of syntaxes, and the first that succeeds is
+ * remembered, so a query that needs a less common syntax does not fail on the
+ * others each time. If none succeeds, nothing is remembered.
+ *
+ * A Query is not thread-safe, and may be modified by the code that executes
+ * it, so each caller receives its own copy of the cached Query. The copy is
+ * made from the parsed structure: Query.cloneQuery() would parse the query
+ * again.
+ */
+public class ParsedQueryCache {
+	private static final Log log = LogFactory.getLog(ParsedQueryCache.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 2000;
+	public static final int DEFAULT_MAX_QUERY_LENGTH = 10000;
+
+	private final int maxEntries;
+	private final int maxQueryLength;
+
+	/** In order of access. All access must be synchronized on the map. */
+	private final LinkedHashMap<Key, Parsed> map;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public ParsedQueryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_QUERY_LENGTH);
+	}
+
+	public ParsedQueryCache(int maxEntries, int maxQueryLength) {
+		this.maxEntries = maxEntries;
+		this.maxQueryLength = maxQueryLength;
+		this.map = new LinkedHashMap<Key, Parsed>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Parsed> eldest) {
+				if (size() > ParsedQueryCache.this.maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a private copy of the parsed query, parsing it if necessary.
+	 *
+	 * @throws QueryParseException
+	 *             if the query can't be parsed with this syntax.
+	 */
+	public Query parse(String queryString, Syntax syntax)
+			throws QueryParseException {
+		return parse(queryString, Collections.singletonList(syntax),
+				Collections.<Var, Node> emptyMap());
+	}
+
+	/**
+	 * Get a private copy of the parsed query, parsing it with the first of the
+	 * syntaxes that succeeds, if necessary.
+	 *
+	 * @throws QueryParseException
+	 *             if the query can't be parsed with any of the syntaxes. This
+	 *             is the failure from the last of them.
+	 */
+	public Query parse(String queryString, List<Syntax> syntaxes)
+			throws QueryParseException {
+		return parse(queryString, syntaxes, Collections.<Var, Node> emptyMap());
+	}
+
+	/**
+	 * Get a private copy of the parsed template, with these values substituted
+	 * for the variables. The template is cached, not the result.
+	 *
+	 * @throws QueryParseException
+	 *             if the query can't be parsed with any of the syntaxes. This
+	 *             is the failure from the last of them.
+	 */
+	public Query parse(String template, List<Syntax> syntaxes,
+			Map<Var, Node> bindings) throws QueryParseException {
+		if (template.length() > maxQueryLength) {
+			misses.incrementAndGet();
+			return Parsed.parse(template, syntaxes).copy(bindings);
+		}
+
+		Key key = new Key(template, syntaxes);
+		Parsed parsed;
+		synchronized (map) {
+			parsed = map.get(key);
+		}
+		if (parsed == null) {
+			misses.incrementAndGet();
+			parsed = Parsed.parse(template, syntaxes);
+			synchronized (map) {
+				map.put(key, parsed);
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+		return parsed.copy(bindings);
+	}
+
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+		}
+	}
+
+	public Statistics getStatistics() {
+		int size;
+		synchronized (map) {
+			size = map.size();
+		}
+		return new Statistics(size, maxEntries, hits.get(), misses.get(),
+				evictions.get());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class Key {
+		private final String queryString;
+		private final List<Syntax> syntaxes;
+		private final int hash;
+
+		Key(String queryString, List<Syntax> syntaxes) {
+			this.queryString = queryString;
+			this.syntaxes = syntaxes;
+			this.hash = Objects.hash(queryString, syntaxes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return this.hash == that.hash
+					&& Objects.equals(this.syntaxes, that.syntaxes)
+					&& Objects.equals(this.queryString, that.queryString);
+		}
+	}
+
+	/**
+	 * A parsed Query, and the syntax that parsed it. The Query is never handed
+	 * out, only copies of it.
+	 */
+	private static class Parsed {
+		static Parsed parse(String queryString, List<Syntax> syntaxes)
+				throws QueryParseException {
+			QueryParseException failure = null;
+			for (Syntax syntax : syntaxes) {
+				try {
+					return new Parsed(queryString, syntax, QueryFactory.create(
+							queryString, syntax));
+				} catch (QueryParseException e) {
+					failure = e;
+				}
+			}
+			if (failure == null) {
+				throw new IllegalArgumentException("No syntax was given.");
+			}
+			throw failure;
+		}
+
+		private final String queryString;
+		private final Syntax syntax;
+		private final Query query;
+
+		private Parsed(String queryString, Syntax syntax, Query query) {
+			this.queryString = queryString;
+			this.syntax = syntax;
+			this.query = query;
+		}
+
+		Query copy(Map<Var, Node> bindings) {
+			try {
+				// Copying may set the lazily computed result variables.
+				synchronized (query) {
+					return QueryTransformOps.transform(query, bindings);
+				}
+			} catch (RuntimeException e) {
+				if (!bindings.isEmpty()) {
+					throw e;
+				}
+				log.debug("Failed to copy parsed query; parsing it again.", e);
+				return QueryFactory.create(queryString, syntax);
+			}
+		}
+	}
+
+	/**
+	 * An immutable snapshot of the cache statistics.
+	 */
+	public static class Statistics {
+		private final int size;
+		private final int maxEntries;
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+
+		public Statistics(int size, int maxEntries, long hits, long misses,
+				long evictions) {
+			this.size = size;
+			this.maxEntries = maxEntries;
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		/** The percentage of requests that were satisfied from the cache. */
+		public int getHitRate() {
+			long total = hits + misses;
+			return (total == 0) ? 0 : (int) (hits * 100 / total);
+		}
+
+		@Override
+		public String toString() {
+			return "Statistics[size=" + size + ", maxEntries=" + maxEntries
+					+ ", hits=" + hits + ", misses=" + misses + ", evictions="
+					+ evictions + ", hitRate=" + getHitRate() + "%]";
+		}
+	}
+}
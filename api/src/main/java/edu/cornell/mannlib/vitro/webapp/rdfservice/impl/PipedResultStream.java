@@ -0,0 +1,272 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.utils.threads.DaemonThreadFactory;
+
+/**
+ * An InputStream whose contents are written by a Producer on another thread.
+ * The Producer writes as the results are read, so the results are never held
+ * in memory: only a few chunks are in transit at any time.
+ *
+ * The Producer runs to completion on a single thread, so it may hold a
+ * transaction or a connection for the life of the stream.
+ *
+ * If the Producer fails, the reader sees an IOException instead of the end of
+ * the stream, so a partial result is not mistaken for a complete one.
+ *
+ * The end of the stream is marked by a flag, not by a chunk in the queue, so
+ * it is always seen, even if the reader has stopped reading.
+ *
+ * A slow reader slows the Producer: it waits for room in the queue. If the
+ * reader closes the stream early, the Producer's next write fails, and the
+ * Producer can release its resources. If the reader reads nothing for a period
+ * of time, the Producer gives up, and the reader sees an IOException if it
+ * reads again. The period is short, no longer than a request might reasonably
+ * take, since the Producer may be holding a read transaction all the while.
+ */
+public class PipedResultStream extends InputStream {
+	private static final Log log = LogFactory.getLog(PipedResultStream.class);
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final int CHUNKS_IN_TRANSIT = 16;
+	private static final long IDLE_TIMEOUT_MILLIS = 30000;
+
+	/** How often the reader checks whether the Producer is done. */
+	private static final long POLL_MILLIS = 1000;
+
+	private static final ExecutorService executor = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("PipedResultStream"));
+
+	/**
+	 * Writes the contents of the stream.
+	 */
+	public interface Producer {
+		void writeTo(OutputStream out) throws Exception;
+	}
+
+	/**
+	 * Start the Producer on a background thread, and return the stream that it
+	 * will write to.
+	 *
+	 * @param description
+	 *            describes the contents of the stream, for log messages.
+	 */
+	public static InputStream start(String description, Producer producer) {
+		return start(description, producer, IDLE_TIMEOUT_MILLIS);
+	}
+
+	static InputStream start(final String description,
+			final Producer producer, long idleTimeoutMillis) {
+		final PipedResultStream stream = new PipedResultStream(
+				idleTimeoutMillis);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				stream.produce(description, producer);
+			}
+		});
+		return stream;
+	}
+
+	private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(
+			CHUNKS_IN_TRANSIT);
+
+	private final long idleTimeoutMillis;
+
+	private volatile boolean closedByReader;
+
+	/** Set after the last chunk is in the queue, and after any failure. */
+	private volatile boolean done;
+	private volatile Throwable failure;
+
+	private byte[] current = new byte[0];
+	private int position;
+	private boolean ended;
+
+	private PipedResultStream(long idleTimeoutMillis) {
+		// Use start()
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	// ----------------------------------------------------------------------
+	// The writing side
+	// ----------------------------------------------------------------------
+
+	private void produce(String description, Producer producer) {
+		ChunkingOutputStream out = new ChunkingOutputStream();
+		try {
+			producer.writeTo(out);
+			out.flush();
+		} catch (Throwable t) {
+			if (closedByReader) {
+				log.debug("Reader closed the stream for " + description);
+			} else {
+				log.warn("Failed to produce results for " + description, t);
+				failure = t;
+			}
+		} finally {
+			done = true;
+		}
+	}
+
+	/**
+	 * Wait for room in the queue, for as long as the reader keeps reading.
+	 */
+	private void send(byte[] chunk) throws IOException {
+		if (closedByReader) {
+			throw new IOException("The reader has closed the stream.");
+		}
+		try {
+			if (!chunks.offer(chunk, idleTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new IOException("The reader has read nothing for "
+						+ idleTimeoutMillis + " milliseconds.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Collects the bytes into chunks, and sends each chunk when it is full, or
+	 * when flushed.
+	 */
+	private class ChunkingOutputStream extends OutputStream {
+		private byte[] buffer = new byte[CHUNK_SIZE];
+		private int count;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length) {
+				flush();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length) {
+					flush();
+				}
+				int howMany = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, howMany);
+				count += howMany;
+				off += howMany;
+				len -= howMany;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (count > 0) {
+				byte[] chunk = (count == buffer.length) ? buffer : copyOf(
+						buffer, count);
+				send(chunk);
+				buffer = new byte[CHUNK_SIZE];
+				count = 0;
+			}
+		}
+
+		private byte[] copyOf(byte[] bytes, int length) {
+			byte[] copy = new byte[length];
+			System.arraycopy(bytes, 0, copy, 0, length);
+			return copy;
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// The reading side
+	// ----------------------------------------------------------------------
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return current[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int howMany = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, howMany);
+		position += howMany;
+		return howMany;
+	}
+
+	@Override
+	public int available() {
+		return current.length - position;
+	}
+
+	/**
+	 * Make sure that there are bytes in the current chunk, waiting for the
+	 * next chunk if necessary.
+	 *
+	 * The Producer is done only after its last chunk is in the queue, so if it
+	 * is done and the queue is empty, there are no more chunks.
+	 *
+	 * @return false if there are no more bytes.
+	 */
+	private boolean fill() throws IOException {
+		while (position >= current.length) {
+			if (ended) {
+				return false;
+			}
+			if (closedByReader) {
+				throw new IOException("Stream is closed.");
+			}
+			boolean producerDone = done;
+			byte[] chunk;
+			try {
+				chunk = producerDone ? chunks.poll() : chunks.poll(
+						POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			if (chunk != null) {
+				current = chunk;
+				position = 0;
+			} else if (producerDone) {
+				ended = true;
+				if (failure != null) {
+					throw new IOException("Failed to produce the results.",
+							failure);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Discard anything in transit. If the Producer is waiting to send a chunk,
+	 * it will be free to send it, and will fail on the next one.
+	 */
+	@Override
+	public void close() {
+		closedByReader = true;
+		chunks.clear();
+	}
+}
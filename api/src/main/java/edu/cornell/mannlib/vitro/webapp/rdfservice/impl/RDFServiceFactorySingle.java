@@ -6,11 +6,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 
+import org.apache.jena.query.Query;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelChangedListener;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ParsedQueryRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceFactory;
@@ -61,7 +63,7 @@ public class RDFServiceFactorySingle implements RDFServiceFactory {
         this.rdfService.unregisterJenaModelChangedListener(listener);
     }
     
-    public class UnclosableRDFService implements RDFService {
+    public class UnclosableRDFService implements RDFService, ParsedQueryRDFService {
         
         private RDFService s;
         
@@ -119,6 +121,11 @@ public class RDFServiceFactorySingle implements RDFServiceFactory {
             s.sparqlSelectQuery(query, consumer);
         }
 
+        @Override
+        public void sparqlSelectQuery(Query query, ResultSetConsumer consumer) throws RDFServiceException {
+            RDFServiceUtils.sparqlSelectQuery(query, s, consumer);
+        }
+
         @Override
         public boolean sparqlAskQuery(String query) throws RDFServiceException {
             return s.sparqlAskQuery(query);
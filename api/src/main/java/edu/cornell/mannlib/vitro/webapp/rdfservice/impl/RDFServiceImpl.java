@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -17,7 +18,6 @@ import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QueryParseException;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.Syntax;
@@ -46,6 +46,19 @@ public abstract class RDFServiceImpl implements RDFService {
 	private static final Log log = LogFactory.getLog(RDFServiceImpl.class);
 	protected static final String BNODE_ROOT_QUERY = 
 	        "SELECT DISTINCT ?s WHERE { ?s ?p ?o OPTIONAL { ?ss ?pp ?s } FILTER (!isBlank(?s) || !bound(?ss)) }";
+
+	/** Try each of these in turn, until one of them parses the query. */
+	private static final List<Syntax> QUERY_SYNTAXES = Collections
+			.unmodifiableList(Arrays.asList(Syntax.defaultQuerySyntax,
+					Syntax.syntaxSPARQL_11, Syntax.syntaxSPARQL_10,
+					Syntax.syntaxSPARQL, Syntax.syntaxARQ));
+
+	/** Parsed queries are shared by all RDFService instances. */
+	private static final ParsedQueryCache queryCache = new ParsedQueryCache();
+
+	public static ParsedQueryCache.Statistics getQueryCacheStatistics() {
+		return queryCache.getStatistics();
+	}
 	
 	protected String defaultWriteGraphURI;
 	protected List<ChangeListener> registeredListeners = new CopyOnWriteArrayList<ChangeListener>();
@@ -316,24 +329,17 @@ public abstract class RDFServiceImpl implements RDFService {
         return result;
     }
     
+    /**
+     * Parse the query, trying each syntax in turn. The parsed queries are
+     * cached, and each caller receives its own copy.
+     */
     protected Query createQuery(String queryString) throws RDFServiceException {
-        List<Syntax> syntaxes = Arrays.asList(
-                Syntax.defaultQuerySyntax, Syntax.syntaxSPARQL_11, 
-                Syntax.syntaxSPARQL_10, Syntax.syntaxSPARQL, Syntax.syntaxARQ);
-        Query q = null;
-        Iterator<Syntax> syntaxIt = syntaxes.iterator(); 
-        while (q == null) {
-            Syntax syntax = syntaxIt.next();
-            try {
-               q = QueryFactory.create(queryString, syntax);  
-            } catch (QueryParseException e) {
-               if (!syntaxIt.hasNext()) {
-					throw new RDFServiceException("Failed to parse query \""
-							+ queryString + "\"", e);
-               }
-            }
+        try {
+            return queryCache.parse(queryString, QUERY_SYNTAXES);
+        } catch (QueryParseException e) {
+            throw new RDFServiceException("Failed to parse query \""
+                    + queryString + "\"", e);
         }
-        return q;
     }
 
 	@Override
@@ -11,6 +11,7 @@ import javax.servlet.ServletContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.jena.query.Query;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.rdf.model.Model;
@@ -19,11 +20,13 @@ import org.apache.jena.sparql.resultset.ResultsFormat;
 
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ParsedQueryRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceFactory;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.logging.LoggingRDFServiceFactory;
 
 public class RDFServiceUtils {
@@ -131,6 +134,20 @@ public class RDFServiceUtils {
     			vreq.getSession().getServletContext(), which).getRDFService();
     }
     
+    /**
+     * Run a parsed SELECT query. If the service can't accept a parsed query,
+     * give it the text.
+     */
+    public static void sparqlSelectQuery(Query query, RDFService rdfService,
+            ResultSetConsumer consumer) throws RDFServiceException {
+        if (rdfService instanceof ParsedQueryRDFService) {
+            ((ParsedQueryRDFService) rdfService).sparqlSelectQuery(query,
+                    consumer);
+        } else {
+            rdfService.sparqlSelectQuery(query.serialize(), consumer);
+        }
+    }
+
     public static ResultSet sparqlSelectQuery(String query, RDFService rdfService) {
     	
     	ResultSet resultSet = null;
@@ -47,15 +47,17 @@ import edu.cornell.mannlib.vitro.webapp.dao.jena.RDFServiceDataset;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.SparqlGraph;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ModelChange;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ParsedQueryRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.PipedResultStream;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.utils.logging.ToString;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetQuadsIterator;
 import edu.cornell.mannlib.vitro.webapp.utils.sparql.ResultSetIterators.ResultSetTriplesIterator;
 
-public abstract class RDFServiceJena extends RDFServiceImpl implements RDFService {
+public abstract class RDFServiceJena extends RDFServiceImpl implements RDFService, ParsedQueryRDFService {
 
     private final static Log log = LogFactory.getLog(RDFServiceJena.class);
         
@@ -395,26 +397,22 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
         return model;
     }
     
-    private InputStream getRDFResultStream(String query, boolean construct, 
-            ModelSerializationFormat resultFormat) throws RDFServiceException {
-        DatasetWrapper dw = getDatasetWrapper();
-        try {
-            Dataset d = dw.getDataset();
-            Query q = createQuery(query);
-            QueryExecution qe = createQueryExecution(query, q, d);
-            ByteArrayOutputStream serializedModel = new ByteArrayOutputStream();
-            try {
-                // TODO pipe this
-                Model m = construct ? qe.execConstruct() : qe.execDescribe();
-                m.write(serializedModel, getSerializationFormatString(resultFormat));
-                InputStream result = new ByteArrayInputStream(serializedModel.toByteArray());
-                return result;
-            } finally {
-                qe.close();
+    private InputStream getRDFResultStream(String query, final boolean construct, 
+            final ModelSerializationFormat resultFormat) throws RDFServiceException {
+        return getResultStream(query, new ResultWriter() {
+            @Override
+            public void write(QueryExecution qe, OutputStream out) {
+                if (resultFormat == ModelSerializationFormat.NTRIPLE) {
+                    // N-Triples can be written a triple at a time.
+                    Iterator<Triple> triples = construct ? qe.execConstructTriples()
+                            : qe.execDescribeTriples();
+                    RDFDataMgr.writeTriples(out, triples);
+                } else {
+                    Model m = construct ? qe.execConstruct() : qe.execDescribe();
+                    m.write(out, getSerializationFormatString(resultFormat));
+                }
             }
-        } finally {
-            dw.close();
-        }
+        });
     }
 
     private void getRDFModel(String query, boolean construct, Model model) throws RDFServiceException {
@@ -453,38 +451,72 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
         return getRDFResultStream(query, DESCRIBE, resultFormat);
     }
 
-	/**
-	 * TODO Is there a way to accomplish this without buffering the entire result?
-	 */
     @Override
-    public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
+    public InputStream sparqlSelectQuery(String query, final ResultFormat resultFormat)
             throws RDFServiceException {
-        DatasetWrapper dw = getDatasetWrapper();
-        try {
-            Dataset d = dw.getDataset();
-            Query q = createQuery(query);
-            QueryExecution qe = createQueryExecution(query, q, d);
-            try {
+        return getResultStream(query, new ResultWriter() {
+            @Override
+            public void write(QueryExecution qe, OutputStream out) throws RDFServiceException {
                 ResultSet resultSet = qe.execSelect();
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(); 
                 switch (resultFormat) {
                    case CSV:
-                      ResultSetFormatter.outputAsCSV(outputStream,resultSet);
+                      ResultSetFormatter.outputAsCSV(out,resultSet);
                       break;
                    case TEXT:
-                      ResultSetFormatter.out(outputStream,resultSet);
+                      ResultSetFormatter.out(out,resultSet);
                       break;
                    case JSON:
-                      ResultSetFormatter.outputAsJSON(outputStream, resultSet);
+                      ResultSetFormatter.outputAsJSON(out, resultSet);
                       break;
                    case XML:
-                      ResultSetFormatter.outputAsXML(outputStream, resultSet);
+                      ResultSetFormatter.outputAsXML(out, resultSet);
                       break;
                    default: 
                       throw new RDFServiceException("unrecognized result format");
-                }              
-                InputStream result = new ByteArrayInputStream(outputStream.toByteArray());
-                return result;
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the query and write the results to a stream.
+     * 
+     * Usually, the query is run on another thread, which writes the results as
+     * the stream is read, so a large result need not fit in memory. The query
+     * is parsed before returning, so a bad query fails immediately.
+     * 
+     * If the subclass prefers not to stream, the results are written to a
+     * buffer before returning.
+     */
+    private InputStream getResultStream(final String queryString,
+            final ResultWriter writer) throws RDFServiceException {
+        final Query q = createQuery(queryString);
+        if (!isStreamingResults()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            writeResults(queryString, q, writer, buffer);
+            return new ByteArrayInputStream(buffer.toByteArray());
+        }
+        return PipedResultStream.start(queryString, new PipedResultStream.Producer() {
+            @Override
+            public void writeTo(OutputStream out) throws Exception {
+                beginStreamingRead();
+                try {
+                    writeResults(queryString, q, writer, out);
+                } finally {
+                    endStreamingRead();
+                }
+            }
+        });
+    }
+
+    private void writeResults(String queryString, Query q, ResultWriter writer,
+            OutputStream out) throws RDFServiceException {
+        DatasetWrapper dw = getDatasetWrapper();
+        try {
+            Dataset d = dw.getDataset();
+            QueryExecution qe = createQueryExecution(queryString, q, d);
+            try {
+                writer.write(qe, out);
             } finally {
                 qe.close();
             }
@@ -493,6 +525,31 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
         }
     }
 
+    private interface ResultWriter {
+        void write(QueryExecution qe, OutputStream out) throws RDFServiceException;
+    }
+
+    /**
+     * Should query results be streamed from another thread? Override this if
+     * the results are small enough to buffer, or if the data may change while
+     * the stream is being read, as with an in-memory Model.
+     */
+    protected boolean isStreamingResults() {
+        return true;
+    }
+
+    /**
+     * A streamed query runs on its own thread. Override these if that thread
+     * must begin a read transaction, and end it when the results are written.
+     */
+    protected void beginStreamingRead() {
+        // nothing
+    }
+
+    protected void endStreamingRead() {
+        // nothing
+    }
+
     @Override
     public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
             throws RDFServiceException {
@@ -511,6 +568,26 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
         }
     }
 
+    /**
+     * The query is already parsed, so execute it as it is.
+     */
+    @Override
+    public void sparqlSelectQuery(Query query, ResultSetConsumer consumer)
+            throws RDFServiceException {
+        DatasetWrapper dw = getDatasetWrapper();
+        try {
+            Dataset d = dw.getDataset();
+            QueryExecution qe = createQueryExecution(null, query, d);
+            try {
+                consumer.processResultSet(qe.execSelect());
+            } finally {
+                qe.close();
+            }
+        } finally {
+            dw.close();
+        }
+    }
+
      @Override
     public boolean sparqlAskQuery(String query) throws RDFServiceException {
         DatasetWrapper dw = getDatasetWrapper();
@@ -701,6 +778,11 @@ public abstract class RDFServiceJena extends RDFServiceImpl implements RDFServic
         // nothing
     }
     
+    /**
+     * @param queryString
+     *            the text of the query, or null if the query was passed to us
+     *            already parsed.
+     */
     protected QueryExecution createQueryExecution(String queryString, Query q, Dataset d) {
         return QueryExecutionFactory.create(q, d);
     }
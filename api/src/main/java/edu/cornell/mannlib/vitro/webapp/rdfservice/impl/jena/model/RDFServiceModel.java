@@ -60,6 +60,15 @@ public class RDFServiceModel extends RDFServiceJena implements RDFService {
       DatasetWrapper datasetWrapper = new DatasetWrapper(d);
       return datasetWrapper;
     }
+
+    /**
+     * An in-memory model is quick to read, and the caller may change it while
+     * a stream is open, so write the results before returning.
+     */
+    @Override
+    protected boolean isStreamingResults() {
+        return false;
+    }
     
     @Override
     public boolean changeSetUpdate(ChangeSet changeSet)
@@ -64,6 +64,16 @@ public class RDFServiceSDB extends RDFServiceJena implements RDFService {
                 new SDBConnection(conn)));
     }
     
+    /**
+     * A service that was created for a single connection must not use it from
+     * another thread, so it writes the results before returning. A service
+     * with a DataSource gets a connection of its own for each stream.
+     */
+    @Override
+    protected boolean isStreamingResults() {
+        return conn == null;
+    }
+
     @Override
     protected DatasetWrapper getDatasetWrapper() {
         try {
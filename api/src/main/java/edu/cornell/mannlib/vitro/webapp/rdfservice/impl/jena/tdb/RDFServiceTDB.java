@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
 import org.apache.jena.query.ReadWrite;
 import org.apache.jena.tdb.TDBFactory;
 
@@ -101,51 +102,45 @@ public class RDFServiceTDB extends RDFServiceJena {
 		}
 	}
 
+	/**
+	 * Streamed results are written on another thread, and the transaction is
+	 * held on that thread until the last result is written, the reader closes
+	 * the stream, or the reader stops reading for long enough that
+	 * PipedResultStream gives up.
+	 */
 	@Override
-	public InputStream sparqlConstructQuery(String query,
-			ModelSerializationFormat resultFormat) throws RDFServiceException {
+	protected void beginStreamingRead() {
 		dataset.begin(ReadWrite.READ);
-		try {
-			return super.sparqlConstructQuery(query, resultFormat);
-		} finally {
-			dataset.end();
-		}
 	}
 
 	@Override
-	public void sparqlConstructQuery(String query, Model model) throws RDFServiceException {
-		dataset.begin(ReadWrite.READ);
-		try {
-			super.sparqlConstructQuery(query, model);
-		} finally {
-			dataset.end();
-		}
+	protected void endStreamingRead() {
+		dataset.end();
 	}
 
 	@Override
-	public InputStream sparqlDescribeQuery(String query,
-			ModelSerializationFormat resultFormat) throws RDFServiceException {
+	public void sparqlConstructQuery(String query, Model model) throws RDFServiceException {
 		dataset.begin(ReadWrite.READ);
 		try {
-			return super.sparqlDescribeQuery(query, resultFormat);
+			super.sparqlConstructQuery(query, model);
 		} finally {
 			dataset.end();
 		}
 	}
 
 	@Override
-	public InputStream sparqlSelectQuery(String query, ResultFormat resultFormat)
+	public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
 			throws RDFServiceException {
 		dataset.begin(ReadWrite.READ);
 		try {
-			return super.sparqlSelectQuery(query, resultFormat);
+			super.sparqlSelectQuery(query, consumer);
 		} finally {
 			dataset.end();
 		}
 	}
 
 	@Override
-	public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
+	public void sparqlSelectQuery(Query query, ResultSetConsumer consumer)
 			throws RDFServiceException {
 		dataset.begin(ReadWrite.READ);
 		try {
@@ -6,14 +6,17 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 
+import org.apache.jena.query.Query;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelChangedListener;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeListener;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ParsedQueryRDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import org.apache.jena.rdf.model.RDFNode;
 
 /**
@@ -22,7 +25,7 @@ import org.apache.jena.rdf.model.RDFNode;
  * 
  * For the other methods, it just delegates to the inner RDFService.
  */
-public class LoggingRDFService implements RDFService {
+public class LoggingRDFService implements RDFService, ParsedQueryRDFService {
 	private final RDFService innerService;
 
 	LoggingRDFService(RDFService innerService) {
@@ -80,6 +83,14 @@ public class LoggingRDFService implements RDFService {
 		}
 	}
 
+	@Override
+	public void sparqlSelectQuery(Query query, ResultSetConsumer consumer)
+			throws RDFServiceException {
+		try (RDFServiceLogger l = new RDFServiceLogger(query)) {
+			RDFServiceUtils.sparqlSelectQuery(query, innerService, consumer);
+		}
+	}
+
 	@Override
 	public boolean sparqlAskQuery(String query) throws RDFServiceException {
 		try (RDFServiceLogger l = new RDFServiceLogger(query)) {
@@ -4,6 +4,7 @@ package edu.cornell.mannlib.vitro.webapp.rdfservice.impl.sparql;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -12,13 +13,16 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.AuthenticationException;
@@ -37,7 +41,10 @@ import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
+import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDFLib;
 
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
@@ -65,6 +72,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ChangeSetImpl;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.PipedResultStream;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceImpl;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
 import edu.cornell.mannlib.vitro.webapp.utils.http.HttpClientFactory;
@@ -85,6 +93,32 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	private static final int CHUNK_SIZE = 5000; // added/removed in a single
 	// SPARQL UPDATE
 
+	private static final String XML_RESULTS_TYPE = "application/sparql-results+xml";
+	private static final String JSON_RESULTS_TYPE = "application/sparql-results+json";
+
+	private static final Map<RDFService.ResultFormat, String> SELECT_CONTENT_TYPES = new EnumMap<>(
+			RDFService.ResultFormat.class);
+	static {
+		SELECT_CONTENT_TYPES.put(RDFService.ResultFormat.XML, XML_RESULTS_TYPE);
+		SELECT_CONTENT_TYPES.put(RDFService.ResultFormat.JSON, JSON_RESULTS_TYPE);
+		SELECT_CONTENT_TYPES.put(RDFService.ResultFormat.CSV, "text/csv");
+	}
+
+	private static final Map<ModelSerializationFormat, String> RDF_CONTENT_TYPES = new EnumMap<>(
+			ModelSerializationFormat.class);
+	static {
+		RDF_CONTENT_TYPES.put(ModelSerializationFormat.RDFXML, "application/rdf+xml");
+		RDF_CONTENT_TYPES.put(ModelSerializationFormat.N3, "text/turtle");
+		RDF_CONTENT_TYPES.put(ModelSerializationFormat.NTRIPLE, "application/n-triples");
+	}
+
+	/** If the endpoint can't give us the format we want, we can convert these. */
+	private static final String RDF_ACCEPT_FALLBACK = "text/turtle;q=0.9, "
+			+ "application/rdf+xml;q=0.8, application/n-triples;q=0.7";
+
+	// Longer queries are sent by POST
+	private static final int MAX_GET_QUERY_LENGTH = 2048;
+
 	protected HttpClient httpClient;
 
 	protected boolean rebuildGraphURICache = true;
@@ -212,23 +246,17 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	@Override
 	public InputStream sparqlConstructQuery(String queryStr,
 											RDFServiceImpl.ModelSerializationFormat resultFormat) throws RDFServiceException {
-
-		Model model = ModelFactory.createDefaultModel();
-		Query query = createQuery(queryStr);
-		QueryExecution qe = QueryExecutionFactory.sparqlService(readEndpointURI, query);
+		createQuery(queryStr);
 
 		try {
-			qe.execConstruct(model);
-		} catch (Exception e) {
+			return getRdfResultStream(queryStr, resultFormat);
+		} catch (RDFServiceException e) {
 			log.error("Error executing CONSTRUCT against remote endpoint: " + queryStr);
-		} finally {
-			qe.close();
+			ByteArrayOutputStream serializedModel = new ByteArrayOutputStream();
+			ModelFactory.createDefaultModel().write(serializedModel,
+					getSerializationFormatString(resultFormat));
+			return new ByteArrayInputStream(serializedModel.toByteArray());
 		}
-
-		ByteArrayOutputStream serializedModel = new ByteArrayOutputStream();
-		model.write(serializedModel,getSerializationFormatString(resultFormat));
-		InputStream result = new ByteArrayInputStream(serializedModel.toByteArray());
-		return result;
 	}
 
 	public void sparqlConstructQuery(String queryStr, Model model) throws RDFServiceException {
@@ -258,21 +286,51 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	@Override
 	public InputStream sparqlDescribeQuery(String queryStr,
 										   RDFServiceImpl.ModelSerializationFormat resultFormat) throws RDFServiceException {
+		createQuery(queryStr);
+		return getRdfResultStream(queryStr, resultFormat);
+	}
 
-		Model model = ModelFactory.createDefaultModel();
-		Query query = createQuery(queryStr);
-		QueryExecution qe = QueryExecutionFactory.sparqlService(readEndpointURI, query);
-
-		try {
-			qe.execDescribe(model);
-		} finally {
-			qe.close();
+	/**
+	 * Ask the endpoint for the RDF in the format we want. If it obliges, pass
+	 * the response straight through. Otherwise, convert the response as it is
+	 * read.
+	 */
+	private InputStream getRdfResultStream(String queryStr,
+			final RDFServiceImpl.ModelSerializationFormat resultFormat)
+			throws RDFServiceException {
+		String contentType = RDF_CONTENT_TYPES.get(resultFormat);
+		final RemoteResponse response = executeRemoteQuery(queryStr,
+				contentType + ", " + RDF_ACCEPT_FALLBACK);
+		if (response.hasContentType(contentType)
+				|| (resultFormat == ModelSerializationFormat.N3 && response
+						.hasContentType("text/n3"))) {
+			return passThrough(response);
 		}
 
-		ByteArrayOutputStream serializedModel = new ByteArrayOutputStream();
-		model.write(serializedModel,getSerializationFormatString(resultFormat));
-		InputStream result = new ByteArrayInputStream(serializedModel.toByteArray());
-		return result;
+		final Lang lang = RDFLanguages.contentTypeToLang(response
+				.getContentType());
+		if (lang == null) {
+			response.release();
+			throw new RDFServiceException("Unrecognized content type '"
+					+ response.getContentType() + "' from " + readEndpointURI);
+		}
+		log.debug("Converting " + lang + " to " + resultFormat);
+
+		return PipedResultStream.start(queryStr, new PipedResultStream.Producer() {
+			@Override
+			public void writeTo(OutputStream out) throws Exception {
+				try (InputStream in = response.getContent()) {
+					if (resultFormat == ModelSerializationFormat.NTRIPLE) {
+						// N-Triples can be written a triple at a time.
+						RDFDataMgr.parse(StreamRDFLib.writer(out), in, lang);
+					} else {
+						Model model = ModelFactory.createDefaultModel();
+						RDFDataMgr.read(model, in, lang);
+						model.write(out, getSerializationFormatString(resultFormat));
+					}
+				}
+			}
+		});
 	}
 
 	/**
@@ -286,51 +344,90 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 	 *
 	 */
 	@Override
-	public InputStream sparqlSelectQuery(String queryStr, RDFService.ResultFormat resultFormat) throws RDFServiceException {
-
-		//QueryEngineHTTP qh = new QueryEngineHTTP(readEndpointURI, queryStr);
-
-		try {
-			HttpGet meth = new HttpGet(new URIBuilder(readEndpointURI).addParameter("query", queryStr).build());
-			meth.addHeader("Accept", "application/sparql-results+xml");
-			HttpContext context = getContext(meth);
-			HttpResponse response = context != null ? httpClient.execute(meth, context) : httpClient.execute(meth);
-			try {
-				int statusCode = response.getStatusLine().getStatusCode();
-				if (statusCode > 399) {
-					log.error("response " + statusCode + " to query. \n");
-					log.debug("update string: \n" + queryStr);
-					throw new RDFServiceException("Unable to perform SPARQL SELECT");
-				}
+	public InputStream sparqlSelectQuery(String queryStr, final RDFService.ResultFormat resultFormat) throws RDFServiceException {
+		// Ask for the format we want. If the endpoint obliges, pass the response
+		// straight through. Otherwise, convert the response as it is read.
+		String contentType = SELECT_CONTENT_TYPES.get(resultFormat);
+		String accept = (contentType == null) ? XML_RESULTS_TYPE : contentType
+				+ ", " + XML_RESULTS_TYPE + ";q=0.9";
+		final RemoteResponse response = executeRemoteQuery(queryStr, accept);
+		if (contentType != null && response.hasContentType(contentType)) {
+			return passThrough(response);
+		}
 
-				try (InputStream in = response.getEntity().getContent()) {
-					ResultSet resultSet = ResultSetFactory.fromXML(in);
-					ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		// Some endpoints say "application/json" for JSON results.
+		final boolean isJson = response.getContentType().contains("json");
+		return PipedResultStream.start(queryStr, new PipedResultStream.Producer() {
+			@Override
+			public void writeTo(OutputStream out) throws Exception {
+				try (InputStream in = response.getContent()) {
+					ResultSet resultSet = isJson ? ResultSetFactory.fromJSON(in)
+							: ResultSetFactory.fromXML(in);
 					switch (resultFormat) {
 						case CSV:
-							ResultSetFormatter.outputAsCSV(outputStream, resultSet);
+							ResultSetFormatter.outputAsCSV(out, resultSet);
 							break;
 						case TEXT:
-							ResultSetFormatter.out(outputStream, resultSet);
+							ResultSetFormatter.out(out, resultSet);
 							break;
 						case JSON:
-							ResultSetFormatter.outputAsJSON(outputStream, resultSet);
+							ResultSetFormatter.outputAsJSON(out, resultSet);
 							break;
 						case XML:
-							ResultSetFormatter.outputAsXML(outputStream, resultSet);
+							ResultSetFormatter.outputAsXML(out, resultSet);
 							break;
 						default:
 							throw new RDFServiceException("unrecognized result format");
 					}
-					InputStream result = new ByteArrayInputStream(
-							outputStream.toByteArray());
-					return result;
 				}
-			} finally {
+			}
+		});
+	}
+
+	/**
+	 * Send the query to the read endpoint, and check the status of the
+	 * response. The caller must read or release the response.
+	 *
+	 * Long queries are POSTed, since a URL may be limited in length.
+	 */
+	private RemoteResponse executeRemoteQuery(String queryStr, String accept)
+			throws RDFServiceException {
+		try {
+			HttpRequestBase meth;
+			if (queryStr.length() > MAX_GET_QUERY_LENGTH) {
+				HttpPost post = new HttpPost(readEndpointURI);
+				post.setEntity(new UrlEncodedFormEntity(Arrays.asList(
+						new BasicNameValuePair("query", queryStr)), "UTF-8"));
+				meth = post;
+			} else {
+				meth = new HttpGet(new URIBuilder(readEndpointURI).addParameter("query", queryStr).build());
+			}
+			meth.addHeader("Accept", accept);
+			HttpContext context = getContext(meth);
+			HttpResponse response = context != null ? httpClient.execute(meth, context) : httpClient.execute(meth);
+
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode > 399) {
 				EntityUtils.consume(response.getEntity());
+				log.error("response " + statusCode + " to query. \n");
+				log.debug("query string: \n" + queryStr);
+				throw new RDFServiceException("Unable to perform SPARQL query");
 			}
-		} catch (IOException | URISyntaxException ioe) {
-			throw new RuntimeException(ioe);
+			return new RemoteResponse(meth, response);
+		} catch (IOException | URISyntaxException e) {
+			throw new RDFServiceException("Failed to query " + readEndpointURI,
+					e);
+		}
+	}
+
+	private InputStream passThrough(RemoteResponse response)
+			throws RDFServiceException {
+		try {
+			return response.getContent();
+		} catch (IOException e) {
+			response.release();
+			throw new RDFServiceException("Failed to read the response from "
+					+ readEndpointURI, e);
 		}
 	}
 
@@ -914,6 +1011,73 @@ public class RDFServiceSparql extends RDFServiceImpl implements RDFService {
 		return false;
 	}
 
+	/**
+	 * The response to a query. The content may be passed to the caller.
+	 *
+	 * If the caller closes the content before reading it all, the request is
+	 * aborted, rather than reading the rest of a large response only to
+	 * discard it.
+	 */
+	private static class RemoteResponse {
+		private final HttpRequestBase request;
+		private final HttpResponse response;
+
+		RemoteResponse(HttpRequestBase request, HttpResponse response) {
+			this.request = request;
+			this.response = response;
+		}
+
+		/** The MIME type of the response, without parameters. */
+		String getContentType() {
+			Header header = response.getEntity().getContentType();
+			if (header == null) {
+				return "";
+			}
+			String value = header.getValue();
+			int semicolon = value.indexOf(';');
+			if (semicolon >= 0) {
+				value = value.substring(0, semicolon);
+			}
+			return value.trim().toLowerCase();
+		}
+
+		boolean hasContentType(String contentType) {
+			return getContentType().equals(contentType);
+		}
+
+		InputStream getContent() throws IOException {
+			return new FilterInputStream(response.getEntity().getContent()) {
+				private boolean eof;
+
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					eof |= (b == -1);
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int howMany = super.read(b, off, len);
+					eof |= (howMany == -1);
+					return howMany;
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (!eof) {
+						request.abort();
+					}
+					super.close();
+				}
+			};
+		}
+
+		void release() {
+			request.abort();
+		}
+	}
+
 	protected HttpContext getContext(HttpRequestBase request) {
 		UsernamePasswordCredentials credentials = getCredentials();
 		if (credentials != null) {
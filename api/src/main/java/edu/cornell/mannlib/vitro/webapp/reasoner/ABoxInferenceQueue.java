@@ -0,0 +1,453 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.IDLE;
+import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.WorkLevel.WORKING;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+
+/**
+ * Holds the URIs of individuals whose inferences must be recomputed, and
+ * recomputes them on a background thread, so the thread that made an edit
+ * doesn't wait for the reasoner.
+ *
+ * A URI that is already waiting is not added again. A URI that is added while
+ * it is being recomputed will be recomputed again afterward.
+ *
+ * If a journal file is provided, each URI is written to it when it is queued,
+ * and the file is emptied whenever the queue is empty. URIs that are in the
+ * journal at startup are queued again, so an edit is not lost if the
+ * application stops before its inferences are made. The journal is not emptied
+ * after a stop is requested, since the batch in progress may have been cut
+ * short.
+ *
+ * The recomputer reports the URIs that it could not recompute. They are put
+ * back at the head of the queue and tried again. If the recomputer throws an
+ * exception, the whole batch is tried again. A URI that fails too many times
+ * is dropped.
+ *
+ * The recomputer is told when a burst of work begins, and when the queue has
+ * been emptied, so it can do any preparation once per burst instead of once
+ * per batch.
+ *
+ * A thread that needs to see the inferences from its own edits may wait for
+ * the queue to catch up with them.
+ */
+public class ABoxInferenceQueue {
+	private static final Log log = LogFactory.getLog(ABoxInferenceQueue.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	/** How many times may a URI fail before we give up on it? */
+	static final int MAX_ATTEMPTS = 3;
+
+	/** Recomputes the inferences for a batch of individuals. */
+	public interface Recomputer {
+		/** Called before the first batch, when the queue was empty. */
+		void startBurst();
+
+		/**
+		 * @return the URIs that could not be recomputed. May be empty, but
+		 *         not null.
+		 */
+		Collection<String> recompute(Queue<String> individualURIs);
+
+		/** Called when the queue is empty again, or is stopping. */
+		void endBurst();
+	}
+
+	private final Recomputer recomputer;
+	private final int batchSize;
+	private final File journalFile;
+
+	/**
+	 * Guarded by this. The sequence number of each waiting URI, in order of
+	 * arrival.
+	 */
+	private final LinkedHashMap<String, Long> pending = new LinkedHashMap<>();
+
+	/** Guarded by this. The last sequence number assigned. */
+	private long lastSequence;
+
+	/**
+	 * Guarded by this. The lowest sequence number in the batch being
+	 * recomputed, or Long.MAX_VALUE if no batch is in progress.
+	 */
+	private long lowestInProgress = Long.MAX_VALUE;
+
+	/**
+	 * Guarded by this. The sequence number of each URI in the batch being
+	 * recomputed, in case the batch must be put back.
+	 */
+	private final LinkedHashMap<String, Long> inProgress = new LinkedHashMap<>();
+
+	/** Guarded by this. How many times has each URI failed? */
+	private final Map<String, Integer> failures = new HashMap<>();
+
+	/** Guarded by this. Open while there is anything in the journal. */
+	private Writer journal;
+
+	private volatile boolean stopRequested;
+	private final VitroBackgroundThread thread;
+
+	/**
+	 * @param journalFile
+	 *            If null, the queue is not saved across restarts.
+	 */
+	public ABoxInferenceQueue(Recomputer recomputer, int batchSize,
+			File journalFile) {
+		this.recomputer = recomputer;
+		this.batchSize = batchSize;
+		this.journalFile = journalFile;
+
+		recoverFromJournal();
+
+		this.thread = new VitroBackgroundThread(new Worker(),
+				"ABoxInferenceQueue");
+		this.thread.setWorkLevel(IDLE);
+		this.thread.start();
+	}
+
+	/**
+	 * Add these URIs to the queue. Don't wait for them to be recomputed.
+	 */
+	public synchronized void enqueue(Collection<String> individualURIs) {
+		boolean added = false;
+		for (String uri : individualURIs) {
+			if (!pending.containsKey(uri)) {
+				pending.put(uri, ++lastSequence);
+				writeToJournal(uri);
+				added = true;
+			}
+		}
+		if (added) {
+			flushJournal();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Is there anything waiting, or being recomputed?
+	 */
+	public synchronized boolean hasPendingWork() {
+		return !pending.isEmpty() || lowestInProgress != Long.MAX_VALUE;
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Wait until every URI that was queued before this call has been
+	 * recomputed.
+	 *
+	 * @return true if the work was completed, false if the time ran out, the
+	 *         queue was stopped, or the thread was interrupted.
+	 */
+	public synchronized boolean waitForInferences(long timeoutMillis) {
+		long target = lastSequence;
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (lowestUnfinished() <= target) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0 || stopRequested) {
+				return false;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The URIs that are still waiting are kept in the journal, to be
+	 * recomputed after a restart. So are the URIs in the batch that is in
+	 * progress.
+	 */
+	public void stop() {
+		stopRequested = true;
+		synchronized (this) {
+			notifyAll();
+		}
+		thread.interrupt();
+	}
+
+	/** Must be called while synchronized. */
+	private long lowestUnfinished() {
+		long lowest = lowestInProgress;
+		if (!pending.isEmpty()) {
+			lowest = Math.min(lowest, pending.values().iterator().next());
+		}
+		return lowest;
+	}
+
+	/**
+	 * Wait for URIs to arrive, and take a batch of them. Return null if we
+	 * should stop.
+	 */
+	private synchronized Queue<String> takeBatch() {
+		while (pending.isEmpty() && !stopRequested) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				if (stopRequested) {
+					return null;
+				}
+			}
+		}
+		if (stopRequested) {
+			return null;
+		}
+
+		Queue<String> batch = new IndividualURIQueue<String>();
+		Iterator<Map.Entry<String, Long>> entries = pending.entrySet()
+				.iterator();
+		while (entries.hasNext() && batch.size() < batchSize) {
+			Map.Entry<String, Long> entry = entries.next();
+			lowestInProgress = Math.min(lowestInProgress, entry.getValue());
+			inProgress.put(entry.getKey(), entry.getValue());
+			batch.add(entry.getKey());
+			entries.remove();
+		}
+		return batch;
+	}
+
+	/**
+	 * Put the URIs that failed back at the head of the queue. If the batch was
+	 * stopped before it could finish, put all of it back.
+	 *
+	 * @param failed
+	 *            If null, the whole batch failed.
+	 */
+	private synchronized void batchFinished(Collection<String> failed) {
+		if (stopRequested) {
+			requeue(inProgress);
+		} else {
+			Set<String> failedUris = new HashSet<>(
+					(failed == null) ? inProgress.keySet() : failed);
+			requeueFailures(failedUris);
+			for (String uri : inProgress.keySet()) {
+				if (!failedUris.contains(uri)) {
+					failures.remove(uri);
+				}
+			}
+		}
+		inProgress.clear();
+		lowestInProgress = Long.MAX_VALUE;
+
+		if (pending.isEmpty() && !stopRequested) {
+			truncateJournal();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Is there nothing waiting? Then the burst is over.
+	 */
+	private synchronized boolean isDrained() {
+		return pending.isEmpty();
+	}
+
+	/** Must be called while synchronized. */
+	private void requeueFailures(Set<String> failedUris) {
+		LinkedHashMap<String, Long> retries = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : inProgress.entrySet()) {
+			String uri = entry.getKey();
+			if (!failedUris.contains(uri)) {
+				continue;
+			}
+			Integer count = failures.get(uri);
+			int attempts = (count == null) ? 1 : count + 1;
+			if (attempts < MAX_ATTEMPTS) {
+				failures.put(uri, attempts);
+				retries.put(uri, entry.getValue());
+			} else {
+				failures.remove(uri);
+				log.error("Giving up on inferences for <" + uri + "> after "
+						+ attempts + " attempts.");
+			}
+		}
+		if (!retries.isEmpty()) {
+			log.warn("Will try again to recompute inferences for "
+					+ retries.size() + " individuals.");
+			requeue(retries);
+		}
+	}
+
+	/**
+	 * Put these URIs ahead of the ones that are waiting. They keep their
+	 * sequence numbers, which are lower. Must be called while synchronized.
+	 */
+	private void requeue(Map<String, Long> uris) {
+		LinkedHashMap<String, Long> merged = new LinkedHashMap<>(uris);
+		for (Map.Entry<String, Long> entry : pending.entrySet()) {
+			if (!merged.containsKey(entry.getKey())) {
+				merged.put(entry.getKey(), entry.getValue());
+			}
+		}
+		pending.clear();
+		pending.putAll(merged);
+	}
+
+	private class Worker implements Runnable {
+		private boolean inBurst;
+
+		@Override
+		public void run() {
+			try {
+				Queue<String> batch;
+				while (null != (batch = takeBatch())) {
+					thread.setWorkLevel(WORKING);
+					startBurst();
+					recompute(batch);
+					if (isDrained()) {
+						endBurst();
+					}
+					thread.setWorkLevel(IDLE);
+				}
+			} finally {
+				endBurst();
+			}
+			log.debug("Stopped with " + getPendingCount()
+					+ " individuals waiting.");
+		}
+
+		private void recompute(Queue<String> batch) {
+			int size = batch.size();
+			long start = System.currentTimeMillis();
+			Collection<String> failed = null;
+			try {
+				failed = recomputer.recompute(batch);
+			} catch (Exception e) {
+				log.error("Failed to recompute inferences for " + size
+						+ " individuals", e);
+			} finally {
+				batchFinished(failed);
+			}
+			log.debug((System.currentTimeMillis() - start)
+					+ " ms to recompute " + size + " individuals");
+		}
+
+		private void startBurst() {
+			if (!inBurst) {
+				inBurst = true;
+				try {
+					recomputer.startBurst();
+				} catch (Exception e) {
+					log.error("Failed to start a burst of recomputing", e);
+				}
+			}
+		}
+
+		private void endBurst() {
+			if (inBurst) {
+				inBurst = false;
+				try {
+					recomputer.endBurst();
+				} catch (Exception e) {
+					log.error("Failed to end a burst of recomputing", e);
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// The journal
+	// ----------------------------------------------------------------------
+
+	private synchronized void recoverFromJournal() {
+		if (journalFile == null || !journalFile.isFile()) {
+			return;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+			String line;
+			while (null != (line = reader.readLine())) {
+				String uri = line.trim();
+				if (!uri.isEmpty() && !pending.containsKey(uri)) {
+					pending.put(uri, ++lastSequence);
+				}
+			}
+		} catch (IOException e) {
+			log.error("Failed to read the queued individuals from '"
+					+ journalFile + "'", e);
+		}
+		if (!pending.isEmpty()) {
+			log.info("Recomputing inferences for " + pending.size()
+					+ " individuals that were queued before the restart.");
+		}
+	}
+
+	/** Must be called while synchronized. */
+	private void writeToJournal(String uri) {
+		if (journalFile == null) {
+			return;
+		}
+		try {
+			if (journal == null) {
+				journal = new OutputStreamWriter(new FileOutputStream(
+						journalFile, true), StandardCharsets.UTF_8);
+			}
+			journal.write(uri);
+			journal.write('\n');
+		} catch (IOException e) {
+			log.error("Failed to write to the journal at '" + journalFile
+					+ "'", e);
+		}
+	}
+
+	/** Must be called while synchronized. */
+	private void flushJournal() {
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.flush();
+		} catch (IOException e) {
+			log.error("Failed to write to the journal at '" + journalFile
+					+ "'", e);
+		}
+	}
+
+	/** Must be called while synchronized. */
+	private void truncateJournal() {
+		if (journalFile == null) {
+			return;
+		}
+		try {
+			if (journal != null) {
+				journal.close();
+				journal = null;
+			}
+			new FileOutputStream(journalFile).close();
+		} catch (IOException e) {
+			log.error("Failed to empty the journal at '" + journalFile + "'",
+					e);
+		}
+	}
+}
@@ -4,6 +4,7 @@ package edu.cornell.mannlib.vitro.webapp.reasoner;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -14,6 +15,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -24,8 +30,6 @@ import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
-import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.NodeIterator;
@@ -47,6 +51,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.ChangeSet;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 public class ABoxRecomputer {
 
@@ -59,11 +64,24 @@ public class ABoxRecomputer {
     private RDFService rdfService;
     private SimpleReasoner simpleReasoner;
     private Object lock1 = new Object();
+    // The reasoner plugins were not written to be called from several threads
+    private final Object pluginLock = new Object();
     private volatile boolean recomputing = false;
-    private boolean stopRequested = false;
+    private volatile boolean stopRequested = false;
 
     private final int BATCH_SIZE = 500;
     private final int REPORTING_INTERVAL = 1000;
+    // How many individuals to name in the VALUES clause of a single query
+    private final int FETCH_SIZE = 100;
+    // How many individual URIs to find with a single query
+    private final int INDIVIDUAL_PAGE_SIZE = 50000;
+    // How many URIs each worker of a full recompute holds in memory
+    private final int SPILL_THRESHOLD = 50000;
+
+    // Settings for a full recompute
+    private volatile int threadCount = 1;
+    private volatile long throttleMillis = 0;
+    private volatile File checkpointFile = null;
 
     /**
      * @param tboxModel - input.  This model contains both asserted and inferred TBox axioms
@@ -91,10 +109,47 @@ public class ABoxRecomputer {
         return recomputing;
     }
 
+    /**
+     * Configure a full recompute.
+     * 
+     * @param threadCount - the individuals are divided among this many 
+     *  worker threads.
+     * @param throttleMillis - each worker pauses this long after writing 
+     *  a batch of inferences, to leave some capacity for other work.
+     * @param checkpointFile - if not null, the progress of each worker is 
+     *  recorded here, so an interrupted recompute can be resumed.
+     */
+    public void setRecomputeSettings(int threadCount, long throttleMillis, 
+            File checkpointFile) {
+        this.threadCount = Math.max(1, threadCount);
+        this.throttleMillis = Math.max(0, throttleMillis);
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Was a full recompute interrupted before it finished?
+     */
+    public boolean isRecomputeIncomplete() {
+        File file = checkpointFile;
+        return file != null && file.isFile();
+    }
+
     /**
      * Recompute all individuals
      */
     public void recompute() {
+        recompute(false);
+    }
+
+    /**
+     * Recompute all individuals, skipping any that were completed by an 
+     * interrupted recompute.
+     */
+    public void resumeRecompute() {
+        recompute(true);
+    }
+
+    private void recompute(boolean resume) {
         synchronized (lock1) {
             if (recomputing) {
                 return;
@@ -110,13 +165,7 @@ public class ABoxRecomputer {
                 searchIndexer.rebuildIndex();
             }
             log.info("Recomputing ABox inferences.");
-            log.info("Finding individuals in ABox.");
-            Queue<String>individualURIs = this.getAllIndividualURIs();
-            log.info("Recomputing inferences for " + individualURIs.size() + " individuals");
-            // Create a type cache for this execution and pass it to the recompute function
-            // Ensures that caches are only valid for the length of one recompute
-            recomputeIndividuals(individualURIs, new TypeCaches());
-            log.info("Finished recomputing inferences");
+            recomputePartitions(resume);
         } finally {
             if(searchIndexer != null) {
                 searchIndexer.unpause();
@@ -145,21 +194,161 @@ public class ABoxRecomputer {
         }
     }
 
+    /**
+     * Recompute inferences for these individuals, without pausing the search 
+     * indexer. The caller may pause it around a series of calls.
+     * 
+     * @return the URIs of the individuals whose inferences could not be 
+     *  computed or written.
+     */
+    public Set<String> recomputeWithoutPausing(Queue<String> individualURIs) {
+        return recomputeIndividuals(individualURIs);
+    }
+
+    /*
+     * Divide the individuals into disjoint partitions by the hash of the URI, 
+     * and recompute each partition on its own worker thread, with its own 
+     * type caches. Inferences for an individual depend only on the assertions 
+     * and the TBox, so the result doesn't depend on how the work is divided.
+     * 
+     * The workers start as soon as the first individuals are found, while 
+     * this thread continues to find the rest.
+     * 
+     * Inferences that the plugins make about other individuals are held 
+     * until all of the workers are done. Otherwise, a worker might write one, 
+     * only to have it replaced when its subject is recomputed.
+     */
+    private void recomputePartitions(boolean resume) {
+        int partitionCount = threadCount;
+        RecomputeCheckpoint checkpoint = RecomputeCheckpoint.load(
+                checkpointFile, partitionCount);
+        if (!resume) {
+            checkpoint.clear();
+        }
+        File spillDirectory = (checkpointFile == null) ? null 
+                : checkpointFile.getAbsoluteFile().getParentFile();
+
+        RecomputeProgress progress = new RecomputeProgress();
+        Model deferredInferences = ModelFactory.createDefaultModel();
+        final List<Partition> workers = new ArrayList<Partition>();
+        for (int i = 0; i < partitionCount; i++) {
+            workers.add(new Partition(i, checkpoint, 
+                    new SpillingURIQueue(SPILL_THRESHOLD, spillDirectory), progress,
+                    deferredInferences));
+        }
+
+        boolean complete = false;
+        ExecutorService pool = Executors.newFixedThreadPool(partitionCount,
+                new VitroBackgroundThread.Factory("ABoxRecomputer"));
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (Partition partition : workers) {
+                futures.add(pool.submit(partition));
+            }
+
+            log.info("Finding individuals in ABox.");
+            final int[] found = new int[1];
+            boolean foundAll = false;
+            try {
+                forEachIndividualURI(new IndividualURIConsumer() {
+                    @Override
+                    public boolean consume(String uri) {
+                        Partition partition = workers.get(
+                                Math.floorMod(uri.hashCode(), workers.size()));
+                        if (partition.offer(uri)) {
+                            found[0]++;
+                        }
+                        return !stopRequested && !partition.isFailed();
+                    }
+                });
+                foundAll = true;
+            } catch (RuntimeException e) {
+                log.error("Failed to find the individuals in ABox; recomputing " 
+                        + "the " + found[0] + " that were found.", e);
+            } finally {
+                for (Partition partition : workers) {
+                    partition.individuals.finish();
+                }
+            }
+            progress.setTotal(found[0]);
+            if (resume) {
+                log.info("Resuming the recompute: " + found[0] + " individuals remain");
+            } else {
+                log.info("Recomputing inferences for " + found[0] + " individuals");
+            }
+
+            boolean workersSucceeded = waitForWorkers(futures);
+            writeAdditionalInferences(deferredInferences);
+            complete = foundAll && workersSucceeded && !stopRequested;
+            for (Partition partition : workers) {
+                complete = complete && !partition.isFailed();
+            }
+        } finally {
+            pool.shutdown();
+            for (Partition partition : workers) {
+                partition.individuals.close();
+            }
+        }
+
+        if (!complete) {
+            log.info("Recompute halted after " + progress.done.get() + " of " 
+                    + progress.total + " individuals. It will resume on restart.");
+        } else {
+            checkpoint.clear();
+            log.info("Finished recomputing inferences");
+        }
+    }
+
+    /**
+     * @return false if any of the workers failed.
+     */
+    private boolean waitForWorkers(List<Future<?>> futures) {
+        boolean succeeded = true;
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Recompute worker failed", e.getCause());
+                    succeeded = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the recompute workers.");
+            stopRequested = true;
+            Thread.currentThread().interrupt();
+        }
+        return succeeded;
+    }
+
     /*
      * Recompute the ABox inference graph for the specified collection of
      * individual URIs
      */
-    private void recomputeIndividuals(Queue<String> individuals) {
-        recomputeIndividuals(individuals, new TypeCaches());
+    private Set<String> recomputeIndividuals(Queue<String> individuals) {
+        return recomputeIndividuals(individuals, new TypeCaches());
     }
     
     /*
      * Recompute the ABox inference graph for the specified collection of
      * individual URIs
      */
-    protected void recomputeIndividuals(Queue<String> individuals, TypeCaches caches) {
+    protected Set<String> recomputeIndividuals(Queue<String> individuals, TypeCaches caches) {
+        return recomputeIndividuals(individuals, caches, null);
+    }
+
+    /*
+     * If this is part of a full recompute, tell the partition as each batch 
+     * is written, or fails.
+     * 
+     * Returns the URIs of the individuals whose inferences could not be 
+     * computed or written.
+     */
+    private Set<String> recomputeIndividuals(Queue<String> individuals, 
+            TypeCaches caches, Partition partition) {
+        Set<String> failed = new HashSet<String>();
         if (individuals == null) {
-            return;
+            return failed;
         }
         long start = System.currentTimeMillis();
         int size = individuals.size();
@@ -168,33 +357,61 @@ public class ABoxRecomputer {
         Model additionalInferences = ModelFactory.createDefaultModel();
         List<String> individualsInBatch = new ArrayList<String>();
         while (!individuals.isEmpty()) {
-            String individualURI = individuals.poll();
-            try {
-                additionalInferences.add(recomputeIndividual(
-                        individualURI, rebuildModel, caches, individuals));
-                numInds++;
-                individualsInBatch.add(individualURI);
-                boolean batchFilled = (numInds % BATCH_SIZE) == 0;
-                boolean reportingInterval = (numInds % REPORTING_INTERVAL) == 0;
-                if (batchFilled || individuals.isEmpty()) {
-                    log.debug(rebuildModel.size() + " total inferences");
-                    updateInferenceModel(rebuildModel, individualsInBatch);
-                    rebuildModel.removeAll();
-                    individualsInBatch.clear();
-                }
-                if (reportingInterval) {
-                    log.info("Still recomputing inferences (" 
-                            + numInds + "/" + size + " individuals)");
-                    log.info((System.currentTimeMillis() - start) / numInds + " ms per individual");
+            List<String> batch = new ArrayList<String>();
+            while (batch.size() < BATCH_SIZE && !individuals.isEmpty()) {
+                batch.add(individuals.poll());
+            }
+            BatchData batchData = new BatchData(batch);
+            for (String individualURI : batch) {
+                try {
+                    additionalInferences.add(recomputeIndividual(
+                            individualURI, rebuildModel, caches, individuals, batchData));
+                    numInds++;
+                    individualsInBatch.add(individualURI);
+                    if ((numInds % REPORTING_INTERVAL) == 0 && partition == null) {
+                        log.info("Still recomputing inferences (" 
+                                + numInds + "/" + size + " individuals)");
+                        log.info((System.currentTimeMillis() - start) / numInds + " ms per individual");
+                    }
+                    if (stopRequested) {
+                        log.info("a stopRequested signal was received during recomputeIndividuals. Halting Processing.");
+                        return failed;
+                    }
+                } catch (Exception e) {
+                    log.error("Error recomputing inferences for individual <" + individualURI + ">", e);
+                    failed.add(individualURI);
+                    if (partition != null) {
+                        partition.batchFailed();
+                    }
                 }
-                if (stopRequested) {
-                    log.info("a stopRequested signal was received during recomputeIndividuals. Halting Processing.");
-                    return;
+            }
+            try {
+                log.debug(rebuildModel.size() + " total inferences");
+                updateInferenceModel(rebuildModel, individualsInBatch);
+                if (partition != null) {
+                    partition.batchWritten(individualsInBatch);
                 }
             } catch (Exception e) {
-                log.error("Error recomputing inferences for individual <" + individualURI + ">", e);
+                log.error("Error writing inferences for " + individualsInBatch.size() 
+                        + " individuals", e);
+                failed.addAll(individualsInBatch);
+                if (partition != null) {
+                    partition.batchFailed();
+                }
+            } finally {
+                rebuildModel.removeAll();
+                individualsInBatch.clear();
             }
         }
+        if (partition != null) {
+            partition.deferInferences(additionalInferences);
+        } else {
+            writeAdditionalInferences(additionalInferences);
+        }
+        return failed;
+    }
+
+    private void writeAdditionalInferences(Model additionalInferences) {
         if(additionalInferences.size() > 0) {
             log.debug("Writing additional inferences generated by reasoner plugins.");
             ChangeSet change = rdfService.manufactureChangeSet();
@@ -212,19 +429,18 @@ public class ABoxRecomputer {
     private static final boolean SKIP_PLUGINS = !RUN_PLUGINS;
 
     private Model recomputeIndividual(String individualURI, 
-            Model rebuildModel, TypeCaches caches, Collection<String> individualQueue) 
-                    throws RDFServiceException {
+            Model rebuildModel, TypeCaches caches, Collection<String> individualQueue,
+            BatchData batchData) throws RDFServiceException {
         long start = System.currentTimeMillis();
-        Model assertions = getAssertions(individualURI);
+        Model assertions = batchData.getAssertions(individualURI);
         log.debug((System.currentTimeMillis() - start) + " ms to get assertions.");
         long prevRebuildSize = (simpleReasoner.getSameAsEnabled()) ? rebuildModel.size() : 0;
         if (simpleReasoner.getSameAsEnabled()) {
-            Set<String> sameAsInds = getSameAsIndividuals(individualURI);
+            Set<String> sameAsInds = batchData.getSameAsIndividuals(individualURI);
             for (String sameAsInd : sameAsInds) {
                 // sameAs for plugins is handled by the SimpleReasoner
-                Model sameAsIndAssertions = getAssertions(sameAsInd);
                 rebuildModel.add(
-                        rewriteInferences(getAssertions(sameAsInd), individualURI));
+                        rewriteInferences(batchData.getAssertions(sameAsInd), individualURI));
                 Resource indRes = ResourceFactory.createResource(individualURI);
                 Resource sameAsIndRes = ResourceFactory.createResource(sameAsInd); 
                 if(!assertions.contains(indRes, OWL.sameAs, sameAsIndRes)) {
@@ -239,7 +455,8 @@ public class ABoxRecomputer {
             }
         }
         Model additionalInferences = recomputeIndividual(
-                individualURI, null, assertions, rebuildModel, caches, RUN_PLUGINS);
+                individualURI, null, assertions, rebuildModel, caches, RUN_PLUGINS,
+                batchData);
         return additionalInferences;
     }
 
@@ -251,8 +468,8 @@ public class ABoxRecomputer {
      *         individuals
      */
     private Model recomputeIndividual(String individualURI, String aliasURI, 
-            Model assertions, Model rebuildModel, TypeCaches caches, boolean runPlugins)
-                    throws RDFServiceException {
+            Model assertions, Model rebuildModel, TypeCaches caches, boolean runPlugins,
+            BatchData batchData) throws RDFServiceException {
 
         Model additionalInferences = ModelFactory.createDefaultModel();
         Resource individual = ResourceFactory.createResource(individualURI);
@@ -272,7 +489,7 @@ public class ABoxRecomputer {
         log.trace((System.currentTimeMillis() - start) + " to infer " + mst.size() + " mostSpecificTypes");
 
         start = System.currentTimeMillis();
-        Model inferredInvs = getInferredInverseStatements(individualURI);
+        Model inferredInvs = batchData.getInferredInverseStatements(individualURI);
         inferredInvs.remove(assertions);
         rebuildModel.add(rewriteInferences(inferredInvs, aliasURI));
         log.trace((System.currentTimeMillis() - start) + " to infer " + inferredInvs.size() + " inverses");
@@ -280,11 +497,13 @@ public class ABoxRecomputer {
         List<ReasonerPlugin> pluginList = simpleReasoner.getPluginList();
         if (runPlugins && pluginList.size() > 0) {
             Model tmpModel = ModelFactory.createDefaultModel();
-            StmtIterator sit = assertions.listStatements();
-            while (sit.hasNext()) {
-                Statement s = sit.nextStatement();
-                for (ReasonerPlugin plugin : pluginList) {
-                    plugin.addedABoxStatement(s, aboxModel, tmpModel, tboxModel);
+            synchronized (pluginLock) {
+                StmtIterator sit = assertions.listStatements();
+                while (sit.hasNext()) {
+                    Statement s = sit.nextStatement();
+                    for (ReasonerPlugin plugin : pluginList) {
+                        plugin.addedABoxStatement(s, aboxModel, tmpModel, tboxModel);
+                    }
                 }
             }
             StmtIterator tmpIt = tmpModel.listStatements();
@@ -415,6 +634,100 @@ public class ABoxRecomputer {
         return model;
     }
 
+    /*
+     * The assertions about each of these individuals, in one query.
+     */
+    private Model getAssertions(Collection<String> individualURIs) throws RDFServiceException {
+        String queryStr = "CONSTRUCT { \n" +
+                "    ?s ?p ?value \n" +
+                "} WHERE { \n" +
+                "    " + valuesClause("?s", individualURIs) + " \n" +
+                "    GRAPH ?g { \n" +
+                "        ?s ?p ?value \n" +
+                "    } \n" +
+                "    FILTER (?g != <" + ModelNames.ABOX_INFERENCES + ">)\n" +
+                "} \n";
+
+        Model model = ModelFactory.createDefaultModel();
+        rdfService.sparqlConstructQuery(queryStr, model);
+        return model;
+    }
+
+    /*
+     * The inverse statements for each of these individuals, in one query.
+     */
+    private Model getInferredInverseStatements(Collection<String> individualURIs) 
+            throws RDFServiceException {
+        String queryStr = "CONSTRUCT { \n" +
+                "    ?s ?inv ?value \n" +
+                "} WHERE { \n" +
+                "    " + valuesClause("?s", individualURIs) + " \n" +
+                "    GRAPH ?gr { \n" +
+                "        ?value ?prop ?s \n" +
+                "    } \n" +
+                "   FILTER (isURI(?value)) \n" +
+                "   FILTER (?gr != <" + ModelNames.ABOX_INFERENCES + ">) \n" +
+                "    { ?prop <" + OWL.inverseOf.getURI() + "> ?inv } \n" +
+                "     UNION \n" +
+                "    { ?inv <" + OWL.inverseOf.getURI() + "> ?prop } \n" +
+                "} \n";
+
+        Model model = ModelFactory.createDefaultModel();
+        rdfService.sparqlConstructQuery(queryStr, model);
+        return model;
+    }
+
+    /*
+     * Which of these individuals appear in an asserted sameAs statement?
+     */
+    private Set<String> getIndividualsWithSameAs(Collection<String> individualURIs) 
+            throws RDFServiceException {
+        String queryStr = "SELECT DISTINCT ?s \n" +
+                "WHERE { \n" +
+                "    " + valuesClause("?s", individualURIs) + " \n" +
+                "    GRAPH ?g { \n" +
+                "        { ?s <" + OWL.sameAs + "> ?object } \n" +
+                "         UNION \n" +
+                "        { ?object <" + OWL.sameAs + "> ?s } \n" +
+                "    } \n" +
+                "    FILTER (?g != <" + ModelNames.ABOX_INFERENCES + ">)\n" +
+                "} \n";
+
+        final Set<String> found = new HashSet<String>();
+        rdfService.sparqlSelectQuery(queryStr, new ResultSetConsumer() {
+            @Override
+            protected void processQuerySolution(QuerySolution qs) {
+                Resource s = qs.getResource("s");
+                if (s != null && s.isURIResource()) {
+                    found.add(s.getURI());
+                }
+            }
+        });
+        return found;
+    }
+
+    private String valuesClause(String variable, Collection<String> uris) {
+        StringBuilder builder = new StringBuilder("VALUES ").append(variable).append(" {");
+        for (String uri : uris) {
+            builder.append(" <").append(uri).append(">");
+        }
+        return builder.append(" }").toString();
+    }
+
+    /*
+     * Split a model that holds statements about several individuals.
+     */
+    private Map<String, Model> splitBySubject(Model model, Collection<String> individualURIs) {
+        Map<String, Model> map = new HashMap<String, Model>();
+        for (String uri : individualURIs) {
+            Model m = ModelFactory.createDefaultModel();
+            m.add(model.listStatements(
+                    ResourceFactory.createResource(uri), null, (RDFNode) null));
+            map.put(uri, m);
+        }
+        return map;
+    }
+
     private Model rewriteInferences(Model inferences, String aliasURI) {
         if (aliasURI == null) {
             return inferences;
@@ -433,63 +746,87 @@ public class ABoxRecomputer {
      * Get the URIs for all individuals in the system
      */
     protected Queue<String> getAllIndividualURIs() {
-        Queue<String> individualURIs = new IndividualURIQueue<String>();
-        List<String> classList = new ArrayList<String>();
-        tboxModel.enterCriticalSection(Lock.READ);
-        try {
-            StmtIterator classIt = tboxModel.listStatements(
-                    (Resource) null, RDF.type, OWL.Class);
-            while(classIt.hasNext()) {
-                Statement stmt = classIt.nextStatement();
-                if(stmt.getSubject().isURIResource() 
-                        && stmt.getSubject().getURI() != null 
-                        && !stmt.getSubject().getURI().isEmpty()) {
-                    classList.add(stmt.getSubject().getURI());
-                }
+        final Queue<String> individualURIs = new IndividualURIQueue<String>();
+        forEachIndividualURI(new IndividualURIConsumer() {
+            @Override
+            public boolean consume(String uri) {
+                individualURIs.add(uri);
+                return true;
             }
-        } finally {
-            tboxModel.leaveCriticalSection();
-        }
-        for (String classURI : classList) {
-            String queryString = "SELECT ?s WHERE { ?s a <" + classURI + "> } ";
-            getIndividualURIs(queryString, individualURIs);
-        }
+        });
         return individualURIs;
     }
 
-    protected void getIndividualURIs(String queryString, Queue<String> individuals) {
-        int batchSize = 50000;
-        int offset = 0;
-        boolean done = false;
-        while (!done) {
-            String queryStr = queryString + " LIMIT " + batchSize + " OFFSET " + offset;
-            if(log.isDebugEnabled()) {
+    /**
+     * Receives the URIs of individuals, one at a time.
+     */
+    protected interface IndividualURIConsumer {
+        /**
+         * @return false if no more URIs are wanted.
+         */
+        boolean consume(String uri);
+    }
+
+    /*
+     * Find each individual that has a type which is an OWL class, and pass its 
+     * URI to the consumer. Each URI is passed once, in order.
+     * 
+     * The individuals are found by a single query, a page at a time. Each 
+     * page starts after the last URI of the previous page, so the store can 
+     * find the start of the page from its index, rather than counting past 
+     * all of the earlier results as it must with OFFSET.
+     */
+    protected void forEachIndividualURI(final IndividualURIConsumer consumer) {
+        final String[] lastUri = new String[1];
+        final int[] count = new int[1];
+        final boolean[] wanted = { true };
+        while (wanted[0]) {
+            String queryStr = "SELECT DISTINCT ?s \n" +
+                    "WHERE { \n" +
+                    "    ?s a ?type . \n" +
+                    "    ?type a <" + OWL.Class.getURI() + "> . \n" +
+                    "    FILTER (isURI(?s) && isURI(?type)) \n" +
+                    ((lastUri[0] == null) ? "" 
+                            : "    FILTER (STR(?s) > \"" + escapeLiteral(lastUri[0]) + "\") \n") +
+                    "} \n" +
+                    "ORDER BY STR(?s) \n" +
+                    "LIMIT " + INDIVIDUAL_PAGE_SIZE;
+            if (log.isDebugEnabled()) {
                 log.debug(queryStr);
             }
-            ResultSet results = null;
+
+            final String pageStart = lastUri[0];
+            count[0] = 0;
             try {
-                InputStream in = rdfService.sparqlSelectQuery(queryStr, RDFService.ResultFormat.JSON);
-                results = ResultSetFactory.fromJSON(in);
+                rdfService.sparqlSelectQuery(queryStr, new ResultSetConsumer() {
+                    @Override
+                    protected void processQuerySolution(QuerySolution qs) {
+                        Resource s = qs.getResource("s");
+                        if (s == null || !wanted[0]) {
+                            return;
+                        }
+                        count[0]++;
+                        lastUri[0] = s.getURI();
+                        wanted[0] = consumer.consume(s.getURI());
+                    }
+                });
             } catch (RDFServiceException e) {
                 throw new RuntimeException(e);
             }
-            if (!results.hasNext()) {
-                done = true;
-            }
-            while (results.hasNext()) {
-                QuerySolution solution = results.next();
-                Resource resource = solution.getResource("s");
 
-                if ((resource != null) && !resource.isAnon()) {
-                    individuals.add(resource.getURI());
-                }					
+            if (count[0] < INDIVIDUAL_PAGE_SIZE) {
+                break;
             }
-            if(log.isDebugEnabled()) {
-                log.debug(individuals.size() + " in set");
+            if (lastUri[0] == null || lastUri[0].equals(pageStart)) {
+                log.warn("Individuals were not returned in order; stopping at <" 
+                        + lastUri[0] + ">");
+                break;
             }
-            offset += batchSize;
         }
+    }
 
+    private static String escapeLiteral(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
     }
 
     protected void addInferenceStatementsFor(String individualUri, Model addTo) throws RDFServiceException {
@@ -507,14 +844,39 @@ public class ABoxRecomputer {
         rdfService.sparqlConstructQuery(builder.toString(), addTo);
     }
 
+    protected void addInferenceStatementsFor(Collection<String> individualUris, Model addTo) 
+            throws RDFServiceException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("CONSTRUCT\n")
+                .append("{\n").append("   ?s ?p ?o .\n")
+                .append("}\n")
+                .append("WHERE\n")
+                .append("{\n")
+                .append("   ").append(valuesClause("?s", individualUris)).append("\n")
+                .append("   GRAPH <").append(ModelNames.ABOX_INFERENCES).append(">\n")
+                .append("   {\n").append("       ?s ?p ?o .\n")
+                .append("   }\n")
+                .append("}\n");
+
+        rdfService.sparqlConstructQuery(builder.toString(), addTo);
+    }
+
     /*
      * reconcile a set of inferences into the application inference model
      */
     protected void updateInferenceModel(Model rebuildModel, 
             Collection<String> individuals) throws RDFServiceException {
         Model existing = ModelFactory.createDefaultModel();
+        List<String> chunk = new ArrayList<String>();
         for (String individualURI : individuals) {
-            addInferenceStatementsFor(individualURI, existing);
+            chunk.add(individualURI);
+            if (chunk.size() >= FETCH_SIZE) {
+                addInferenceStatementsFor(chunk, existing);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            addInferenceStatementsFor(chunk, existing);
         }
         Model retractions = existing.difference(rebuildModel);
         Model additions = rebuildModel.difference(existing);
@@ -589,6 +951,206 @@ public class ABoxRecomputer {
         this.stopRequested = true;
     }
 
+    /**
+     * The assertions, inverse statements and sameAs flags for a batch of 
+     * individuals, fetched with a few queries instead of several queries for 
+     * each individual.
+     * 
+     * An individual outside the batch (a sameAs individual, perhaps) is 
+     * fetched on its own. If the batch queries fail, each individual is 
+     * fetched on its own instead.
+     */
+    private class BatchData {
+        private final Map<String, Model> assertions = new HashMap<String, Model>();
+        private final Map<String, Model> inverses = new HashMap<String, Model>();
+        private final Set<String> withSameAs = new HashSet<String>();
+        private final Set<String> fetched = new HashSet<String>();
+
+        BatchData(List<String> batch) {
+            for (int i = 0; i < batch.size(); i += FETCH_SIZE) {
+                List<String> chunk = batch.subList(i, Math.min(batch.size(), i + FETCH_SIZE));
+                try {
+                    Map<String, Model> chunkAssertions = splitBySubject(
+                            ABoxRecomputer.this.getAssertions(chunk), chunk);
+                    Map<String, Model> chunkInverses = splitBySubject(
+                            ABoxRecomputer.this.getInferredInverseStatements(chunk), chunk);
+                    Set<String> chunkWithSameAs = simpleReasoner.getSameAsEnabled() 
+                            ? getIndividualsWithSameAs(chunk) 
+                            : Collections.<String>emptySet();
+                    assertions.putAll(chunkAssertions);
+                    inverses.putAll(chunkInverses);
+                    withSameAs.addAll(chunkWithSameAs);
+                    fetched.addAll(chunk);
+                } catch (Exception e) {
+                    log.warn("Failed to fetch data for a batch of " + chunk.size() 
+                            + " individuals; fetching them one at a time.", e);
+                }
+            }
+        }
+
+        Model getAssertions(String uri) throws RDFServiceException {
+            Model m = assertions.get(uri);
+            return (m != null) ? m : ABoxRecomputer.this.getAssertions(uri);
+        }
+
+        Model getInferredInverseStatements(String uri) throws RDFServiceException {
+            Model m = inverses.get(uri);
+            return (m != null) ? m : ABoxRecomputer.this.getInferredInverseStatements(uri);
+        }
+
+        Set<String> getSameAsIndividuals(String uri) {
+            if (fetched.contains(uri) && !withSameAs.contains(uri)) {
+                return new HashSet<String>();
+            }
+            return ABoxRecomputer.this.getSameAsIndividuals(uri);
+        }
+    }
+
+    /**
+     * One worker's share of a full recompute: the individuals whose URIs hash 
+     * to this partition, in order of URI.
+     * 
+     * The URIs arrive while the worker is running. They are recomputed a 
+     * batch at a time, along with any sameAs individuals that are added to 
+     * the batch.
+     * 
+     * Once a batch fails, or the queue of URIs fails, the checkpoint stays 
+     * where it is, and a resumed recompute will start again from the last 
+     * batch that was written in full. After a failed batch, the worker 
+     * carries on with the rest.
+     */
+    private class Partition implements Runnable {
+        private final int index;
+        private final RecomputeCheckpoint checkpoint;
+        private final String completed;
+        private final SpillingURIQueue individuals;
+        private final RecomputeProgress progress;
+        private final Model deferredInferences;
+        private String lastSliceUri;
+        private volatile boolean failed;
+
+        Partition(int index, RecomputeCheckpoint checkpoint, 
+                SpillingURIQueue individuals, RecomputeProgress progress,
+                Model deferredInferences) {
+            this.index = index;
+            this.checkpoint = checkpoint;
+            this.completed = checkpoint.getLastUri(index);
+            this.individuals = individuals;
+            this.progress = progress;
+            this.deferredInferences = deferredInferences;
+        }
+
+        /**
+         * Add this URI, unless it was completed by an interrupted recompute.
+         */
+        boolean offer(String uri) {
+            if (completed != null && uri.compareTo(completed) <= 0) {
+                return false;
+            }
+            individuals.add(uri);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            // The type caches are valid for the length of one recompute
+            TypeCaches caches = new TypeCaches();
+            IndividualURIQueue<String> batch = new IndividualURIQueue<String>();
+            while (!stopRequested && individuals.take(batch, BATCH_SIZE)) {
+                recomputeIndividuals(batch, caches, this);
+                batch.clear();
+            }
+            if (individuals.isFailed()) {
+                batchFailed();
+            }
+        }
+
+        boolean isFailed() {
+            return failed || individuals.isFailed();
+        }
+
+        /*
+         * Some of the inferences in a batch were not written. Don't move the 
+         * checkpoint past them.
+         */
+        void batchFailed() {
+            failed = true;
+        }
+
+        /*
+         * Hold these until all of the workers are done. The model is shared 
+         * by the workers.
+         */
+        void deferInferences(Model inferences) {
+            synchronized (deferredInferences) {
+                deferredInferences.add(inferences);
+            }
+        }
+
+        /*
+         * The batch may end with sameAs individuals that were added to the 
+         * queue. They belong to other partitions, so only the URIs from this 
+         * partition advance the checkpoint.
+         */
+        void batchWritten(List<String> batch) {
+            int partitionCount = checkpoint.getPartitionCount();
+            for (String uri : batch) {
+                if (lastSliceUri == null || uri.compareTo(lastSliceUri) > 0) {
+                    if (Math.floorMod(uri.hashCode(), partitionCount) == index) {
+                        lastSliceUri = uri;
+                    }
+                }
+            }
+            if (lastSliceUri != null && !isFailed()) {
+                checkpoint.record(index, lastSliceUri);
+            }
+            progress.batchWritten(batch.size());
+
+            if (throttleMillis > 0 && !stopRequested) {
+                try {
+                    Thread.sleep(throttleMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopRequested = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Progress of a full recompute, across all workers.
+     */
+    private class RecomputeProgress {
+        private final long start = System.currentTimeMillis();
+        private final AtomicInteger done = new AtomicInteger();
+        // Unknown (-1) until all of the individuals have been found
+        private volatile int total = -1;
+
+        void setTotal(int total) {
+            this.total = total;
+        }
+
+        void batchWritten(int howMany) {
+            int before = done.getAndAdd(howMany);
+            int after = before + howMany;
+            if (before / REPORTING_INTERVAL != after / REPORTING_INTERVAL) {
+                long elapsed = System.currentTimeMillis() - start;
+                int knownTotal = total;
+                if (knownTotal < 0) {
+                    log.info("Still recomputing inferences (" + after 
+                            + " individuals, " + (elapsed / after) 
+                            + " ms per individual, still finding individuals)");
+                } else {
+                    long remaining = elapsed * Math.max(0, knownTotal - after) / after;
+                    log.info("Still recomputing inferences (" + after + "/" + knownTotal 
+                            + " individuals, " + (elapsed / after) 
+                            + " ms per individual, about " + (remaining / 60000L) 
+                            + " minutes remaining)");
+                }
+            }
+        }
+    }
+
     /**
      * Caches for types -> inferred types, and types -> most specific type
      */
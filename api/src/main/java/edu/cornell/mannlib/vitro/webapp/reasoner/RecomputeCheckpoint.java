@@ -0,0 +1,136 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Records how far each partition of a full recompute has progressed, so an
+ * interrupted recompute can be resumed.
+ *
+ * Each partition is recomputed in order of URI. After each batch is written,
+ * the last URI of the batch is recorded for that partition. When resuming, a
+ * partition skips the URIs up to and including the recorded one.
+ *
+ * The record is only meaningful for the same number of partitions. If the
+ * number has changed, the record is ignored.
+ *
+ * If the file is null, nothing is recorded.
+ */
+class RecomputeCheckpoint {
+	private static final Log log = LogFactory.getLog(RecomputeCheckpoint.class);
+
+	private static final String PARTITIONS_PREFIX = "partitions=";
+
+	/**
+	 * Read the checkpoint from the file, if it exists and was written for this
+	 * number of partitions. Otherwise, start with an empty checkpoint.
+	 */
+	static RecomputeCheckpoint load(File file, int partitionCount) {
+		RecomputeCheckpoint checkpoint = new RecomputeCheckpoint(file,
+				partitionCount);
+		if (file == null || !file.isFile()) {
+			return checkpoint;
+		}
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String header = reader.readLine();
+			if (!(PARTITIONS_PREFIX + partitionCount).equals(header)) {
+				log.warn("Recompute checkpoint was written for a different "
+						+ "number of partitions: '" + header
+						+ "'. Starting from the beginning.");
+				return checkpoint;
+			}
+			String line;
+			while (null != (line = reader.readLine())) {
+				int tabHere = line.indexOf('\t');
+				if (tabHere > 0) {
+					int partition = Integer.parseInt(line.substring(0, tabHere));
+					if (partition >= 0 && partition < partitionCount) {
+						checkpoint.lastUris[partition] = line
+								.substring(tabHere + 1);
+					}
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			log.warn("Failed to read the recompute checkpoint at '" + file
+					+ "'. Starting from the beginning.", e);
+			return new RecomputeCheckpoint(file, partitionCount);
+		}
+		return checkpoint;
+	}
+
+	private final File file;
+	private final String[] lastUris;
+
+	private RecomputeCheckpoint(File file, int partitionCount) {
+		this.file = file;
+		this.lastUris = new String[partitionCount];
+	}
+
+	int getPartitionCount() {
+		return lastUris.length;
+	}
+
+	/**
+	 * The last URI that was completed in this partition, or null if none.
+	 */
+	synchronized String getLastUri(int partition) {
+		return lastUris[partition];
+	}
+
+	/**
+	 * Record that this partition has completed everything up to and including
+	 * this URI, and write the record to the file.
+	 */
+	synchronized void record(int partition, String uri) {
+		lastUris[partition] = uri;
+		if (file == null) {
+			return;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp),
+				StandardCharsets.UTF_8)) {
+			writer.write(PARTITIONS_PREFIX + lastUris.length + "\n");
+			for (int i = 0; i < lastUris.length; i++) {
+				if (lastUris[i] != null) {
+					writer.write(i + "\t" + lastUris[i] + "\n");
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Failed to write the recompute checkpoint to '" + temp
+					+ "'", e);
+			return;
+		}
+		file.delete();
+		if (!temp.renameTo(file)) {
+			log.warn("Failed to rename '" + temp + "' to '" + file + "'");
+		}
+	}
+
+	/**
+	 * The recompute is complete, or is starting over.
+	 */
+	synchronized void clear() {
+		for (int i = 0; i < lastUris.length; i++) {
+			lastUris[i] = null;
+		}
+		if (file != null && file.exists() && !file.delete()) {
+			log.warn("Failed to delete the recompute checkpoint at '" + file
+					+ "'");
+		}
+	}
+}
@@ -2,7 +2,9 @@
 
 package edu.cornell.mannlib.vitro.webapp.reasoner;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -77,6 +79,7 @@ public class SimpleReasoner extends StatementListener
 	private ABoxRecomputer recomputer = null;
 	private List<ReasonerPlugin> pluginList = new CopyOnWriteArrayList<ReasonerPlugin>();   
     private boolean doSameAs = true;
+    private volatile ABoxInferenceQueue inferenceQueue = null;
 
 	/**
 	 * @param tboxModel - input.  This model contains both asserted and inferred TBox axioms
@@ -226,6 +229,11 @@ public class SimpleReasoner extends StatementListener
     }
 
     private void recomputeIndividuals(Queue<String> individualURIs) {
+        ABoxInferenceQueue queue = inferenceQueue;
+        if (queue != null) {
+            queue.enqueue(individualURIs);
+            return;
+        }
         long start = System.currentTimeMillis();
         int size = individualURIs.size();
         recomputer.recompute(individualURIs);
@@ -1099,22 +1107,101 @@ public class SimpleReasoner extends StatementListener
 		    recomputer.recompute();
 		}
 	}
+
+	/**
+	 * Continue a full recompute that was interrupted, skipping the 
+	 * individuals that it completed.
+	 */
+	public void resumeRecompute() {
+		if (recomputer != null) {
+		    recomputer.resumeRecompute();
+		}
+	}
+
+	/**
+	 * Was a full recompute interrupted before it finished?
+	 */
+	public boolean isRecomputeIncomplete() {
+		return (recomputer != null) && recomputer.isRecomputeIncomplete();
+	}
+
+	/**
+	 * Configure the full recompute. See ABoxRecomputer.
+	 */
+	public void setRecomputeSettings(int threadCount, long throttleMillis,
+			File checkpointFile) {
+		if (recomputer != null) {
+		    recomputer.setRecomputeSettings(threadCount, throttleMillis, 
+		            checkpointFile);
+		}
+	}
 	
 	/**
 	 * This is called when the application shuts down.
 	 */
 	public void setStopRequested() {
+	    ABoxInferenceQueue queue = inferenceQueue;
+	    if (queue != null) {
+	        queue.stop();
+	    }
 	    if (recomputer != null) {
 	    	recomputer.setStopRequested();
 	    }
 	}
+
+	/**
+	 * Recompute the inferences for edited individuals on a background thread,
+	 * instead of on the thread that made the edit. Individuals that are still
+	 * waiting at shutdown are remembered in the journal file, if there is one,
+	 * and recomputed after a restart.
+	 */
+	public synchronized void startAsynchronousReasoning(File journalFile) {
+	    if (inferenceQueue == null) {
+	        inferenceQueue = new ABoxInferenceQueue(
+	                new ABoxInferenceQueue.Recomputer() {
+	                    @Override
+	                    public void startBurst() {
+	                        if (searchIndexer != null) {
+	                            searchIndexer.pause();
+	                        }
+	                    }
+
+	                    @Override
+	                    public Collection<String> recompute(
+	                            Queue<String> individualURIs) {
+	                        return recomputer.recomputeWithoutPausing(individualURIs);
+	                    }
+
+	                    @Override
+	                    public void endBurst() {
+	                        if (searchIndexer != null) {
+	                            searchIndexer.unpause();
+	                        }
+	                    }
+	                }, ABoxInferenceQueue.DEFAULT_BATCH_SIZE, journalFile);
+	    }
+	}
+
+	/**
+	 * Wait until the inferences have been made for all of the edits that were
+	 * received before this call. If reasoning is synchronous, they have
+	 * already been made.
+	 * 
+	 * @return true if the inferences were made, false if the time ran out.
+	 */
+	public boolean waitForInferences(long timeoutMillis) {
+	    ABoxInferenceQueue queue = inferenceQueue;
+	    return (queue == null) || queue.waitForInferences(timeoutMillis);
+	}
 	  
 	/**
-	 * Asynchronous reasoning mode (DeltaComputer) no longer used 
-	 * in the case of batch removals. 
+	 * True if asynchronous reasoning is enabled, and some edits are waiting
+	 * for their inferences. In that case, the inferred types of an individual
+	 * may not be complete yet.
 	 */
 	public boolean isABoxReasoningAsynchronous() {
-         return false;
+	    ABoxInferenceQueue queue = inferenceQueue;
+	    return (queue != null) && queue.hasPendingWork();
 	}
 	
     boolean isABoxInferenceGraph(String graphURI) {
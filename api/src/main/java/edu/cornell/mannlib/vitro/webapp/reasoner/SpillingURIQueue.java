@@ -0,0 +1,238 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A first-in, first-out queue of URIs that is filled by one thread while it is
+ * emptied by another.
+ *
+ * Only a limited number of URIs are held in memory. When the consumer falls
+ * behind, the producer writes the URIs to a temporary file, and the consumer
+ * reads them back in order. The file is deleted when the consumer catches up.
+ *
+ * The producer calls finish() when it has no more URIs. The consumer waits
+ * for URIs until then.
+ *
+ * If the file can't be written or read, the queue fails: it accepts no more
+ * URIs and delivers no more, since holding them in memory would change their
+ * order. The caller must treat its work as incomplete.
+ */
+class SpillingURIQueue {
+	private static final Log log = LogFactory.getLog(SpillingURIQueue.class);
+
+	private final int maxInMemory;
+	private final File spillDirectory;
+
+	/** Guarded by this. The URIs that the consumer will get next. */
+	private final ArrayDeque<String> inMemory = new ArrayDeque<>();
+
+	/** Guarded by this. The file, while any URIs in it have not been read. */
+	private File spillFile;
+	private BufferedWriter spillWriter;
+	private BufferedReader spillReader;
+	private long spilled;
+	private long unspilled;
+
+	/** Guarded by this. */
+	private boolean finished;
+
+	/** Guarded by this. */
+	private boolean failed;
+
+	/**
+	 * @param spillDirectory
+	 *            Where to create the temporary file. If null, use the default
+	 *            temporary directory.
+	 */
+	SpillingURIQueue(int maxInMemory, File spillDirectory) {
+		this.maxInMemory = Math.max(1, maxInMemory);
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * Add a URI at the end of the queue. If the queue has failed, the URI is
+	 * ignored.
+	 */
+	synchronized void add(String uri) {
+		if (failed) {
+			return;
+		}
+		if (spillFile == null && inMemory.size() < maxInMemory) {
+			inMemory.add(uri);
+		} else {
+			spill(uri);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * There will be no more URIs.
+	 */
+	synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * Was a URI lost because the file couldn't be written or read?
+	 */
+	synchronized boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Move up to this many URIs into the collection, waiting if none are
+	 * available.
+	 *
+	 * @return false if the queue is finished and empty, the queue has failed,
+	 *         or the thread was interrupted.
+	 */
+	synchronized boolean take(Collection<String> into, int howMany) {
+		while (isEmpty()) {
+			if (finished || failed) {
+				return false;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		if (failed) {
+			return false;
+		}
+
+		int taken = 0;
+		while (taken < howMany && !isEmpty()) {
+			if (inMemory.isEmpty() && !unspill()) {
+				return taken > 0;
+			}
+			String uri = inMemory.poll();
+			if (uri == null) {
+				break;
+			}
+			into.add(uri);
+			taken++;
+		}
+		return true;
+	}
+
+	/**
+	 * Delete the temporary file, if there is one.
+	 */
+	synchronized void close() {
+		closeSpillFile();
+		inMemory.clear();
+	}
+
+	/** Must be called while synchronized. */
+	private boolean isEmpty() {
+		return inMemory.isEmpty() && unspilled == spilled;
+	}
+
+	/** Must be called while synchronized. */
+	private void spill(String uri) {
+		try {
+			if (spillFile == null) {
+				spillFile = File.createTempFile("recompute", ".txt",
+						spillDirectory);
+				spillWriter = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(spillFile),
+						StandardCharsets.UTF_8));
+				log.debug("Spilling URIs to '" + spillFile + "'");
+			}
+			spillWriter.write(uri);
+			spillWriter.write('\n');
+			spilled++;
+		} catch (IOException e) {
+			log.error("Failed to write URIs to '" + spillFile + "'", e);
+			fail();
+		}
+	}
+
+	/**
+	 * Read the next URIs from the file. If the file has been read to the end,
+	 * delete it.
+	 *
+	 * Must be called while synchronized.
+	 *
+	 * @return false if the file could not be read.
+	 */
+	private boolean unspill() {
+		try {
+			spillWriter.flush();
+			if (spillReader == null) {
+				spillReader = new BufferedReader(new InputStreamReader(
+						new FileInputStream(spillFile), StandardCharsets.UTF_8));
+			}
+			while (inMemory.size() < maxInMemory && unspilled < spilled) {
+				String line = spillReader.readLine();
+				if (line == null) {
+					throw new IOException("Unexpected end of file");
+				}
+				inMemory.add(line);
+				unspilled++;
+			}
+		} catch (IOException e) {
+			log.error("Failed to read URIs from '" + spillFile + "'", e);
+			fail();
+			return false;
+		}
+		if (unspilled == spilled) {
+			closeSpillFile();
+		}
+		return true;
+	}
+
+	/**
+	 * Discard the URIs that have not been delivered, and refuse any more.
+	 *
+	 * Must be called while synchronized.
+	 */
+	private void fail() {
+		failed = true;
+		closeSpillFile();
+		inMemory.clear();
+		notifyAll();
+	}
+
+	/** Must be called while synchronized. */
+	private void closeSpillFile() {
+		if (spillFile == null) {
+			return;
+		}
+		try {
+			spillWriter.close();
+			if (spillReader != null) {
+				spillReader.close();
+			}
+		} catch (IOException e) {
+			log.warn("Failed to close '" + spillFile + "'", e);
+		}
+		if (!spillFile.delete()) {
+			log.warn("Failed to delete '" + spillFile + "'");
+		}
+		spillFile = null;
+		spillWriter = null;
+		spillReader = null;
+		spilled = 0;
+		unspilled = 0;
+	}
+}
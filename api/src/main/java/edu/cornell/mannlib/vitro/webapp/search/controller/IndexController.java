@@ -3,8 +3,10 @@
 package edu.cornell.mannlib.vitro.webapp.search.controller;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -28,6 +30,8 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Res
 import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.TemplateResponseValues;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.LaneBacklog;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.Latency;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.StatementCounts;
@@ -217,6 +221,46 @@ public class IndexController extends FreemarkerHttpServlet {
 			// nothing for IDLE or SHUTDOWN, except what's already there.
 		}
 
+		map.put("backlog", buildBacklogMaps(status.getBacklog()));
+		map.put("latency", buildLatencyMap(status.getLatency()));
+		return map;
+	}
+
+	private List<Map<String, Object>> buildBacklogMaps(
+			List<LaneBacklog> backlog) {
+		List<Map<String, Object>> list = new ArrayList<>();
+		for (LaneBacklog lane : backlog) {
+			Map<String, Object> map = new HashMap<>();
+			map.put("lane", lane.getLane());
+			map.put("busy", lane.isBusy());
+			map.put("waitingTasks", lane.getWaitingTasks());
+			map.put("waitingItems", lane.getWaitingItems());
+			list.add(map);
+		}
+		return list;
+	}
+
+	private Map<String, Object> buildLatencyMap(Latency latency) {
+		List<Map<String, Object>> buckets = new ArrayList<>();
+		for (int i = 0; i < latency.getBucketCount(); i++) {
+			Map<String, Object> bucket = new HashMap<>();
+			long limit = latency.getLimit(i);
+			if (limit >= 0) {
+				bucket.put("label", "up to " + limit + " ms");
+			} else if (i > 0) {
+				bucket.put("label", "over " + latency.getLimit(i - 1) + " ms");
+			} else {
+				bucket.put("label", "all");
+			}
+			bucket.put("count", latency.getCount(i));
+			buckets.add(bucket);
+		}
+
+		Map<String, Object> map = new HashMap<>();
+		map.put("count", latency.getCount());
+		map.put("meanMillis", latency.getMeanMillis());
+		map.put("maxMillis", latency.getMaxMillis());
+		map.put("buckets", buckets);
 		return map;
 	}
 
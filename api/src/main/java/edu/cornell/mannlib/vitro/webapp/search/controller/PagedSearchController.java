@@ -196,11 +196,20 @@ public class PagedSearchController extends FreemarkerHttpServlet {
                 return doNoHits(queryText,format, vreq);
             }            
             
+            List<String> uris = new ArrayList<String>(docs.size());
+            for (SearchResultDocument doc : docs) {
+                String uri = doc.getStringValue(VitroSearchTermNames.URI);
+                if (uri != null) {
+                    uris.add(uri);
+                }
+            }
+            Map<String, Individual> individualsByUri = iDao.getIndividualsByURIs(uris);
+
             List<Individual> individuals = new ArrayList<Individual>(docs.size());
             for (SearchResultDocument doc : docs) {
                 try {
                     String uri = doc.getStringValue(VitroSearchTermNames.URI);
-                    Individual ind = iDao.getIndividualByURI(uri);
+                    Individual ind = individualsByUri.get(uri);
                     if (ind != null) {
                         ind.setSearchSnippet(getSnippet(doc, response));
                         individuals.add(ind);
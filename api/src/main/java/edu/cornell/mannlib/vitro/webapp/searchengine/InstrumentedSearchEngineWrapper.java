@@ -197,6 +197,11 @@ public class InstrumentedSearchEngineWrapper implements SearchEngine {
 		}
 	}
 
+	@Override
+	public int getVisibilityDelayMillis() {
+		return innerEngine.getVisibilityDelayMillis();
+	}
+
 	@Override
 	public int documentCount() throws SearchEngineException {
 		try (SearchEngineLogger l = SearchEngineLogger.doCountQuery()) {
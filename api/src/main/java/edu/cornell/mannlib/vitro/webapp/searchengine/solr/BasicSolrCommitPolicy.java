@@ -0,0 +1,67 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
+
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+
+/**
+ * A SolrCommitPolicy whose settings come from the application setup.
+ *
+ * By default, each change is visible within 100 milliseconds, an explicit
+ * commit does not optimize, and there is no scheduled optimization. A site
+ * with heavy editing may choose a longer interval, so Solr commits less often.
+ */
+public class BasicSolrCommitPolicy implements SolrCommitPolicy {
+	public static final int DEFAULT_COMMIT_WITHIN_MILLIS = 100;
+
+	private int commitWithinMillis = DEFAULT_COMMIT_WITHIN_MILLIS;
+	private boolean optimizeOnCommit = false;
+	private long optimizeIntervalMinutes = 0;
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#commitWithinMillis", maxOccurs = 1)
+	public void setCommitWithinMillis(String millis) {
+		commitWithinMillis = Integer.parseInt(millis);
+	}
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#optimizeOnCommit", maxOccurs = 1)
+	public void setOptimizeOnCommit(String optimize) {
+		optimizeOnCommit = Boolean.parseBoolean(optimize);
+	}
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#optimizeIntervalMinutes", maxOccurs = 1)
+	public void setOptimizeIntervalMinutes(String minutes) {
+		optimizeIntervalMinutes = Long.parseLong(minutes);
+	}
+
+	@Validation
+	public void validate() throws Exception {
+		if (commitWithinMillis == 0) {
+			throw new IllegalStateException(
+					"commitWithinMillis may not be zero. Use a negative value "
+							+ "to rely on Solr's autoCommit settings.");
+		}
+	}
+
+	@Override
+	public int getCommitWithinMillis() {
+		return commitWithinMillis;
+	}
+
+	@Override
+	public boolean isOptimizeOnCommit() {
+		return optimizeOnCommit;
+	}
+
+	@Override
+	public long getOptimizeIntervalMinutes() {
+		return optimizeIntervalMinutes;
+	}
+
+	@Override
+	public String toString() {
+		return "BasicSolrCommitPolicy[commitWithinMillis=" + commitWithinMillis
+				+ ", optimizeOnCommit=" + optimizeOnCommit
+				+ ", optimizeIntervalMinutes=" + optimizeIntervalMinutes + "]";
+	}
+}
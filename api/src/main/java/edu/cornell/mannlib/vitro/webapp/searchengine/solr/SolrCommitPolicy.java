@@ -0,0 +1,35 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchengine.solr;
+
+/**
+ * Decides when the changes sent to Solr become visible, and when the index is
+ * optimized.
+ *
+ * Incremental changes are made visible by Solr itself, within a limited time,
+ * without an explicit commit. An explicit commit is a hard commit, which the
+ * search indexer issues only at the end of a rebuild.
+ *
+ * Optimizing merges every segment of the index, which is expensive for a large
+ * index. It is done on a schedule, if at all, and only on a commit if the
+ * policy asks for it.
+ */
+public interface SolrCommitPolicy {
+	/**
+	 * Solr should make each add or delete visible within this many
+	 * milliseconds. If negative, the changes are left to Solr's own autoCommit
+	 * settings.
+	 */
+	int getCommitWithinMillis();
+
+	/**
+	 * Should an explicit commit also optimize the index?
+	 */
+	boolean isOptimizeOnCommit();
+
+	/**
+	 * How many minutes between scheduled optimizations? If zero or negative,
+	 * the index is not optimized on a schedule.
+	 */
+	long getOptimizeIntervalMinutes();
+}
@@ -7,9 +7,14 @@ import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletContext;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrServer;
@@ -27,14 +32,35 @@ import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchQuery;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchResponse;
 import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchQuery;
+import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 /**
  * The Solr-based implementation of SearchEngine.
+ * 
+ * The SolrCommitPolicy decides how soon changes become visible, and when the
+ * index is optimized. If none is configured, a BasicSolrCommitPolicy with the
+ * default settings is used.
+ * 
+ * The time taken by each commit and each optimization is recorded and logged.
  */
 public class SolrSearchEngine implements SearchEngine {
+	private static final Log log = LogFactory.getLog(SolrSearchEngine.class);
+
 	private HttpSolrServer queryEngine;
 	private ConcurrentUpdateSolrServer updateEngine;
 
+	private SolrCommitPolicy commitPolicy = new BasicSolrCommitPolicy();
+	private ScheduledExecutorService optimizer;
+
+	private final Timings commitTimings = new Timings("commit", false);
+	private final Timings optimizeTimings = new Timings("optimize", true);
+
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasCommitPolicy", maxOccurs = 1)
+	public void setCommitPolicy(SolrCommitPolicy policy) {
+		commitPolicy = policy;
+	}
+
 	/**
 	 * Set up the http connection with the solr server
 	 */
@@ -64,14 +90,37 @@ public class SolrSearchEngine implements SearchEngine {
 			updateEngine.setConnectionTimeout(10000);
 			updateEngine.setPollQueueTime(25);
 
-			css.info("Set up the Solr search engine; URL = '" + solrServerUrlString + "'.");
+			startScheduledOptimization();
+
+			css.info("Set up the Solr search engine; URL = '" + solrServerUrlString + "', " + commitPolicy);
 		} catch (Exception e) {
 			css.fatal("Could not set up the Solr search engine", e);
 		}
 	}
 
+	private void startScheduledOptimization() {
+		long interval = commitPolicy.getOptimizeIntervalMinutes();
+		if (interval > 0) {
+			optimizer = Executors.newSingleThreadScheduledExecutor(
+					new VitroBackgroundThread.Factory("SolrSearchEngine_Optimizer"));
+			optimizer.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						optimize(true);
+					} catch (Exception e) {
+						log.warn("Scheduled optimization failed.", e);
+					}
+				}
+			}, interval, interval, TimeUnit.MINUTES);
+		}
+	}
+
 	@Override
 	public void shutdown(Application application) {
+		if (optimizer != null) {
+			optimizer.shutdownNow();
+		}
 		queryEngine.shutdown();
 		updateEngine.shutdown();
 	}
@@ -100,30 +149,43 @@ public class SolrSearchEngine implements SearchEngine {
 	public void add(Collection<SearchInputDocument> docs)
 			throws SearchEngineException {
 		try {
-			updateEngine.add(SolrConversionUtils.convertToSolrInputDocuments(docs), 100);
+			updateEngine.add(SolrConversionUtils.convertToSolrInputDocuments(docs),
+					commitPolicy.getCommitWithinMillis());
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException("Solr server failed to add documents "
 					+ docs, e);
 		}
 	}
 
+	/**
+	 * A hard commit. Optimize as well, only if the policy says so.
+	 */
 	@Override
 	public void commit() throws SearchEngineException {
+		commit(true);
+	}
+
+	@Override
+	public void commit(boolean wait) throws SearchEngineException {
 		try {
-			updateEngine.commit();
-			updateEngine.optimize();
+			long start = System.currentTimeMillis();
+			updateEngine.commit(wait, wait);
+			commitTimings.record(System.currentTimeMillis() - start);
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException("Failed to commit to Solr server.", e);
 		}
+		if (commitPolicy.isOptimizeOnCommit()) {
+			optimize(wait);
+		}
 	}
 
-	@Override
-	public void commit(boolean wait) throws SearchEngineException {
+	private void optimize(boolean wait) throws SearchEngineException {
 		try {
-			updateEngine.commit(wait, wait);
+			long start = System.currentTimeMillis();
 			updateEngine.optimize(wait, wait);
+			optimizeTimings.record(System.currentTimeMillis() - start);
 		} catch (SolrServerException | IOException e) {
-			throw appropriateException("Failed to commit to Solr server.", e);
+			throw appropriateException("Failed to optimize the Solr index.", e);
 		}
 	}
 
@@ -135,7 +197,8 @@ public class SolrSearchEngine implements SearchEngine {
 	@Override
 	public void deleteById(Collection<String> ids) throws SearchEngineException {
 		try {
-			updateEngine.deleteById(new ArrayList<>(ids), 100);
+			updateEngine.deleteById(new ArrayList<>(ids),
+					commitPolicy.getCommitWithinMillis());
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException(
 					"Solr server failed to delete documents: " + ids, e);
@@ -145,7 +208,8 @@ public class SolrSearchEngine implements SearchEngine {
 	@Override
 	public void deleteByQuery(String query) throws SearchEngineException {
 		try {
-			updateEngine.deleteByQuery(query, 100);
+			updateEngine.deleteByQuery(query,
+					commitPolicy.getCommitWithinMillis());
 		} catch (SolrServerException | IOException e) {
 			throw appropriateException(
 					"Solr server failed to delete documents: " + query, e);
@@ -176,6 +240,15 @@ public class SolrSearchEngine implements SearchEngine {
 		}
 	}
 
+	/**
+	 * A negative commitWithin leaves the changes to Solr's autoCommit
+	 * settings, which we can't see.
+	 */
+	@Override
+	public int getVisibilityDelayMillis() {
+		return Math.max(0, commitPolicy.getCommitWithinMillis());
+	}
+
 	@Override
 	public int documentCount() throws SearchEngineException {
 		SearchResponse response = query(createQuery("*:*"));
@@ -199,4 +272,46 @@ public class SolrSearchEngine implements SearchEngine {
 		return new SearchEngineException(message, e);
 	}
 
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Keeps count of how many times an operation was done, and how long it
+	 * took. Commits are logged at debug level, since there may be many.
+	 * Optimizations are rare and costly, so they are logged at info level.
+	 */
+	private static class Timings {
+		private final String operation;
+		private final boolean logAtInfo;
+		private long count;
+		private long totalMillis;
+		private long maxMillis;
+
+		Timings(String operation, boolean logAtInfo) {
+			this.operation = operation;
+			this.logAtInfo = logAtInfo;
+		}
+
+		synchronized void record(long millis) {
+			count++;
+			totalMillis += millis;
+			maxMillis = Math.max(maxMillis, millis);
+
+			String message = "Solr " + operation + " took " + millis
+					+ " ms. " + this;
+			if (logAtInfo) {
+				log.info(message);
+			} else {
+				log.debug(message);
+			}
+		}
+
+		@Override
+		public synchronized String toString() {
+			return "[count=" + count + ", meanMillis="
+					+ (count == 0 ? 0 : totalMillis / count) + ", maxMillis="
+					+ maxMillis + "]";
+		}
+	}
 }
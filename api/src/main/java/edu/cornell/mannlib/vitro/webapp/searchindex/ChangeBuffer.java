@@ -0,0 +1,217 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+/**
+ * Holds the changed triples that are waiting to be sent to the SearchIndexer.
+ *
+ * Duplicates are removed as the triples arrive. Only a limited number of
+ * triples are held in memory. Beyond that, they are written to a temporary
+ * file as N-Triples, and read back a batch at a time when they are taken.
+ * Duplicates are not removed from the file, but each batch that is read back
+ * is free of duplicates.
+ *
+ * The oldest triples are taken first: those on the file, in the order they
+ * were written, and then those in memory.
+ *
+ * Not thread-safe. The caller must synchronize access.
+ */
+class ChangeBuffer {
+	private static final Log log = LogFactory.getLog(ChangeBuffer.class);
+
+	private final int memoryLimit;
+	private final File spillDirectory;
+
+	private Set<Triple> inMemory = new LinkedHashSet<>();
+
+	/** Spill files, oldest first. The last one may still be written. */
+	private final LinkedList<File> spillFiles = new LinkedList<>();
+	private OutputStream spillWriter;
+	private BufferedReader spillReader;
+	private int spilledCount;
+
+	/**
+	 * @param memoryLimit
+	 *            how many triples to hold in memory before spilling to disk.
+	 * @param spillDirectory
+	 *            where to create the temporary files. If null, the system's
+	 *            temporary directory is used.
+	 */
+	ChangeBuffer(int memoryLimit, File spillDirectory) {
+		this.memoryLimit = memoryLimit;
+		this.spillDirectory = spillDirectory;
+	}
+
+	public void add(Triple triple) {
+		inMemory.add(triple);
+		if (inMemory.size() >= memoryLimit) {
+			spill();
+		}
+	}
+
+	/**
+	 * How many triples are waiting? Duplicates on disk are counted.
+	 */
+	public int size() {
+		return inMemory.size() + spilledCount;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Remove and return up to this many of the oldest triples.
+	 */
+	public List<Triple> take(int howMany) {
+		if (spilledCount > 0) {
+			try {
+				List<Triple> taken = readSpilled(howMany);
+				while (taken.isEmpty() && spilledCount > 0) {
+					taken = readSpilled(howMany);
+				}
+				if (!taken.isEmpty()) {
+					return taken;
+				}
+			} catch (IOException e) {
+				log.error("Failed to read indexing changes from disk. "
+						+ spilledCount + " changes are lost.", e);
+				discardSpillFiles();
+			}
+		}
+		return takeFromMemory(howMany);
+	}
+
+	private List<Triple> takeFromMemory(int howMany) {
+		List<Triple> taken = new ArrayList<>();
+		Iterator<Triple> it = inMemory.iterator();
+		while (it.hasNext() && taken.size() < howMany) {
+			taken.add(it.next());
+			it.remove();
+		}
+		return taken;
+	}
+
+	/**
+	 * Discard everything, in memory and on disk.
+	 */
+	public void clear() {
+		inMemory = new LinkedHashSet<>();
+		discardSpillFiles();
+	}
+
+	// ----------------------------------------------------------------------
+	// Writing to disk
+	// ----------------------------------------------------------------------
+
+	private void spill() {
+		try {
+			if (spillWriter == null) {
+				File file = File.createTempFile("indexingChanges", ".nt",
+						spillDirectory);
+				file.deleteOnExit();
+				spillFiles.add(file);
+				spillWriter = new FileOutputStream(file);
+			}
+			RDFDataMgr.writeTriples(spillWriter, inMemory.iterator());
+			spillWriter.flush();
+			spilledCount += inMemory.size();
+			log.debug("Wrote " + inMemory.size() + " changes to disk; "
+					+ spilledCount + " are on disk.");
+			inMemory = new LinkedHashSet<>();
+		} catch (IOException e) {
+			// Keep them in memory. Better than losing them.
+			log.error("Failed to write indexing changes to disk.", e);
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Reading from disk
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Read up to this many lines from the oldest file. Each line is one
+	 * triple. If the file is exhausted, delete it.
+	 */
+	private List<Triple> readSpilled(int howMany) throws IOException {
+		if (spillReader == null) {
+			if (spillFiles.size() == 1) {
+				closeWriter();
+			}
+			spillReader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(spillFiles.getFirst()), UTF_8));
+		}
+
+		ByteArrayOutputStream lines = new ByteArrayOutputStream();
+		int lineCount = 0;
+		String line;
+		while (lineCount < howMany && (line = spillReader.readLine()) != null) {
+			lines.write(line.getBytes(UTF_8));
+			lines.write('\n');
+			lineCount++;
+		}
+		spilledCount = Math.max(0, spilledCount - lineCount);
+
+		if (lineCount < howMany || spilledCount == 0) {
+			IOUtils.closeQuietly(spillReader);
+			spillReader = null;
+			deleteFile(spillFiles.removeFirst());
+		}
+
+		Graph graph = GraphFactory.createDefaultGraph();
+		RDFDataMgr.parse(StreamRDFLib.graph(graph),
+				new ByteArrayInputStream(lines.toByteArray()), Lang.NTRIPLES);
+		return graph.find(Node.ANY, Node.ANY, Node.ANY).toList();
+	}
+
+	private void closeWriter() {
+		IOUtils.closeQuietly(spillWriter);
+		spillWriter = null;
+	}
+
+	private void discardSpillFiles() {
+		closeWriter();
+		IOUtils.closeQuietly(spillReader);
+		spillReader = null;
+		for (File file : spillFiles) {
+			deleteFile(file);
+		}
+		spillFiles.clear();
+		spilledCount = 0;
+	}
+
+	private void deleteFile(File file) {
+		if (!file.delete()) {
+			log.warn("Failed to delete '" + file + "'");
+		}
+	}
+}
@@ -14,15 +14,18 @@ import java.util.concurrent.TimeUnit;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.listeners.StatementListener;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelChangedListener;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Statement;
 
+import edu.cornell.mannlib.vitro.webapp.controller.individual.RenderedPageCache;
 import edu.cornell.mannlib.vitro.webapp.dao.jena.event.EditEvent;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.LaneBacklog;
 import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
 
 /**
@@ -45,40 +48,118 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
  * Thus, an action that produces many changes to the models could become
  * unscalable.
  * 
- * To avoid this, we use the ResourceFactory to create a "sanitized" statement
- * which is semantically equivalent to the original, and add that to the list
- * instead. The original statement is released.
+ * To avoid this, we keep only the Triple of the statement, which holds no
+ * references to the model. When the changes are sent, the Triples are turned
+ * back into Statements against a single retained model.
+ * 
+ * -----------------------
+ * 
+ * Even so, a bulk load can produce millions of changes. The changes are held
+ * in a ChangeBuffer, which removes duplicates and keeps only a limited number
+ * in memory, writing the rest to disk. The changes are sent to the
+ * SearchIndexer in batches, and a batch is held back while the SearchIndexer
+ * already has a batch's worth of changes waiting.
+ * 
+ * If the changes waiting in the buffer pass a threshold, it will be quicker to
+ * rebuild the index than to process them. The changes are discarded, and a
+ * rebuild is requested.
+ * 
+ * Each batch is sent with the time that the oldest waiting change was heard,
+ * so the indexer can measure its latency. When the changes are sent in several
+ * batches, that overstates the latency of the later ones.
+ * 
+ * -----------------------
+ * 
+ * The RenderedPageCache is told about each change as soon as it is heard, so
+ * it need not serve a stale page while the change waits to be indexed.
  */
 public class IndexingChangeListener extends StatementListener 
         implements ModelChangedListener, SearchIndexer.Listener {
 	private static final Log log = LogFactory
 			.getLog(IndexingChangeListener.class);
 
+	/** How many changes to hold in memory before writing to disk? */
+	private static final int MEMORY_LIMIT = 20000;
+
+	/** How many changes to send to the SearchIndexer at one time? */
+	private static final int BATCH_SIZE = 10000;
+
+	/** How many changes before we request a rebuild instead? */
+	private static final int REBUILD_THRESHOLD = 500000;
+
 	private final SearchIndexer searchIndexer;
+	private final RenderedPageCache pageCache;
 	private final Ticker ticker;
 	private volatile boolean rebuildScheduled;
     private final Model defaultModel;
 
-	/** All access to the list must be synchronized. */
-	private final List<Statement> changes;
+	/** All access to the buffer must be synchronized. */
+	private final ChangeBuffer changes;
+
+	/** When was the oldest change in the buffer heard? Synchronized. */
+	private long oldestChangeHeardAt;
 
 	public IndexingChangeListener(SearchIndexer searchIndexer) {
+		this(searchIndexer, null);
+	}
+
+	/**
+	 * @param pageCache
+	 *            May be null.
+	 */
+	public IndexingChangeListener(SearchIndexer searchIndexer,
+			RenderedPageCache pageCache) {
 		this.searchIndexer = searchIndexer;
+		this.pageCache = pageCache;
 		this.ticker = new Ticker();
         this.defaultModel = ModelFactory.createDefaultModel();
-		this.changes = new ArrayList<>();
+		this.changes = new ChangeBuffer(MEMORY_LIMIT, null);
 
 		searchIndexer.addListener(this);
 	}
 
-	private synchronized void noteChange(Statement stmt) {
-        changes.add(stmt); 
+	private void noteChange(Statement stmt) {
+		if (bufferChange(stmt)) {
+			requestRebuild();
+		}
+	}
+
+	/**
+	 * @return true if the buffer has passed the rebuild threshold.
+	 */
+	private synchronized boolean bufferChange(Statement stmt) {
+		if (rebuildScheduled) {
+			return false;
+		}
+		if (changes.isEmpty()) {
+			oldestChangeHeardAt = System.currentTimeMillis();
+		}
+		changes.add(stmt.asTriple());
 		ticker.start();
+		if (changes.size() >= REBUILD_THRESHOLD) {
+			rebuildScheduled = true;
+			changes.clear();
+			return true;
+		}
+		return false;
+	}
+
+	private void requestRebuild() {
+		log.info("More than " + REBUILD_THRESHOLD
+				+ " changes are waiting to be indexed. "
+				+ "Requesting a rebuild instead.");
+		searchIndexer.rebuildIndex();
 	}
 
+	/**
+	 * A resumed rebuild only covers the URIs after its checkpoint, so keep
+	 * collecting changes while it runs.
+	 */
 	@Override
 	public void receiveSearchIndexerEvent(Event event) {
-		if (event.getType() == REBUILD_REQUESTED) {
+		if (event.isResumedRebuild()) {
+			return;
+		} else if (event.getType() == REBUILD_REQUESTED) {
 			rebuildScheduled = true;
 		} else if (event.getType() == START_REBUILD) {
 			rebuildScheduled = false;
@@ -87,22 +168,49 @@ public class IndexingChangeListener extends StatementListener
 	}
 
 	private synchronized void respondToTicker() {
+		if (changes.isEmpty()) {
+			return;
+		}
+		if (indexerIsBacklogged()) {
+			log.debug("Holding " + changes.size()
+					+ " changes until the indexer catches up.");
+		} else {
+			searchIndexer.scheduleUpdatesForStatements(
+					toStatements(changes.take(BATCH_SIZE)), oldestChangeHeardAt);
+		}
 		if (!changes.isEmpty()) {
-			searchIndexer.scheduleUpdatesForStatements(changes);
-			changes.clear();
+			ticker.start();
 		}
 	}
 
+	private boolean indexerIsBacklogged() {
+		int waitingItems = 0;
+		for (LaneBacklog lane : searchIndexer.getStatus().getBacklog()) {
+			waitingItems += lane.getWaitingItems();
+		}
+		return waitingItems >= BATCH_SIZE;
+	}
+
+	private List<Statement> toStatements(List<Triple> triples) {
+		List<Statement> stmts = new ArrayList<>(triples.size());
+		for (Triple triple : triples) {
+			stmts.add(defaultModel.asStatement(triple));
+		}
+		return stmts;
+	}
+
 	private synchronized void discardChanges() {
 		changes.clear();
 	}
 
 	public void shutdown() {
 		ticker.shutdown();
+		discardChanges();
 	}
 
 	@Override
 	public void addedStatement(Statement stmt) {
+		invalidatePages(stmt);
 		if (!rebuildScheduled) {
 			noteChange(stmt);
 		}
@@ -110,11 +218,27 @@ public class IndexingChangeListener extends StatementListener
 
 	@Override
 	public void removedStatement(Statement stmt) {
+		invalidatePages(stmt);
 		if (!rebuildScheduled) {
 			noteChange(stmt);
 		}
 	}
 
+	/**
+	 * The subject's page may show the statement, and so may the object's.
+	 */
+	private void invalidatePages(Statement stmt) {
+		if (pageCache == null || !pageCache.isEnabled()) {
+			return;
+		}
+		if (stmt.getSubject().isURIResource()) {
+			pageCache.individualChanged(stmt.getSubject().getURI());
+		}
+		if (stmt.getObject().isURIResource()) {
+			pageCache.individualChanged(stmt.getObject().asResource().getURI());
+		}
+	}
+
 	/**
 	 * We only care about events that signal the end of an edit operation.
 	 */
@@ -0,0 +1,75 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.Latency;
+
+/**
+ * Counts how long it takes for changes to the data to reach the search index,
+ * from the time the changes are heard until the affected documents are
+ * visible in the search engine.
+ *
+ * The latencies are counted in fixed buckets, so the histogram takes the same
+ * space no matter how many latencies are recorded. Recording is thread-safe
+ * and does not block.
+ */
+public class LatencyHistogram {
+	/**
+	 * The upper limit of each bucket, in milliseconds. Anything longer than the
+	 * last limit goes into an overflow bucket.
+	 */
+	private static final long[] LIMITS = { 100, 250, 500, 1000, 2500, 5000,
+			10000, 30000, 60000, 300000 };
+
+	private final AtomicLongArray counts = new AtomicLongArray(
+			LIMITS.length + 1);
+	private final AtomicLong totalMillis = new AtomicLong();
+	private final AtomicLong maxMillis = new AtomicLong();
+
+	/**
+	 * Record the latency of changes that were received at this time, and have
+	 * just now been sent to the search engine.
+	 */
+	public void recordSince(long receivedMillis, int howMany) {
+		record(System.currentTimeMillis() - receivedMillis, howMany);
+	}
+
+	public void record(long millis, int howMany) {
+		if (howMany <= 0) {
+			return;
+		}
+		long latency = Math.max(0, millis);
+		counts.addAndGet(bucketFor(latency), howMany);
+		totalMillis.addAndGet(latency * howMany);
+
+		long max = maxMillis.get();
+		while (latency > max && !maxMillis.compareAndSet(max, latency)) {
+			max = maxMillis.get();
+		}
+	}
+
+	private int bucketFor(long latency) {
+		for (int i = 0; i < LIMITS.length; i++) {
+			if (latency <= LIMITS[i]) {
+				return i;
+			}
+		}
+		return LIMITS.length;
+	}
+
+	/**
+	 * An immutable copy of the histogram as it stands. If changes are being
+	 * recorded at the same time, the totals may be off by a few.
+	 */
+	public Latency snapshot() {
+		long[] countsNow = new long[counts.length()];
+		for (int i = 0; i < countsNow.length; i++) {
+			countsNow[i] = counts.get(i);
+		}
+		return new Latency(LIMITS, countsNow, totalMillis.get(),
+				maxMillis.get());
+	}
+}
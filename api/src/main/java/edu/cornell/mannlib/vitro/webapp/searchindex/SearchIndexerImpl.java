@@ -15,14 +15,19 @@ import static edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThre
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,6 +50,7 @@ import edu.cornell.mannlib.vitro.webapp.modules.ComponentStartupStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.LaneBacklog;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierListBasic;
@@ -57,6 +63,7 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinder;
 import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderListBasic;
 import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderListDeveloper;
+import edu.cornell.mannlib.vitro.webapp.searchindex.tasks.RebuildCheckpoint;
 import edu.cornell.mannlib.vitro.webapp.searchindex.tasks.RebuildIndexTask;
 import edu.cornell.mannlib.vitro.webapp.searchindex.tasks.UpdateDocumentWorkUnit;
 import edu.cornell.mannlib.vitro.webapp.searchindex.tasks.UpdateStatementsTask;
@@ -72,16 +79,23 @@ import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread.Work
 /**
  * An implementation of the SearchIndexer interface.
  * 
- * This implementation uses a single-threaded task queue to permit indexing to
- * run one at a time in a "background" thread. The task queue is controlled by a
- * scheduler that allows us to suspend incoming tasks (pause).
+ * This implementation uses a task queue with two lanes: one for incremental
+ * updates, and one for full rebuilds. Each lane is single-threaded, so tasks
+ * within a lane run one at a time in a "background" thread, but an incremental
+ * update need not wait for a rebuild to finish. The task queue is controlled by
+ * a scheduler that allows us to suspend incoming tasks (pause).
  * 
- * A thread pool is available so the tasks can create small units of work to be
- * run in parallel. Each task should block until all of its work units are
- * complete, to preserve the pattern of running one task at a time.
+ * While a task waits in its lane, a later task of the same kind is merged into
+ * it, rather than being queued behind it. So duplicate URIs are removed, and
+ * the number of waiting tasks stays small.
  * 
- * The number of threads in the thread pool is specified in the application
- * setup file.
+ * Each lane has a thread pool, so the tasks can create small units of work to
+ * be run in parallel. Each task should block until all of its work units are
+ * complete, to preserve the pattern of running one task at a time in a lane.
+ * 
+ * The number of threads in the rebuild thread pool is specified in the
+ * application setup file. The incremental thread pool is the same size, unless
+ * a size is specified for it.
  */
 public class SearchIndexerImpl implements SearchIndexer {
 	private static final Log log = LogFactory.getLog(SearchIndexerImpl.class);
@@ -89,21 +103,26 @@ public class SearchIndexerImpl implements SearchIndexer {
 	private final ListenerList listeners = new ListenerList();
 	private final TaskQueue taskQueue = new TaskQueue();
 	private final Scheduler scheduler = new Scheduler(taskQueue);
+	private final LatencyHistogram latency = new LatencyHistogram();
 
 	private Integer threadPoolSize;
+	private Integer incrementalThreadPoolSize;
 	private WorkerThreadPool pool;
+	private WorkerThreadPool incrementalPool;
 
 	private ServletContext ctx;
 	private List<SearchIndexExcluder> excluders;
 	private List<DocumentModifier> modifiers;
 	private Set<IndexingUriFinder> uriFinders;
 	private WebappDaoFactory wadf;
+	private RebuildCheckpoint rebuildCheckpoint;
 
 	private boolean rebuildOnUnpause = false;
 
 	private volatile int paused = 0;
 
 	private List<Statement> pendingStatements = new ArrayList<Statement>();
+	private long pendingStatementsHeardAt = Long.MAX_VALUE;
 	private Collection<String> pendingUris = new ArrayList<String>();
 
 	// ----------------------------------------------------------------------
@@ -115,9 +134,20 @@ public class SearchIndexerImpl implements SearchIndexer {
 		threadPoolSize = Integer.parseInt(size);
 	}
 
+	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#incrementalThreadPoolSize", maxOccurs = 1)
+	public void setIncrementalThreadPoolSize(String size) {
+		incrementalThreadPoolSize = Integer.parseInt(size);
+	}
+
 	@Validation
 	public void validate() throws Exception {
-		this.pool = new WorkerThreadPool(threadPoolSize);
+		if (incrementalThreadPoolSize == null) {
+			incrementalThreadPoolSize = threadPoolSize;
+		}
+		this.pool = new WorkerThreadPool(threadPoolSize,
+				"SearchIndexer_ThreadPool");
+		this.incrementalPool = new WorkerThreadPool(incrementalThreadPoolSize,
+				"SearchIndexer_IncrementalThreadPool");
 	}
 
 	// ----------------------------------------------------------------------
@@ -136,6 +166,8 @@ public class SearchIndexerImpl implements SearchIndexer {
 		try {
 			this.ctx = application.getServletContext();
 			this.wadf = getFilteredWebappDaoFactory();
+			this.rebuildCheckpoint = new RebuildCheckpoint(application
+					.getHomeDirectory().getPath());
 			loadConfiguration();
 
 			fireEvent(STARTUP);
@@ -180,6 +212,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 		taskQueue.shutdown();
 		pool.shutdown();
+		incrementalPool.shutdown();
 
 		for (DocumentModifier dm : modifiers) {
 			try {
@@ -213,6 +246,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 				if (rebuildOnUnpause) {
 					rebuildOnUnpause = false;
 					pendingStatements.clear();
+					pendingStatementsHeardAt = Long.MAX_VALUE;
 					pendingUris.clear();
 					rebuildIndex();
 				} else {
@@ -225,8 +259,10 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 	private synchronized void schedulePendingStatements() {
 		if (paused == 0 && pendingStatements.size() > 0) {
-			scheduleUpdatesForStatements(pendingStatements);
+			scheduleUpdatesForStatements(pendingStatements,
+					pendingStatementsHeardAt);
 			pendingStatements = new ArrayList<>();
+			pendingStatementsHeardAt = Long.MAX_VALUE;
 		}
 	}
 
@@ -247,7 +283,7 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 	@Override
 	public SearchIndexerStatus getStatus() {
-		return taskQueue.getStatus();
+		return taskQueue.getStatus().withLatency(latency.snapshot());
 	}
 
 	private void fireEvent(Type type) {
@@ -260,6 +296,12 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 	@Override
 	public void scheduleUpdatesForStatements(List<Statement> changes) {
+		scheduleUpdatesForStatements(changes, System.currentTimeMillis());
+	}
+
+	@Override
+	public void scheduleUpdatesForStatements(List<Statement> changes,
+			long heardAtMillis) {
 		if (isShutdown()) {
 			log.warn("Call to scheduleUpdatesForStatements after shutdown.");
 			return;
@@ -268,19 +310,22 @@ public class SearchIndexerImpl implements SearchIndexer {
 			return;
 		}
 		if (paused > 0) {
-			if (addToPendingStatements(changes)) {
+			if (addToPendingStatements(changes, heardAtMillis)) {
 				return;
 			}
 		}
 
 		scheduler.scheduleTask(new UpdateStatementsTask(new IndexerConfigImpl(
-				this), changes));
+				this, Lane.INCREMENTAL), changes, heardAtMillis));
 		log.debug("Scheduled updates for " + changes.size() + " statements.");
 	}
 
-	private synchronized boolean addToPendingStatements(List<Statement> changes) {
+	private synchronized boolean addToPendingStatements(
+			List<Statement> changes, long heardAtMillis) {
 		if (paused > 0) {
 			pendingStatements.addAll(changes);
+			pendingStatementsHeardAt = Math.min(pendingStatementsHeardAt,
+					heardAtMillis);
 			return true;
 		}
 
@@ -302,8 +347,8 @@ public class SearchIndexerImpl implements SearchIndexer {
 			}
 		}
 
-		scheduler.scheduleTask(new UpdateUrisTask(new IndexerConfigImpl(this),
-				uris));
+		scheduler.scheduleTask(new UpdateUrisTask(new IndexerConfigImpl(this,
+				Lane.INCREMENTAL), uris));
 		log.debug("Scheduled updates for " + uris.size() + " uris.");
 	}
 
@@ -329,11 +374,40 @@ public class SearchIndexerImpl implements SearchIndexer {
 			rebuildOnUnpause = true;
 			return;
 		}
-		scheduler
-				.scheduleTask(new RebuildIndexTask(new IndexerConfigImpl(this)));
+		scheduler.scheduleTask(new RebuildIndexTask(new IndexerConfigImpl(this,
+				Lane.REBUILD)));
 		log.debug("Scheduled a full rebuild.");
 	}
 
+	@Override
+	public void resumeInterruptedRebuild() {
+		if (isShutdown()) {
+			log.warn("Call to resumeInterruptedRebuild after shutdown.");
+			return;
+		}
+		if (rebuildCheckpoint == null) {
+			log.warn("Call to resumeInterruptedRebuild before startup.");
+			return;
+		}
+
+		RebuildCheckpoint.Saved saved = rebuildCheckpoint.load();
+		if (saved == null) {
+			return;
+		}
+
+		if (paused > 0) {
+			// A full rebuild will cover whatever was left over.
+			fireEvent(REBUILD_REQUESTED);
+			rebuildOnUnpause = true;
+			return;
+		}
+		// Changes to URIs before the checkpoint must still be indexed.
+		listeners.fireEvent(new Event(REBUILD_REQUESTED, getStatus(), true));
+		scheduler.scheduleTask(new RebuildIndexTask(new IndexerConfigImpl(this,
+				Lane.REBUILD), saved));
+		log.info("Scheduled a rebuild to resume from " + saved);
+	}
+
 	private SearchIndexExcluderList createExcludersList() {
 		if (isDeveloperOptionSet()) {
 			return new SearchIndexExcluderListDeveloper(excluders);
@@ -465,38 +539,150 @@ public class SearchIndexerImpl implements SearchIndexer {
 	}
 
 	/**
-	 * A single-threaded task queue that can tell us the status of the current
-	 * task.
+	 * The lanes of the task queue. Incremental updates do not wait behind a
+	 * rebuild.
+	 */
+	public enum Lane {
+		INCREMENTAL, REBUILD
+	}
+
+	/**
+	 * A task queue with a lane for incremental updates and a lane for rebuilds.
+	 * It can tell us the status of the current task.
 	 * 
-	 * If no current task, it can return a status of IDLE or SHUTDOWN.
+	 * If an incremental task is running, that is the status. Otherwise, if a
+	 * rebuild is running, that is the status. If neither, the status is IDLE or
+	 * SHUTDOWN. In any case, the status includes the backlog of each lane.
 	 */
 	private static class TaskQueue {
-		private final ExecutorService queue = Executors
-				.newSingleThreadExecutor(new VitroBackgroundThread.Factory(
-						"SearchIndexer_TaskQueue"));
+		private final TaskLane incremental = new TaskLane(Lane.INCREMENTAL,
+				"SearchIndexer_TaskQueue");
+		private final TaskLane rebuild = new TaskLane(Lane.REBUILD,
+				"SearchIndexer_RebuildQueue");
+
+		private volatile boolean shutdown;
+
+		public void scheduleTask(Task task) {
+			laneFor(task).scheduleTask(task);
+		}
+
+		private TaskLane laneFor(Task task) {
+			if (task instanceof RebuildIndexTask) {
+				return rebuild;
+			} else {
+				return incremental;
+			}
+		}
+
+		public SearchIndexerStatus getStatus() {
+			SearchIndexerStatus status;
+			if (shutdown) {
+				status = SearchIndexerStatus.shutdown();
+			} else if (incremental.isBusy()) {
+				status = incremental.getStatus();
+			} else {
+				status = rebuild.getStatus();
+			}
+			return status.withBacklog(Arrays.asList(incremental.getBacklog(),
+					rebuild.getBacklog()));
+		}
+
+		public void shutdown() {
+			incremental.shutdown();
+			rebuild.shutdown();
+			shutdown = true;
+		}
+
+		/**
+		 * Shut down only when both lanes are.
+		 */
+		public boolean isShutdown() {
+			return incremental.isShutdown() && rebuild.isShutdown();
+		}
+	}
+
+	/**
+	 * A single-threaded lane of the task queue that can tell us the status of
+	 * the current task.
+	 * 
+	 * Tasks wait in a list until the thread is ready for them. If a waiting
+	 * task is a CoalescingTask, a newly scheduled task may be merged into it,
+	 * instead of being added to the list.
+	 * 
+	 * If no current task, it can return a status of IDLE.
+	 */
+	private static class TaskLane {
+		private final Lane lane;
+		private final ExecutorService queue;
+
+		/** All access to the list must be synchronized on this lane. */
+		private final LinkedList<Task> waiting = new LinkedList<>();
 
 		private AtomicReference<QueueStatus> current = new AtomicReference<>(
 				new QueueStatus(SearchIndexerStatus.idle()));
 
+		public TaskLane(Lane lane, String threadName) {
+			this.lane = lane;
+			this.queue = Executors
+					.newSingleThreadExecutor(new VitroBackgroundThread.Factory(
+							threadName));
+		}
+
 		public void scheduleTask(Task task) {
+			synchronized (this) {
+				if (coalesce(task)) {
+					log.debug("merged task into a waiting task: " + task);
+					return;
+				}
+				waiting.add(task);
+			}
+
 			try {
-				queue.execute(new TaskWrapper(task));
+				queue.execute(new TaskRunner());
 			} catch (RejectedExecutionException e) {
+				synchronized (this) {
+					waiting.remove(task);
+				}
 				log.warn("Search Indexer task was rejected: " + task);
 			}
 		}
 
+		private boolean coalesce(Task task) {
+			for (Task w : waiting) {
+				if (w instanceof CoalescingTask
+						&& ((CoalescingTask) w).absorb(task)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public boolean isBusy() {
+			return current.get().isBusy();
+		}
+
 		public SearchIndexerStatus getStatus() {
 			return current.get().getStatus();
 		}
 
+		public synchronized LaneBacklog getBacklog() {
+			int waitingItems = 0;
+			for (Task w : waiting) {
+				if (w instanceof CoalescingTask) {
+					waitingItems += ((CoalescingTask) w).getWaitingItemCount();
+				}
+			}
+			return new LaneBacklog(lane.toString(), isBusy(), waiting.size(),
+					waitingItems);
+		}
+
 		public void shutdown() {
 			try {
 				queue.shutdownNow();
 				boolean terminated = queue.awaitTermination(1, MINUTES);
 				if (!terminated) {
-					log.warn("SearchIndexer task queue did not shut down "
-							+ "within 1 minute.");
+					log.warn("SearchIndexer task queue (" + lane
+							+ ") did not shut down within 1 minute.");
 				}
 				current.set(new QueueStatus(SearchIndexerStatus.shutdown()));
 			} catch (InterruptedException e) {
@@ -508,16 +694,21 @@ public class SearchIndexerImpl implements SearchIndexer {
 			return queue.isShutdown();
 		}
 
-		/** When this wrapper is run, we will know the current task and status. */
-		private class TaskWrapper implements Runnable {
-			private final Task task;
-
-			public TaskWrapper(Task task) {
-				this.task = task;
-			}
-
+		/**
+		 * Each runner takes the next task from the waiting list. When it is
+		 * run, we will know the current task and status.
+		 */
+		private class TaskRunner implements Runnable {
 			@Override
 			public void run() {
+				Task task;
+				synchronized (TaskLane.this) {
+					task = waiting.poll();
+				}
+				if (task == null) {
+					return;
+				}
+
 				current.set(new QueueStatus(task));
 				setWorkLevel(WORKING);
 				log.debug("starting task: " + task);
@@ -552,6 +743,10 @@ public class SearchIndexerImpl implements SearchIndexer {
 				this.status = Objects.requireNonNull(status);
 			}
 
+			public boolean isBusy() {
+				return task != null;
+			}
+
 			public SearchIndexerStatus getStatus() {
 				if (task != null) {
 					return task.getStatus();
@@ -577,6 +772,10 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public ListenerList listenerList();
 
 		public WorkerThreadPool workerThreadPool();
+
+		public RebuildCheckpoint rebuildCheckpoint();
+
+		public LatencyHistogram latencyHistogram();
 	}
 
 	/**
@@ -586,9 +785,11 @@ public class SearchIndexerImpl implements SearchIndexer {
 	 */
 	private static class IndexerConfigImpl implements IndexerConfig {
 		private final SearchIndexerImpl sii;
+		private final Lane lane;
 
-		public IndexerConfigImpl(SearchIndexerImpl sii) {
+		public IndexerConfigImpl(SearchIndexerImpl sii, Lane lane) {
 			this.sii = sii;
+			this.lane = lane;
 		}
 
 		@Override
@@ -618,7 +819,21 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 		@Override
 		public WorkerThreadPool workerThreadPool() {
-			return sii.pool;
+			if (lane == Lane.INCREMENTAL) {
+				return sii.incrementalPool;
+			} else {
+				return sii.pool;
+			}
+		}
+
+		@Override
+		public RebuildCheckpoint rebuildCheckpoint() {
+			return sii.rebuildCheckpoint;
+		}
+
+		@Override
+		public LatencyHistogram latencyHistogram() {
+			return sii.latency;
 		}
 	}
 
@@ -628,6 +843,24 @@ public class SearchIndexerImpl implements SearchIndexer {
 		public void notifyWorkUnitCompletion(Runnable workUnit);
 	}
 
+	/**
+	 * A task that can take on the work of a later task, while it is waiting in
+	 * the queue. The queue will not call absorb() after the task has started to
+	 * run.
+	 */
+	public static interface CoalescingTask extends Task {
+		/**
+		 * If the other task is of a compatible kind, add its work to this task
+		 * and return true. Otherwise, return false.
+		 */
+		public boolean absorb(Task other);
+
+		/**
+		 * How many URIs or statements is this task waiting to process?
+		 */
+		public int getWaitingItemCount();
+	}
+
 	/**
 	 * A thread pool for handling many small units of work submitted by a task.
 	 * 
@@ -636,27 +869,35 @@ public class SearchIndexerImpl implements SearchIndexer {
 	 * If no thread is available for a work unit, the thread of the task itself
 	 * will run it. This provides automatic throttling.
 	 * 
-	 * Only one task is active at a time, so the task can simply wait until this
-	 * pool is idle to know that all of its units have completed.
+	 * The pool counts the outstanding work units of each task, so a task can
+	 * wait until all of its own units have completed, and resume as soon as the
+	 * last one does. It needn't wait for the pool as a whole to become idle.
 	 * 
 	 * When shutting down, no attempt is made to interrupt the currently
 	 * executing work units, since they are assumed to be small.
 	 */
 	public static class WorkerThreadPool {
+		/** How often to log a message while waiting for a task's units. */
+		private static final long WAITING_LOG_INTERVAL = 60000L;
+
 		private final ThreadPoolExecutor pool;
 
-		public WorkerThreadPool(int threadPoolSize) {
+		/** Outstanding work units by task. Guarded by this pool's monitor. */
+		private final Map<Task, Integer> outstanding = new IdentityHashMap<>();
+
+		public WorkerThreadPool(int threadPoolSize, String threadName) {
 			this.pool = new ThreadPoolExecutor(threadPoolSize, threadPoolSize,
 					10, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(50),
-					new VitroBackgroundThread.Factory(
-							"SearchIndexer_ThreadPool"),
-					new ThreadPoolExecutor.CallerRunsPolicy());
+					new VitroBackgroundThread.Factory(threadName),
+					new CallerRunsUnlessShutdown());
 		}
 
 		public void submit(Runnable workUnit, Task task) {
+			workUnitSubmitted(task);
 			try {
-				pool.execute(new WorkUnitWrapper(workUnit, task));
+				pool.execute(new WorkUnitWrapper(workUnit, task, this));
 			} catch (RejectedExecutionException e) {
+				workUnitDone(task);
 				if (pool.isShutdown()) {
 					log.warn("Work unit was rejected: " + workUnit + " for "
 							+ task);
@@ -667,16 +908,43 @@ public class SearchIndexerImpl implements SearchIndexer {
 			}
 		}
 
-		public void waitUntilIdle() {
-			for (int i = 0; i < 60; i++) {
+		private synchronized void workUnitSubmitted(Task task) {
+			Integer count = outstanding.get(task);
+			outstanding.put(task, (count == null) ? 1 : count + 1);
+		}
+
+		private synchronized void workUnitDone(Task task) {
+			Integer count = outstanding.get(task);
+			if (count == null || count <= 1) {
+				outstanding.remove(task);
+				notifyAll();
+			} else {
+				outstanding.put(task, count - 1);
+			}
+		}
+
+		/**
+		 * Wait until every work unit that was submitted for this task has
+		 * completed, and the task has been notified of its completion.
+		 * 
+		 * If the thread is interrupted, return immediately, leaving the thread
+		 * in the interrupted state.
+		 */
+		public synchronized void waitUntilDone(Task task) {
+			long waitingSince = System.currentTimeMillis();
+			while (outstanding.containsKey(task)) {
 				try {
-					Thread.sleep(1000);
+					wait(WAITING_LOG_INTERVAL);
 				} catch (InterruptedException e) {
 					Thread.currentThread().interrupt();
-				}
-				if (pool.getActiveCount() + pool.getQueue().size() == 0) {
 					return;
 				}
+				if (outstanding.containsKey(task)) {
+					log.info("Waited "
+							+ (System.currentTimeMillis() - waitingSince)
+							+ " ms for " + outstanding.get(task)
+							+ " work units to complete, for " + task);
+				}
 			}
 		}
 
@@ -693,13 +961,34 @@ public class SearchIndexerImpl implements SearchIndexer {
 			}
 		}
 
+		/**
+		 * Like CallerRunsPolicy, except that a work unit that is rejected
+		 * because the pool is shut down is reported, rather than being
+		 * silently discarded. Otherwise, its task would wait for it forever.
+		 */
+		private static class CallerRunsUnlessShutdown implements
+				RejectedExecutionHandler {
+			@Override
+			public void rejectedExecution(Runnable r,
+					ThreadPoolExecutor executor) {
+				if (executor.isShutdown()) {
+					throw new RejectedExecutionException(
+							"Thread pool is shut down.");
+				}
+				r.run();
+			}
+		}
+
 		private static class WorkUnitWrapper implements Runnable {
 			private final Runnable workUnit;
 			private final Task task;
+			private final WorkerThreadPool owner;
 
-			public WorkUnitWrapper(Runnable workUnit, Task task) {
+			public WorkUnitWrapper(Runnable workUnit, Task task,
+					WorkerThreadPool owner) {
 				this.workUnit = workUnit;
 				this.task = task;
+				this.owner = owner;
 			}
 
 			@Override
@@ -711,7 +1000,11 @@ public class SearchIndexerImpl implements SearchIndexer {
 
 					setWorkLevel(IDLE);
 				} finally {
-					task.notifyWorkUnitCompletion(workUnit);
+					try {
+						task.notifyWorkUnitCompletion(workUnit);
+					} finally {
+						owner.workUnitDone(task);
+					}
 				}
 			}
 
@@ -10,6 +10,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.controller.individual.RenderedPageCache;
 import edu.cornell.mannlib.vitro.webapp.modules.Application;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
@@ -23,13 +24,15 @@ import edu.cornell.mannlib.vitro.webapp.utils.developer.listeners.DeveloperDisab
 
 /**
  * Start the SearchIndexer. Create a listener on the RDFService and link it to
- * the indexer.
+ * the indexer, and to the cache of rendered pages.
  * 
  * Create a history object as a listener and make it available to the
  * IndexController.
  * 
  * Create a listener that will call commit() on the SearchEngine every time it
  * hears a progress or completion event.
+ * 
+ * If a rebuild was interrupted by the last shutdown, resume it.
  */
 public class SearchIndexerSetup implements ServletContextListener {
 	private static final Log log = LogFactory.getLog(SearchIndexerSetup.class);
@@ -52,7 +55,8 @@ public class SearchIndexerSetup implements ServletContextListener {
 			searchIndexer = app.getSearchIndexer();
 
 			// A change listener, wrapped so it can respond to a developer flag.
-			listener = new IndexingChangeListener(searchIndexer);
+			listener = new IndexingChangeListener(searchIndexer,
+					RenderedPageCache.getInstance(ctx));
 			listenerWrapper = new DeveloperDisabledChangeListener(listener,
 					Key.SEARCH_INDEX_SUPPRESS_MODEL_CHANGE_LISTENER);
 			RDFServiceUtils.getRDFServiceFactory(ctx).registerJenaModelChangedListener(
@@ -64,6 +68,7 @@ public class SearchIndexerSetup implements ServletContextListener {
 
 			searchIndexer
 					.startup(app, new ComponentStartupStatusImpl(this, ss));
+			searchIndexer.resumeInterruptedRebuild();
 
 			ss.info(this, "Setup of search indexer completed.");
 		} catch (RDFServiceException e) {
@@ -0,0 +1,30 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding;
+
+import java.util.Map;
+
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+
+/**
+ * A DocumentModifier that can do its work more efficiently for several
+ * individuals at once than for each individual in turn.
+ *
+ * The result must be the same as calling modifyDocument() for each of the
+ * individuals.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface BatchDocumentModifier extends DocumentModifier {
+	/**
+	 * Modify each of these documents, according to the characteristics of the
+	 * corresponding individual.
+	 *
+	 * @param docs
+	 *            A map from each individual to its document. Will not be null
+	 *            or empty.
+	 */
+	public void modifyDocuments(Map<Individual, SearchInputDocument> docs);
+
+}
@@ -2,6 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding;
 
+import java.util.Map;
+
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 
@@ -15,7 +17,7 @@ import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument
  * 
  * <pre>
  * startIndexing(), 
- * 0 or more modifyDocument() by multiple threads,
+ * 0 or more modifyDocument() or modifyDocuments() by multiple threads,
  * stopIndexing().
  * </pre>
  */
@@ -37,4 +39,13 @@ public interface DocumentModifierList {
 	 */
 	void modifyDocument(Individual ind, SearchInputDocument doc);
 
+	/**
+	 * Exercise the list of modifiers on a batch of individuals, making changes
+	 * to each document based on the corresponding individual.
+	 * 
+	 * A BatchDocumentModifier is given the whole batch at once. Other modifiers
+	 * are run on each individual in turn.
+	 */
+	void modifyDocuments(Map<Individual, SearchInputDocument> docs);
+
 }
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
@@ -39,4 +40,18 @@ public class DocumentModifierListBasic implements DocumentModifierList {
 		}
 	}
 
+	@Override
+	public void modifyDocuments(Map<Individual, SearchInputDocument> docs) {
+		for (DocumentModifier m : modifiers) {
+			if (m instanceof BatchDocumentModifier) {
+				((BatchDocumentModifier) m).modifyDocuments(docs);
+			} else {
+				for (Map.Entry<Individual, SearchInputDocument> entry : docs
+						.entrySet()) {
+					m.modifyDocument(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+
 }
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -56,6 +57,28 @@ public class DocumentModifierListDeveloper implements DocumentModifierList {
 		}
 	}
 
+	/**
+	 * A batch counts as one call for each of its documents.
+	 */
+	@Override
+	public void modifyDocuments(Map<Individual, SearchInputDocument> docs) {
+		count.addAndGet(docs.size());
+
+		for (ModifierTiming timing : timings) {
+			long startTime = System.currentTimeMillis();
+			DocumentModifier m = timing.getModifier();
+			if (m instanceof BatchDocumentModifier) {
+				((BatchDocumentModifier) m).modifyDocuments(docs);
+			} else {
+				for (Map.Entry<Individual, SearchInputDocument> entry : docs
+						.entrySet()) {
+					m.modifyDocument(entry.getKey(), entry.getValue());
+				}
+			}
+			timing.addElapsedTime(System.currentTimeMillis() - startTime);
+		}
+	}
+
 	/**
 	 * Write the timings to the log.
 	 */
@@ -9,21 +9,35 @@ import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRun
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
 
 import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ContextModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.ContextModelsUser;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.PreparedQuery;
 import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.QueryHolder;
 
 /**
@@ -39,19 +53,29 @@ import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.QueryHolder;
  * there are no type restrictions.
  * 
  * Each query should contain a ?uri variable, which will be replaced by the URI
- * of the individual.
+ * of the individual. The queries are prepared when the instance is validated,
+ * so the URI is bound to the parsed query rather than to the query text.
  * 
  * All of the result fields of all result rows of all of the queries will be
  * converted to strings and added to each of the specified search fields.
  * 
  * A label may be supplied to the instance, for use in logging. If no label is
  * supplied, one will be generated.
+ * 
+ * When given a batch of individuals, each query is executed once for the whole
+ * batch, with a VALUES clause that binds ?uri to each of the qualifying
+ * individuals. ?uri is added to the results, so the rows can be sorted out by
+ * individual. A query is executed once per individual instead, if binding it
+ * this way could change its results: if it uses aggregates, GROUP BY, LIMIT,
+ * OFFSET, VALUES or a sub-query, or if it can't be parsed.
  */
-public class SelectQueryDocumentModifier implements DocumentModifier,
+public class SelectQueryDocumentModifier implements BatchDocumentModifier,
 		ContextModelsUser {
 	private static final Log log = LogFactory
 			.getLog(SelectQueryDocumentModifier.class);
 
+	private static final String VAR_URI = "uri";
+
 	private RDFService rdfService;
 
 	/** A name to be used in logging, to identify this instance. */
@@ -72,6 +96,18 @@ public class SelectQueryDocumentModifier implements DocumentModifier,
 	 */
 	private Set<String> typeRestrictions = new HashSet<>();
 
+	/**
+	 * The prepared form of each query. If a query can't be parsed, it is not
+	 * in this map, and the URI is bound to the query text instead.
+	 */
+	private final Map<String, PreparedQuery> preparedQueries = new HashMap<>();
+
+	/**
+	 * The queries that can be run for a batch of individuals. Any other query
+	 * must be run for each individual.
+	 */
+	private final Set<String> batchQueries = new HashSet<>();
+
 	@Override
 	public void setContextModels(ContextModelAccess models) {
 		this.rdfService = models.getRDFService(CONTENT);
@@ -110,6 +146,48 @@ public class SelectQueryDocumentModifier implements DocumentModifier,
 			throw new IllegalStateException(
 					"Configuration contains no queries for " + label);
 		}
+		for (String query : queries) {
+			try {
+				PreparedQuery prepared = PreparedQuery.prepare(query);
+				preparedQueries.put(query, prepared);
+				if (isBatchable(prepared)) {
+					batchQueries.add(query);
+				} else {
+					log.debug(label + " - query will not be batched: '"
+							+ query + "'");
+				}
+			} catch (Exception e) {
+				log.warn(label + " - failed to prepare query: '" + query
+						+ "'", e);
+			}
+		}
+	}
+
+	/**
+	 * Could the query be run with ?uri bound by a VALUES clause, and produce
+	 * the same results for each individual?
+	 */
+	private boolean isBatchable(PreparedQuery prepared) {
+		if (!prepared.hasVariable(VAR_URI)) {
+			return false;
+		}
+		Query parsed = prepared.getQuery();
+		return parsed.isSelectType() && !parsed.hasAggregators()
+				&& !parsed.hasGroupBy() && !parsed.hasHaving()
+				&& !parsed.hasLimit() && !parsed.hasOffset()
+				&& !parsed.hasValues()
+				&& !containsSubQuery(parsed.getQueryPattern());
+	}
+
+	private boolean containsSubQuery(Element pattern) {
+		final boolean[] found = new boolean[] { false };
+		ElementWalker.walk(pattern, new ElementVisitorBase() {
+			@Override
+			public void visit(ElementSubQuery el) {
+				found[0] = true;
+			}
+		});
+		return found[0];
 	}
 
 	@Override
@@ -128,6 +206,52 @@ public class SelectQueryDocumentModifier implements DocumentModifier,
 		}
 	}
 
+	/**
+	 * Run each query once for all of the qualifying individuals, if possible.
+	 */
+	@Override
+	public void modifyDocuments(Map<Individual, SearchInputDocument> docs) {
+		Map<String, List<String>> valuesByUri = new LinkedHashMap<>();
+		Map<String, List<SearchInputDocument>> docsByUri = new HashMap<>();
+		for (Map.Entry<Individual, SearchInputDocument> entry : docs
+				.entrySet()) {
+			Individual ind = entry.getKey();
+			if (ind.getURI() == null) {
+				modifyDocument(ind, entry.getValue());
+			} else if (passesTypeRestrictions(ind)) {
+				String uri = ind.getURI();
+				if (!valuesByUri.containsKey(uri)) {
+					valuesByUri.put(uri, new ArrayList<String>());
+					docsByUri.put(uri, new ArrayList<SearchInputDocument>());
+				}
+				docsByUri.get(uri).add(entry.getValue());
+			}
+		}
+		if (valuesByUri.isEmpty()) {
+			return;
+		}
+
+		for (String query : queries) {
+			if (!batchQueries.contains(query)
+					|| !getTextForBatchQuery(query, valuesByUri)) {
+				for (Map.Entry<String, List<String>> entry : valuesByUri
+						.entrySet()) {
+					entry.getValue().addAll(
+							getTextForQuery(query, entry.getKey()));
+				}
+			}
+		}
+
+		for (String uri : valuesByUri.keySet()) {
+			List<String> values = valuesByUri.get(uri);
+			for (SearchInputDocument doc : docsByUri.get(uri)) {
+				for (String fieldName : fieldNames) {
+					doc.addField(fieldName, values);
+				}
+			}
+		}
+	}
+
 	private boolean passesTypeRestrictions(Individual ind) {
 		if (typeRestrictions.isEmpty()) {
 			return true;
@@ -144,17 +268,29 @@ public class SelectQueryDocumentModifier implements DocumentModifier,
 	private List<String> getTextForQueries(Individual ind) {
 		List<String> list = new ArrayList<>();
 		for (String query : queries) {
-			list.addAll(getTextForQuery(query, ind));
+			list.addAll(getTextForQuery(query, ind.getURI()));
 		}
 		return list;
 	}
 
-	private List<String> getTextForQuery(String query, Individual ind) {
+	private List<String> getTextForQuery(String query, String uri) {
 		try {
-			QueryHolder queryHolder = new QueryHolder(query).bindToUri("uri",
-					ind.getURI());
-			List<String> list = createSelectQueryContext(rdfService,
-					queryHolder).execute().toStringFields().flatten();
+			List<String> list;
+			PreparedQuery prepared = preparedQueries.get(query);
+			if (prepared == null) {
+				QueryHolder queryHolder = new QueryHolder(query).bindToUri(
+						VAR_URI, uri);
+				list = createSelectQueryContext(rdfService, queryHolder)
+						.execute().toStringFields().flatten();
+			} else {
+				list = new ArrayList<>();
+				for (Map<String, String> row : createSelectQueryContext(
+						rdfService, prepared.bindToUri(VAR_URI, uri)).execute()
+						.toStringFields().getListOfMaps()) {
+					row.remove(VAR_URI);
+					list.addAll(row.values());
+				}
+			}
 			log.debug(label + " - query: '" + query + "' returns " + list);
 			return list;
 		} catch (Throwable t) {
@@ -163,6 +299,70 @@ public class SelectQueryDocumentModifier implements DocumentModifier,
 		}
 	}
 
+	/**
+	 * Run the query once for all of these URIs, and add the text of each result
+	 * row to the list for its URI. The text is the same as when the query is
+	 * run for a single URI: the non-blank values of the result fields, other
+	 * than ?uri.
+	 * 
+	 * @return false if the query failed, so nothing was added.
+	 */
+	private boolean getTextForBatchQuery(String query,
+			final Map<String, List<String>> valuesByUri) {
+		final Map<String, List<String>> found = new HashMap<>();
+		String batchQuery = preparedQueries.get(query)
+				.bindToUris(VAR_URI, valuesByUri.keySet()).getQueryString();
+		try {
+			rdfService.sparqlSelectQuery(batchQuery, new ResultSetConsumer() {
+				@Override
+				protected void processQuerySolution(QuerySolution qs) {
+					RDFNode uriNode = qs.get(VAR_URI);
+					if (uriNode == null || !uriNode.isURIResource()) {
+						return;
+					}
+					String uri = uriNode.asResource().getURI();
+					if (!valuesByUri.containsKey(uri)) {
+						return;
+					}
+					if (!found.containsKey(uri)) {
+						found.put(uri, new ArrayList<String>());
+					}
+					for (Iterator<String> names = qs.varNames(); names
+							.hasNext();) {
+						String name = names.next();
+						if (!VAR_URI.equals(name)) {
+							String text = getTextForNode(qs.get(name));
+							if (StringUtils.isNotBlank(text)) {
+								found.get(uri).add(text);
+							}
+						}
+					}
+				}
+			});
+		} catch (Throwable t) {
+			log.warn(label + " - problem while running batch query '"
+					+ batchQuery + "'; running it for each individual.", t);
+			return false;
+		}
+
+		log.debug(label + " - query: '" + query + "' for " + valuesByUri.size()
+				+ " individuals returns " + found);
+		for (Map.Entry<String, List<String>> entry : found.entrySet()) {
+			valuesByUri.get(entry.getKey()).addAll(entry.getValue());
+		}
+		return true;
+	}
+
+	private String getTextForNode(RDFNode node) {
+		if (node == null) {
+			return "";
+		} else if (node.isLiteral()) {
+			return node.asLiteral().getString().trim();
+		} else {
+			return node.toString().trim();
+		}
+	}
+
 	@Override
 	public void shutdown() {
 		// Nothing to do.
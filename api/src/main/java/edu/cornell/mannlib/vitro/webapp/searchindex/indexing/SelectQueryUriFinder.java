@@ -4,12 +4,15 @@ package edu.cornell.mannlib.vitro.webapp.searchindex.indexing;
 
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONTENT;
 import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.createSelectQueryContext;
+import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.prepareQuery;
 import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.queryHolder;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -23,6 +26,7 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.ContextModelsUser;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.Property;
 import edu.cornell.mannlib.vitro.webapp.utils.configuration.Validation;
+import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.PreparedQuery;
 import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.QueryHolder;
 
 /**
@@ -39,6 +43,10 @@ import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.QueryHolder;
  * respectively. If the subject or object has no URI and the query expects one,
  * then the query will be ignored. (Predicates always have URIs.)
  * 
+ * The queries are prepared as they are added, so the URIs are bound to the
+ * parsed queries rather than to the query text. If a query can't be parsed,
+ * the URIs are bound to its text.
+ * 
  * All of the result fields of all result rows of all of the queries will be
  * returned.
  * 
@@ -58,6 +66,9 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 	/** The queries to be executed. There must be at least one. */
 	private List<String> queries = new ArrayList<>();
 
+	/** The prepared form of each query that could be parsed. */
+	private Map<String, PreparedQuery> preparedQueries = new HashMap<>();
+
 	/**
 	 * URIs of the predicates that will trigger these queries. If empty, then
 	 * the queries apply to all statements.
@@ -77,6 +88,11 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasSelectQuery", minOccurs = 1)
 	public void addQuery(String query) {
 		queries.add(query);
+		try {
+			preparedQueries.put(query, prepareQuery(query));
+		} catch (Exception e) {
+			log.warn("Failed to prepare query: '" + query + "'", e);
+		}
 	}
 
 	@Property(uri = "http://vitro.mannlib.cornell.edu/ns/vitro/ApplicationSetup#hasPredicateRestriction")
@@ -118,6 +134,38 @@ public class SelectQueryUriFinder implements IndexingUriFinder,
 	}
 
 	private List<String> getUrisForQuery(Statement stmt, String queryString) {
+		PreparedQuery prepared = preparedQueries.get(queryString);
+		if (prepared == null) {
+			return getUrisForQueryText(stmt, queryString);
+		}
+
+		PreparedQuery query = prepared.bindToUri("predicate", stmt
+				.getPredicate().getURI());
+		query = tryToBindUri(query, "subject", stmt.getSubject());
+		query = tryToBindUri(query, "object", stmt.getObject());
+		if (query == null) {
+			return Collections.emptyList();
+		}
+
+		return createSelectQueryContext(rdfService, query).execute()
+				.toStringFields().flatten();
+	}
+
+	private PreparedQuery tryToBindUri(PreparedQuery query, String name,
+			RDFNode node) {
+		if (query == null) {
+			return null;
+		}
+		if (!query.hasVariable(name)) {
+			return query;
+		}
+		if (!node.isURIResource()) {
+			return null;
+		}
+		return query.bindToUri(name, node.asResource().getURI());
+	}
+
+	private List<String> getUrisForQueryText(Statement stmt, String queryString) {
 		QueryHolder query = queryHolder(queryString);
 		query = query.bindToUri("predicate", stmt.getPredicate().getURI());
 
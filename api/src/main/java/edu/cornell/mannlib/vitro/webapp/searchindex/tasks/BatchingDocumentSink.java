@@ -0,0 +1,174 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+
+/**
+ * Accumulate search documents from the worker threads, and send them to the
+ * SearchEngine in batches, rather than one at a time.
+ *
+ * A batch is sent when it reaches the maximum size, or when a document is
+ * added to a batch that has reached the maximum age. Any partial batch is sent
+ * when flush() is called. The task that owns the sink must call flush() after
+ * its work units have completed.
+ *
+ * There is no timer: the age limit is only checked while documents keep
+ * arriving. If the work units go quiet, the documents in a partial batch wait
+ * until the next add(), or until the task calls flush(), however long that
+ * takes. A sink belongs to a single task, so that is never later than the end
+ * of the task.
+ *
+ * The batch is sent by the thread that fills it, outside of the lock, so other
+ * threads may continue to add documents to the next batch.
+ *
+ * The number of documents that are waiting or being sent is limited. When the
+ * limit is reached, add() blocks until a batch has been sent. Since the
+ * WorkerThreadPool runs rejected work units on the task's own thread, this
+ * slows the task down to the pace of the SearchEngine.
+ *
+ * If a batch is rejected by the SearchEngine, each of its documents is tried
+ * individually, so one bad document does not cost us the others. If the
+ * SearchEngine is not responding, the batch is discarded.
+ */
+public class BatchingDocumentSink {
+	private static final Log log = LogFactory
+			.getLog(BatchingDocumentSink.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	public static final long DEFAULT_MAX_AGE_MILLIS = 5000L;
+
+	private final SearchEngine searchEngine;
+	private final int batchSize;
+	private final long maxAgeMillis;
+	private final Semaphore permits;
+	private final int totalPermits;
+
+	/** All access to the batch must be synchronized on this sink. */
+	private List<SearchInputDocument> batch;
+	private long batchStartedAt;
+
+	public BatchingDocumentSink(SearchEngine searchEngine) {
+		this(searchEngine, DEFAULT_BATCH_SIZE, DEFAULT_MAX_AGE_MILLIS);
+	}
+
+	public BatchingDocumentSink(SearchEngine searchEngine, int batchSize,
+			long maxAgeMillis) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive: "
+					+ batchSize);
+		}
+		this.searchEngine = searchEngine;
+		this.batchSize = batchSize;
+		this.maxAgeMillis = maxAgeMillis;
+		this.totalPermits = batchSize * 4;
+		this.permits = new Semaphore(totalPermits);
+		this.batch = new ArrayList<>(batchSize);
+	}
+
+	/**
+	 * Add a document to the current batch. If this fills the batch, or if the
+	 * batch is too old, send it. This is the only place where the age of the
+	 * batch is checked.
+	 *
+	 * Blocks if too many documents are waiting to be sent.
+	 */
+	public void add(SearchInputDocument doc) throws InterruptedException {
+		permits.acquire();
+
+		List<SearchInputDocument> full = null;
+		synchronized (this) {
+			if (batch.isEmpty()) {
+				batchStartedAt = System.currentTimeMillis();
+			}
+			batch.add(doc);
+			if (batch.size() >= batchSize
+					|| System.currentTimeMillis() - batchStartedAt >= maxAgeMillis) {
+				full = takeBatch();
+			}
+		}
+
+		if (full != null) {
+			send(full);
+		}
+	}
+
+	/**
+	 * Send any documents that are waiting, and wait for any batches that are
+	 * being sent by other threads. If a straggling work unit adds a document
+	 * meanwhile, send that as well.
+	 */
+	public void flush() {
+		while (true) {
+			List<SearchInputDocument> partial;
+			synchronized (this) {
+				partial = takeBatch();
+			}
+			if (!partial.isEmpty()) {
+				send(partial);
+			}
+
+			try {
+				if (permits.tryAcquire(totalPermits, 100, MILLISECONDS)) {
+					permits.release(totalPermits);
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private List<SearchInputDocument> takeBatch() {
+		List<SearchInputDocument> taken = batch;
+		batch = new ArrayList<>(batchSize);
+		return taken;
+	}
+
+	private void send(List<SearchInputDocument> docs) {
+		try {
+			searchEngine.add(docs);
+			log.debug("Sent a batch of " + docs.size() + " documents.");
+		} catch (SearchEngineNotRespondingException e) {
+			log.warn("Failed to add a batch of " + docs.size()
+					+ " documents to the search index: "
+					+ "the search engine is not responding.");
+		} catch (Exception e) {
+			log.warn("Failed to add a batch of " + docs.size()
+					+ " documents to the search index. "
+					+ "Trying them individually.", e);
+			sendIndividually(docs);
+		} finally {
+			permits.release(docs.size());
+		}
+	}
+
+	private void sendIndividually(List<SearchInputDocument> docs) {
+		for (SearchInputDocument doc : docs) {
+			try {
+				searchEngine.add(doc);
+			} catch (SearchEngineNotRespondingException e) {
+				log.warn("Failed to add a document to the search index: "
+						+ "the search engine is not responding.");
+				return;
+			} catch (SearchEngineException e) {
+				log.warn("Failed to add document to the search index: " + doc,
+						e);
+			}
+		}
+	}
+
+}
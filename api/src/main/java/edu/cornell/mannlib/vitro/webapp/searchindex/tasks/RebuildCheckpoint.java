@@ -0,0 +1,151 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A file in the Vitro home directory that records the progress of a rebuild of
+ * the search index. If the application stops before the rebuild is complete,
+ * the rebuild can be resumed from the last checkpoint.
+ *
+ * The checkpoint holds the time that the rebuild was requested, the last URI
+ * that was completely processed, and the number of URIs processed so far. URIs
+ * are processed in order of their string values, so the rebuild can resume
+ * with the next URI after the last one. The request time is kept so that any
+ * documents that were not updated by the rebuild can be deleted at the end.
+ *
+ * The file is written to a temporary file and then moved into place, so a
+ * crash while writing will not leave a damaged checkpoint.
+ */
+public class RebuildCheckpoint {
+	private static final Log log = LogFactory.getLog(RebuildCheckpoint.class);
+
+	public static final String FILE_NAME = "searchIndexRebuild.checkpoint";
+
+	private static final String PROPERTY_REQUESTED_AT = "requestedAt";
+	private static final String PROPERTY_LAST_URI = "lastUri";
+	private static final String PROPERTY_COUNT = "count";
+
+	private final Path path;
+	private final Path tempPath;
+
+	public RebuildCheckpoint(Path homeDirectory) {
+		this.path = homeDirectory.resolve(FILE_NAME);
+		this.tempPath = homeDirectory.resolve(FILE_NAME + ".tmp");
+	}
+
+	/**
+	 * Read the checkpoint, if there is one.
+	 *
+	 * @return null if there is no checkpoint, or if it can't be read.
+	 */
+	public synchronized Saved load() {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+
+		try (Reader reader = Files.newBufferedReader(path, UTF_8)) {
+			Properties props = new Properties();
+			props.load(reader);
+			Date requestedAt = new Date(Long.parseLong(props
+					.getProperty(PROPERTY_REQUESTED_AT)));
+			String lastUri = props.getProperty(PROPERTY_LAST_URI);
+			int count = Integer.parseInt(props.getProperty(PROPERTY_COUNT, "0"));
+			return new Saved(requestedAt, lastUri, count);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Failed to read the search index rebuild checkpoint at '"
+					+ path + "'", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Record the progress of the rebuild.
+	 *
+	 * @param lastUri
+	 *            may be null, if no URIs have been processed yet.
+	 */
+	public synchronized void save(Date requestedAt, String lastUri, int count) {
+		Properties props = new Properties();
+		props.setProperty(PROPERTY_REQUESTED_AT,
+				String.valueOf(requestedAt.getTime()));
+		if (lastUri != null) {
+			props.setProperty(PROPERTY_LAST_URI, lastUri);
+		}
+		props.setProperty(PROPERTY_COUNT, String.valueOf(count));
+
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempPath, UTF_8)) {
+				props.store(writer, "Search index rebuild checkpoint");
+			}
+			Files.move(tempPath, path, REPLACE_EXISTING, ATOMIC_MOVE);
+			log.debug("Saved checkpoint: " + count + " URIs, through '"
+					+ lastUri + "'");
+		} catch (IOException e) {
+			log.warn("Failed to write the search index rebuild checkpoint at '"
+					+ path + "'", e);
+		}
+	}
+
+	/**
+	 * The rebuild is complete. Remove the checkpoint.
+	 */
+	public synchronized void clear() {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			log.warn("Failed to delete the search index rebuild checkpoint at '"
+					+ path + "'", e);
+		}
+	}
+
+	/**
+	 * An immutable record of the checkpoint contents.
+	 */
+	public static class Saved {
+		private final Date requestedAt;
+		private final String lastUri;
+		private final int count;
+
+		public Saved(Date requestedAt, String lastUri, int count) {
+			this.requestedAt = requestedAt;
+			this.lastUri = lastUri;
+			this.count = count;
+		}
+
+		public Date getRequestedAt() {
+			return requestedAt;
+		}
+
+		/** May be null, if no URIs had been processed. */
+		public String getLastUri() {
+			return lastUri;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return "Saved[requestedAt="
+					+ new SimpleDateFormat().format(requestedAt)
+					+ ", lastUri=" + lastUri + ", count=" + count + "]";
+		}
+	}
+}
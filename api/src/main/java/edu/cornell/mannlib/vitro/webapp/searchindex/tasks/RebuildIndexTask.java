@@ -7,8 +7,8 @@ import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndex
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State.REBUILDING;
 
 import java.text.SimpleDateFormat;
-import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -22,6 +22,7 @@ import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Even
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.RebuildCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.CoalescingTask;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
@@ -31,14 +32,26 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExclud
 
 /**
  * Get the URIs of all individuals in the model. Update each of their search
- * documents.
+ * documents. The URIs are read a page at a time, and indexing begins with the
+ * first page.
  * 
  * Delete all search documents that have not been updated since this rebuild
  * began. That removes all obsolete documents from the index.
+ * 
+ * Progress is recorded in a RebuildCheckpoint as the rebuild proceeds. If the
+ * rebuild is interrupted, it may later be resumed from the checkpoint. The
+ * resumed task keeps the original request time, so the obsolete documents are
+ * still deleted at the end. The checkpoint is removed when the rebuild is
+ * complete.
+ * 
+ * While waiting to run, the task will absorb any later RebuildIndexTask, since
+ * there is no point in rebuilding twice in a row. A resumed task will not
+ * absorb a new request, since it would not process the earlier URIs.
  */
-public class RebuildIndexTask implements Task {
+public class RebuildIndexTask implements CoalescingTask {
 	private static final Log log = LogFactory.getLog(RebuildIndexTask.class);
 	private final Date requestedAt;
+	private final RebuildCheckpoint.Saved resumeFrom;
 
     private final IndexerConfig config;
     private RebuildIndexTaskImpl impl;
@@ -46,11 +59,21 @@ public class RebuildIndexTask implements Task {
     public RebuildIndexTask(IndexerConfig config) {
         this.config = config;
         this.requestedAt = new Date();
+        this.resumeFrom = null;
+    }
+
+    /**
+     * Resume an interrupted rebuild from its checkpoint.
+     */
+    public RebuildIndexTask(IndexerConfig config, RebuildCheckpoint.Saved resumeFrom) {
+        this.config = config;
+        this.requestedAt = resumeFrom.getRequestedAt();
+        this.resumeFrom = resumeFrom;
     }
 
 	@Override
 	public void run() {
-        impl = new RebuildIndexTaskImpl(config, requestedAt);
+        impl = new RebuildIndexTaskImpl(config, requestedAt, resumeFrom);
         impl.run();
 	}
 
@@ -66,9 +89,24 @@ public class RebuildIndexTask implements Task {
         }
 	}
 
+	@Override
+	public boolean absorb(Task other) {
+		return other instanceof RebuildIndexTask && resumeFrom == null;
+	}
+
+	@Override
+	public int getWaitingItemCount() {
+		return 0;
+	}
+
 	@Override
 	public String toString() {
-		return "RebuildIndexTask[requestedAt=" + new SimpleDateFormat().format(requestedAt) + "]";
+		if (resumeFrom == null) {
+			return "RebuildIndexTask[requestedAt=" + new SimpleDateFormat().format(requestedAt) + "]";
+		} else {
+			return "RebuildIndexTask[requestedAt=" + new SimpleDateFormat().format(requestedAt)
+					+ ", resumeFrom=" + resumeFrom + "]";
+		}
 	}
 
     private static class RebuildIndexTaskImpl implements Task {
@@ -79,44 +117,60 @@ public class RebuildIndexTask implements Task {
         private final DocumentModifierList modifiers;
         private final ListenerList listeners;
         private final WorkerThreadPool pool;
+        private final RebuildCheckpoint checkpoint;
         private final SearchEngine searchEngine;
 
         private final Date requestedAt;
+        private final String resumeAfterUri;
+        private final int resumeCount;
         private final int documentsBefore;
 
         private volatile SearchIndexerStatus status;
 
-        public RebuildIndexTaskImpl(IndexerConfig config, Date requestedAt) {
+        public RebuildIndexTaskImpl(IndexerConfig config, Date requestedAt,
+                RebuildCheckpoint.Saved resumeFrom) {
             this.config = config;
             this.excluders = config.excluderList();
             this.modifiers = config.documentModifierList();
             this.indDao = config.individualDao();
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
+            this.checkpoint = config.rebuildCheckpoint();
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 
             this.requestedAt = requestedAt;
+            this.resumeAfterUri = (resumeFrom == null) ? null : resumeFrom.getLastUri();
+            this.resumeCount = (resumeFrom == null) ? 0 : resumeFrom.getCount();
             this.documentsBefore = getDocumentCount();
             this.status = buildStatus(REBUILDING, 0);
         }
 
         @Override
         public void run() {
-            listeners.fireEvent(new Event(START_REBUILD, status));
+            boolean resumed = (resumeAfterUri != null);
+            listeners.fireEvent(new Event(START_REBUILD, status, resumed));
+            if (resumed) {
+                log.info("Resuming rebuild after " + resumeCount + " URIs, at '"
+                        + resumeAfterUri + "'");
+            }
+            saveCheckpoint(resumeAfterUri, resumeCount);
 
-            Collection<String> uris = getAllUrisInTheModel();
+            Iterator<String> uris = getAllUrisInTheModel();
 
             if (!isInterrupted()) {
                 updateTheUris(uris);
                 if (!isInterrupted()) {
                     deleteOutdatedDocuments();
+                    finalizeIndexing();
+                    checkpoint.clear();
+                } else {
+                    finalizeIndexing();
                 }
-                finalizeIndexing();
             }
 
             status = buildStatus(REBUILDING, getDocumentCount());
-            listeners.fireEvent(new Event(STOP_REBUILD, status));
+            listeners.fireEvent(new Event(STOP_REBUILD, status, resumed));
         }
 
         private boolean isInterrupted() {
@@ -128,12 +182,22 @@ public class RebuildIndexTask implements Task {
             }
         }
 
-        private Collection<String> getAllUrisInTheModel() {
-            return indDao.getAllIndividualUris();
+        private Iterator<String> getAllUrisInTheModel() {
+            return indDao.getAllIndividualUrisIterator(resumeAfterUri);
+        }
+
+        private void updateTheUris(Iterator<String> uris) {
+            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool,
+                    new UpdateUrisTask.CheckpointListener() {
+                        @Override
+                        public void checkpoint(String lastUri, int count) {
+                            saveCheckpoint(lastUri, resumeCount + count);
+                        }
+                    });
         }
 
-        private void updateTheUris(Collection<String> uris) {
-            UpdateUrisTask.runNow(uris, excluders, modifiers, indDao, listeners, pool);
+        private void saveCheckpoint(String lastUri, int count) {
+            checkpoint.save(requestedAt, lastUri, count);
         }
 
         private void finalizeIndexing() {
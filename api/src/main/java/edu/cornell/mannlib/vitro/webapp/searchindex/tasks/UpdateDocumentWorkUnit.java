@@ -13,9 +13,13 @@ import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.NAME_
 import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.RDFTYPE;
 import static edu.cornell.mannlib.vitro.webapp.search.VitroSearchTermNames.URI;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -33,12 +37,20 @@ import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.ObjectPropertyStatement;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerUtils;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifier;
 import edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding.DocumentModifierList;
 
+/**
+ * Build the search documents for a batch of individuals, and hand them to the
+ * sink.
+ * 
+ * The DocumentModifierList works on the whole batch at once, so modifiers that
+ * can run their queries for several individuals at a time may do so. If that
+ * fails, each individual is tried on its own, so one bad individual does not
+ * cost us the others.
+ */
 public class UpdateDocumentWorkUnit implements Runnable {
 	private static final Log log = LogFactory
 			.getLog(UpdateDocumentWorkUnit.class);
@@ -47,33 +59,78 @@ public class UpdateDocumentWorkUnit implements Runnable {
 	private static final String URI_DIFFERENT_FROM = OWL.differentFrom.getURI();
 	private static final String URI_RDFS_LABEL = RDFS.label.getURI();
 
-	private final Individual ind;
+	private final List<Individual> inds;
 	private final DocumentModifierList modifiers;
+	private final BatchingDocumentSink sink;
 	private final SearchEngine searchEngine;
 
-	public UpdateDocumentWorkUnit(Individual ind, DocumentModifierList modifiers) {
-		this.ind = ind;
+	public UpdateDocumentWorkUnit(List<Individual> inds,
+			DocumentModifierList modifiers, BatchingDocumentSink sink) {
+		this.inds = Collections.unmodifiableList(new ArrayList<>(inds));
 		this.modifiers = modifiers;
+		this.sink = sink;
 		this.searchEngine = ApplicationUtils.instance().getSearchEngine();
 	}
 
-	public Individual getInd() {
-		return ind;
+	public List<Individual> getInds() {
+		return inds;
 	}
 
+	/**
+	 * Build the documents and hand them to the sink. The sink will send them to
+	 * the SearchEngine in a batch with others.
+	 */
 	@Override
 	public void run() {
 		try {
-			SearchInputDocument doc = searchEngine.createInputDocument();
-			modifiers.modifyDocument(ind, doc);
-			addIndexedTime(doc);
-			searchEngine.add(doc);
-		} catch (SearchEngineNotRespondingException e) {
-			log.warn("Failed to add '" + ind + "' to the search index: "
-					+ "the search engine is not responding.");
-		} catch (Exception e) {
-			log.warn("Failed to add '" + ind + "' to the search index.", e);
+			Map<Individual, SearchInputDocument> docs = buildDocuments();
+			for (SearchInputDocument doc : docs.values()) {
+				sink.add(doc);
+			}
+		} catch (InterruptedException e) {
+			log.warn("Interrupted while adding " + inds
+					+ " to the search index.");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Map<Individual, SearchInputDocument> buildDocuments() {
+		if (inds.size() > 1) {
+			try {
+				Map<Individual, SearchInputDocument> docs = createDocuments(inds);
+				modifiers.modifyDocuments(docs);
+				for (SearchInputDocument doc : docs.values()) {
+					addIndexedTime(doc);
+				}
+				return docs;
+			} catch (Exception e) {
+				log.warn("Failed to build documents for a batch of "
+						+ inds.size() + " individuals. "
+						+ "Trying them individually.", e);
+			}
+		}
+
+		Map<Individual, SearchInputDocument> docs = new LinkedHashMap<>();
+		for (Individual ind : inds) {
+			try {
+				SearchInputDocument doc = searchEngine.createInputDocument();
+				modifiers.modifyDocument(ind, doc);
+				addIndexedTime(doc);
+				docs.put(ind, doc);
+			} catch (Exception e) {
+				log.warn("Failed to add '" + ind + "' to the search index.", e);
+			}
+		}
+		return docs;
+	}
+
+	private Map<Individual, SearchInputDocument> createDocuments(
+			List<Individual> individuals) {
+		Map<Individual, SearchInputDocument> docs = new LinkedHashMap<>();
+		for (Individual ind : individuals) {
+			docs.put(ind, searchEngine.createInputDocument());
 		}
+		return docs;
 	}
 
 	private void addIndexedTime(SearchInputDocument doc) {
@@ -19,10 +19,13 @@ import org.apache.commons.logging.LogFactory;
 
 import org.apache.jena.rdf.model.Statement;
 
+import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.StatementCounts;
+import edu.cornell.mannlib.vitro.webapp.searchindex.LatencyHistogram;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.CoalescingTask;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
@@ -48,30 +51,77 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.indexing.IndexingUriFinderLi
  * 
  * Instead, we final all of the URIs affected by all statements, store them in a
  * Set to remove duplicates, and then process the URIs in the set.
+ * 
+ * For the same reason, while waiting to run, the task will absorb the
+ * statements of later UpdateStatementsTasks.
+ * 
+ * When the documents have been sent to the search engine, the latency of each
+ * group of statements is recorded in the histogram: the time since the
+ * statements were first heard, plus the time the search engine may take to
+ * make the documents visible.
  */
-public class UpdateStatementsTask implements Task {
+public class UpdateStatementsTask implements CoalescingTask {
     private static final Log log = LogFactory.getLog(UpdateStatementsTask.class);
 
     private final IndexerConfig config;
     private UpdateStatementsTaskImpl impl;
 
-    private List<Statement> changes;
+    private final List<Statement> changes;
+    private final List<Arrival> arrivals;
 
     public UpdateStatementsTask(IndexerConfig config, List<Statement> changes) {
+        this(config, changes, System.currentTimeMillis());
+    }
+
+    public UpdateStatementsTask(IndexerConfig config, List<Statement> changes,
+            long heardAtMillis) {
         this.config = config;
         this.changes = new ArrayList<>(changes);
+        this.arrivals = new ArrayList<>();
+        this.arrivals.add(new Arrival(heardAtMillis, changes.size()));
     }
 
     @Override
     public void run() {
         impl = new UpdateStatementsTaskImpl(config, changes);
         impl.run();
+        if (!Thread.currentThread().isInterrupted()) {
+            recordLatency();
+        }
     }
+
+    private void recordLatency() {
+        LatencyHistogram histogram = config.latencyHistogram();
+        int visibilityDelay = ApplicationUtils.instance().getSearchEngine()
+                .getVisibilityDelayMillis();
+        for (Arrival arrival : arrivals) {
+            histogram.recordSince(arrival.millis - visibilityDelay,
+                    arrival.howMany);
+        }
+    }
+
     @Override
     public SearchIndexerStatus getStatus() {
         return impl == null ? SearchIndexerStatus.idle() : impl.getStatus();
     }
 
+    @Override
+    public boolean absorb(Task other) {
+        if (other instanceof UpdateStatementsTask) {
+            UpdateStatementsTask that = (UpdateStatementsTask) other;
+            changes.addAll(that.changes);
+            arrivals.addAll(that.arrivals);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int getWaitingItemCount() {
+        return changes.size();
+    }
+
     @Override
     public void notifyWorkUnitCompletion(Runnable workUnit) {
         if (impl != null) {
@@ -79,6 +129,19 @@ public class UpdateStatementsTask implements Task {
         }
     }
 
+    /**
+     * When was a group of statements first heard, and how many were there?
+     */
+    private static class Arrival {
+        final long millis;
+        final int howMany;
+
+        Arrival(long millis, int howMany) {
+            this.millis = millis;
+            this.howMany = howMany;
+        }
+    }
+
     private static class UpdateStatementsTaskImpl implements Task {
         private final List<Statement> changes;
         private final IndexingUriFinderList uriFinders;
@@ -149,7 +212,7 @@ public class UpdateStatementsTask implements Task {
         }
 
         private void waitForWorkUnitsToComplete() {
-            pool.waitUntilIdle();
+            pool.waitUntilDone(this);
         }
 
         private void updateTheUris() {
@@ -7,9 +7,11 @@ import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndex
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.STOP_URIS;
 import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.State.PROCESSING_URIS;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -20,12 +22,12 @@ import edu.cornell.mannlib.vitro.webapp.beans.Individual;
 import edu.cornell.mannlib.vitro.webapp.beans.VClass;
 import edu.cornell.mannlib.vitro.webapp.dao.IndividualDao;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngine;
-import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineNotRespondingException;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.UriCounts;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerUtils;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.CoalescingTask;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.IndexerConfig;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.ListenerList;
 import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
@@ -43,14 +45,34 @@ import edu.cornell.mannlib.vitro.webapp.searchindex.exclusions.SearchIndexExclud
  * excluded by one of the excluders.
  * 
  * Deletions are done synchronously, but updates are scheduled to run on the
- * thread pool.
+ * thread pool, several individuals to a work unit, so the document modifiers
+ * can do their work a batch at a time. The updated documents are sent to the
+ * SearchEngine in batches.
  * 
- * Commit requests are issued to the SearchEngine at each progress event and
- * again at the end of the task.
+ * The URIs may also be supplied by an Iterator, so a large set of URIs can be
+ * processed as it is produced, without holding it in memory. In that case, the
+ * total count grows as the URIs are read.
+ * 
+ * A CheckpointListener may be told, from time to time, that all of the URIs up
+ * to a certain point have been processed.
+ * 
+ * The task does not commit. The SearchEngine makes the changes visible
+ * according to its own commit policy.
+ * 
+ * While waiting to run, the task will absorb the URIs of later UpdateUrisTasks.
  */
-public class UpdateUrisTask implements Task {
+public class UpdateUrisTask implements CoalescingTask {
     private static final Log log = LogFactory.getLog(UpdateUrisTask.class);
 
+    /** If the total is unknown, the URIs are counted as they are read. */
+    private static final int UNKNOWN_TOTAL = -1;
+
+    /** How many URIs between checkpoints? */
+    private static final int CHECKPOINT_INTERVAL = 10000;
+
+    /** How many individuals in each work unit? */
+    private static final int WORK_UNIT_SIZE = 20;
+
     private final IndexerConfig config;
     private UpdateUrisTaskImpl impl;
 
@@ -65,8 +87,19 @@ public class UpdateUrisTask implements Task {
 	static void runNow(Collection<String> uris,
 			SearchIndexExcluderList excluders, DocumentModifierList modifiers,
 			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool) {
-		UpdateUrisTaskImpl impl = new UpdateUrisTaskImpl(uris, excluders,
-				modifiers, indDao, listeners, pool);
+		UpdateUrisTaskImpl impl = new UpdateUrisTaskImpl(uris.iterator(),
+				uris.size(), excluders, modifiers, indDao, listeners, pool,
+				null);
+		impl.run();
+	}
+
+	static void runNow(Iterator<String> uris,
+			SearchIndexExcluderList excluders, DocumentModifierList modifiers,
+			IndividualDao indDao, ListenerList listeners, WorkerThreadPool pool,
+			CheckpointListener checkpoints) {
+		UpdateUrisTaskImpl impl = new UpdateUrisTaskImpl(uris,
+				UNKNOWN_TOTAL, excluders, modifiers, indDao, listeners,
+				pool, checkpoints);
 		impl.run();
 	}
 
@@ -81,6 +114,21 @@ public class UpdateUrisTask implements Task {
     	return (impl == null) ? SearchIndexerStatus.idle() : impl.getStatus();
     }
 
+    @Override
+    public boolean absorb(Task other) {
+        if (other instanceof UpdateUrisTask) {
+            uris.addAll(((UpdateUrisTask) other).uris);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int getWaitingItemCount() {
+        return uris.size();
+    }
+
     @Override
     public void notifyWorkUnitCompletion(Runnable workUnit) {
         if (impl != null) {
@@ -89,7 +137,7 @@ public class UpdateUrisTask implements Task {
     }
 
     private static class UpdateUrisTaskImpl implements Task {
-        private final Collection<String> uris;
+        private final Iterator<String> uris;
         private final IndividualDao indDao;
         private final SearchIndexExcluderList excluders;
         private final DocumentModifierList modifiers;
@@ -98,6 +146,11 @@ public class UpdateUrisTask implements Task {
 
         private final Status status;
         private final SearchEngine searchEngine;
+        private final BatchingDocumentSink sink;
+        private final CheckpointListener checkpoints;
+
+        /** Individuals waiting to be submitted as a work unit. */
+        private List<Individual> pending = new ArrayList<>();
 
         public UpdateUrisTaskImpl(IndexerConfig config, Collection<String> uris) {
             this.excluders = config.excluderList();
@@ -106,26 +159,31 @@ public class UpdateUrisTask implements Task {
             this.listeners = config.listenerList();
             this.pool = config.workerThreadPool();
 
-            this.uris = uris;
+            this.uris = uris.iterator();
             this.status = new Status(this, uris.size(), 500);
+            this.checkpoints = null;
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
+            this.sink = new BatchingDocumentSink(searchEngine);
         }
 
-		public UpdateUrisTaskImpl(Collection<String> uris,
+		public UpdateUrisTaskImpl(Iterator<String> uris, int total,
 				SearchIndexExcluderList excluders,
 				DocumentModifierList modifiers, IndividualDao indDao,
-				ListenerList listeners, WorkerThreadPool pool) {
-			log.debug("Updating " + uris.size() + " uris.");
+				ListenerList listeners, WorkerThreadPool pool,
+				CheckpointListener checkpoints) {
+			log.debug("Updating " + total + " uris.");
         	this.uris = uris;
             this.excluders = excluders;
             this.modifiers = modifiers;
             this.indDao = indDao;
             this.listeners = listeners;
             this.pool = pool;
-            this.status = new Status(this, uris.size(), 500);
+            this.status = new Status(this, total, 500);
+            this.checkpoints = checkpoints;
 
             this.searchEngine = ApplicationUtils.instance().getSearchEngine();
+            this.sink = new BatchingDocumentSink(searchEngine);
         }
 
         @Override
@@ -134,7 +192,10 @@ public class UpdateUrisTask implements Task {
             excluders.startIndexing();
             modifiers.startIndexing();
 
-            for (String uri : uris) {
+            int count = 0;
+            while (uris.hasNext()) {
+                String uri = uris.next();
+                status.noteUri();
                 if (isInterrupted()) {
                     log.info("Interrupted: " + status.getSearchIndexerStatus());
                     break;
@@ -149,15 +210,34 @@ public class UpdateUrisTask implements Task {
                     } else {
                         updateDocument(ind);
                     }
+                    count++;
+                    if (checkpoints != null && count % CHECKPOINT_INTERVAL == 0) {
+                        checkpoint(uri, count);
+                    }
                 }
             }
-            pool.waitUntilIdle();
+            submitPending();
+            pool.waitUntilDone(this);
+            sink.flush();
 
             excluders.stopIndexing();
             modifiers.stopIndexing();
             listeners.fireEvent(new Event(STOP_URIS, status.getSearchIndexerStatus()));
         }
 
+        /**
+         * Wait for the outstanding work to complete, so the checkpoint is
+         * accurate.
+         */
+        private void checkpoint(String uri, int count) {
+            submitPending();
+            pool.waitUntilDone(this);
+            sink.flush();
+            if (!isInterrupted()) {
+                checkpoints.checkpoint(uri, count);
+            }
+        }
+
         private boolean isInterrupted() {
             if (Thread.interrupted()) {
                 Thread.currentThread().interrupt();
@@ -212,28 +292,32 @@ public class UpdateUrisTask implements Task {
         }
 
         private void updateDocument(Individual ind) {
-            Runnable workUnit = new UpdateDocumentWorkUnit(ind, modifiers);
-            pool.submit(workUnit, this);
-            log.debug("scheduled update to " + ind);
+            pending.add(ind);
+            if (pending.size() >= WORK_UNIT_SIZE) {
+                submitPending();
+            }
         }
 
-        private void fireEvent(Event event) {
-            listeners.fireEvent(event);
+        private void submitPending() {
+            if (!pending.isEmpty()) {
+                Runnable workUnit = new UpdateDocumentWorkUnit(pending,
+                        modifiers, sink);
+                pool.submit(workUnit, this);
+                log.debug("scheduled update to " + pending);
+                pending = new ArrayList<>();
+            }
         }
 
-        private void commitChanges() {
-            try {
-                searchEngine.commit();
-            } catch (SearchEngineException e) {
-                log.warn("Failed to commit changes.", e);
-            }
+        private void fireEvent(Event event) {
+            listeners.fireEvent(event);
         }
 
         @Override
         public void notifyWorkUnitCompletion(Runnable workUnit) {
-            log.debug("completed update to "
-                    + ((UpdateDocumentWorkUnit) workUnit).getInd());
-            status.incrementUpdates();
+            List<Individual> inds = ((UpdateDocumentWorkUnit) workUnit)
+                    .getInds();
+            log.debug("completed update to " + inds);
+            status.incrementUpdates(inds.size());
         }
 
         @Override
@@ -247,7 +331,8 @@ public class UpdateUrisTask implements Task {
          */
         private static class Status {
             private final UpdateUrisTaskImpl parent;
-            private final int total;
+            private final boolean counting;
+            private int total;
             private final int progressInterval;
             private int updated = 0;
             private int deleted = 0;
@@ -256,14 +341,22 @@ public class UpdateUrisTask implements Task {
 
             public Status(UpdateUrisTaskImpl parent, int total, int progressInterval) {
                 this.parent = parent;
-                this.total = total;
+                this.counting = (total == UNKNOWN_TOTAL);
+                this.total = counting ? 0 : total;
                 this.progressInterval = progressInterval;
             }
 
-            public synchronized void incrementUpdates() {
-                updated++;
+            public synchronized void noteUri() {
+                if (counting) {
+                    total++;
+                }
+            }
+
+            public synchronized void incrementUpdates(int howMany) {
+                int before = updated;
+                updated += howMany;
                 since = new Date();
-                maybeFireProgressEvent();
+                maybeFireProgressEvent(before);
             }
 
             public synchronized void incrementDeletes() {
@@ -276,8 +369,8 @@ public class UpdateUrisTask implements Task {
                 since = new Date();
             }
 
-            private void maybeFireProgressEvent() {
-                if (updated > 0 && updated % progressInterval == 0) {
+            private void maybeFireProgressEvent(int before) {
+                if (updated / progressInterval > before / progressInterval) {
                     parent.fireEvent(new Event(PROGRESS, getSearchIndexerStatus()));
                 }
             }
@@ -293,6 +386,15 @@ public class UpdateUrisTask implements Task {
     // ----------------------------------------------------------------------
     // helper classes
     // ----------------------------------------------------------------------
+
+    /**
+     * Told that every URI up to and including this one has been processed, and
+     * how many URIs that makes.
+     */
+    public interface CheckpointListener {
+        void checkpoint(String lastUri, int count);
+    }
+
     /**
      * This will be first in the list of SearchIndexExcluders.
      */
@@ -2,6 +2,7 @@
 
 package edu.cornell.mannlib.vitro.webapp.services.shortview;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
@@ -29,6 +30,17 @@ public interface ShortViewService {
 	String renderShortView(Individual individual, ShortViewContext context,
 			Map<String, Object> modelMap, VitroRequest vreq);
 
+	/**
+	 * Render the short views for a list of individuals, as renderShortView()
+	 * would, with one model map for each individual.
+	 * 
+	 * Returns one piece of HTML for each individual, in the same order. The
+	 * same rules apply as for renderShortView().
+	 */
+	List<String> renderShortViews(List<Individual> individuals,
+			ShortViewContext context, List<Map<String, Object>> modelMaps,
+			VitroRequest vreq);
+
 	/**
 	 * What template should be used to render the short view of this individual
 	 * in this context? What data is available from custom data getters?
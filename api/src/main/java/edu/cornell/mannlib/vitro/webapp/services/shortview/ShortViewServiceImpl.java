@@ -25,6 +25,10 @@ import edu.cornell.mannlib.vitro.webapp.utils.dataGetter.DataGetter;
 
 /**
  * The basic implementation of ShortViewService
+ *
+ * A list of short views is rendered one at a time, on the request thread. The
+ * data getters, the template models and the Freemarker configuration all work
+ * through the request, which may not be used from other threads.
  */
 public class ShortViewServiceImpl implements ShortViewService {
 	private static final Log log = LogFactory
@@ -86,6 +90,23 @@ public class ShortViewServiceImpl implements ShortViewService {
 		}
 	}
 
+	@Override
+	public List<String> renderShortViews(List<Individual> individuals,
+			ShortViewContext context, List<Map<String, Object>> modelMaps,
+			VitroRequest vreq) {
+		if (individuals.size() != modelMaps.size()) {
+			throw new IllegalArgumentException("Got " + individuals.size()
+					+ " individuals but " + modelMaps.size() + " model maps.");
+		}
+
+		List<String> htmls = new ArrayList<String>();
+		for (int i = 0; i < individuals.size(); i++) {
+			htmls.add(renderShortView(individuals.get(i), context,
+					modelMaps.get(i), vreq));
+		}
+		return htmls;
+	}
+
 	@Override
 	public TemplateAndSupplementalData getShortViewInfo(Individual individual,
 			ShortViewContext svContext, VitroRequest vreq) {
@@ -5,6 +5,7 @@ package edu.cornell.mannlib.vitro.webapp.servlet.setup;
 import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.ABOX_INFERENCES;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,6 +25,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
 
 import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames;
 import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer;
@@ -44,6 +46,15 @@ public class SimpleReasonerSetup implements ServletContextListener {
     public static final String JENA_INF_MODEL_REBUILD = "http://vitro.mannlib.cornell.edu/default/vitro-kb-inf-rebuild";
     public static final String JENA_INF_MODEL_SCRATCHPAD = "http://vitro.mannlib.cornell.edu/default/vitro-kb-inf-scratchpad";
 
+    // If true, inferences for edited individuals are made on a background thread
+    public static final String PROPERTY_ASYNCHRONOUS = "reasoner.abox.asynchronous";
+    public static final String ASYNCHRONOUS_JOURNAL_FILE = "pendingInferences.txt";
+
+    // How a full recompute of the ABox is carried out
+    public static final String PROPERTY_RECOMPUTE_THREADS = "reasoner.recompute.threads";
+    public static final String PROPERTY_RECOMPUTE_THROTTLE = "reasoner.recompute.throttleMillis";
+    public static final String RECOMPUTE_CHECKPOINT_FILE = "recomputeCheckpoint.txt";
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
     	ServletContext ctx = sce.getServletContext();
@@ -93,6 +104,19 @@ public class SimpleReasonerSetup implements ServletContextListener {
                 }
             }
             simpleReasoner.setPluginList(pluginList);
+
+            ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
+            File reasonerDir = figureReasonerDirectory();
+            if (Boolean.valueOf(props.getProperty(PROPERTY_ASYNCHRONOUS))) {
+                log.info("ABox inferences for edits will be made asynchronously.");
+                simpleReasoner.startAsynchronousReasoning(reasonerDir == null 
+                        ? null : new File(reasonerDir, ASYNCHRONOUS_JOURNAL_FILE));
+            }
+            simpleReasoner.setRecomputeSettings(
+                    parseInt(props.getProperty(PROPERTY_RECOMPUTE_THREADS), 1),
+                    parseInt(props.getProperty(PROPERTY_RECOMPUTE_THROTTLE), 0),
+                    reasonerDir == null 
+                        ? null : new File(reasonerDir, RECOMPUTE_CHECKPOINT_FILE));
             
             SimpleReasonerTBoxListener simpleReasonerTBoxListener = new SimpleReasonerTBoxListener(simpleReasoner);
             sce.getServletContext().setAttribute(SimpleReasonerTBoxListener.class.getName(),simpleReasonerTBoxListener);
@@ -107,7 +131,12 @@ public class SimpleReasonerSetup implements ServletContextListener {
                 log.info("starting ABox inference recompute in a separate thread.");
                 new VitroBackgroundThread(
                         new ABoxRecomputer(
-                                simpleReasoner),"ABoxRecomputer").start();
+                                simpleReasoner, false),"ABoxRecomputer").start();
+            } else if (simpleReasoner.isRecomputeIncomplete()) {
+                log.info("resuming an interrupted ABox inference recompute in a separate thread.");
+                new VitroBackgroundThread(
+                        new ABoxRecomputer(
+                                simpleReasoner, true),"ABoxRecomputer").start();
             }    
             
         } catch (Throwable t) {
@@ -133,6 +162,33 @@ public class SimpleReasonerSetup implements ServletContextListener {
         
     }
     
+    /**
+     * Keep the reasoner's files in the home directory, so they survive a 
+     * restart. If the directory can't be created, nothing is saved.
+     */
+    private File figureReasonerDirectory() {
+        File dir = ApplicationUtils.instance().getHomeDirectory().getPath()
+                .resolve("reasoner").toFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.warn("Can't create the directory '" + dir 
+                    + "'. Reasoner progress will not survive a restart.");
+            return null;
+        }
+        return dir;
+    }
+
+    private int parseInt(String value, int defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid number '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     public static SimpleReasoner getSimpleReasonerFromServletContext(ServletContext ctx) {
         Object simpleReasoner = ctx.getAttribute(SimpleReasoner.class.getName());
         
@@ -221,14 +277,20 @@ public class SimpleReasonerSetup implements ServletContextListener {
     private class ABoxRecomputer implements Runnable {
 
         private SimpleReasoner simpleReasoner;
+        private boolean resume;
 
-        public ABoxRecomputer(SimpleReasoner simpleReasoner) {
+        public ABoxRecomputer(SimpleReasoner simpleReasoner, boolean resume) {
             this.simpleReasoner = simpleReasoner;
+            this.resume = resume;
         }
 
         @Override
 		public void run() {
-            simpleReasoner.recompute();
+            if (resume) {
+                simpleReasoner.resumeRecompute();
+            } else {
+                simpleReasoner.recompute();
+            }
         }
     }
 }
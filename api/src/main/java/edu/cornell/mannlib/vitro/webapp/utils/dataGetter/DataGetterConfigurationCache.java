@@ -0,0 +1,150 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.dataGetter;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelNames.DISPLAY;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+
+import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+
+/**
+ * Remembers what the display model says about DataGetters: which DataGetters
+ * are associated with a page, a template or a class, and which Java class
+ * implements each DataGetter.
+ *
+ * The DataGetters themselves are not cached, since they are created for each
+ * request.
+ *
+ * The cache is cleared whenever a statement is added to or removed from the
+ * display model. Until the Setup has run, there is no cache, and every lookup
+ * goes to the model.
+ */
+public class DataGetterConfigurationCache {
+	private static final Log log = LogFactory
+			.getLog(DataGetterConfigurationCache.class);
+
+	private static volatile DataGetterConfigurationCache instance;
+
+	/**
+	 * May return null, if the cache has not been set up.
+	 */
+	static DataGetterConfigurationCache getInstance() {
+		return instance;
+	}
+
+	/** The URIs of the DataGetters, keyed by the associated URI. */
+	private final ConcurrentHashMap<String, List<String>> dataGetterUris = new ConcurrentHashMap<>();
+
+	/** The Java class name for each DataGetter URI. */
+	private final ConcurrentHashMap<String, String> classNames = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented each time the cache is cleared, so a value that was read
+	 * from the model before a change does not remain after it.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	long getGeneration() {
+		return generation.get();
+	}
+
+	List<String> getDataGetterUris(String associatedUri) {
+		return dataGetterUris.get(associatedUri);
+	}
+
+	void putDataGetterUris(long readAt, String associatedUri, List<String> uris) {
+		List<String> value = Collections.unmodifiableList(uris);
+		dataGetterUris.put(associatedUri, value);
+		if (readAt != generation.get()) {
+			dataGetterUris.remove(associatedUri, value);
+		}
+	}
+
+	String getClassName(String dataGetterUri) {
+		return classNames.get(dataGetterUri);
+	}
+
+	void putClassName(long readAt, String dataGetterUri, String className) {
+		classNames.put(dataGetterUri, className);
+		if (readAt != generation.get()) {
+			classNames.remove(dataGetterUri, className);
+		}
+	}
+
+	void clear() {
+		generation.incrementAndGet();
+		dataGetterUris.clear();
+		classNames.clear();
+	}
+
+	// ----------------------------------------------------------------------
+	// Listen to the display model
+	// ----------------------------------------------------------------------
+
+	private class DisplayModelListener extends StatementListener {
+		@Override
+		public void addedStatement(Statement s) {
+			clear();
+		}
+
+		@Override
+		public void removedStatement(Statement s) {
+			clear();
+		}
+
+		@Override
+		public void notifyEvent(Model m, Object event) {
+			clear();
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Setup class
+	// ----------------------------------------------------------------------
+
+	/**
+	 * Create the cache, and listen for changes to the base of the display
+	 * model, since all changes pass through it, no matter which wrapper they
+	 * are made through.
+	 */
+	public static class Setup implements ServletContextListener {
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			ServletContext ctx = sce.getServletContext();
+			StartupStatus ss = StartupStatus.getBean(ctx);
+
+			OntModel displayModel = ModelAccess.on(ctx).getOntModel(DISPLAY);
+			Model baseModel = displayModel.getBaseModel();
+
+			DataGetterConfigurationCache cache = new DataGetterConfigurationCache();
+			baseModel.register(cache.new DisplayModelListener());
+			instance = cache;
+
+			ss.info(this, "Caching the DataGetter configuration from the "
+					+ "display model.");
+		}
+
+		@Override
+		public void contextDestroyed(ServletContextEvent sce) {
+			instance = null;
+			log.debug("Stopped caching the DataGetter configuration.");
+		}
+	}
+}
@@ -61,7 +61,7 @@ public class DataGetterUtils {
 	    if( vreq.getAttribute(DATA_GETTERS_FOR_PAGE) != null){
 	        return (List<DataGetter>) vreq.getAttribute(DATA_GETTERS_FOR_PAGE);
 	    }else{
-    		List<String> dgUris = getDataGetterURIsForAssociatedURI(displayModel, pageURI);
+    		List<String> dgUris = getDataGetterURIsForAssociatedURI(vreq, displayModel, pageURI);
     		List<DataGetter> dgList = dataGettersForURIs(vreq, displayModel, dgUris);
     		log.debug("getDataGettersForPage: " + dgList);
     		vreq.setAttribute( DATA_GETTERS_FOR_PAGE , dgList );
@@ -75,7 +75,7 @@ public class DataGetterUtils {
      */
     public static List<DataGetter> getDataGettersForClass( VitroRequest vreq, Model displayModel, String classURI) 
             throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, SecurityException, InvocationTargetException {
-        List<String> dgUris = getDataGetterURIsForAssociatedURI( displayModel, classURI);
+        List<String> dgUris = getDataGetterURIsForAssociatedURI(vreq, displayModel, classURI);
         List<DataGetter> dgList = dataGettersForURIs(vreq, displayModel, dgUris);
         log.debug("getDataGettersForClass: " + dgList);
         return dgList;
@@ -88,7 +88,7 @@ public class DataGetterUtils {
     public static List<DataGetter> getDataGettersForTemplate( VitroRequest vreq, Model displayModel, String templateName) 
     		throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, SecurityException, InvocationTargetException {
     	String templateUri = "freemarker:" + templateName;
-    	List<String> dgUris = getDataGetterURIsForAssociatedURI( displayModel, templateUri);
+    	List<String> dgUris = getDataGetterURIsForAssociatedURI(vreq, displayModel, templateUri);
     	List<DataGetter> dgList = dataGettersForURIs(vreq, displayModel, dgUris);
     	log.debug("getDataGettersForTemplate '" + templateName + "': " + dgList);
     	return dgList;
@@ -127,7 +127,7 @@ public class DataGetterUtils {
     throws InstantiationException, IllegalAccessException, ClassNotFoundException, IllegalArgumentException, InvocationTargetException, SecurityException 
     {
         //get java class for dataGetterURI
-        String dgClassName = getJClassForDataGetterURI(displayModel, dataGetterURI);
+        String dgClassName = getJClassForDataGetterURI(vreq, displayModel, dataGetterURI);
         
         //figure out if it implements interface DataGetter
         Class<?> clz = Class.forName(dgClassName);
@@ -172,6 +172,25 @@ public class DataGetterUtils {
 		return true;
     }
 
+    /**
+     * Like getJClassForDataGetterURI(Model, String), but use the cache if it
+     * describes this display model.
+     */
+    private static String getJClassForDataGetterURI(VitroRequest vreq, Model displayModel, String dataGetterURI) throws IllegalAccessException {
+        DataGetterConfigurationCache cache = getCache(vreq, displayModel);
+        if (cache == null) {
+            return getJClassForDataGetterURI(displayModel, dataGetterURI);
+        }
+        
+        String className = cache.getClassName(dataGetterURI);
+        if (className == null) {
+            long readAt = cache.getGeneration();
+            className = getJClassForDataGetterURI(displayModel, dataGetterURI);
+            cache.putClassName(readAt, dataGetterURI, className);
+        }
+        return className;
+    }
+
     public static String getJClassForDataGetterURI(Model displayModel, String dataGetterURI) throws IllegalAccessException {
         String query = prefixes +
         "SELECT ?type WHERE { ?dgURI rdf:type ?type } ";
@@ -201,6 +220,37 @@ public class DataGetterUtils {
     }
     
     
+    /**
+     * Like getDataGetterURIsForAssociatedURI(Model, String), but use the cache
+     * if it describes this display model.
+     */
+    private static List<String> getDataGetterURIsForAssociatedURI(VitroRequest vreq, Model displayModel, String associatedURI) {
+        DataGetterConfigurationCache cache = getCache(vreq, displayModel);
+        if (cache == null) {
+            return getDataGetterURIsForAssociatedURI(displayModel, associatedURI);
+        }
+        
+        List<String> dgURIs = cache.getDataGetterUris(associatedURI);
+        if (dgURIs == null) {
+            long readAt = cache.getGeneration();
+            dgURIs = getDataGetterURIsForAssociatedURI(displayModel, associatedURI);
+            cache.putDataGetterUris(readAt, associatedURI, dgURIs);
+        }
+        return dgURIs;
+    }
+    
+    /**
+     * The cache only describes the display model of the request. If we were
+     * given some other model, don't use it.
+     */
+    private static DataGetterConfigurationCache getCache(VitroRequest vreq, Model displayModel) {
+        DataGetterConfigurationCache cache = DataGetterConfigurationCache.getInstance();
+        if (cache == null || vreq == null || displayModel != vreq.getDisplayModel()) {
+            return null;
+        }
+        return cache;
+    }
+    
     private static List<String> getDataGetterURIsForAssociatedURI(Model displayModel, String associatedURI) {
         String query = prefixes + 
              "SELECT ?dataGetter WHERE { ?associatedURI display:hasDataGetter ?dataGetter }";
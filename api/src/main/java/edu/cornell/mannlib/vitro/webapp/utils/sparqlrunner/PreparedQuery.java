@@ -0,0 +1,186 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.ParsedQueryCache;
+
+/**
+ * A SPARQL query that is parsed once, and may then have values bound to its
+ * variables without any manipulation of the query text.
+ *
+ * This is immutable, so don't forget to get the result of the operations. The
+ * parsed query is shared by all of the results, so binding is cheap.
+ *
+ * bindToUri() and bindToPlainLiteral() substitute the value for the variable
+ * throughout the parsed query, as QueryHolder does in the text.
+ *
+ * bindToUris() binds the variable to each of several values, by putting a
+ * VALUES clause at the start of the query pattern. The variable is added to
+ * the result variables, so each result row can be matched to its value.
+ *
+ * The query string is parsed as SPARQL 1.1 if possible, otherwise as ARQ.
+ * Parsed queries are cached, so preparing the same query string again is
+ * cheap.
+ */
+public class PreparedQuery {
+	private static final ParsedQueryCache parsedQueries = new ParsedQueryCache();
+
+	private static final List<Syntax> SYNTAXES = Collections
+			.unmodifiableList(Arrays.asList(Syntax.syntaxSPARQL_11,
+					Syntax.syntaxARQ));
+
+	private static final Pattern VARIABLE_PATTERN = Pattern
+			.compile("[?$](\\w+)");
+
+	/**
+	 * @throws QueryParseException
+	 *             if the query string can't be parsed.
+	 */
+	public static PreparedQuery prepare(String queryString)
+			throws QueryParseException {
+		Query query = parsedQueries.parse(queryString, SYNTAXES);
+		return new PreparedQuery(queryString, query, findVariables(queryString),
+				Collections.<Var, Node> emptyMap(),
+				Collections.<Var, List<Node>> emptyMap());
+	}
+
+	private static Set<String> findVariables(String queryString) {
+		Set<String> names = new HashSet<>();
+		Matcher m = VARIABLE_PATTERN.matcher(queryString);
+		while (m.find()) {
+			names.add(m.group(1));
+		}
+		return Collections.unmodifiableSet(names);
+	}
+
+	private final String queryString;
+	private final Query parsed;
+	private final Set<String> variables;
+	private final Map<Var, Node> bindings;
+	private final Map<Var, List<Node>> valuesBindings;
+
+	private PreparedQuery(String queryString, Query parsed,
+			Set<String> variables, Map<Var, Node> bindings,
+			Map<Var, List<Node>> valuesBindings) {
+		this.queryString = queryString;
+		this.parsed = parsed;
+		this.variables = variables;
+		this.bindings = bindings;
+		this.valuesBindings = valuesBindings;
+	}
+
+	/**
+	 * Does the original query text mention this variable?
+	 */
+	public boolean hasVariable(String name) {
+		return variables.contains(name);
+	}
+
+	public PreparedQuery bindToUri(String name, String uri) {
+		return bind(name, NodeFactory.createURI(uri));
+	}
+
+	public PreparedQuery bindToPlainLiteral(String name, String value) {
+		return bind(name, NodeFactory.createLiteral(value));
+	}
+
+	private PreparedQuery bind(String name, Node value) {
+		Map<Var, Node> newBindings = new HashMap<>(bindings);
+		newBindings.put(Var.alloc(name), value);
+		return new PreparedQuery(queryString, parsed, variables,
+				Collections.unmodifiableMap(newBindings), valuesBindings);
+	}
+
+	public PreparedQuery bindToUris(String name, Collection<String> uris) {
+		List<Node> values = new ArrayList<>();
+		for (String uri : uris) {
+			values.add(NodeFactory.createURI(uri));
+		}
+		Map<Var, List<Node>> newValues = new LinkedHashMap<>(valuesBindings);
+		newValues.put(Var.alloc(name), Collections.unmodifiableList(values));
+		return new PreparedQuery(queryString, parsed, variables, bindings,
+				Collections.unmodifiableMap(newValues));
+	}
+
+	/**
+	 * Get a copy of the parsed query, with the values bound. The caller may do
+	 * as it likes with the copy.
+	 */
+	public Query getQuery() {
+		Query query;
+		// Copying may set the lazily computed result variables.
+		synchronized (parsed) {
+			query = QueryTransformOps.transform(parsed, bindings);
+		}
+		for (Map.Entry<Var, List<Node>> entry : valuesBindings.entrySet()) {
+			addValuesClause(query, entry.getKey(), entry.getValue());
+		}
+		return query;
+	}
+
+	private void addValuesClause(Query query, Var var, List<Node> values) {
+		ElementData data = new ElementData();
+		data.add(var);
+		for (Node value : values) {
+			data.add(BindingFactory.binding(var, value));
+		}
+
+		ElementGroup group = new ElementGroup();
+		group.addElement(data);
+		Element pattern = query.getQueryPattern();
+		if (pattern instanceof ElementGroup) {
+			for (Element el : ((ElementGroup) pattern).getElements()) {
+				group.addElement(el);
+			}
+		} else if (pattern != null) {
+			group.addElement(pattern);
+		}
+		query.setQueryPattern(group);
+
+		if (query.isSelectType() && !query.isQueryResultStar()
+				&& !query.getProjectVars().contains(var)) {
+			query.addResultVar(var);
+		}
+	}
+
+	/**
+	 * Get the text of the query, with the values bound.
+	 */
+	public String getQueryString() {
+		if (bindings.isEmpty() && valuesBindings.isEmpty()) {
+			return queryString;
+		}
+		return getQuery().serialize();
+	}
+
+	@Override
+	public String toString() {
+		return "PreparedQuery[" + queryString + ", bindings=" + bindings
+				+ ", valuesBindings=" + valuesBindings + "]";
+	}
+}
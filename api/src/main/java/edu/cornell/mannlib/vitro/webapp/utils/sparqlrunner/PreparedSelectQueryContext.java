@@ -0,0 +1,247 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.engine.ResultSetStream;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingUtils;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.ExecutingSelectQueryContext;
+import edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.SelectQueryContext;
+
+/**
+ * An implementation of QueryContext based on a PreparedQuery. Values are bound
+ * to the parsed query, rather than to the query text.
+ *
+ * The bound query is executed as it is, against a Model or against an
+ * RDFService that accepts parsed queries. Otherwise, the RDFService is given
+ * the text of the bound query.
+ *
+ * If the values can't be bound to the query, the failure is logged as such,
+ * and the query is not run.
+ *
+ * Package access. Instances should be created only by SparqlQueryRunner, or by
+ * a method on this class.
+ */
+abstract class PreparedSelectQueryContext implements SelectQueryContext {
+	private static final Log log = LogFactory
+			.getLog(PreparedSelectQueryContext.class);
+
+	static PreparedSelectQueryContext create(RDFService rdfService,
+			PreparedQuery query) {
+		return new RdfServiceContext(rdfService, query);
+	}
+
+	static PreparedSelectQueryContext create(Model model, PreparedQuery query) {
+		return new ModelContext(model, query);
+	}
+
+	protected final PreparedQuery query;
+
+	protected PreparedSelectQueryContext(PreparedQuery query) {
+		this.query = query;
+	}
+
+	protected abstract PreparedSelectQueryContext withQuery(
+			PreparedQuery newQuery);
+
+	/** Run the bound query and hand the results to the handler. */
+	protected abstract <T> T select(Query bound, ResultsHandler<T> handler)
+			throws Exception;
+
+	@Override
+	public PreparedSelectQueryContext bindVariableToUri(String name, String uri) {
+		return withQuery(query.bindToUri(name, uri));
+	}
+
+	@Override
+	public PreparedSelectQueryContext bindVariableToPlainLiteral(String name,
+			String value) {
+		return withQuery(query.bindToPlainLiteral(name, value));
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "[query=" + query + "]";
+	}
+
+	@Override
+	public ExecutingSelectQueryContext execute() {
+		return new ExecutingSelectQueryContext() {
+			@Override
+			public StringResultsMapping toStringFields(String... names) {
+				final Set<String> fieldNames = new HashSet<>(
+						Arrays.asList(names));
+				Query bound = bindValues();
+				if (bound == null) {
+					return StringResultsMapping.EMPTY;
+				}
+				try {
+					return select(bound,
+							new ResultsHandler<StringResultsMapping>() {
+								@Override
+								public StringResultsMapping handle(
+										ResultSet results) {
+									return new StringResultsMapping(results,
+											fieldNames);
+								}
+							});
+				} catch (Exception e) {
+					log.error("problem while running query '" + query + "'", e);
+					return StringResultsMapping.EMPTY;
+				}
+			}
+
+			@Override
+			public <T> T parse(final ResultSetParser<T> parser) {
+				Query bound = bindValues();
+				if (bound == null) {
+					return parser.defaultValue();
+				}
+				final String qString = query.getQueryString();
+				try {
+					return select(bound, new ResultsHandler<T>() {
+						@Override
+						public T handle(ResultSet results) {
+							return parser.parseResults(qString, results);
+						}
+					});
+				} catch (Exception e) {
+					log.error("problem while running query '" + qString + "'",
+							e);
+					return parser.defaultValue();
+				}
+			}
+
+			@Override
+			public void writeToOutput(final OutputStream output) {
+				Query bound = bindValues();
+				if (bound == null) {
+					return;
+				}
+				try {
+					select(bound, new ResultsHandler<Void>() {
+						@Override
+						public Void handle(ResultSet results) {
+							ResultSetFormatter.outputAsJSON(output, results);
+							return null;
+						}
+					});
+				} catch (Exception e) {
+					log.error("problem while running query '" + query + "'", e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Bind the values to the parsed query. If that fails, say so: the query
+	 * should not be run without them.
+	 *
+	 * @return the bound query, or null.
+	 */
+	private Query bindValues() {
+		try {
+			return query.getQuery();
+		} catch (RuntimeException e) {
+			log.error("Failed to bind values to the query: " + query, e);
+			return null;
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	protected interface ResultsHandler<T> {
+		T handle(ResultSet results);
+	}
+
+	private static class RdfServiceContext extends PreparedSelectQueryContext {
+		private final RDFService rdfService;
+
+		RdfServiceContext(RDFService rdfService, PreparedQuery query) {
+			super(query);
+			this.rdfService = rdfService;
+		}
+
+		@Override
+		protected PreparedSelectQueryContext withQuery(PreparedQuery newQuery) {
+			return new RdfServiceContext(rdfService, newQuery);
+		}
+
+		@Override
+		protected <T> T select(Query bound, ResultsHandler<T> handler)
+				throws Exception {
+			SolutionCollector collector = new SolutionCollector(
+					bound.getResultVars());
+			RDFServiceUtils.sparqlSelectQuery(bound, rdfService, collector);
+			return handler.handle(collector.getResults());
+		}
+	}
+
+	/**
+	 * The solutions may pass through a filtering service on their way to us,
+	 * so collect them one at a time, and make a ResultSet from them.
+	 */
+	private static class SolutionCollector extends ResultSetConsumer {
+		private final List<String> resultVars;
+		private final List<Binding> bindings = new ArrayList<>();
+
+		SolutionCollector(List<String> resultVars) {
+			this.resultVars = new ArrayList<>(resultVars);
+		}
+
+		@Override
+		protected void processQuerySolution(QuerySolution qs) {
+			bindings.add(BindingUtils.asBinding(qs));
+		}
+
+		ResultSet getResults() {
+			return new ResultSetStream(resultVars, null, bindings.iterator());
+		}
+	}
+
+	private static class ModelContext extends PreparedSelectQueryContext {
+		private final Model model;
+
+		ModelContext(Model model, PreparedQuery query) {
+			super(query);
+			this.model = model;
+		}
+
+		@Override
+		protected PreparedSelectQueryContext withQuery(PreparedQuery newQuery) {
+			return new ModelContext(model, newQuery);
+		}
+
+		@Override
+		protected <T> T select(Query bound, ResultsHandler<T> handler) {
+			QueryExecution qexec = QueryExecutionFactory.create(bound, model);
+			try {
+				return handler.handle(qexec.execSelect());
+			} finally {
+				qexec.close();
+			}
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.io.OutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.jena.query.QueryParseException;
 import org.apache.jena.rdf.model.Model;
 
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
@@ -26,10 +27,20 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
  *   List<Map<String, String> map = createSelectQueryContext(model, qh)
  *                             .execute()
  *                             .toStringFields();
+ * 
+ *   PreparedQuery pq = prepareQuery(queryString);
+ *   List<String> values = createSelectQueryContext(rdfService, pq)
+ *                             .bindVariableToUri("uri", uri)
+ *                             .execute()
+ *                             .toStringFields()
+ *                             .flatten();
  * </pre>
  * 
  * The query context can come from either an RDFService or a Model.
  * 
+ * A PreparedQuery is parsed only once, and values are bound to the parsed
+ * query. Use it when the same query is run many times with different values.
+ * 
  * The execute() method does not actually execute the query: it merely sets it
  * up syntactically.
  * 
@@ -50,6 +61,15 @@ public final class SparqlQueryRunner {
 		return new QueryHolder(queryString);
 	}
 
+	/**
+	 * @throws QueryParseException
+	 *             if the query string can't be parsed.
+	 */
+	public static PreparedQuery prepareQuery(String queryString)
+			throws QueryParseException {
+		return PreparedQuery.prepare(queryString);
+	}
+
 	// ------------- SELECT ----------- //
 	
 	public static SelectQueryContext createSelectQueryContext(RDFService rdfService,
@@ -62,6 +82,11 @@ public final class SparqlQueryRunner {
 		return new RdfServiceSelectQueryContext(rdfService, query);
 	}
 
+	public static SelectQueryContext createSelectQueryContext(RDFService rdfService,
+			PreparedQuery query) {
+		return PreparedSelectQueryContext.create(rdfService, query);
+	}
+
 	public static SelectQueryContext createSelectQueryContext(Model model,
 			String queryString) {
 		return createSelectQueryContext(model, queryHolder(queryString));
@@ -72,6 +97,11 @@ public final class SparqlQueryRunner {
 		return new ModelSelectQueryContext(model, query);
 	}
 
+	public static SelectQueryContext createSelectQueryContext(Model model,
+			PreparedQuery query) {
+		return PreparedSelectQueryContext.create(model, query);
+	}
+
 	public static interface SelectQueryContext  {
 		public SelectQueryContext bindVariableToUri(String name, String uri);
 
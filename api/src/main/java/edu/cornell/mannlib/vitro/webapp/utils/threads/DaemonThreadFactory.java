@@ -0,0 +1,23 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.threads;
+
+/**
+ * A factory for use in Executors, that creates VitroBackgroundThreads with
+ * successive names, as daemon threads, so they don't prevent the JVM from
+ * shutting down.
+ *
+ * The Executor should still be shut down when the application stops.
+ */
+public class DaemonThreadFactory extends VitroBackgroundThread.Factory {
+	public DaemonThreadFactory(String threadName) {
+		super(threadName);
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = super.newThread(r);
+		t.setDaemon(true);
+		return t;
+	}
+}
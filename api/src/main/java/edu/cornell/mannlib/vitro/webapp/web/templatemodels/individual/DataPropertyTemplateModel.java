@@ -70,6 +70,16 @@ public class DataPropertyTemplateModel extends PropertyTemplateModel {
     
     DataPropertyTemplateModel(DataProperty dp, Individual subject, VitroRequest vreq, 
             boolean editing, List<DataProperty> populatedDataPropertyList) {
+        this(dp, subject, vreq, editing, populatedDataPropertyList, null);
+    }
+
+    /**
+     * If a fetcher is provided, and the property uses the default list view, 
+     * the values may come from the fetcher's single query for all properties.
+     */
+    DataPropertyTemplateModel(DataProperty dp, Individual subject, VitroRequest vreq, 
+            boolean editing, List<DataProperty> populatedDataPropertyList,
+            PropertyListFetcher fetcher) {
         
         super(dp, subject, vreq, dp.getPublicName());
 
@@ -89,8 +99,14 @@ public class DataPropertyTemplateModel extends PropertyTemplateModel {
         // If the property is populated, get the data property statements via a sparql query
         if (populatedDataPropertyList.contains(dp)) {
             log.debug("Getting data for populated data property " + getUri());
-            DataPropertyStatementDao dpDao = vreq.getWebappDaoFactory().getDataPropertyStatementDao();
-            List<Literal> values = dpDao.getDataPropertyValuesForIndividualByProperty(subject, dp, queryString, constructQueries);            
+            List<Literal> values = null;
+            if (fetcher != null && hasDefaultListView() && constructQueries.isEmpty()) {
+                values = fetcher.getDefaultDataPropertyValues(dp);
+            }
+            if (values == null) {
+                DataPropertyStatementDao dpDao = vreq.getWebappDaoFactory().getDataPropertyStatementDao();
+                values = dpDao.getDataPropertyValuesForIndividualByProperty(subject, dp, queryString, constructQueries);            
+            }
             for (Literal value : values) {
                 statements.add(new DataPropertyStatementTemplateModel(subjectUri, dp, value, getTemplateName(), vreq));
             }
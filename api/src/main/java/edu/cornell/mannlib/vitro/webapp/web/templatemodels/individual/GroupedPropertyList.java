@@ -116,11 +116,10 @@ public class GroupedPropertyList extends BaseTemplateModel {
         }
         
         // Now do much the same with data properties: get the list of populated data properties, then add in placeholders for missing ones 
-        // rjy7 Currently we are getting the list of properties in one sparql query, then doing a separate query
-        // to get values for each property. This could be optimized by doing a single query to get a map of properties to 
-        // DataPropertyStatements. Note that this does not apply to object properties, because the queries
-        // can be customized and thus differ from property to property. So it's easier for now to keep the
-        // two working in parallel.
+        // The values of data properties with the default list view are fetched in a single query 
+        // (see PropertyListFetcher). This does not apply to object properties, or to data properties
+        // with custom list views, because the queries can be customized and thus differ from 
+        // property to property.
         List<DataProperty> populatedDataPropertyList = subject
                 .getPopulatedDataPropertyList();
         propertyList.addAll(populatedDataPropertyList);
@@ -133,13 +132,24 @@ public class GroupedPropertyList extends BaseTemplateModel {
         // Put the list into groups
         List<PropertyGroup> propertyGroupList = addPropertiesToGroups(propertyList);
         
-        // Build the template data model from the groupList
+        // Build the template data model from the groupList. The properties
+        // of all groups are fetched together, then collected in order. The
+        // fetcher must be finished before the request ends.
+        PropertyListFetcher fetcher = new PropertyListFetcher(vreq, subject,
+                populatedDataPropertyList);
         groups = new ArrayList<PropertyGroupTemplateModel>(
                 propertyGroupList.size());
-        for (PropertyGroup propertyGroup : propertyGroupList) {
-            groups.add(new PropertyGroupTemplateModel(vreq, propertyGroup,
-                    subject, editing, populatedDataPropertyList,
-                    populatedObjectPropertyList));
+        try {
+            for (PropertyGroup propertyGroup : propertyGroupList) {
+                groups.add(new PropertyGroupTemplateModel(vreq, propertyGroup,
+                        subject, editing, populatedDataPropertyList,
+                        populatedObjectPropertyList, fetcher));
+            }
+            for (PropertyGroupTemplateModel group : groups) {
+                group.collectProperties(fetcher);
+            }
+        } finally {
+            fetcher.finish();
         }
         
         if (!editing) {
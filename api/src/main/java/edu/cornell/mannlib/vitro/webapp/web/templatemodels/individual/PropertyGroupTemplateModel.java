@@ -7,6 +7,8 @@ import static edu.cornell.mannlib.vitro.webapp.auth.requestedAction.RequestedAct
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,42 +35,78 @@ public class PropertyGroupTemplateModel extends BaseTemplateModel {
     private final String name;
     private final List<PropertyTemplateModel> properties;
 
+    /** The properties that are being built, until they are collected. */
+    private List<Future<PropertyTemplateModel>> pending;
+    private List<String> pendingUris;
 
-
-    PropertyGroupTemplateModel(VitroRequest vreq, PropertyGroup group, 
-            Individual subject, boolean editing, 
-            List<DataProperty> populatedDataPropertyList, 
-            List<ObjectProperty> populatedObjectPropertyList) {
+    PropertyGroupTemplateModel(final VitroRequest vreq, PropertyGroup group, 
+            final Individual subject, final boolean editing, 
+            final List<DataProperty> populatedDataPropertyList, 
+            final List<ObjectProperty> populatedObjectPropertyList,
+            final PropertyListFetcher fetcher) {
 
         this.name = group.getName();
         
         List<Property> propertyList = group.getPropertyList();
         properties = new ArrayList<PropertyTemplateModel>(propertyList.size());
+        pending = new ArrayList<Future<PropertyTemplateModel>>(propertyList.size());
+        pendingUris = new ArrayList<String>(propertyList.size());
         
         for (Property p : propertyList)  {
             if (p instanceof ObjectProperty) {
-                ObjectProperty op = (ObjectProperty) p;
+                final ObjectProperty op = (ObjectProperty) p;
                 if (!allowedToDisplay(vreq, op, subject)) {
                     continue;
                 }
-                ObjectPropertyTemplateModel tm = ObjectPropertyTemplateModel.getObjectPropertyTemplateModel(
-                        op, subject, vreq, editing, populatedObjectPropertyList);
-                if (!tm.isEmpty() || (editing && !tm.getAddUrl().isEmpty())) {
-                    properties.add(tm);                    
-                }
+                pendingUris.add(op.getURI());
+                pending.add(fetcher.submit(new Callable<PropertyTemplateModel>() {
+                    @Override
+                    public PropertyTemplateModel call() {
+                        ObjectPropertyTemplateModel tm = ObjectPropertyTemplateModel.getObjectPropertyTemplateModel(
+                                op, subject, vreq, editing, populatedObjectPropertyList);
+                        if (!tm.isEmpty() || (editing && !tm.getAddUrl().isEmpty())) {
+                            return tm;
+                        }
+                        return null;
+                    }
+                }));
 
             } else if (p instanceof DataProperty){
-                DataProperty dp = (DataProperty) p;
+                final DataProperty dp = (DataProperty) p;
                 if (!allowedToDisplay(vreq, dp, subject))  {
                     continue;
                 }
-                properties.add(new DataPropertyTemplateModel(dp, subject, vreq, editing, populatedDataPropertyList));
+                pendingUris.add(dp.getURI());
+                pending.add(fetcher.submit(new Callable<PropertyTemplateModel>() {
+                    @Override
+                    public PropertyTemplateModel call() {
+                        return new DataPropertyTemplateModel(dp, subject, vreq, editing, 
+                                populatedDataPropertyList, fetcher);
+                    }
+                }));
             } else {
                 log.debug(p.getURI() + " is neither an ObjectProperty nor a DataProperty; skipping display");
             }
         }
     }
 
+    /**
+     * Wait for the properties to be built, and keep them in order.
+     */
+    void collectProperties(PropertyListFetcher fetcher) {
+        if (pending == null) {
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            PropertyTemplateModel tm = fetcher.await(pending.get(i), pendingUris.get(i));
+            if (tm != null) {
+                properties.add(tm);
+            }
+        }
+        pending = null;
+        pendingUris = null;
+    }
+
 	/**
 	 * See if the property is permitted in its own right. If not, the property
 	 * statement might still be permitted to a self-editor.
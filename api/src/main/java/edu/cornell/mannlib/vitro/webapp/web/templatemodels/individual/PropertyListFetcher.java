@@ -0,0 +1,206 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.jena.rdf.model.Literal;
+
+import edu.cornell.mannlib.vitro.webapp.beans.DataProperty;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.dao.DataPropertyStatementDao;
+
+/**
+ * Fetches the data for the property list of one individual.
+ *
+ * Each property runs its own list view queries, and they don't depend on each
+ * other. If so configured, they are run on a shared pool of threads, so the
+ * page waits for the slowest property rather than for the sum of them all. A
+ * property whose queries are not finished by the deadline is left off the
+ * page. The pool belongs to PropertyListFetcherSetup.
+ *
+ * The queries use the request's connection to the triple store, which is
+ * closed when the request ends. So when the property list is built, any
+ * property that has not started is abandoned, and the request waits for any
+ * property that is still running.
+ *
+ * Data properties that use the default list view are not queried one at a
+ * time. Their values are fetched for all of the populated data properties of
+ * the individual with a single query, when the first of them is needed.
+ */
+class PropertyListFetcher {
+	private static final Log log = LogFactory.getLog(PropertyListFetcher.class);
+
+	private final Individual subject;
+	private final List<DataProperty> populatedDataPropertyList;
+	private final DataPropertyStatementDao dpsDao;
+	private final ExecutorService pool;
+	private final long deadline;
+
+	/** Guarded by this. Null until first needed. */
+	private Map<String, List<Literal>> dataPropertyValues;
+
+	/** Guarded by taskLock. */
+	private final Object taskLock = new Object();
+	private int runningTasks;
+	private boolean finished;
+
+	PropertyListFetcher(VitroRequest vreq, Individual subject,
+			List<DataProperty> populatedDataPropertyList) {
+		this(subject, populatedDataPropertyList, vreq.getWebappDaoFactory()
+				.getDataPropertyStatementDao(), PropertyListFetcherSetup
+				.getExecutor(), PropertyListFetcherSetup.getTimeout());
+	}
+
+	PropertyListFetcher(Individual subject,
+			List<DataProperty> populatedDataPropertyList,
+			DataPropertyStatementDao dpsDao, ExecutorService pool, long timeout) {
+		this.subject = subject;
+		this.populatedDataPropertyList = populatedDataPropertyList;
+		this.dpsDao = dpsDao;
+		this.pool = pool;
+		this.deadline = System.currentTimeMillis() + timeout;
+	}
+
+	/**
+	 * Start building a template model. If there is no pool, or the pool has
+	 * been shut down, it is built before this method returns.
+	 */
+	<T> Future<T> submit(Callable<T> task) {
+		Callable<T> tracked = new TrackedTask<>(task);
+		if (pool != null) {
+			try {
+				return pool.submit(tracked);
+			} catch (RejectedExecutionException e) {
+				log.debug("The pool is shut down; building on this thread.");
+			}
+		}
+		FutureTask<T> future = new FutureTask<>(tracked);
+		future.run();
+		return future;
+	}
+
+	/**
+	 * Wait for the template model, until the deadline.
+	 *
+	 * The task is not interrupted if it is late: an interrupted query can
+	 * leave the triple store in a bad state.
+	 *
+	 * @return null if the deadline passes first. A failure is thrown here, as
+	 *         it would have been if the model were built on this thread.
+	 */
+	<T> T await(Future<T> future, String description) {
+		try {
+			long remaining = deadline - System.currentTimeMillis();
+			return future.get(Math.max(0L, remaining), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | CancellationException e) {
+			future.cancel(false);
+			log.warn("Property '" + description + "' for '" + subject.getURI()
+					+ "' was not ready in time; leaving it off the page.");
+			return null;
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * The property list is built. Tasks that have not started will not run,
+	 * and we wait for the ones that are still running, so none of them uses
+	 * the request's models after the request is closed.
+	 */
+	void finish() {
+		synchronized (taskLock) {
+			finished = true;
+			if (runningTasks > 0) {
+				log.debug("Waiting for " + runningTasks
+						+ " late properties for '" + subject.getURI() + "'");
+			}
+			while (runningTasks > 0) {
+				try {
+					taskLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					log.warn("Interrupted while waiting for properties of '"
+							+ subject.getURI() + "'");
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The values of this data property, as the default list view would find
+	 * them, or null if they could not be fetched in the batch.
+	 */
+	synchronized List<Literal> getDefaultDataPropertyValues(DataProperty dp) {
+		if (dataPropertyValues == null) {
+			List<String> uris = new ArrayList<>();
+			for (DataProperty populated : populatedDataPropertyList) {
+				if (!uris.contains(populated.getURI())) {
+					uris.add(populated.getURI());
+				}
+			}
+			dataPropertyValues = dpsDao
+					.getDataPropertyValuesForIndividualByProperties(
+							subject.getURI(), uris);
+		}
+		return dataPropertyValues.get(dp.getURI());
+	}
+
+	/**
+	 * Keep count of the tasks that are running, and don't start any after the
+	 * property list is finished.
+	 */
+	private class TrackedTask<T> implements Callable<T> {
+		private final Callable<T> inner;
+
+		TrackedTask(Callable<T> inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		public T call() throws Exception {
+			synchronized (taskLock) {
+				if (finished) {
+					throw new CancellationException(
+							"The property list is already finished.");
+				}
+				runningTasks++;
+			}
+			try {
+				return inner.call();
+			} finally {
+				synchronized (taskLock) {
+					runningTasks--;
+					taskLock.notifyAll();
+				}
+			}
+		}
+	}
+}
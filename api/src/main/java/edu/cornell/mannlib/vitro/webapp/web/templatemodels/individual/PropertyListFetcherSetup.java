@@ -0,0 +1,79 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
+import edu.cornell.mannlib.vitro.webapp.startup.StartupStatus;
+import edu.cornell.mannlib.vitro.webapp.utils.threads.DaemonThreadFactory;
+
+/**
+ * Create the shared pool of threads that builds property lists, if so
+ * configured, and shut it down when the application stops.
+ */
+public class PropertyListFetcherSetup implements ServletContextListener {
+	static final String PROPERTY_THREADS = "propertyList.threads";
+	static final String PROPERTY_TIMEOUT = "propertyList.timeoutMillis";
+	static final long DEFAULT_TIMEOUT = 30000L;
+
+	/** Null if the property lists are built on the request thread. */
+	private static volatile ExecutorService executor;
+	private static volatile long timeout = DEFAULT_TIMEOUT;
+
+	static ExecutorService getExecutor() {
+		return executor;
+	}
+
+	static long getTimeout() {
+		return timeout;
+	}
+
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+		ServletContext ctx = sce.getServletContext();
+		StartupStatus ss = StartupStatus.getBean(ctx);
+		ConfigurationProperties props = ConfigurationProperties.getBean(ctx);
+
+		int threads = parseInt(ss, props, PROPERTY_THREADS, 1);
+		timeout = parseInt(ss, props, PROPERTY_TIMEOUT, (int) DEFAULT_TIMEOUT);
+
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads,
+					new DaemonThreadFactory("PropertyListFetcher"));
+			ss.info(this, "Building property lists on " + threads
+					+ " threads, with a timeout of " + timeout + " ms.");
+		} else {
+			ss.info(this, "Building property lists on the request thread.");
+		}
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		ExecutorService pool = executor;
+		executor = null;
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	private int parseInt(StartupStatus ss, ConfigurationProperties props,
+			String key, int defaultValue) {
+		String value = props.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			ss.warning(this, "Invalid value for '" + key + "': '" + value
+					+ "'. Using " + defaultValue);
+			return defaultValue;
+		}
+	}
+}
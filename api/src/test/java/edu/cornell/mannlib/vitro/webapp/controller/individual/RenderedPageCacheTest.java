@@ -0,0 +1,165 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.controller.individual;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.controller.individual.RenderedPageCache.Page;
+
+/**
+ * Pages are served only while the ETAG matches and the individual has not
+ * changed, or might have changed without our remembering it, the least recently used pages are dropped from memory and from
+ * disk, and pages on disk are found after a restart, but not after an upgrade.
+ */
+public class RenderedPageCacheTest extends AbstractTestClass {
+	private static final String KEY_1 = "/individual/n1|en_US";
+	private static final String KEY_2 = "/individual/n2|en_US";
+	private static final String KEY_3 = "/individual/n3|en_US";
+	private static final String URI_1 = "http://test/individual/n1";
+	private static final String VERSION = "1.0@1000";
+
+	private File cacheDir;
+
+	@Before
+	public void setup() throws IOException {
+		cacheDir = createTempDirectory("RenderedPageCacheTest");
+	}
+
+	@After
+	public void cleanup() {
+		purgeDirectoryRecursively(cacheDir);
+	}
+
+	@Test
+	public void disabledCacheHoldsNothing() {
+		RenderedPageCache cache = cache(0, null);
+		assertFalse(cache.isEnabled());
+		cache.put(KEY_1, page("etag1", "one"));
+		assertNull(cache.get(KEY_1, "etag1"));
+	}
+
+	@Test
+	public void pageIsServedOnlyWhileEtagMatches() {
+		RenderedPageCache cache = cache(1000, null);
+		cache.put(KEY_1, page("etag1", "one"));
+		assertEquals("one", cache.get(KEY_1, "etag1").getHtml());
+		assertNull(cache.get(KEY_1, "etag2"));
+		assertNull(cache.get(KEY_1, "etag1"));
+	}
+
+	@Test
+	public void leastRecentlyUsedPageIsDropped() {
+		RenderedPageCache cache = cache(2 * 2 * 10, null);
+		cache.put(KEY_1, page("etag1", "0123456789"));
+		cache.put(KEY_2, page("etag2", "0123456789"));
+		cache.get(KEY_1, "etag1");
+		cache.put(KEY_3, page("etag3", "0123456789"));
+
+		assertEquals("0123456789", cache.get(KEY_1, "etag1").getHtml());
+		assertNull(cache.get(KEY_2, "etag2"));
+		assertEquals("0123456789", cache.get(KEY_3, "etag3").getHtml());
+	}
+
+	@Test
+	public void pageOnDiskSurvivesARestart() {
+		cache(1000, cacheDir).put(KEY_1,
+				page("etag1", "caf\u00e9"));
+
+		RenderedPageCache restarted = cache(1000, cacheDir);
+		Page page = restarted.get(KEY_1, "etag1");
+		assertEquals("caf\u00e9", page.getHtml());
+		assertEquals("text/html;charset=UTF-8", page.getContentType());
+	}
+
+	@Test
+	public void stalePageOnDiskIsDeleted() {
+		cache(1000, cacheDir).put(KEY_1, page("etag1", "one"));
+
+		RenderedPageCache restarted = cache(1000, cacheDir);
+		assertNull(restarted.get(KEY_1, "etag2"));
+		assertEquals(0, cacheDir.listFiles().length);
+	}
+
+	@Test
+	public void pageIsNotServedAfterTheIndividualChanges() {
+		RenderedPageCache cache = cache(1000, null);
+		cache.put(KEY_1, new Page(URI_1, "etag1", 0L,
+				"text/html;charset=UTF-8", "one"));
+		cache.individualChanged("http://test/individual/other");
+		assertEquals("one", cache.get(KEY_1, "etag1").getHtml());
+
+		cache.individualChanged(URI_1);
+		assertNull(cache.get(KEY_1, "etag1"));
+	}
+
+	@Test
+	public void forgettingAChangeMakesOlderPagesStale() {
+		RenderedPageCache cache = cache(1000, null);
+		cache.put(KEY_1, new Page(URI_1, "etag1", 0L,
+				"text/html;charset=UTF-8", "one"));
+		for (int i = 0; i < RenderedPageCache.MAX_CHANGED_INDIVIDUALS; i++) {
+			cache.individualChanged("http://test/individual/other" + i);
+		}
+		assertEquals("one", cache.get(KEY_1, "etag1").getHtml());
+
+		cache.individualChanged("http://test/individual/oneTooMany");
+		assertNull(cache.get(KEY_1, "etag1"));
+
+		cache.put(KEY_2, new Page(URI_1, "etag2",
+				System.currentTimeMillis() + 1000L, "text/html;charset=UTF-8",
+				"two"));
+		assertEquals("two", cache.get(KEY_2, "etag2").getHtml());
+	}
+
+	@Test
+	public void pageOnDiskIsNotServedAfterAnUpgrade() {
+		cache(1000, cacheDir).put(KEY_1, page("etag1", "one"));
+
+		RenderedPageCache upgraded = new RenderedPageCache(1000, cacheDir,
+				1000, "1.1@2000");
+		assertNull(upgraded.get(KEY_1, "etag1"));
+	}
+
+	@Test
+	public void leastRecentlyUsedPageIsDeletedFromDisk() {
+		// Each file holds a little over 100 bytes.
+		RenderedPageCache cache = new RenderedPageCache(1000, cacheDir, 250,
+				VERSION);
+		cache.put(KEY_1, page("etag1", "one"));
+		for (File file : cacheDir.listFiles()) {
+			file.setLastModified(1000L);
+		}
+		cache.put(KEY_2, page("etag2", "two"));
+		assertEquals(2, cacheDir.listFiles().length);
+
+		cache.put(KEY_3, page("etag3", "three"));
+		assertEquals(2, cacheDir.listFiles().length);
+
+		RenderedPageCache restarted = cache(1000, cacheDir);
+		assertNull(restarted.get(KEY_1, "etag1"));
+		assertEquals("two", restarted.get(KEY_2, "etag2").getHtml());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private RenderedPageCache cache(long maxBytes, File directory) {
+		return new RenderedPageCache(maxBytes, directory, 1000000, VERSION);
+	}
+
+	private Page page(String etag, String html) {
+		return new Page(URI_1, etag, System.currentTimeMillis(),
+				"text/html;charset=UTF-8", html);
+	}
+}
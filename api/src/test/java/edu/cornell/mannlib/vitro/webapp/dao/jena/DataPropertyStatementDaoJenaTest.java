@@ -0,0 +1,101 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.DataPropertyStatementDao;
+
+/**
+ * Fetching the values of several data properties with a single query must
+ * find what the property-by-property query would find.
+ */
+public class DataPropertyStatementDaoJenaTest extends AbstractTestClass {
+	private static final String NS = "http://test.example/";
+	private static final String SUBJECT = NS + "subject";
+	private static final String OTHER_SUBJECT = NS + "other";
+	private static final String NAME = NS + "name";
+	private static final String EMAIL = NS + "email";
+	private static final String PHONE = NS + "phone";
+	private static final String UNREQUESTED = NS + "unrequested";
+
+	private OntModel model;
+	private DataPropertyStatementDao dao;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+		Resource subject = model.createResource(SUBJECT);
+		subject.addProperty(model.createProperty(NAME), "Zed");
+		subject.addProperty(model.createProperty(NAME), "Abe");
+		subject.addProperty(model.createProperty(EMAIL), "abe@test.example");
+		subject.addProperty(model.createProperty(EMAIL),
+				model.createResource(NS + "notALiteral"));
+		subject.addProperty(model.createProperty(UNREQUESTED), "ignored");
+		model.createResource(OTHER_SUBJECT).addProperty(
+				model.createProperty(PHONE), "555-1212");
+
+		dao = new WebappDaoFactoryJena(model).getDataPropertyStatementDao();
+	}
+
+	@Test
+	public void noProperties_emptyMap() {
+		assertTrue(dao.getDataPropertyValuesForIndividualByProperties(SUBJECT,
+				Collections.<String> emptyList()).isEmpty());
+	}
+
+	@Test
+	public void valuesAreGroupedByProperty() {
+		Map<String, List<Literal>> values = dao
+				.getDataPropertyValuesForIndividualByProperties(SUBJECT,
+						Arrays.asList(NAME, EMAIL, PHONE));
+
+		assertEquals(Arrays.asList(NAME, EMAIL, PHONE),
+				new ArrayList<>(values.keySet()));
+		assertEquals(Arrays.asList("Abe", "Zed"), lexicalForms(values.get(NAME)));
+		assertEquals(Arrays.asList("abe@test.example"),
+				lexicalForms(values.get(EMAIL)));
+		assertEquals(Collections.emptyList(), lexicalForms(values.get(PHONE)));
+	}
+
+	@Test
+	public void sameAsOneAtATime() {
+		Map<String, List<Literal>> values = dao
+				.getDataPropertyValuesForIndividualByProperties(SUBJECT,
+						Arrays.asList(NAME, EMAIL, PHONE));
+		for (String property : Arrays.asList(NAME, EMAIL, PHONE)) {
+			assertEquals(property,
+					dao.getDataPropertyValuesForIndividualByProperty(SUBJECT,
+							property), values.get(property));
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private List<String> lexicalForms(List<Literal> literals) {
+		List<String> forms = new ArrayList<>();
+		for (Literal literal : literals) {
+			forms.add(literal.getLexicalForm());
+		}
+		return forms;
+	}
+}
@@ -0,0 +1,241 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.dao.jena;
+
+import static edu.cornell.mannlib.vitro.webapp.dao.jena.IndividualSDBPrefetcher.FETCH_SIZE;
+import static edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB.SDBDatasetMode.ASSERTIONS_AND_INFERENCES;
+import static edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactorySDB.SDBDatasetMode.ASSERTIONS_ONLY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.dao.VitroVocabulary;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+/**
+ * The prefetcher fetches the URIs in groups, with a VALUES clause. If a group
+ * can't be fetched, its individuals must fetch their own data.
+ */
+public class IndividualSDBPrefetcherTest extends AbstractTestClass {
+	private static final String NS = "http://test.example/";
+	private static final String FULL = NS + "full";
+	private static final String LABEL_ONLY = NS + "labelOnly";
+	private static final String NO_LABEL = NS + "noLabel";
+	private static final String ABSENT = NS + "absent";
+	private static final String TYPE = NS + "Type";
+	private static final String SPECIFIC_TYPE = NS + "SpecificType";
+	private static final String IMAGE = NS + "image";
+
+	private static final Pattern URI_IN_QUERY = Pattern.compile("<" + NS
+			+ "[^>]*>");
+
+	private Model model;
+	private CountingRDFService rdfService;
+
+	@Before
+	public void setup() {
+		model = ModelFactory.createDefaultModel();
+
+		Resource full = model.createResource(FULL);
+		full.addProperty(RDFS.label, "Full");
+		full.addProperty(RDF.type, model.createResource(TYPE));
+		full.addProperty(model.createProperty(VitroVocabulary.MOST_SPECIFIC_TYPE),
+				model.createResource(SPECIFIC_TYPE));
+		full.addProperty(model.createProperty(VitroVocabulary.IND_MAIN_IMAGE),
+				model.createResource(IMAGE));
+		model.createResource(IMAGE).addProperty(
+				model.createProperty(VitroVocabulary.FS_THUMBNAIL_IMAGE),
+				model.createResource(NS + "thumbnail"));
+
+		model.createResource(LABEL_ONLY).addProperty(RDFS.label, "Label only");
+		model.createResource(NO_LABEL).addProperty(
+				model.createProperty(NS + "other"), "something");
+
+		rdfService = new CountingRDFService(model);
+	}
+
+	// ----------------------------------------------------------------------
+	// The tests
+	// ----------------------------------------------------------------------
+
+	@Test
+	public void findsWhatTheIndividualWouldFind() {
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_AND_INFERENCES);
+		prefetcher.fetch(Arrays.asList(FULL, LABEL_ONLY, NO_LABEL, ABSENT));
+
+		for (String uri : Arrays.asList(FULL, LABEL_ONLY, NO_LABEL, ABSENT)) {
+			assertTrue("fetched " + uri, prefetcher.wasFetched(uri));
+		}
+		assertTrue(prefetcher.wasFound(FULL));
+		assertTrue(prefetcher.wasFound(LABEL_ONLY));
+		assertTrue(prefetcher.wasFound(NO_LABEL));
+		assertFalse(prefetcher.wasFound(ABSENT));
+
+		assertEquals(1, prefetcher.getLabelModel(FULL).size());
+		assertEquals(0, prefetcher.getLabelModel(NO_LABEL).size());
+		assertTrue(prefetcher.getTypeModel(FULL).contains(
+				model.createResource(FULL), RDF.type,
+				model.createResource(TYPE)));
+		assertEquals(Arrays.asList(SPECIFIC_TYPE),
+				prefetcher.getMostSpecificTypeURIs(FULL));
+		assertEquals(IMAGE, prefetcher.getMainImageUri(FULL));
+		assertTrue(prefetcher.hasThumb(FULL));
+
+		assertNull(prefetcher.getMainImageUri(LABEL_ONLY));
+		assertFalse(prefetcher.hasThumb(LABEL_ONLY));
+	}
+
+	@Test
+	public void urisAreFetchedInGroups() {
+		List<String> uris = labelledIndividuals(2 * FETCH_SIZE + 50);
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_AND_INFERENCES);
+		prefetcher.fetch(uris);
+
+		// Labels and types for each group. All were found, so no check for
+		// existence.
+		assertEquals(6, rdfService.queries.size());
+		for (String query : rdfService.queries) {
+			assertTrue(query, query.contains("VALUES ?s"));
+			assertTrue(query, countUris(query) <= FETCH_SIZE);
+		}
+		for (String uri : uris) {
+			assertTrue(prefetcher.wasFetched(uri));
+			assertTrue(prefetcher.wasFound(uri));
+		}
+	}
+
+	@Test
+	public void urisAreNotFetchedTwice() {
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_AND_INFERENCES);
+		prefetcher.fetch(Arrays.asList(FULL, LABEL_ONLY));
+		int queryCount = rdfService.queries.size();
+
+		prefetcher.fetch(Arrays.asList(LABEL_ONLY, FULL, LABEL_ONLY));
+		assertEquals(queryCount, rdfService.queries.size());
+	}
+
+	@Test
+	public void failedGroupIsLeftForTheIndividuals() {
+		setLoggerLevel(IndividualSDBPrefetcher.class, Level.OFF);
+		List<String> uris = labelledIndividuals(FETCH_SIZE + 10);
+		rdfService.failOnQuery = 1;
+
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_AND_INFERENCES);
+		prefetcher.fetch(uris);
+
+		for (String uri : uris.subList(0, FETCH_SIZE)) {
+			assertFalse("fetched " + uri, prefetcher.wasFetched(uri));
+		}
+		for (String uri : uris.subList(FETCH_SIZE, uris.size())) {
+			assertTrue("fetched " + uri, prefetcher.wasFetched(uri));
+		}
+	}
+
+	@Test
+	public void unsafeUrisAreLeftForTheIndividuals() {
+		String withSpace = NS + "with space";
+		String pseudoBnode = VitroVocabulary.PSEUDO_BNODE_NS + "b1";
+
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_AND_INFERENCES);
+		prefetcher.fetch(Arrays.asList(withSpace, pseudoBnode));
+
+		assertEquals(0, rdfService.queries.size());
+		assertFalse(prefetcher.wasFetched(withSpace));
+		assertFalse(prefetcher.wasFetched(pseudoBnode));
+	}
+
+	@Test
+	public void restrictedDatasetMode_typesAreNotFetched() {
+		IndividualSDBPrefetcher prefetcher = new IndividualSDBPrefetcher(
+				rdfService, ASSERTIONS_ONLY);
+		prefetcher.fetch(Arrays.asList(FULL));
+
+		assertTrue(prefetcher.wasFetched(FULL));
+		assertNull(prefetcher.getTypeModel(FULL));
+		assertEquals(Arrays.asList(SPECIFIC_TYPE),
+				prefetcher.getMostSpecificTypeURIs(FULL));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private List<String> labelledIndividuals(int howMany) {
+		List<String> uris = new ArrayList<>();
+		for (int i = 0; i < howMany; i++) {
+			String uri = NS + "ind" + i;
+			model.createResource(uri).addProperty(RDFS.label, "Individual " + i);
+			uris.add(uri);
+		}
+		return uris;
+	}
+
+	private static int countUris(String query) {
+		int count = 0;
+		Matcher m = URI_IN_QUERY.matcher(query);
+		while (m.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Remember the queries, and fail on one of them if asked.
+	 */
+	private static class CountingRDFService extends RDFServiceModel {
+		final List<String> queries = new ArrayList<>();
+
+		/** Fail on this query (counting from 1), or never if 0. */
+		int failOnQuery;
+
+		CountingRDFService(Model model) {
+			super(model);
+		}
+
+		private void count(String query) throws RDFServiceException {
+			queries.add(query);
+			if (queries.size() == failOnQuery) {
+				throw new RDFServiceException("Failing as requested.");
+			}
+		}
+
+		@Override
+		public void sparqlConstructQuery(String query, Model model)
+				throws RDFServiceException {
+			count(query);
+			super.sparqlConstructQuery(query, model);
+		}
+
+		@Override
+		public void sparqlSelectQuery(String query, ResultSetConsumer consumer)
+				throws RDFServiceException {
+			count(query);
+			super.sparqlSelectQuery(query, consumer);
+		}
+	}
+}
@@ -213,6 +213,23 @@ public class FileStorageImplTest extends AbstractTestClass {
 		generalFs.getInputStream("notFound", "nothing");
 	}
 
+	@Test
+	public void getLastModifiedFound() throws IOException {
+		String id = "lastModifiedExists";
+		String filename = "myFile";
+		long before = System.currentTimeMillis() - 2000L;
+		generalFs.createFile(id, filename,
+				new ByteArrayInputStream("contents".getBytes()));
+
+		assertTrue("getLastModified",
+				generalFs.getLastModified(id, filename) > before);
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void getLastModifiedNotFound() throws IOException {
+		generalFs.getLastModified("notFound", "nothing");
+	}
+
 	@Test
 	public void deleteFileExists() throws IOException {
 		String id = "deleteMe";
@@ -0,0 +1,84 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.filestorage.serving;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * Parse the forms of a single byte range, and reject the forms we don't serve.
+ */
+public class ByteRangeTest extends AbstractTestClass {
+	private static final long LENGTH = 1000;
+
+	@Test
+	public void noHeader() {
+		assertNull(ByteRange.parse(null, LENGTH));
+	}
+
+	@Test
+	public void firstAndLast() {
+		assertRange(100, 199, ByteRange.parse("bytes=100-199", LENGTH));
+	}
+
+	@Test
+	public void openEnded() {
+		assertRange(900, 999, ByteRange.parse("bytes=900-", LENGTH));
+	}
+
+	@Test
+	public void lastIsTrimmedToTheFile() {
+		assertRange(900, 999, ByteRange.parse("bytes=900-5000", LENGTH));
+	}
+
+	@Test
+	public void suffix() {
+		assertRange(800, 999, ByteRange.parse("bytes=-200", LENGTH));
+	}
+
+	@Test
+	public void suffixLongerThanTheFile() {
+		assertRange(0, 999, ByteRange.parse("bytes=-5000", LENGTH));
+	}
+
+	@Test
+	public void multipleRangesAreIgnored() {
+		assertNull(ByteRange.parse("bytes=0-10,20-30", LENGTH));
+	}
+
+	@Test
+	public void malformedRangesAreIgnored() {
+		assertNull(ByteRange.parse("bytes=abc-", LENGTH));
+		assertNull(ByteRange.parse("bytes=20-10", LENGTH));
+		assertNull(ByteRange.parse("lines=1-2", LENGTH));
+	}
+
+	@Test
+	public void beyondTheEndIsUnsatisfiable() {
+		assertSame(ByteRange.UNSATISFIABLE,
+				ByteRange.parse("bytes=1000-", LENGTH));
+		assertSame(ByteRange.UNSATISFIABLE,
+				ByteRange.parse("bytes=-0", LENGTH));
+	}
+
+	@Test
+	public void contentRange() {
+		assertEquals("bytes 100-199/1000", ByteRange.parse("bytes=100-199",
+				LENGTH).toContentRange(LENGTH));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void assertRange(long first, long last, ByteRange range) {
+		assertEquals("first", first, range.getFirst());
+		assertEquals("last", last, range.getLast());
+		assertEquals("length", last - first + 1, range.getLength());
+	}
+}
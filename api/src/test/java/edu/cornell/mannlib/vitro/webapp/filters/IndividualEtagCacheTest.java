@@ -0,0 +1,110 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.filters;
+
+import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.PAUSE;
+import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.START_URIS;
+import static edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event.Type.STOP_URIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexer.Event;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+
+/**
+ * ETAGs are loaded once and remembered, until the indexer changes the index.
+ * While the index is changing, nothing is remembered.
+ */
+public class IndividualEtagCacheTest extends AbstractTestClass {
+	private static final String URI_1 = "http://ns#one";
+	private static final String URI_2 = "http://ns#two";
+
+	private IndividualEtagCache cache;
+	private CountingLoader loader;
+
+	@Before
+	public void setup() {
+		loader = new CountingLoader();
+		loader.etags.put(URI_1, "etag1");
+		cache = new IndividualEtagCache(loader, 100, 0L);
+	}
+
+	@Test
+	public void etagIsLoadedOnlyOnce() throws SearchEngineException {
+		assertEquals("etag1", cache.getEtag(URI_1));
+		assertEquals("etag1", cache.getEtag(URI_1));
+		assertEquals(1, loader.loads);
+	}
+
+	@Test
+	public void missingEtagIsRemembered() throws SearchEngineException {
+		assertNull(cache.getEtag(URI_2));
+		assertNull(cache.getEtag(URI_2));
+		assertEquals(1, loader.loads);
+	}
+
+	@Test
+	public void indexUpdateClearsTheCache() throws SearchEngineException {
+		cache.getEtag(URI_1);
+		event(START_URIS);
+		loader.etags.put(URI_1, "etag1b");
+		event(STOP_URIS);
+		assertEquals("etag1b", cache.getEtag(URI_1));
+		assertEquals(2, loader.loads);
+	}
+
+	@Test
+	public void nothingIsRememberedDuringAnUpdate()
+			throws SearchEngineException {
+		event(START_URIS);
+		cache.getEtag(URI_1);
+		cache.getEtag(URI_1);
+		assertEquals(2, loader.loads);
+	}
+
+	@Test
+	public void otherEventsDoNotClearTheCache() throws SearchEngineException {
+		cache.getEtag(URI_1);
+		event(PAUSE);
+		cache.getEtag(URI_1);
+		assertEquals(1, loader.loads);
+	}
+
+	@Test
+	public void nothingIsRememberedWhileSettling() throws SearchEngineException {
+		cache = new IndividualEtagCache(loader, 100, 60000L);
+		event(STOP_URIS);
+		cache.getEtag(URI_1);
+		cache.getEtag(URI_1);
+		assertEquals(2, loader.loads);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private void event(Event.Type type) {
+		cache.receiveSearchIndexerEvent(new Event(type, SearchIndexerStatus
+				.idle()));
+	}
+
+	private static class CountingLoader implements
+			IndividualEtagCache.EtagLoader {
+		final Map<String, String> etags = new HashMap<>();
+		int loads;
+
+		@Override
+		public String loadEtag(String uri) {
+			loads++;
+			return etags.get(uri);
+		}
+	}
+}
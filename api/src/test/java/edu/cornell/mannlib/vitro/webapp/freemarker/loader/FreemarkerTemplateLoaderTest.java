@@ -5,23 +5,21 @@ package edu.cornell.mannlib.vitro.webapp.freemarker.loader;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.SortedSet;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPieces;
-import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPiecesFileVisitor;
 
 /**
  * TODO
  */
 public class FreemarkerTemplateLoaderTest {
-	private PathPiecesFileVisitor visitor;
 	private String[] paths;
 
 	// ----------------------------------------------------------------------
@@ -269,9 +267,10 @@ public class FreemarkerTemplateLoaderTest {
 		Path expectedBestFit = (expectedBestFitString == null) ? null : Paths
 				.get(expectedBestFitString);
 
-		SortedSet<PathPieces> matches = runTheVisitor(searchTerm);
+		TemplateIndex index = index();
+		List<PathPieces> matches = index.findAll(new PathPieces(searchTerm));
 		int actualHowMany = matches.size();
-		Path actualBestFit = matches.isEmpty() ? null : matches.last().path;
+		Path actualBestFit = bestFit(index, searchTerm);
 
 		if (expectedHowMany != actualHowMany) {
 			fail("How many results: expected " + expectedHowMany
@@ -289,33 +288,24 @@ public class FreemarkerTemplateLoaderTest {
 		Path expectedBestFit = expectedBestString == null ? null : Paths
 				.get(expectedBestString);
 		PathPieces stPp = new PathPieces(searchTerm);
+		TemplateIndex index = index();
 
 		int actualNumberOfTries = 0;
 		Path actualBestFit = null;
 
 		if (StringUtils.isNotBlank(stPp.region)) {
 			actualNumberOfTries++;
-			SortedSet<PathPieces> matches = runTheVisitor(stPp.base
-					+ stPp.language + stPp.region + stPp.extension);
-			if (!matches.isEmpty()) {
-				actualBestFit = matches.last().path;
-			}
+			actualBestFit = bestFit(index, stPp.base + stPp.language
+					+ stPp.region + stPp.extension);
 		}
 		if (actualBestFit == null && StringUtils.isNotBlank(stPp.language)) {
 			actualNumberOfTries++;
-			SortedSet<PathPieces> matches = runTheVisitor(stPp.base
-					+ stPp.language + stPp.extension);
-			if (!matches.isEmpty()) {
-				actualBestFit = matches.last().path;
-			}
+			actualBestFit = bestFit(index, stPp.base + stPp.language
+					+ stPp.extension);
 		}
 		if (actualBestFit == null) {
 			actualNumberOfTries++;
-			SortedSet<PathPieces> matches = runTheVisitor(stPp.base
-					+ stPp.extension);
-			if (!matches.isEmpty()) {
-				actualBestFit = matches.last().path;
-			}
+			actualBestFit = bestFit(index, stPp.base + stPp.extension);
 		}
 
 		assertEquals("How many tries", expectedNumberOfTries,
@@ -323,37 +313,19 @@ public class FreemarkerTemplateLoaderTest {
 		assertEquals("best fit", expectedBestFit, actualBestFit);
 	}
 
-	private SortedSet<PathPieces> runTheVisitor(String searchTerm) {
-		try {
-			visitor = new PathPiecesFileVisitorStub(new PathPieces(searchTerm));
-			for (String p : this.paths) {
-				visitor.visitFile(Paths.get(p), null);
-			}
-		} catch (IOException e) {
-			fail("Failed: " + e);
-		}
-
-		return visitor.getMatches();
-	}
-
-	// ----------------------------------------------------------------------
-	// Helper classes
-	// ----------------------------------------------------------------------
-
 	/**
-	 * We want to test the PathPiecesFileVisitor, but we can't have it checking
-	 * to see whether the files actually exist.
+	 * Index the paths. The files need not exist.
 	 */
-	private static class PathPiecesFileVisitorStub extends
-			PathPiecesFileVisitor {
-		public PathPiecesFileVisitorStub(PathPieces searchTerm) {
-			super(searchTerm);
-		}
-
-		@Override
-		public boolean fileQualifies(Path path) {
-			return true;
+	private TemplateIndex index() {
+		List<Path> pathList = new ArrayList<>();
+		for (String p : this.paths) {
+			pathList.add(Paths.get(p));
 		}
+		return new TemplateIndex(Paths.get(""), pathList);
+	}
 
+	private Path bestFit(TemplateIndex index, String searchTerm) {
+		PathPieces best = index.find(new PathPieces(searchTerm));
+		return (best == null) ? null : best.path;
 	}
 }
@@ -0,0 +1,95 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.freemarker.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.freemarker.loader.FreemarkerTemplateLoader.PathPieces;
+
+/**
+ * The index chooses among the templates as the file walk would, and sees new
+ * templates only when it is built again. (Watching for changes is not tested
+ * here.)
+ */
+public class TemplateIndexTest extends AbstractTestClass {
+	private File tempDir;
+	private TemplateIndex index;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = createTempDirectory("TemplateIndexTest");
+		File subDir = new File(tempDir, "long");
+		subDir.mkdir();
+		createFile(tempDir, "default.ftl", "");
+		createFile(tempDir, "language_fr.ftl", "");
+		createFile(subDir, "this_fr_BE.ftl", "");
+		createFile(subDir, "default.ftl", "");
+
+		index = new TemplateIndex(tempDir.toPath());
+		index.rebuild();
+	}
+
+	@After
+	public void cleanup() {
+		TemplateIndex.shutdownAll();
+		purgeDirectoryRecursively(tempDir);
+	}
+
+	@Test
+	public void preferShorterPath() {
+		assertFound("long/default.ftl", "default.ftl");
+	}
+
+	@Test
+	public void acceptApproximateLocale() {
+		assertFound("language.ftl", "language_fr.ftl");
+		assertFound("this_fr.ftl", "long/this_fr_BE.ftl");
+	}
+
+	@Test
+	public void noMatch() {
+		assertFound("language_es.ftl", null);
+		assertFound("bogus.ftl", null);
+	}
+
+	@Test
+	public void newTemplateIsFoundAfterRebuild() throws IOException {
+		createFile(tempDir, "bogus.ftl", "");
+		assertFound("bogus.ftl", null);
+
+		index.rebuild();
+		assertFound("bogus.ftl", "bogus.ftl");
+	}
+
+	@Test
+	public void shutdownStopsWatchingAndForgetsTheIndex() {
+		TemplateIndex watched = TemplateIndex.forDirectory(tempDir);
+		assumeTrue(watched.isWatching());
+
+		TemplateIndex.shutdownAll();
+		assertFalse(watched.isWatching());
+		assertNotSame(watched, TemplateIndex.forDirectory(tempDir));
+	}
+
+	private void assertFound(String searchTerm, String expected) {
+		PathPieces found = index.find(new PathPieces(searchTerm));
+		if (expected == null) {
+			assertNull(searchTerm, found);
+		} else {
+			assertEquals(searchTerm, new File(tempDir, expected).toPath(),
+					found.path);
+		}
+	}
+}
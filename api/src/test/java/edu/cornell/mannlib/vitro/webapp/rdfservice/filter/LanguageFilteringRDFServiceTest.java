@@ -2,6 +2,9 @@
 
 package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
 
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.dataProperty;
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.model;
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.modelToStrings;
 import static org.junit.Assert.assertEquals;
 
 import java.lang.reflect.Constructor;
@@ -21,9 +24,18 @@ import org.junit.Test;
 
 import stubs.org.apache.jena.rdf.model.LiteralStub;
 
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
 
 import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ModelSerializationFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService.ResultFormat;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.RDFServiceUtils;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
 
 /**
  * This is the matching order we expect to see:
@@ -158,6 +170,88 @@ public class LanguageFilteringRDFServiceTest extends AbstractTestClass {
 		testBothWays();
 	}
 
+	// ----------------------------------------------------------------------
+	// Filtering tests
+	// ----------------------------------------------------------------------
+
+	private static final String LABEL = "http://ns#label";
+	private static final String ALICE = "http://ns#alice";
+	private static final String BOB = "http://ns#bob";
+	private static final String CAROL = "http://ns#carol";
+
+	private static final String SELECT_LABELS = "SELECT ?s ?label WHERE { ?s <"
+			+ LABEL + "> ?label } ORDER BY ?s";
+	private static final String CONSTRUCT_LABELS = "CONSTRUCT { ?s <" + LABEL
+			+ "> ?label } WHERE { ?s <" + LABEL + "> ?label }";
+
+	private List<String> expectedLabels = list(ALICE + " Alice@en-US", BOB
+			+ " Roberto@es", CAROL + " Carol");
+
+	@Test
+	public void selectToStreamKeepsPreferredLanguages() throws Exception {
+		createFilterOnLabels();
+		ResultSet rs = ResultSetFactory.fromJSON(filteringRDFService
+				.sparqlSelectQuery(SELECT_LABELS, ResultFormat.JSON));
+		List<String> actual = new ArrayList<>();
+		while (rs.hasNext()) {
+			actual.add(rowToString(rs.next()));
+		}
+		assertEquals(expectedLabels, actual);
+	}
+
+	@Test
+	public void selectToConsumerKeepsPreferredLanguagesInOrder()
+			throws Exception {
+		createFilterOnLabels();
+		final List<String> actual = new ArrayList<>();
+		filteringRDFService.sparqlSelectQuery(SELECT_LABELS,
+				new ResultSetConsumer() {
+					@Override
+					protected void processQuerySolution(QuerySolution qs) {
+						actual.add(rowToString(qs));
+					}
+				});
+		assertEquals(expectedLabels, actual);
+	}
+
+	@Test
+	public void constructKeepsPreferredLanguages() throws Exception {
+		createFilterOnLabels();
+		Model m = RDFServiceUtils.parseModel(filteringRDFService
+				.sparqlConstructQuery(CONSTRUCT_LABELS,
+						ModelSerializationFormat.NTRIPLE),
+				ModelSerializationFormat.NTRIPLE);
+		assertEquals(
+				modelToStrings(model(
+						dataProperty(ALICE, LABEL, "Alice", "en-US"),
+						dataProperty(BOB, LABEL, "Roberto", "es"),
+						dataProperty(CAROL, LABEL, "Carol"))),
+				modelToStrings(m));
+	}
+
+	/**
+	 * Alice has a label in the preferred language, so her other labels are
+	 * dropped. Bob has no label in a preferred language, so the first is kept.
+	 * Carol has only a plain label.
+	 */
+	private void createFilterOnLabels() {
+		Model model = model(dataProperty(ALICE, LABEL, "Alicia", "es"),
+				dataProperty(ALICE, LABEL, "Alice", "en-US"),
+				dataProperty(ALICE, LABEL, "Ally"),
+				dataProperty(BOB, LABEL, "Roberto", "es"),
+				dataProperty(CAROL, LABEL, "Carol"));
+		filteringRDFService = new LanguageFilteringRDFService(
+				new RDFServiceModel(model), list("en-US"));
+	}
+
+	private String rowToString(QuerySolution qs) {
+		Literal label = qs.getLiteral("label");
+		String lang = label.getLanguage().isEmpty() ? "" : "@"
+				+ label.getLanguage();
+		return qs.getResource("s").getURI() + " " + label.getLexicalForm()
+				+ lang;
+	}
+
 	// ----------------------------------------------------------------------
 	// Helper methods
 	// ----------------------------------------------------------------------
@@ -0,0 +1,84 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * Groups are joined when a link is added, split when one is removed, and
+ * represented by the URI that comes first.
+ */
+public class SameAsIndexTest extends AbstractTestClass {
+	private static final String A = "http://test/a";
+	private static final String B = "http://test/b";
+	private static final String C = "http://test/c";
+	private static final String D = "http://test/d";
+	private static final String GRAPH1 = "http://test/graph1";
+	private static final String GRAPH2 = "http://test/graph2";
+
+	private SameAsIndex index;
+
+	@Before
+	public void setup() {
+		index = new SameAsIndex();
+	}
+
+	@Test
+	public void unlinkedResourceStandsForItself() {
+		assertEquals(A, index.getRepresentative(A));
+	}
+
+	@Test
+	public void linksAreSymmetricAndTransitive() {
+		index.add(C, B, GRAPH1);
+		index.add(B, A, GRAPH1);
+		assertRepresentatives(A, A, A, D);
+	}
+
+	@Test
+	public void groupsAreMerged() {
+		index.add(A, B, GRAPH1);
+		index.add(C, D, GRAPH1);
+		assertRepresentatives(A, A, C, C);
+
+		index.add(D, B, GRAPH1);
+		assertRepresentatives(A, A, A, A);
+	}
+
+	@Test
+	public void removingALinkSplitsTheGroup() {
+		index.add(A, B, GRAPH1);
+		index.add(B, C, GRAPH1);
+		index.add(C, D, GRAPH1);
+
+		index.remove(B, C, GRAPH1);
+		assertRepresentatives(A, A, C, C);
+	}
+
+	@Test
+	public void linkRemainsWhileAnyStatementRemains() {
+		index.add(A, B, GRAPH1);
+		index.add(A, B, GRAPH2);
+		index.add(B, A, GRAPH1);
+
+		index.remove(A, B, GRAPH1);
+		assertRepresentatives(A, A, C, D);
+		index.remove(A, B, GRAPH2);
+		assertRepresentatives(A, A, C, D);
+		index.remove(B, A, GRAPH1);
+		assertRepresentatives(A, B, C, D);
+	}
+
+	private void assertRepresentatives(String forA, String forB, String forC,
+			String forD) {
+		assertEquals("a", forA, index.getRepresentative(A));
+		assertEquals("b", forB, index.getRepresentative(B));
+		assertEquals("c", forC, index.getRepresentative(C));
+		assertEquals("d", forD, index.getRepresentative(D));
+	}
+}
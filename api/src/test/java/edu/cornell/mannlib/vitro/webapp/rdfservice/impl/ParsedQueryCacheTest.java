@@ -0,0 +1,184 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.core.Var;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * The cache hands out copies that are equivalent to a fresh parse, counts hits
+ * and misses, stays within its limit by dropping the least recently used, and
+ * does not remember failures.
+ */
+public class ParsedQueryCacheTest extends AbstractTestClass {
+	private static final Syntax SYNTAX = Syntax.syntaxSPARQL_11;
+
+	private static final String SELECT = "" //
+			+ "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#> \n" //
+			+ "SELECT DISTINCT ?s ?label WHERE { \n" //
+			+ "  ?s rdfs:label ?label . \n" //
+			+ "  OPTIONAL { ?s <http://ns#p> ?o } \n" //
+			+ "  FILTER (lang(?label) = 'en') \n" //
+			+ "} ORDER BY ?label LIMIT 10";
+	private static final String AGGREGATE = "" //
+			+ "SELECT ?s (COUNT(?o) AS ?count) WHERE { ?s ?p ?o } \n" //
+			+ "GROUP BY ?s HAVING (COUNT(?o) > 1)";
+	private static final String CONSTRUCT = "" //
+			+ "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } \n" //
+			+ "VALUES ?s { <http://ns#a> <http://ns#b> } }";
+	private static final String ASK = "ASK { <http://ns#a> ?p ?o }";
+	private static final String BAD = "SELECT WHERE {";
+	private static final String ARQ_ONLY = "SELECT ?x { LET (?x := 1) }";
+	private static final String TEMPLATE = "SELECT ?o WHERE { ?s ?p ?o }";
+
+	private ParsedQueryCache cache;
+
+	@Before
+	public void setup() {
+		cache = new ParsedQueryCache(3, 1000);
+	}
+
+	@Test
+	public void copiesMatchAFreshParse() {
+		assertCopyMatches(SELECT);
+		assertCopyMatches(AGGREGATE);
+		assertCopyMatches(CONSTRUCT);
+		assertCopyMatches(ASK);
+	}
+
+	@Test
+	public void eachCallerGetsItsOwnCopy() {
+		Query first = cache.parse(SELECT, SYNTAX);
+		Query second = cache.parse(SELECT, SYNTAX);
+		assertNotSame(first, second);
+		first.setLimit(99);
+		assertEquals(10, second.getLimit());
+		assertEquals(10, cache.parse(SELECT, SYNTAX).getLimit());
+	}
+
+	@Test
+	public void hitsAndMissesAreCounted() {
+		cache.parse(SELECT, SYNTAX);
+		cache.parse(SELECT, SYNTAX);
+		cache.parse(SELECT, SYNTAX);
+		cache.parse(ASK, SYNTAX);
+
+		ParsedQueryCache.Statistics stats = cache.getStatistics();
+		assertEquals("hits", 2, stats.getHits());
+		assertEquals("misses", 2, stats.getMisses());
+		assertEquals("size", 2, stats.getSize());
+	}
+
+	@Test
+	public void syntaxIsPartOfTheKey() {
+		cache.parse(ASK, SYNTAX);
+		cache.parse(ASK, Syntax.syntaxARQ);
+		assertEquals("misses", 2, cache.getStatistics().getMisses());
+	}
+
+	@Test
+	public void cacheStaysWithinItsLimit() {
+		for (int i = 0; i < 10; i++) {
+			cache.parse("ASK { <http://ns#a" + i + "> ?p ?o }", SYNTAX);
+		}
+		ParsedQueryCache.Statistics stats = cache.getStatistics();
+		assertTrue("size", stats.getSize() <= 3);
+		assertEquals("evictions", 7, stats.getEvictions());
+	}
+
+	@Test
+	public void longQueriesAreNotCached() {
+		StringBuilder query = new StringBuilder("ASK { ?s ?p ?o ");
+		while (query.length() < 1000) {
+			query.append("FILTER (?s != <http://ns#x>) ");
+		}
+		query.append("}");
+		cache.parse(query.toString(), SYNTAX);
+		assertEquals("size", 0, cache.getStatistics().getSize());
+	}
+
+	@Test(expected = QueryParseException.class)
+	public void firstFailureIsThrown() {
+		cache.parse(BAD, SYNTAX);
+	}
+
+	@Test
+	public void failureIsNotRemembered() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.parse(BAD, SYNTAX);
+			} catch (QueryParseException e) {
+				// expected
+			}
+		}
+		ParsedQueryCache.Statistics stats = cache.getStatistics();
+		assertEquals("hits", 0, stats.getHits());
+		assertEquals("size", 0, stats.getSize());
+	}
+
+	@Test
+	public void firstSuccessfulSyntaxIsRemembered() {
+		List<Syntax> syntaxes = Arrays.asList(SYNTAX, Syntax.syntaxARQ);
+		cache.parse(ARQ_ONLY, syntaxes);
+		cache.parse(ARQ_ONLY, syntaxes);
+		assertEquals("hits", 1, cache.getStatistics().getHits());
+	}
+
+	@Test
+	public void leastRecentlyUsedIsDropped() {
+		cache.parse(SELECT, SYNTAX);
+		cache.parse(ASK, SYNTAX);
+		cache.parse(CONSTRUCT, SYNTAX);
+		cache.parse(SELECT, SYNTAX);
+		cache.parse(AGGREGATE, SYNTAX);
+
+		cache.parse(SELECT, SYNTAX);
+		assertEquals("hits", 2, cache.getStatistics().getHits());
+		cache.parse(ASK, SYNTAX);
+		assertEquals("hits", 2, cache.getStatistics().getHits());
+	}
+
+	@Test
+	public void bindingsAreAppliedToACachedTemplate() {
+		Map<Var, Node> bindings = new HashMap<>();
+		for (int i = 0; i < 3; i++) {
+			bindings.put(Var.alloc("s"), NodeFactory.createURI("http://ns#a" + i));
+			Query q = cache.parse(TEMPLATE, Arrays.asList(SYNTAX), bindings);
+			assertTrue(q.serialize(), q.serialize().contains("<http://ns#a" + i + ">"));
+		}
+		ParsedQueryCache.Statistics stats = cache.getStatistics();
+		assertEquals("hits", 2, stats.getHits());
+		assertEquals("size", 1, stats.getSize());
+		assertFalse(cache.parse(TEMPLATE, SYNTAX).serialize().contains("<http://ns#a"));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void assertCopyMatches(String queryString) {
+		Query expected = QueryFactory.create(queryString, SYNTAX);
+		cache.parse(queryString, SYNTAX);
+		Query actual = cache.parse(queryString, SYNTAX);
+		assertEquals(queryString, expected.serialize(), actual.serialize());
+	}
+}
@@ -0,0 +1,190 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.rdfservice.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Level;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * The reader sees everything the Producer writes, sees a failure as an
+ * exception, and can stop the Producer by closing the stream. A slow reader
+ * loses nothing, and a reader that stops reading sees an exception, not a
+ * truncated result.
+ */
+public class PipedResultStreamTest extends AbstractTestClass {
+
+	@Test
+	public void emptyStream() throws IOException {
+		InputStream in = PipedResultStream.start("empty",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) {
+						// nothing
+					}
+				});
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void largeStreamArrivesIntact() throws IOException {
+		final byte[] expected = new byte[1000000];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = (byte) i;
+		}
+
+		InputStream in = PipedResultStream.start("large",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write(expected, 0, 10);
+						for (int i = 10; i < 20; i++) {
+							out.write(expected[i]);
+						}
+						out.write(expected, 20, expected.length - 20);
+					}
+				});
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		IOUtils.copy(in, actual);
+		assertArrayEquals(expected, actual.toByteArray());
+	}
+
+	@Test
+	public void failureIsSeenByTheReader() {
+		setLoggerLevel(PipedResultStream.class, Level.OFF);
+		InputStream in = PipedResultStream.start("failing",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write("partial".getBytes());
+						throw new IllegalStateException("query failed");
+					}
+				});
+		try {
+			IOUtils.toByteArray(in);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void closingTheStreamStopsTheProducer() throws Exception {
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		InputStream in = PipedResultStream.start("endless",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						try {
+							byte[] chunk = new byte[1000];
+							while (true) {
+								out.write(chunk);
+							}
+						} catch (IOException e) {
+							stopped.set(true);
+							throw e;
+						} finally {
+							finished.countDown();
+						}
+					}
+				});
+
+		in.read(new byte[5000]);
+		in.close();
+
+		assertTrue("finished", finished.await(10, TimeUnit.SECONDS));
+		assertTrue("stopped by the reader", stopped.get());
+	}
+
+	@Test
+	public void endIsSeenWhenTheQueueWasFull() throws Exception {
+		// As many chunks as the queue will hold.
+		final byte[] expected = new byte[16 * 8192];
+		final CountDownLatch finished = new CountDownLatch(1);
+		InputStream in = PipedResultStream.start("fills the queue",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write(expected);
+						out.flush();
+						finished.countDown();
+					}
+				}, 10000);
+
+		// The Producer finishes with the queue full, before we read.
+		assertTrue("finished", finished.await(10, TimeUnit.SECONDS));
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		IOUtils.copy(in, actual);
+		assertEquals(expected.length, actual.size());
+	}
+
+	@Test
+	public void slowReaderLosesNothing() throws Exception {
+		final byte[] expected = new byte[300000];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = (byte) i;
+		}
+		InputStream in = PipedResultStream.start("slow reader",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write(expected);
+					}
+				}, 1000);
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int howMany;
+		while ((howMany = in.read(buffer)) != -1) {
+			actual.write(buffer, 0, howMany);
+			Thread.sleep(5);
+		}
+		assertArrayEquals(expected, actual.toByteArray());
+	}
+
+	@Test
+	public void idleReaderSeesAFailure() throws Exception {
+		setLoggerLevel(PipedResultStream.class, Level.OFF);
+		final CountDownLatch finished = new CountDownLatch(1);
+		InputStream in = PipedResultStream.start("idle reader",
+				new PipedResultStream.Producer() {
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						try {
+							byte[] chunk = new byte[1000];
+							while (true) {
+								out.write(chunk);
+							}
+						} finally {
+							finished.countDown();
+						}
+					}
+				}, 100);
+
+		assertTrue("producer gave up", finished.await(10, TimeUnit.SECONDS));
+		try {
+			IOUtils.toByteArray(in);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getCause() instanceof IOException);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * URIs are recomputed in the background, duplicates are coalesced, a caller
+ * can wait for its own edits, failures are tried again, a burst of batches is
+ * started and ended once, and the journal carries URIs across a restart,
+ * including the batch that was in progress.
+ */
+public class ABoxInferenceQueueTest extends AbstractTestClass {
+	private static final long TIMEOUT = 10000L;
+
+	private File tempDir;
+	private RecordingRecomputer recomputer;
+	private ABoxInferenceQueue queue;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = createTempDirectory("ABoxInferenceQueueTest");
+		recomputer = new RecordingRecomputer();
+	}
+
+	@After
+	public void cleanup() {
+		if (queue != null) {
+			queue.stop();
+		}
+		purgeDirectoryRecursively(tempDir);
+	}
+
+	@Test
+	public void queuedUrisAreRecomputed() {
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a", "b"));
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("a", "b"), recomputer.recomputedUris());
+		assertFalse(queue.hasPendingWork());
+	}
+
+	@Test
+	public void duplicatesAreCoalesced() throws InterruptedException {
+		recomputer.block();
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("first"));
+		recomputer.awaitStarted();
+
+		queue.enqueue(Arrays.asList("a", "b"));
+		queue.enqueue(Arrays.asList("b", "a", "c"));
+		assertEquals(3, queue.getPendingCount());
+
+		recomputer.release();
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("first", "a", "b", "c"),
+				recomputer.recomputedUris());
+	}
+
+	@Test
+	public void waitTimesOutWhileWorkIsBlocked() throws InterruptedException {
+		recomputer.block();
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a"));
+		recomputer.awaitStarted();
+
+		assertTrue(queue.hasPendingWork());
+		assertFalse(queue.waitForInferences(50L));
+
+		recomputer.release();
+		assertTrue(queue.waitForInferences(TIMEOUT));
+	}
+
+	@Test
+	public void journalIsRecoveredAndEmptied() throws IOException {
+		File journal = new File(tempDir, "journal.txt");
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(journal),
+				StandardCharsets.UTF_8)) {
+			w.write("x\ny\nx\n");
+		}
+
+		queue = new ABoxInferenceQueue(recomputer, 100, journal);
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("x", "y"), recomputer.recomputedUris());
+		assertEquals(0, journal.length());
+	}
+
+	@Test
+	public void failedBatchIsTriedAgain() {
+		setLoggerLevel(ABoxInferenceQueue.class, Level.OFF);
+		recomputer.failTimes(1);
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a", "b"));
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("a", "b", "a", "b"),
+				recomputer.recomputedUris());
+	}
+
+	@Test
+	public void persistentFailureIsDropped() {
+		setLoggerLevel(ABoxInferenceQueue.class, Level.OFF);
+		recomputer.failTimes(ABoxInferenceQueue.MAX_ATTEMPTS);
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a"));
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(ABoxInferenceQueue.MAX_ATTEMPTS,
+				recomputer.recomputedUris().size());
+		assertFalse(queue.hasPendingWork());
+	}
+
+	@Test
+	public void onlyFailedUrisAreTriedAgain() {
+		setLoggerLevel(ABoxInferenceQueue.class, Level.OFF);
+		recomputer.failUri("b", 1);
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a", "b", "c"));
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("a", "b", "c", "b"),
+				recomputer.recomputedUris());
+	}
+
+	@Test
+	public void persistentlyFailedUriIsDropped() {
+		setLoggerLevel(ABoxInferenceQueue.class, Level.OFF);
+		recomputer.failUri("b", ABoxInferenceQueue.MAX_ATTEMPTS);
+		queue = new ABoxInferenceQueue(recomputer, 100, null);
+		queue.enqueue(Arrays.asList("a", "b"));
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(1 + ABoxInferenceQueue.MAX_ATTEMPTS,
+				recomputer.recomputedUris().size());
+		assertFalse(queue.hasPendingWork());
+	}
+
+	@Test
+	public void burstIsStartedAndEndedOnce() throws InterruptedException {
+		recomputer.block();
+		queue = new ABoxInferenceQueue(recomputer, 2, null);
+		queue.enqueue(Arrays.asList("a"));
+		recomputer.awaitStarted();
+		queue.enqueue(Arrays.asList("b", "c", "d", "e"));
+
+		recomputer.release();
+		assertTrue(queue.waitForInferences(TIMEOUT));
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+				recomputer.recomputedUris());
+		assertTrue(recomputer.awaitBurstEnded());
+		assertEquals(Arrays.asList("start", "end"), recomputer.bursts());
+	}
+
+	@Test
+	public void batchInProgressStaysInJournalAfterStop()
+			throws InterruptedException, IOException {
+		File journal = new File(tempDir, "journal.txt");
+		recomputer.block();
+		queue = new ABoxInferenceQueue(recomputer, 100, journal);
+		queue.enqueue(Arrays.asList("a"));
+		recomputer.awaitStarted();
+
+		queue.stop();
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (queue.getPendingCount() == 0
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		assertEquals(1, queue.getPendingCount());
+		assertEquals("a\n", readFile(journal));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private String readFile(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()),
+				StandardCharsets.UTF_8);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class RecordingRecomputer implements
+			ABoxInferenceQueue.Recomputer {
+		private final List<String> uris = Collections
+				.synchronizedList(new ArrayList<String>());
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile CountDownLatch gate = new CountDownLatch(0);
+		private final AtomicInteger failuresRemaining = new AtomicInteger();
+		private volatile String failingUri;
+		private final AtomicInteger uriFailuresRemaining = new AtomicInteger();
+		private final List<String> bursts = Collections
+				.synchronizedList(new ArrayList<String>());
+		private final CountDownLatch burstEnded = new CountDownLatch(1);
+
+		void failTimes(int count) {
+			failuresRemaining.set(count);
+		}
+
+		void failUri(String uri, int count) {
+			failingUri = uri;
+			uriFailuresRemaining.set(count);
+		}
+
+		void block() {
+			gate = new CountDownLatch(1);
+		}
+
+		void release() {
+			gate.countDown();
+		}
+
+		void awaitStarted() throws InterruptedException {
+			started.await();
+		}
+
+		boolean awaitBurstEnded() throws InterruptedException {
+			return burstEnded.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+
+		List<String> bursts() {
+			synchronized (bursts) {
+				return new ArrayList<>(bursts);
+			}
+		}
+
+		@Override
+		public void startBurst() {
+			bursts.add("start");
+		}
+
+		@Override
+		public void endBurst() {
+			bursts.add("end");
+			burstEnded.countDown();
+		}
+
+		@Override
+		public Collection<String> recompute(Queue<String> individualURIs) {
+			uris.addAll(individualURIs);
+			started.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (failuresRemaining.getAndDecrement() > 0) {
+				throw new IllegalStateException("Test failure");
+			}
+			Set<String> failed = new HashSet<>();
+			String uri = failingUri;
+			if (uri != null && individualURIs.contains(uri)
+					&& uriFailuresRemaining.getAndDecrement() > 0) {
+				failed.add(uri);
+			}
+			individualURIs.clear();
+			return failed;
+		}
+
+		List<String> recomputedUris() {
+			synchronized (uris) {
+				return new ArrayList<>(uris);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * The progress of each partition survives a reload, but only for the same
+ * number of partitions.
+ */
+public class RecomputeCheckpointTest extends AbstractTestClass {
+	private File tempDir;
+	private File file;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = createTempDirectory("RecomputeCheckpointTest");
+		file = new File(tempDir, "checkpoint.txt");
+	}
+
+	@After
+	public void cleanup() {
+		purgeDirectoryRecursively(tempDir);
+	}
+
+	@Test
+	public void progressSurvivesAReload() {
+		RecomputeCheckpoint checkpoint = RecomputeCheckpoint.load(file, 3);
+		checkpoint.record(0, "http://ns#a");
+		checkpoint.record(2, "http://ns#c");
+		checkpoint.record(0, "http://ns#b");
+
+		RecomputeCheckpoint reloaded = RecomputeCheckpoint.load(file, 3);
+		assertEquals("http://ns#b", reloaded.getLastUri(0));
+		assertNull(reloaded.getLastUri(1));
+		assertEquals("http://ns#c", reloaded.getLastUri(2));
+	}
+
+	@Test
+	public void differentPartitionCountIsIgnored() {
+		RecomputeCheckpoint.load(file, 3).record(0, "http://ns#a");
+		assertNull(RecomputeCheckpoint.load(file, 2).getLastUri(0));
+	}
+
+	@Test
+	public void clearRemovesTheFile() {
+		RecomputeCheckpoint checkpoint = RecomputeCheckpoint.load(file, 1);
+		checkpoint.record(0, "http://ns#a");
+		checkpoint.clear();
+		assertNull(checkpoint.getLastUri(0));
+		assertFalse(file.exists());
+	}
+}
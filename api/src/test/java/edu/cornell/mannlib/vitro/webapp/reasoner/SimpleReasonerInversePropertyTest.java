@@ -502,10 +502,19 @@ public class SimpleReasonerInversePropertyTest extends SimpleReasonerTBoxHelper
         recomputeABox1(false);
     }
 
+    @Test
+    public void recomputeABox1SeveralThreadsTest() throws InterruptedException {
+        recomputeABox1(true, 4);
+    }
+
+    public void recomputeABox1(boolean sameAs) throws InterruptedException {
+        recomputeABox1(sameAs, 1);
+    }
+
 	/*
 	 * Basic scenario around recomputing the ABox inferences
 	 */
-	public void recomputeABox1(boolean sameAs) throws InterruptedException {
+	public void recomputeABox1(boolean sameAs, int threadCount) throws InterruptedException {
 				
 		// set up the tbox
 		OntModel tBox = createTBoxModel(); 
@@ -540,6 +549,7 @@ public class SimpleReasonerInversePropertyTest extends SimpleReasonerTBoxHelper
         inf.remove(d,Y,c);
         
         //recompute whole abox
+	    simpleReasoner.setRecomputeSettings(threadCount, 0, null);
 	    simpleReasoner.recompute();
 	    
 	    while (simpleReasoner.isRecomputing()) {
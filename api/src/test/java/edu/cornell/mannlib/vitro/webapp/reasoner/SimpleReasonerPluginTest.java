@@ -22,6 +22,8 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDFS;
 
+import edu.cornell.mannlib.vitro.webapp.reasoner.plugin.SamplePlugin;
+
 public class SimpleReasonerPluginTest extends SimpleReasonerTBoxHelper {
 	long delay = 50;
 	
@@ -118,6 +120,66 @@ public class SimpleReasonerPluginTest extends SimpleReasonerTBoxHelper {
 	}
 			
 	
+	/*
+	 * The plugin is called from several recompute workers at once.
+	 */
+	@Test
+	public void recomputeWithSeveralThreads() throws InterruptedException {
+		OntModel tBox = createTBoxModel(); 
+		
+		OntProperty authorInAuthorship = tBox.createObjectProperty(authorInAuthorship_URI);
+		OntProperty linkedAuthor = tBox.createObjectProperty(linkedAuthor_URI);
+		OntProperty informationResourceInAuthorship = tBox.createObjectProperty(informationResourceInAuthorship_URI);
+		OntProperty linkedInformationResource = tBox.createObjectProperty(linkedInformationResource_URI);
+		
+		authorInAuthorship.addInverseOf(linkedAuthor);
+		informationResourceInAuthorship.addInverseOf(linkedInformationResource);
+		
+        Model inf = ModelFactory.createDefaultModel();
+		OntModel aBox = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM); 
+		SimpleReasoner simpleReasoner = new SimpleReasoner(tBox, aBox, inf);
+		aBox.register(simpleReasoner);
+	
+		ReasonerPlugin plugin = new SamplePlugin();
+		plugin.setSimpleReasoner(simpleReasoner);
+		List<ReasonerPlugin> pluginList = new ArrayList<ReasonerPlugin>();	
+		pluginList.add(plugin);
+		simpleReasoner.setPluginList(pluginList);		
+
+		Property dctermsCreator = ResourceFactory.createProperty(creator_URI);
+		
+		// several authors, each with an article, so each worker has some.
+		// the recompute only finds individuals that are typed
+		List<Resource> people = new ArrayList<Resource>();
+		List<Resource> articles = new ArrayList<Resource>();
+		for (int i = 0; i < 10; i++) {
+			Resource person = aBox.createIndividual(DEFAULT_NS + "person" + i, OWL.Thing);
+			Resource authorship = aBox.createIndividual(DEFAULT_NS + "authorship" + i, OWL.Thing);
+			Resource article = aBox.createIndividual(DEFAULT_NS + "article" + i, OWL.Thing);
+			aBox.add(person,authorInAuthorship,authorship);
+			aBox.add(authorship,linkedAuthor,person);
+			aBox.add(authorship,linkedInformationResource,article);
+			aBox.add(article,informationResourceInAuthorship,authorship);
+			people.add(person);
+			articles.add(article);
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(inf.contains(articles.get(i),dctermsCreator,people.get(i)));
+		}
+		
+		inf.removeAll(null, dctermsCreator, null);
+
+		simpleReasoner.setRecomputeSettings(4, 0, null);
+		simpleReasoner.recompute();
+	    while (simpleReasoner.isRecomputing()) {
+	    	Thread.sleep(delay);
+	    }
+
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(inf.contains(articles.get(i),dctermsCreator,people.get(i)));
+		}
+	}
+	
 	//==================================== Utility methods ====================
 	SimpleReasonerTBoxListener getTBoxListener(SimpleReasoner simpleReasoner) {
 	    return new SimpleReasonerTBoxListener(simpleReasoner, new Exception().getStackTrace()[1].getMethodName());
@@ -684,6 +684,18 @@ public class SimpleReasonerSameAsTest extends SimpleReasonerTBoxHelper {
 	 */
 	@Test
 	public void recomputeABox1() throws InterruptedException {
+		recomputeABox1(1);
+	}
+
+	/*
+	 * The same, with the individuals divided among several workers
+	 */
+	@Test
+	public void recomputeABox1SeveralThreads() throws InterruptedException {
+		recomputeABox1(4);
+	}
+
+	private void recomputeABox1(int threadCount) throws InterruptedException {
 		OntModel tBox = createTBoxModel(); 
 		OntProperty P = createObjectProperty(tBox, "http://test.vivo/P", "property P");
 		OntProperty Q = createObjectProperty(tBox, "http://test.vivo/Q", "property Q");
@@ -724,6 +736,7 @@ public class SimpleReasonerSameAsTest extends SimpleReasonerTBoxHelper {
 		inf.remove(a,Q,d);
 		inf.remove(a,T,literal2);
 		
+	    simpleReasoner.setRecomputeSettings(threadCount, 0, null);
 	    simpleReasoner.recompute();
 	    
 	    while (simpleReasoner.isRecomputing()) {
@@ -0,0 +1,99 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.reasoner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * URIs come out in the order they went in, whether or not they were written
+ * to the file, and the file is removed when it has been read. If the file
+ * can't be written, the queue fails rather than change the order.
+ */
+public class SpillingURIQueueTest extends AbstractTestClass {
+	private File tempDir;
+	private SpillingURIQueue queue;
+
+	@Before
+	public void setup() throws IOException {
+		tempDir = createTempDirectory("SpillingURIQueueTest");
+	}
+
+	@After
+	public void cleanup() {
+		if (queue != null) {
+			queue.close();
+		}
+		purgeDirectoryRecursively(tempDir);
+	}
+
+	@Test
+	public void orderIsKeptAcrossTheFile() {
+		queue = new SpillingURIQueue(2, tempDir);
+		for (String uri : Arrays.asList("a", "b", "c", "d", "e")) {
+			queue.add(uri);
+		}
+		assertEquals(1, tempDir.listFiles().length);
+
+		List<String> taken = new ArrayList<>();
+		assertTrue(queue.take(taken, 3));
+		queue.add("f");
+		queue.finish();
+		while (queue.take(taken, 3)) {
+			// keep taking
+		}
+
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), taken);
+		assertEquals(0, tempDir.listFiles().length);
+	}
+
+	@Test
+	public void takeWaitsForTheProducer() throws InterruptedException {
+		queue = new SpillingURIQueue(10, tempDir);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				queue.add("a");
+				queue.finish();
+			}
+		};
+		producer.start();
+
+		List<String> taken = new ArrayList<>();
+		assertTrue(queue.take(taken, 5));
+		assertEquals(Arrays.asList("a"), taken);
+		assertFalse(queue.take(taken, 5));
+		producer.join();
+	}
+
+	@Test
+	public void unwritableFile_queueFails() {
+		setLoggerLevel(SpillingURIQueue.class, Level.OFF);
+		queue = new SpillingURIQueue(1, new File(tempDir, "noSuchDirectory"));
+		queue.add("a");
+		assertFalse(queue.isFailed());
+
+		queue.add("b");
+		queue.add("c");
+		queue.finish();
+		assertTrue(queue.isFailed());
+
+		List<String> taken = new ArrayList<>();
+		assertFalse(queue.take(taken, 3));
+		assertEquals(0, taken.size());
+	}
+}
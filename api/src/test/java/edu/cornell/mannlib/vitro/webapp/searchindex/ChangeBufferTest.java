@@ -0,0 +1,104 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * Duplicates are removed, changes beyond the memory limit go to disk and come
+ * back intact, and clearing the buffer removes the files.
+ */
+public class ChangeBufferTest extends AbstractTestClass {
+	private File spillDir;
+	private ChangeBuffer buffer;
+
+	@Before
+	public void setup() throws IOException {
+		spillDir = createTempDirectory("ChangeBufferTest");
+		buffer = new ChangeBuffer(10, spillDir);
+	}
+
+	@After
+	public void cleanup() {
+		purgeDirectoryRecursively(spillDir);
+	}
+
+	@Test
+	public void duplicatesAreRemovedInMemory() {
+		buffer.add(triple(1));
+		buffer.add(triple(1));
+		buffer.add(triple(2));
+		assertEquals(2, buffer.size());
+		assertEquals(2, buffer.take(100).size());
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void spilledChangesComeBackIntact() {
+		for (int i = 0; i < 35; i++) {
+			buffer.add(triple(i));
+		}
+		assertEquals(1, spillDir.listFiles().length);
+
+		Set<Triple> taken = new HashSet<>();
+		List<Triple> batch;
+		while (!(batch = buffer.take(7)).isEmpty()) {
+			assertTrue("batch size " + batch.size(), batch.size() <= 7);
+			taken.addAll(batch);
+		}
+
+		assertEquals(35, taken.size());
+		for (int i = 0; i < 35; i++) {
+			assertTrue(taken.contains(triple(i)));
+		}
+		assertTrue(buffer.isEmpty());
+		assertEquals(0, spillDir.listFiles().length);
+	}
+
+	@Test
+	public void literalsSurviveTheRoundTrip() {
+		Triple t = new Triple(NodeFactory.createURI("http://ns#s"),
+				NodeFactory.createURI("http://ns#p"),
+				NodeFactory.createLiteral("two\nlines \"quoted\"", "en"));
+		buffer.add(t);
+		for (int i = 0; i < 9; i++) {
+			buffer.add(triple(i));
+		}
+		assertTrue(buffer.take(100).contains(t));
+	}
+
+	@Test
+	public void clearRemovesTheFiles() {
+		for (int i = 0; i < 25; i++) {
+			buffer.add(triple(i));
+		}
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+		assertEquals(0, spillDir.listFiles().length);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private Triple triple(int i) {
+		return new Triple(NodeFactory.createURI("http://ns#s" + i),
+				NodeFactory.createURI("http://ns#p"),
+				NodeFactory.createURI("http://ns#o" + i));
+	}
+}
@@ -0,0 +1,63 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus.Latency;
+
+/**
+ * Latencies land in the right buckets, and the snapshot summarizes them.
+ */
+public class LatencyHistogramTest extends AbstractTestClass {
+
+	@Test
+	public void emptyHistogram() {
+		Latency latency = new LatencyHistogram().snapshot();
+		assertEquals(0, latency.getCount());
+		assertEquals(0, latency.getMeanMillis());
+		assertEquals(0, latency.getMaxMillis());
+	}
+
+	@Test
+	public void latenciesAreCountedInBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(50, 1);
+		histogram.record(100, 2);
+		histogram.record(101, 1);
+		histogram.record(1000000, 1);
+
+		Latency latency = histogram.snapshot();
+		assertEquals(100, latency.getLimit(0));
+		assertEquals(3, latency.getCount(0));
+		assertEquals(250, latency.getLimit(1));
+		assertEquals(1, latency.getCount(1));
+
+		int last = latency.getBucketCount() - 1;
+		assertEquals(-1, latency.getLimit(last));
+		assertEquals(1, latency.getCount(last));
+
+		assertEquals(5, latency.getCount());
+		assertEquals(1000000, latency.getMaxMillis());
+		assertEquals((50 + 200 + 101 + 1000000) / 5, latency.getMeanMillis());
+	}
+
+	@Test
+	public void nothingIsRecordedForNoChanges() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(500, 0);
+		assertEquals(0, histogram.snapshot().getCount());
+	}
+
+	@Test
+	public void negativeLatencyCountsAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-20, 1);
+		Latency latency = histogram.snapshot();
+		assertEquals(1, latency.getCount(0));
+		assertEquals(0, latency.getMaxMillis());
+	}
+}
@@ -0,0 +1,130 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchIndexer.SearchIndexerStatus;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.Task;
+import edu.cornell.mannlib.vitro.webapp.searchindex.SearchIndexerImpl.WorkerThreadPool;
+
+/**
+ * A task that waits for its work units resumes when they are done, without
+ * waiting for the units of other tasks.
+ */
+public class WorkerThreadPoolTest extends AbstractTestClass {
+	private WorkerThreadPool pool;
+
+	@Before
+	public void setup() {
+		pool = new WorkerThreadPool(4, "WorkerThreadPoolTest");
+	}
+
+	@After
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void waitReturnsWhenNothingWasSubmitted() {
+		pool.waitUntilDone(new CountingTask());
+	}
+
+	@Test
+	public void waitReturnsAfterAllUnitsAreNotified() {
+		CountingTask task = new CountingTask();
+		for (int i = 0; i < 100; i++) {
+			pool.submit(new Sleeper(5), task);
+		}
+		pool.waitUntilDone(task);
+		assertEquals(100, task.notified.get());
+	}
+
+	@Test
+	public void waitIgnoresUnitsOfOtherTasks() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountingTask blocked = new CountingTask();
+		pool.submit(new Blocker(release), blocked);
+
+		CountingTask quick = new CountingTask();
+		pool.submit(new Sleeper(5), quick);
+
+		long start = System.currentTimeMillis();
+		pool.waitUntilDone(quick);
+		long elapsed = System.currentTimeMillis() - start;
+		release.countDown();
+
+		assertEquals(1, quick.notified.get());
+		assertTrue("resumed promptly: " + elapsed, elapsed < 1000);
+
+		pool.waitUntilDone(blocked);
+		assertEquals(1, blocked.notified.get());
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class CountingTask implements Task {
+		final AtomicInteger notified = new AtomicInteger();
+
+		@Override
+		public void run() {
+			// Not run by these tests.
+		}
+
+		@Override
+		public SearchIndexerStatus getStatus() {
+			return SearchIndexerStatus.idle();
+		}
+
+		@Override
+		public void notifyWorkUnitCompletion(Runnable workUnit) {
+			notified.incrementAndGet();
+		}
+	}
+
+	private static class Sleeper implements Runnable {
+		private final long millis;
+
+		Sleeper(long millis) {
+			this.millis = millis;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static class Blocker implements Runnable {
+		private final CountDownLatch release;
+
+		Blocker(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void run() {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
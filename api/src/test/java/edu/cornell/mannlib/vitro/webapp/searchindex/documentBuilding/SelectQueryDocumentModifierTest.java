@@ -0,0 +1,164 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.documentBuilding;
+
+import static edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess.WhichService.CONTENT;
+import static org.apache.jena.rdf.model.ResourceFactory.createPlainLiteral;
+import static org.apache.jena.rdf.model.ResourceFactory.createProperty;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.rdf.model.ResourceFactory.createStatement;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modelaccess.ContextModelAccessStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.Individual;
+import edu.cornell.mannlib.vitro.webapp.beans.IndividualImpl;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputField;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+import edu.cornell.mannlib.vitro.webapp.searchengine.base.BaseSearchInputDocument;
+
+/**
+ * A batch of individuals gets the same field values as when each individual is
+ * modified on its own, whether or not the query can be batched.
+ */
+public class SelectQueryDocumentModifierTest extends AbstractTestClass {
+	private static final String FIELD = "testField";
+
+	private static final String BOB_URI = "http://ns#Bob";
+	private static final String BETTY_URI = "http://ns#Betty";
+	private static final String DICK_URI = "http://ns#Dick";
+	private static final String FRIEND_URI = "http://ns#Friend";
+	private static final String NAME_URI = "http://ns#Name";
+
+	private static final Resource BOB = createResource(BOB_URI);
+	private static final Resource BETTY = createResource(BETTY_URI);
+	private static final Resource DICK = createResource(DICK_URI);
+	private static final Property FRIEND = createProperty(FRIEND_URI);
+	private static final Property NAME = createProperty(NAME_URI);
+
+	private static final String NAMES_OF_FRIENDS = "SELECT ?name WHERE { ?uri <"
+			+ FRIEND_URI + "> ?f . ?f <" + NAME_URI + "> ?name }";
+	private static final String COUNT_OF_FRIENDS = "SELECT (COUNT(?f) AS ?c) WHERE { ?uri <"
+			+ FRIEND_URI + "> ?f }";
+
+	private SelectQueryDocumentModifier modifier;
+
+	@Before
+	public void setup() {
+		Model m = ModelFactory.createDefaultModel();
+		m.add(createStatement(BOB, FRIEND, BETTY));
+		m.add(createStatement(BOB, FRIEND, DICK));
+		m.add(createStatement(BETTY, FRIEND, DICK));
+		m.add(createStatement(BETTY, NAME, createPlainLiteral("Betty")));
+		m.add(createStatement(DICK, NAME, createPlainLiteral("Dick")));
+
+		ContextModelAccessStub models = new ContextModelAccessStub();
+		models.setRDFService(CONTENT, new RDFServiceModel(m));
+
+		modifier = new SelectQueryDocumentModifier();
+		modifier.setContextModels(models);
+		modifier.addTargetField(FIELD);
+	}
+
+	@Test
+	public void batchableQuery_sameAsIndividually() {
+		modifier.addQuery(NAMES_OF_FRIENDS);
+		modifier.validate();
+
+		Map<Individual, SearchInputDocument> docs = modifyBatch(BOB_URI,
+				BETTY_URI, DICK_URI);
+		assertValues(docs, BOB_URI, "Betty", "Dick");
+		assertValues(docs, BETTY_URI, "Dick");
+		assertValues(docs, DICK_URI);
+
+		assertEquals("individually", values(docs, BOB_URI),
+				fieldValues(modifySingle(BOB_URI)));
+	}
+
+	@Test
+	public void aggregateQuery_runForEachIndividual() {
+		modifier.addQuery(COUNT_OF_FRIENDS);
+		modifier.validate();
+
+		Map<Individual, SearchInputDocument> docs = modifyBatch(BOB_URI,
+				BETTY_URI, DICK_URI);
+		assertValues(docs, BOB_URI, "2");
+		assertValues(docs, BETTY_URI, "1");
+		assertValues(docs, DICK_URI, "0");
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private Map<Individual, SearchInputDocument> modifyBatch(String... uris) {
+		Map<Individual, SearchInputDocument> docs = new LinkedHashMap<>();
+		for (String uri : uris) {
+			docs.put(individual(uri), new BaseSearchInputDocument());
+		}
+		modifier.modifyDocuments(docs);
+		return docs;
+	}
+
+	private SearchInputDocument modifySingle(String uri) {
+		SearchInputDocument doc = new BaseSearchInputDocument();
+		modifier.modifyDocument(individual(uri), doc);
+		return doc;
+	}
+
+	private Individual individual(String uri) {
+		Individual ind = new IndividualImpl();
+		ind.setURI(uri);
+		return ind;
+	}
+
+	private void assertValues(Map<Individual, SearchInputDocument> docs,
+			String uri, String... expected) {
+		assertEquals(uri, new HashSet<>(Arrays.asList(expected)),
+				values(docs, uri));
+	}
+
+	private Set<Object> values(Map<Individual, SearchInputDocument> docs,
+			String uri) {
+		for (Map.Entry<Individual, SearchInputDocument> entry : docs
+				.entrySet()) {
+			if (uri.equals(entry.getKey().getURI())) {
+				return fieldValues(entry.getValue());
+			}
+		}
+		throw new IllegalArgumentException("No document for " + uri);
+	}
+
+	/**
+	 * The modifier adds its list of values as a single value of the field.
+	 */
+	private Set<Object> fieldValues(SearchInputDocument doc) {
+		Set<Object> values = new HashSet<>();
+		SearchInputField field = doc.getField(FIELD);
+		if (field != null) {
+			for (Object value : field.getValues()) {
+				if (value instanceof Collection) {
+					values.addAll((Collection<?>) value);
+				} else {
+					values.add(value);
+				}
+			}
+		}
+		return values;
+	}
+}
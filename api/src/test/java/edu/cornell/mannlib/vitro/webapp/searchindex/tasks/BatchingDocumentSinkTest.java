@@ -0,0 +1,113 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineStub;
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchEngineException;
+import edu.cornell.mannlib.vitro.webapp.modules.searchEngine.SearchInputDocument;
+
+/**
+ * Documents are sent in batches of the requested size, a partial batch is sent
+ * on flush(), and a rejected batch is retried one document at a time.
+ */
+public class BatchingDocumentSinkTest extends AbstractTestClass {
+	private RecordingSearchEngine engine;
+
+	@Before
+	public void setup() {
+		engine = new RecordingSearchEngine();
+	}
+
+	@Test
+	public void fullBatchesAreSentWhenFilled() throws Exception {
+		BatchingDocumentSink sink = new BatchingDocumentSink(engine, 3, 60000L);
+		addDocuments(sink, 7);
+		assertEquals("batch sizes", sizes(3, 3), engine.batchSizes);
+	}
+
+	@Test
+	public void partialBatchIsSentOnFlush() throws Exception {
+		BatchingDocumentSink sink = new BatchingDocumentSink(engine, 3, 60000L);
+		addDocuments(sink, 7);
+		sink.flush();
+		assertEquals("batch sizes", sizes(3, 3, 1), engine.batchSizes);
+	}
+
+	@Test
+	public void emptyFlushSendsNothing() {
+		BatchingDocumentSink sink = new BatchingDocumentSink(engine, 3, 60000L);
+		sink.flush();
+		assertEquals("batch sizes", sizes(), engine.batchSizes);
+	}
+
+	@Test
+	public void oldBatchIsSentOnNextAdd() throws Exception {
+		BatchingDocumentSink sink = new BatchingDocumentSink(engine, 100, 0L);
+		addDocuments(sink, 2);
+		assertEquals("batch sizes", sizes(1, 1), engine.batchSizes);
+	}
+
+	@Test
+	public void rejectedBatchIsRetriedIndividually() throws Exception {
+		setLoggerLevel(BatchingDocumentSink.class, Level.ERROR);
+		engine.rejectBatches = true;
+		BatchingDocumentSink sink = new BatchingDocumentSink(engine, 3, 60000L);
+		addDocuments(sink, 3);
+		assertEquals("individual adds", 3, engine.individualAdds);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private void addDocuments(BatchingDocumentSink sink, int howMany)
+			throws InterruptedException {
+		for (int i = 0; i < howMany; i++) {
+			sink.add(engine.createInputDocument());
+		}
+	}
+
+	private List<Integer> sizes(Integer... sizes) {
+		List<Integer> list = new ArrayList<>();
+		for (Integer size : sizes) {
+			list.add(size);
+		}
+		return list;
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper classes
+	// ----------------------------------------------------------------------
+
+	private static class RecordingSearchEngine extends SearchEngineStub {
+		final List<Integer> batchSizes = new ArrayList<>();
+		int individualAdds = 0;
+		boolean rejectBatches = false;
+
+		@Override
+		public synchronized void add(Collection<SearchInputDocument> docs)
+				throws SearchEngineException {
+			if (rejectBatches) {
+				throw new SearchEngineException("batch rejected");
+			}
+			batchSizes.add(docs.size());
+		}
+
+		@Override
+		public synchronized void add(SearchInputDocument... docs)
+				throws SearchEngineException {
+			individualAdds += docs.length;
+		}
+	}
+}
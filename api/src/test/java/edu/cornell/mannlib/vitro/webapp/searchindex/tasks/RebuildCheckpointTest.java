@@ -0,0 +1,77 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.searchindex.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.searchindex.tasks.RebuildCheckpoint.Saved;
+
+/**
+ * A checkpoint survives a round trip through the file, and goes away when
+ * cleared.
+ */
+public class RebuildCheckpointTest extends AbstractTestClass {
+	private static final Date REQUESTED_AT = new Date(1234567890L);
+	private static final String LAST_URI = "http://ns#Bob";
+
+	private File homeDir;
+	private RebuildCheckpoint checkpoint;
+
+	@Before
+	public void setup() throws IOException {
+		homeDir = createTempDirectory("RebuildCheckpointTest");
+		checkpoint = new RebuildCheckpoint(homeDir.toPath());
+	}
+
+	@After
+	public void cleanup() {
+		purgeDirectoryRecursively(homeDir);
+	}
+
+	@Test
+	public void noFileMeansNoCheckpoint() {
+		assertNull(checkpoint.load());
+	}
+
+	@Test
+	public void savedCheckpointIsLoaded() {
+		checkpoint.save(REQUESTED_AT, LAST_URI, 20000);
+		Saved saved = checkpoint.load();
+		assertEquals("requestedAt", REQUESTED_AT, saved.getRequestedAt());
+		assertEquals("lastUri", LAST_URI, saved.getLastUri());
+		assertEquals("count", 20000, saved.getCount());
+	}
+
+	@Test
+	public void checkpointWithNoUriIsLoaded() {
+		checkpoint.save(REQUESTED_AT, null, 0);
+		Saved saved = checkpoint.load();
+		assertEquals("requestedAt", REQUESTED_AT, saved.getRequestedAt());
+		assertNull("lastUri", saved.getLastUri());
+	}
+
+	@Test
+	public void clearedCheckpointIsGone() {
+		checkpoint.save(REQUESTED_AT, LAST_URI, 20000);
+		checkpoint.clear();
+		assertNull(checkpoint.load());
+	}
+
+	@Test
+	public void damagedCheckpointIsIgnored() throws IOException {
+		setLoggerLevel(RebuildCheckpoint.class, Level.ERROR);
+		createFile(homeDir, RebuildCheckpoint.FILE_NAME, "requestedAt=bogus");
+		assertNull(checkpoint.load());
+	}
+}
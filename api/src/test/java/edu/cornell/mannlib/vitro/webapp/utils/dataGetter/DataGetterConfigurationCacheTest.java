@@ -0,0 +1,65 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.dataGetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+
+/**
+ * Values are kept until the cache is cleared, and a value that was read before
+ * the cache was cleared is not kept.
+ */
+public class DataGetterConfigurationCacheTest extends AbstractTestClass {
+	private static final String PAGE_URI = "http://test/page";
+	private static final String DG_URI = "http://test/dataGetter";
+	private static final String CLASS_NAME = SparqlQueryDataGetter.class
+			.getName();
+	private static final List<String> DG_URIS = Arrays.asList(DG_URI);
+
+	private DataGetterConfigurationCache cache;
+
+	@Before
+	public void setup() {
+		cache = new DataGetterConfigurationCache();
+	}
+
+	@Test
+	public void valuesAreKept() {
+		long readAt = cache.getGeneration();
+		cache.putDataGetterUris(readAt, PAGE_URI, DG_URIS);
+		cache.putClassName(readAt, DG_URI, CLASS_NAME);
+
+		assertEquals(DG_URIS, cache.getDataGetterUris(PAGE_URI));
+		assertEquals(CLASS_NAME, cache.getClassName(DG_URI));
+	}
+
+	@Test
+	public void clearRemovesValues() {
+		long readAt = cache.getGeneration();
+		cache.putDataGetterUris(readAt, PAGE_URI, DG_URIS);
+		cache.putClassName(readAt, DG_URI, CLASS_NAME);
+
+		cache.clear();
+		assertNull(cache.getDataGetterUris(PAGE_URI));
+		assertNull(cache.getClassName(DG_URI));
+	}
+
+	@Test
+	public void staleValuesAreNotKept() {
+		long readAt = cache.getGeneration();
+		cache.clear();
+
+		cache.putDataGetterUris(readAt, PAGE_URI, DG_URIS);
+		cache.putClassName(readAt, DG_URI, CLASS_NAME);
+		assertNull(cache.getDataGetterUris(PAGE_URI));
+		assertNull(cache.getClassName(DG_URI));
+	}
+}
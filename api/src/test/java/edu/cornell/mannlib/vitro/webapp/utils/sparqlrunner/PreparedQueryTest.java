@@ -0,0 +1,131 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner;
+
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.dataProperty;
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.model;
+import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.objectProperty;
+import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.createSelectQueryContext;
+import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.prepareQuery;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.rdf.model.Model;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+
+/**
+ * Bind values to a prepared query, and show that it gives the same results as
+ * binding them to the text.
+ */
+public class PreparedQueryTest extends AbstractTestClass {
+	private static final String BOB = "http://ns#Bob";
+	private static final String BETTY = "http://ns#Betty";
+	private static final String DICK = "http://ns#Dick";
+	private static final String FRIEND = "http://ns#Friend";
+	private static final String NAME = "http://ns#Name";
+
+	private static final String FRIENDS_QUERY = "SELECT ?name WHERE { ?uri <"
+			+ FRIEND + "> ?f . ?f <" + NAME + "> ?name }";
+	private static final String NAMED_QUERY = "SELECT ?person WHERE { ?person <"
+			+ NAME + "> ?name }";
+
+	private Model model;
+	private RDFService rdfService;
+
+	@Before
+	public void setup() {
+		model = model(objectProperty(BOB, FRIEND, BETTY),
+				objectProperty(BOB, FRIEND, DICK),
+				objectProperty(BETTY, FRIEND, DICK),
+				dataProperty(BETTY, NAME, "Betty"),
+				dataProperty(DICK, NAME, "Dick"));
+		rdfService = new RDFServiceModel(model);
+	}
+
+	@Test
+	public void findsVariables() {
+		PreparedQuery pq = prepareQuery(FRIENDS_QUERY);
+		assertTrue(pq.hasVariable("uri"));
+		assertTrue(pq.hasVariable("name"));
+		assertFalse(pq.hasVariable("ur"));
+	}
+
+	@Test(expected = QueryParseException.class)
+	public void badQueryIsRejected() {
+		prepareQuery("SELECT WHERE {");
+	}
+
+	@Test
+	public void bindToUri_againstModel() {
+		PreparedQuery pq = prepareQuery(FRIENDS_QUERY).bindToUri("uri", BOB);
+		assertEquals(set("Betty", "Dick"), set(createSelectQueryContext(model,
+				pq).execute().toStringFields("name").flatten()));
+	}
+
+	@Test
+	public void bindToUri_againstRDFService() {
+		PreparedQuery pq = prepareQuery(FRIENDS_QUERY).bindToUri("uri", BETTY);
+		assertEquals(set("Dick"), set(createSelectQueryContext(rdfService, pq)
+				.execute().toStringFields("name").flatten()));
+	}
+
+	@Test
+	public void bindToPlainLiteral() {
+		PreparedQuery pq = prepareQuery(NAMED_QUERY).bindToPlainLiteral(
+				"name", "Betty");
+		assertEquals(set(BETTY), set(createSelectQueryContext(model, pq)
+				.execute().toStringFields("person").flatten()));
+	}
+
+	@Test
+	public void bindingDoesNotChangeTheOriginal() {
+		PreparedQuery pq = prepareQuery(FRIENDS_QUERY);
+		pq.bindToUri("uri", BOB);
+		assertEquals(FRIENDS_QUERY, pq.getQueryString());
+	}
+
+	@Test
+	public void contextBindsToPreparedQuery() {
+		List<String> names = createSelectQueryContext(rdfService,
+				prepareQuery(FRIENDS_QUERY)).bindVariableToUri("uri", BOB)
+				.execute().toStringFields("name").flatten();
+		assertEquals(set("Betty", "Dick"), set(names));
+	}
+
+	@Test
+	public void bindToUris_rowsIncludeTheValue() {
+		PreparedQuery pq = prepareQuery(FRIENDS_QUERY).bindToUris("uri",
+				Arrays.asList(BOB, BETTY, DICK));
+		Set<String> rows = new HashSet<>();
+		for (Map<String, String> row : createSelectQueryContext(rdfService, pq)
+				.execute().toStringFields().getListOfMaps()) {
+			rows.add(row.get("uri") + " " + row.get("name"));
+		}
+		assertEquals(set(BOB + " Betty", BOB + " Dick", BETTY + " Dick"), rows);
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods
+	// ----------------------------------------------------------------------
+
+	private Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+	private Set<String> set(List<String> values) {
+		return new HashSet<>(values);
+	}
+}
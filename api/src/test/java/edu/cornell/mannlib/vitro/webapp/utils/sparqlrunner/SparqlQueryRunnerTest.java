@@ -6,6 +6,7 @@ import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.dataPro
 import static edu.cornell.mannlib.vitro.testing.ModelUtilitiesTestHelper.model;
 import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.createConstructQueryContext;
 import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.createSelectQueryContext;
+import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.prepareQuery;
 import static edu.cornell.mannlib.vitro.webapp.utils.sparqlrunner.SparqlQueryRunner.queryHolder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -107,6 +108,20 @@ public class SparqlQueryRunnerTest extends AbstractTestClass {
 		assertExpectedSelectResults();
 	}
 
+	@Test
+	public void selectPreparedQueryAgainstModel() {
+		createSelectQueryContext(model, prepareQuery(SELECT_QUERY)).execute()
+				.writeToOutput(buffer);
+		assertExpectedSelectResults();
+	}
+
+	@Test
+	public void selectPreparedQueryAgainstRDFService() {
+		createSelectQueryContext(rdfService, prepareQuery(SELECT_QUERY))
+				.execute().writeToOutput(buffer);
+		assertExpectedSelectResults();
+	}
+
 	/**
 	 * We've shown that all select contexts work. It should suffice that one of
 	 * them can convert to string fields.
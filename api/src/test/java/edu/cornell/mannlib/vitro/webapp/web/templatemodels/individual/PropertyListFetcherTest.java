@@ -0,0 +1,236 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.web.templatemodels.individual;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import stubs.edu.cornell.mannlib.vitro.webapp.beans.IndividualStub;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+
+import edu.cornell.mannlib.vitro.testing.AbstractTestClass;
+import edu.cornell.mannlib.vitro.webapp.beans.DataProperty;
+import edu.cornell.mannlib.vitro.webapp.dao.DataPropertyStatementDao;
+import edu.cornell.mannlib.vitro.webapp.dao.jena.WebappDaoFactoryJena;
+
+public class PropertyListFetcherTest extends AbstractTestClass {
+	private static final String NS = "http://test.example/";
+	private static final String SUBJECT = NS + "subject";
+	private static final String NAME = NS + "name";
+	private static final String EMAIL = NS + "email";
+	private static final String PHONE = NS + "phone";
+
+	private DataPropertyStatementDao dpsDao;
+	private List<DataProperty> populated;
+	private ExecutorService pool;
+
+	@Before
+	public void setup() {
+		OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+		Resource subject = model.createResource(SUBJECT);
+		subject.addProperty(model.createProperty(NAME), "Abe");
+		subject.addProperty(model.createProperty(EMAIL), "abe@test.example");
+		dpsDao = new WebappDaoFactoryJena(model).getDataPropertyStatementDao();
+
+		populated = Arrays.asList(dataProperty(NAME), dataProperty(EMAIL));
+	}
+
+	@After
+	public void shutdownPool() throws InterruptedException {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	// ----------------------------------------------------------------------
+	// The tests
+	// ----------------------------------------------------------------------
+
+	@Test
+	public void noPool_builtOnThisThread() {
+		PropertyListFetcher fetcher = fetcher(null, 1000);
+		Future<Thread> future = fetcher.submit(new CurrentThread());
+		assertTrue(future.isDone());
+		assertSame(Thread.currentThread(), fetcher.await(future, "thread"));
+	}
+
+	@Test
+	public void pool_builtOnAnotherThread() {
+		pool = Executors.newFixedThreadPool(2);
+		PropertyListFetcher fetcher = fetcher(pool, 1000);
+		Future<Thread> future = fetcher.submit(new CurrentThread());
+		assertNotSame(Thread.currentThread(), fetcher.await(future, "thread"));
+	}
+
+	@Test
+	public void poolShutDown_builtOnThisThread() {
+		pool = Executors.newFixedThreadPool(2);
+		pool.shutdown();
+		PropertyListFetcher fetcher = fetcher(pool, 1000);
+		Future<Thread> future = fetcher.submit(new CurrentThread());
+		assertSame(Thread.currentThread(), fetcher.await(future, "thread"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failure_thrownByAwait() {
+		pool = Executors.newFixedThreadPool(2);
+		PropertyListFetcher fetcher = fetcher(pool, 1000);
+		Future<String> future = fetcher.submit(new Callable<String>() {
+			@Override
+			public String call() {
+				throw new IllegalStateException("failed");
+			}
+		});
+		fetcher.await(future, "failure");
+	}
+
+	@Test
+	public void lateProperty_leftOffButNotInterrupted()
+			throws InterruptedException {
+		setLoggerLevel(PropertyListFetcher.class, Level.OFF);
+		pool = Executors.newFixedThreadPool(2);
+		PropertyListFetcher fetcher = fetcher(pool, 10);
+
+		CountDownLatch release = new CountDownLatch(1);
+		SlowTask slow = new SlowTask(release);
+		Future<String> future = fetcher.submit(slow);
+		assertTrue(slow.running.await(5, TimeUnit.SECONDS));
+
+		assertNull(fetcher.await(future, "slow"));
+
+		release.countDown();
+		fetcher.finish();
+		assertTrue("finished", slow.finished.get());
+		assertFalse("interrupted", slow.interrupted.get());
+	}
+
+	@Test
+	public void finish_waitsForRunningTasksAndAbandonsTheRest()
+			throws InterruptedException {
+		pool = Executors.newFixedThreadPool(1);
+		PropertyListFetcher fetcher = fetcher(pool, 1000);
+
+		final CountDownLatch release = new CountDownLatch(1);
+		SlowTask slow = new SlowTask(release);
+		fetcher.submit(slow);
+		assertTrue(slow.running.await(5, TimeUnit.SECONDS));
+		SlowTask queued = new SlowTask(new CountDownLatch(0));
+		fetcher.submit(queued);
+
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// Release it anyway.
+				}
+				release.countDown();
+			}
+		}.start();
+
+		fetcher.finish();
+		assertTrue("running task finished", slow.finished.get());
+
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+		assertEquals("queued task started", 1, queued.running.getCount());
+	}
+
+	@Test
+	public void defaultDataPropertyValues_fetchedTogether() {
+		PropertyListFetcher fetcher = fetcher(null, 1000);
+		assertEquals(Arrays.asList("Abe"),
+				lexicalForms(fetcher.getDefaultDataPropertyValues(populated
+						.get(0))));
+		assertEquals(Arrays.asList("abe@test.example"),
+				lexicalForms(fetcher.getDefaultDataPropertyValues(populated
+						.get(1))));
+	}
+
+	@Test
+	public void unpopulatedDataProperty_null() {
+		PropertyListFetcher fetcher = fetcher(null, 1000);
+		assertNull(fetcher.getDefaultDataPropertyValues(dataProperty(PHONE)));
+	}
+
+	// ----------------------------------------------------------------------
+	// Helper methods and classes
+	// ----------------------------------------------------------------------
+
+	private PropertyListFetcher fetcher(ExecutorService executor,
+			long timeout) {
+		return new PropertyListFetcher(new IndividualStub(SUBJECT), populated,
+				dpsDao, executor, timeout);
+	}
+
+	private static DataProperty dataProperty(String uri) {
+		DataProperty dp = new DataProperty();
+		dp.setURI(uri);
+		return dp;
+	}
+
+	private static List<String> lexicalForms(List<Literal> literals) {
+		List<String> forms = new ArrayList<>();
+		for (Literal literal : literals) {
+			forms.add(literal.getLexicalForm());
+		}
+		return forms;
+	}
+
+	private static class CurrentThread implements Callable<Thread> {
+		@Override
+		public Thread call() {
+			return Thread.currentThread();
+		}
+	}
+
+	private static class SlowTask implements Callable<String> {
+		private final CountDownLatch release;
+		final CountDownLatch running = new CountDownLatch(1);
+		final AtomicBoolean finished = new AtomicBoolean();
+		final AtomicBoolean interrupted = new AtomicBoolean();
+
+		SlowTask(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public String call() {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+			finished.set(true);
+			return "slow";
+		}
+	}
+}
@@ -5,6 +5,7 @@ package stubs.edu.cornell.mannlib.vitro.webapp.dao;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,19 @@ public class IndividualDaoStub implements IndividualDao {
 		return indMap.get(individualURI);
 	}
 
+	@Override
+	public Map<String, Individual> getIndividualsByURIs(
+			Collection<String> individualURIs) {
+		Map<String, Individual> map = new LinkedHashMap<String, Individual>();
+		for (String uri : individualURIs) {
+			Individual ind = indMap.get(uri);
+			if (ind != null) {
+				map.put(uri, ind);
+			}
+		}
+		return map;
+	}
+
 	// ----------------------------------------------------------------------
 	// Un-implemented methods
 	// ----------------------------------------------------------------------
@@ -135,6 +149,18 @@ public class IndividualDaoStub implements IndividualDao {
 				"IndividualDaoStub.getAllIndividualUris() not implemented.");
 	}	
 
+	@Override
+	public Iterator<String> getAllIndividualUrisIterator() {
+		throw new RuntimeException(
+				"IndividualDaoStub.getAllIndividualUrisIterator() not implemented.");
+	}
+
+	@Override
+	public Iterator<String> getAllIndividualUrisIterator(String afterUri) {
+		throw new RuntimeException(
+				"IndividualDaoStub.getAllIndividualUrisIterator() not implemented.");
+	}
+
 	@Override
 	public Iterator<String> getUpdatedSinceIterator(long updatedSince) {
 		throw new RuntimeException(
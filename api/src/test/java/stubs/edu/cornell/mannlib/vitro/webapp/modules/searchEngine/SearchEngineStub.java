@@ -118,6 +118,12 @@ public class SearchEngineStub implements SearchEngine {
 				"SearchEngineStub.deleteByQuery() not implemented.");
 	}
 
+	@Override
+	public int getVisibilityDelayMillis() {
+		throw new RuntimeException(
+				"SearchEngineStub.getVisibilityDelayMillis() not implemented.");
+	}
+
 	@Override
 	public int documentCount() throws SearchEngineException {
 		throw new RuntimeException(
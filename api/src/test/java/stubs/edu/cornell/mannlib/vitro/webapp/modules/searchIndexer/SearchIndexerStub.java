@@ -52,6 +52,13 @@ public class SearchIndexerStub implements SearchIndexer {
 				"SearchIndexerStub.scheduleUpdatesForStatements() not implemented.");
 	}
 
+	@Override
+	public void scheduleUpdatesForStatements(List<Statement> changes,
+			long heardAtMillis) {
+		throw new RuntimeException(
+				"SearchIndexerStub.scheduleUpdatesForStatements() not implemented.");
+	}
+
 	@Override
 	public void scheduleUpdatesForUris(Collection<String> uris) {
 		throw new RuntimeException(
@@ -64,6 +71,12 @@ public class SearchIndexerStub implements SearchIndexer {
 				"SearchIndexerStub.rebuildIndex() not implemented.");
 	}
 
+	@Override
+	public void resumeInterruptedRebuild() {
+		throw new RuntimeException(
+				"SearchIndexerStub.resumeInterruptedRebuild() not implemented.");
+	}
+
 	@Override
 	public SearchIndexerStatus getStatus() {
 		throw new RuntimeException(
@@ -25,4 +25,13 @@ ${stylesheets.add('<link rel="stylesheet" href="${urls.base}/css/showAuth.css" /
             </tr>
         </#list>
     </table>
+    <h4>Parsed query cache:</h4>
+    <table summary="Parsed Query Cache">
+    	<#list parsedQueryCache?keys as key>
+            <tr>
+                <td>${key}</td>
+                <td>${parsedQueryCache[key]}</td>
+            </tr>
+        </#list>
+    </table>
 </section>
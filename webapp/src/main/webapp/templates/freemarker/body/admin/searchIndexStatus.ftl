@@ -26,6 +26,35 @@
         <h3>The search indexer status is: ${status.statusType}
     </#if>
     
+    <#if status.backlog?has_content >
+        <table class="history">
+            <tr> <th>Lane</th> <th>Busy</th> <th>Waiting tasks</th> <th>Waiting items</th> </tr>
+            <#list status.backlog as lane>
+                <tr>
+                    <td>${lane.lane}</td>
+                    <td>${lane.busy?string("yes", "no")}</td>
+                    <td>${lane.waitingTasks}</td>
+                    <td>${lane.waitingItems}</td>
+                </tr>
+            </#list>
+        </table>
+    </#if>
+    
+    <#if status.latency?? && status.latency.count != 0 >
+        <p>Time for changes to reach the search index: mean ${status.latency.meanMillis} ms, maximum ${status.latency.maxMillis} ms, over ${status.latency.count} changes.</p>
+        <table class="history">
+            <tr> <th>Latency</th> <th>Changes</th> </tr>
+            <#list status.latency.buckets as bucket>
+                <#if bucket.count != 0 >
+                    <tr>
+                        <td>${bucket.label}</td>
+                        <td>${bucket.count}</td>
+                    </tr>
+                </#if>
+            </#list>
+        </table>
+    </#if>
+    
     
     <form action="${rebuildUrl}" method="POST">
         <p>